@@ -17,6 +17,7 @@
 package com.Ostermiller.util;
 
 import java.io.*;
+import java.nio.*;
 import java.text.MessageFormat;
 import java.util.ResourceBundle;
 import java.util.Locale;
@@ -147,12 +148,19 @@ public class Base64 {
 	 */
 	private static final int END_OF_INPUT = -1;
 
+	/**
+	 * Size of the buffers used when reading and writing streams.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int BUFFER_SIZE = 4 * 1024;
+
 	/**
 	 * A character that is not a valid base 64 character.
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64 = -1;
+	static final int NON_BASE_64 = -1;
 
 	/**
 	 * A character that is not a valid base 64 character.
@@ -166,7 +174,7 @@ public class Base64 {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64_PADDING = -3;
+	static final int NON_BASE_64_PADDING = -3;
 
 	/**
 	 * This class need not be instantiated, all methods are static.
@@ -629,28 +637,25 @@ public class Base64 {
 	 * @since ostermillerutils 1.04.00
 	 */
 	public static byte[] encode(byte[] bytes, boolean lineBreaks){
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		// calculate the length of the resulting output.
-		// in general it will be 4/3 the size of the input
-		// but the input length must be divisible by three.
-		// If it isn't the next largest size that is divisible
-		// by three is used.
-		int mod;
-		int length = bytes.length;
-		if ((mod = length % 3) != 0){
-			length += 3 - mod;
-		}
-		length = length * 4 / 3;
-		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
-		try {
-			encode(in, out, lineBreaks);
-		} catch (IOException x){
-			// This can't happen.
-			// The input and output streams were constructed
-			// on memory structures that don't actually use IO.
-			throw new RuntimeException(x);
-		}
-		return out.toByteArray();
+		Base64Encoder encoder = new Base64Encoder(lineBreaks);
+		byte[] out = new byte[encoder.getEncodedLength(bytes.length) + encoder.getFinishLength()];
+		int length = encoder.encode(bytes, 0, bytes.length, out, 0);
+		length += encoder.finish(out, length);
+		return trim(out, length);
+	}
+
+	/**
+	 * Get the start of an array.
+	 *
+	 * @param bytes array that may be longer than needed.
+	 * @param length number of bytes wanted.
+	 * @return the array itself if it has the given length, otherwise a copy of its start.
+	 */
+	private static byte[] trim(byte[] bytes, int length){
+		if (bytes.length == length) return bytes;
+		byte[] result = new byte[length];
+		System.arraycopy(bytes, 0, result, 0, length);
+		return result;
 	}
 
 	/**
@@ -756,63 +761,16 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void encode(InputStream in, OutputStream out, boolean lineBreaks) throws IOException {
-		// Base64 encoding converts three bytes of input to
-		// four bytes of output
-		int[] inBuffer = new int[3];
-		int lineCount = 0;
-
-		boolean done = false;
-		while (!done && (inBuffer[0] = in.read()) != END_OF_INPUT){
-			// Fill the buffer
-			inBuffer[1] = in.read();
-			inBuffer[2] = in.read();
-
-			// Calculate the out Buffer
-			// The first byte of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the three bytes get split into
-			// four bytes along these lines:
-			//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			// bytes are considered to be zero when absent.
-			// the four bytes are then mapped to common ASCII symbols
-
-			// A's: first six bits of first byte
-			out.write(base64Chars[ inBuffer[0] >> 2 ]);
-			if (inBuffer[1] != END_OF_INPUT){
-				// B's: last two bits of first byte, first four bits of second byte
-				out.write(base64Chars [(( inBuffer[0] << 4 ) & 0x30) | (inBuffer[1] >> 4) ]);
-				if (inBuffer[2] != END_OF_INPUT){
-					// C's: last four bits of second byte, first two bits of third byte
-					out.write(base64Chars [((inBuffer[1] << 2) & 0x3c) | (inBuffer[2] >> 6) ]);
-					// D's: last six bits of third byte
-					out.write(base64Chars [inBuffer[2] & 0x3F]);
-				} else {
-					// C's: last four bits of second byte
-					out.write(base64Chars [((inBuffer[1] << 2) & 0x3c)]);
-					// an equals sign for a character that is not a Base64 character
-					out.write('=');
-					done = true;
-				}
-			} else {
-				// B's: last two bits of first byte
-				out.write(base64Chars [(( inBuffer[0] << 4 ) & 0x30)]);
-				// an equal signs for characters that is not a Base64 characters
-				out.write('=');
-				out.write('=');
-				done = true;
-			}
-			lineCount += 4;
-			if (lineBreaks && lineCount >= 76){
-				out.write('\n');
-				lineCount = 0;
-			}
-		}
-		if (lineBreaks && lineCount >= 1){
-			out.write('\n');
-			lineCount = 0;
+		Base64Encoder encoder = new Base64Encoder(lineBreaks);
+		byte[] inBuffer = new byte[BUFFER_SIZE];
+		// Four characters for each three bytes and a line break for each 57
+		// bytes fits in twice the space, even with what is left from the last read.
+		byte[] outBuffer = new byte[BUFFER_SIZE * 2];
+		int read;
+		while ((read = in.read(inBuffer)) != END_OF_INPUT){
+			out.write(outBuffer, 0, encoder.encode(inBuffer, 0, read, outBuffer, 0));
 		}
+		out.write(outBuffer, 0, encoder.finish(outBuffer, 0));
 		out.flush();
 	}
 
@@ -829,7 +787,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(CharSequence string){
-		return decodeInputToBytesNoIO(getIntSequence(string));
+		return decodeBufferToBytes(CharBuffer.wrap(string));
 	}
 
 	/**
@@ -841,7 +799,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(CharSequence string, String enc) throws UnsupportedEncodingException {
-		return decodeInputToBytesNoIO(getIntSequence(string));
+		return decodeBufferToBytes(CharBuffer.wrap(string));
 	}
 
 	/**
@@ -855,7 +813,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(byte[] bytes){
-		return decodeInputToBytesNoIO(getIntSequence(bytes));
+		return decodeBufferToBytes(ByteBuffer.wrap(bytes));
 	}
 
 	/**
@@ -870,7 +828,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static byte[] decode(byte[] bytes){
-		return decodeInputToBytesNoIO(getIntSequence(bytes));
+		return decodeBufferToBytes(ByteBuffer.wrap(bytes));
 	}
 
 	/**
@@ -884,7 +842,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static byte[] decodeToBytes(char[] chars){
-		return decodeInputToBytesNoIO(getIntSequence(chars));
+		return decodeBufferToBytes(CharBuffer.wrap(chars));
 	}
 
 	/**
@@ -899,7 +857,9 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static byte[] decodeToBytes(Reader in) throws IOException{
-		return decodeInputToBytes(getIntSequence(in));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		decodeReader(in, out, false);
+		return out.toByteArray();
 	}
 
 	/**
@@ -914,26 +874,51 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static byte[] decodeToBytes(InputStream in) throws IOException {
-		return decodeInputToBytes(getIntSequence(in));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		decodeStream(in, out, false);
+		return out.toByteArray();
 	}
 
-	private static byte[] decodeInputToBytesNoIO(IntSequence in) {
+	/**
+	 * Decode all the Base64 characters stored as bytes in a buffer,
+	 * ignoring characters that are not part of the Base64 alphabet.
+	 *
+	 * @param in Base64 characters.
+	 * @return decoded data.
+	 */
+	private static byte[] decodeBufferToBytes(ByteBuffer in){
+		Base64Decoder decoder = new Base64Decoder(false);
+		ByteBuffer out = ByteBuffer.allocate(decoder.getDecodedLength(in.remaining()) + 2);
 		try {
-			return decodeInputToBytes(in);
-		} catch (IOException iox){
-			throw new RuntimeException(iox);
+			decoder.decode(in, out);
+		} catch (Base64DecodingException x){
+			// This can't happen.
+			// Unexpected characters are ignored rather than reported.
+			throw new RuntimeException(x);
 		}
+		decoder.finish(out);
+		return trim(out.array(), out.position());
 	}
 
-	private static byte[] decodeInputToBytes(IntSequence in) throws IOException {
-		ByteArrayOutputStream out;
-		if (in.length() < 0){
-			out = new ByteArrayOutputStream();
-		} else {
-			out = new ByteArrayOutputStream(calculateOutputLength(in.length()));
+	/**
+	 * Decode all the Base64 characters in a buffer,
+	 * ignoring characters that are not part of the Base64 alphabet.
+	 *
+	 * @param in Base64 characters.
+	 * @return decoded data.
+	 */
+	private static byte[] decodeBufferToBytes(CharBuffer in){
+		Base64Decoder decoder = new Base64Decoder(false);
+		ByteBuffer out = ByteBuffer.allocate(decoder.getDecodedLength(in.remaining()) + 2);
+		try {
+			decoder.decode(in, out);
+		} catch (Base64DecodingException x){
+			// This can't happen.
+			// Unexpected characters are ignored rather than reported.
+			throw new RuntimeException(x);
 		}
-		decodeInput(in, out, false);
-		return out.toByteArray();
+		decoder.finish(out);
+		return trim(out.array(), out.position());
 	}
 
 	/**
@@ -1184,7 +1169,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(InputStream in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decodeStream(in, out, true);
 	}
 
 	/**
@@ -1220,7 +1205,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(InputStream in, OutputStream out, boolean throwExceptions) throws IOException {
-		decodeInput(getIntSequence(in), out, throwExceptions);
+		decodeStream(in, out, throwExceptions);
 	}
 
 	/**
@@ -1235,7 +1220,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(byte[] bytes, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(bytes), out, false);
+		decodeBuffer(ByteBuffer.wrap(bytes), out, false);
 	}
 
 	/**
@@ -1268,7 +1253,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(Reader in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decodeReader(in, out, true);
 	}
 	/**
 	 * Decode Base64 encoded data from the InputStream to the OutputStream.
@@ -1285,7 +1270,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(Reader in, OutputStream out, boolean throwExceptions) throws IOException {
-		decodeInput(getIntSequence(in), out, throwExceptions);
+		decodeReader(in, out, throwExceptions);
 	}
 
 	/**
@@ -1302,7 +1287,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(CharSequence in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decodeBuffer(CharBuffer.wrap(in), out, true);
 	}
 
 
@@ -1632,102 +1617,111 @@ public class Base64 {
 		return true;
 	}
 
-	private static void decodeInput(IntSequence in, OutputStream out, boolean throwExceptions) throws IOException {
-		// Base64 decoding converts four bytes of input to three bytes of output
-		int[] inBuffer = new int[4];
+	/**
+	 * Decode Base64 encoded data from the InputStream to the OutputStream
+	 * a buffer at a time.
+	 *
+	 * @param in Stream from which to read data that needs to be decoded.
+	 * @param out Stream to which to write decoded data.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 */
+	private static void decodeStream(InputStream in, OutputStream out, boolean throwExceptions) throws IOException {
+		Base64Decoder decoder = new Base64Decoder(throwExceptions);
+		byte[] inBuffer = new byte[BUFFER_SIZE];
+		// Three bytes for each four characters, even with what is left from the last read.
+		byte[] outBuffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(inBuffer)) != END_OF_INPUT){
+			out.write(outBuffer, 0, decoder.decode(inBuffer, 0, read, outBuffer, 0));
+		}
+		out.write(outBuffer, 0, decoder.finish(outBuffer, 0));
+		out.flush();
+	}
 
-		// read bytes un-mapping them from their ASCII encoding in the process
-		// we must read at least two bytes to be able to output anything
-		boolean done = false;
-		while(!done && (inBuffer[0] = readBase64(in, throwExceptions)) != END_OF_INPUT
-			&& (inBuffer[1] = readBase64(in,throwExceptions)) != END_OF_INPUT){
-			// Fill the buffer
-			inBuffer[2] = readBase64(in, throwExceptions);
-			inBuffer[3] = readBase64(in, throwExceptions);
-
-			// Calculate the output
-			// The first two bytes of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the four bytes will get reconstituted
-			// into three bytes along these lines:
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// bytes are considered to be zero when absent.
-
-			// six A and two B
-			out.write(inBuffer[0] << 2 | inBuffer[1] >> 4);
-			if (inBuffer[2] != END_OF_INPUT){
-				// four B and four C
-				out.write(inBuffer[1] << 4 | inBuffer[2] >> 2);
-				if (inBuffer[3] != END_OF_INPUT){
-					// two C and six D
-					out.write(inBuffer[2] << 6 | inBuffer[3]);
-				} else {
-					done = true;
-				}
-			} else {
-				done = true;
-			}
+	/**
+	 * Decode Base64 encoded data from the Reader to the OutputStream
+	 * a buffer at a time.
+	 *
+	 * @param in Reader from which to read data that needs to be decoded.
+	 * @param out Stream to which to write decoded data.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 */
+	private static void decodeReader(Reader in, OutputStream out, boolean throwExceptions) throws IOException {
+		Base64Decoder decoder = new Base64Decoder(throwExceptions);
+		char[] inBuffer = new char[BUFFER_SIZE];
+		byte[] outBuffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(inBuffer)) != END_OF_INPUT){
+			out.write(outBuffer, 0, decoder.decode(inBuffer, 0, read, outBuffer, 0));
 		}
+		out.write(outBuffer, 0, decoder.finish(outBuffer, 0));
 		out.flush();
 	}
 
-	/*
-	 * Calculate the length of the resulting output.
-	 * In general it will be at most 3/4 the size of the input
-	 * but the input length must be divisible by four.
-	 * If it isn't the next largest size that is divisible
-	 * by four is used.
+	/**
+	 * Decode the Base64 characters stored as bytes in a buffer to the OutputStream.
+	 *
+	 * @param in Base64 characters.
+	 * @param out Stream to which to write decoded data.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
 	 */
-	private static final int calculateOutputLength(int inputLength){
-		int mod;
-		if ((mod = inputLength % 4) != 0){
-			inputLength += 4 - mod;
+	private static void decodeBuffer(ByteBuffer in, OutputStream out, boolean throwExceptions) throws IOException {
+		Base64Decoder decoder = new Base64Decoder(throwExceptions);
+		ByteBuffer outBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (in.hasRemaining()){
+			decoder.decode(in, outBuffer);
+			out.write(outBuffer.array(), 0, outBuffer.position());
+			outBuffer.clear();
 		}
-		return (inputLength * 3 / 4);
+		decoder.finish(outBuffer);
+		out.write(outBuffer.array(), 0, outBuffer.position());
+		out.flush();
 	}
 
 	/**
-	 * Reads the next (decoded) Base64 character from the input stream.
-	 * Non Base64 characters are skipped.
+	 * Decode the Base64 characters in a buffer to the OutputStream.
 	 *
-	 * @param in Input source from which bytes are read.
-	 * @param position position in the input s
-	 * @param throwExceptions Throw an exception if an unexpected character is encountered.
-	 * @return the next Base64 character from the stream or -1 if there are no more Base64 characters on the stream.
-	 * @throws IOException if an IO Error occurs.
+	 * @param in Base64 characters.
+	 * @param out Stream to which to write decoded data.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
 	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 */
+	private static void decodeBuffer(CharBuffer in, OutputStream out, boolean throwExceptions) throws IOException {
+		Base64Decoder decoder = new Base64Decoder(throwExceptions);
+		ByteBuffer outBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (in.hasRemaining()){
+			decoder.decode(in, outBuffer);
+			out.write(outBuffer.array(), 0, outBuffer.position());
+			outBuffer.clear();
+		}
+		decoder.finish(outBuffer);
+		out.write(outBuffer.array(), 0, outBuffer.position());
+		out.flush();
+	}
+
+	/**
+	 * Create the exception for a character that is not expected in Base64 encoded data.
 	 *
-	 * @since ostermillerutils 1.00.00
+	 * @param c the character.
+	 * @return an exception with a message naming the character.
 	 */
-	private static final int readBase64(IntSequence in, boolean throwExceptions) throws IOException {
-		int read;
-		int numPadding = 0;
-		do {
-			read = in.nextInt();
-			if (read < 0) return END_OF_INPUT;
-			if (read >= reverseBase64Chars.length){
-				read = NON_BASE_64;
-			} else {
-				read = reverseBase64Chars[(byte)read];
-			}
-			if (throwExceptions && (read == NON_BASE_64 || (numPadding > 0 && read > NON_BASE_64))){
-				throw new Base64DecodingException (
-					MessageFormat.format(
-						labels.getString("unexpectedchar"),
-						(Object[])new String[] {
-							"'" + (char)read + "' (0x" + Integer.toHexString(read) + ")"
-						}
-					),
-					(char)read
-				);
-			}
-			if (read == NON_BASE_64_PADDING){
-				numPadding++;
-			}
-		} while (read <= NON_BASE_64);
-		return read;
+	static Base64DecodingException unexpectedChar(int c){
+		return new Base64DecodingException (
+			MessageFormat.format(
+				labels.getString("unexpectedchar"),
+				(Object[])new String[] {
+					"'" + (char)c + "' (0x" + Integer.toHexString(c) + ")"
+				}
+			),
+			(char)c
+		);
 	}
 
 	private static interface IntSequence {
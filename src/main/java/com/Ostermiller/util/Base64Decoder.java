@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.nio.*;
+
+/**
+ * Decodes Base64 a block at a time, for input that arrives in pieces.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * Each call to decode() converts as many whole groups of four Base64
+ * characters as it is given and keeps up to three characters' worth
+ * of bits for the next call.  After the last of the input, finish()
+ * writes the bytes of a final group that was not complete.  The output
+ * is the same as from {@link Base64#decode(InputStream, OutputStream, boolean)}
+ * for the whole input.
+ * <p>
+ * Groups of four characters are decoded with tables that give each
+ * character's bits already shifted into place, so a group that has no
+ * white space or padding takes four lookups and one test.  Line breaks,
+ * padding, and other characters are handled one at a time.  A decoder
+ * reuses its own small buffers and creates no objects while decoding.
+ * It is not safe for use by several threads at once.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64Decoder {
+
+	/**
+	 * For each character below 256, its six bits shifted into place as the
+	 * first character of a group, or -1 if it is not a Base64 character.
+	 */
+	private static final int[] DECODE_0 = new int[0x100];
+
+	/**
+	 * For each character below 256, its six bits shifted into place as the
+	 * second character of a group, or -1 if it is not a Base64 character.
+	 */
+	private static final int[] DECODE_1 = new int[0x100];
+
+	/**
+	 * For each character below 256, its six bits shifted into place as the
+	 * third character of a group, or -1 if it is not a Base64 character.
+	 */
+	private static final int[] DECODE_2 = new int[0x100];
+
+	/**
+	 * For each character below 256, its six bits as the last
+	 * character of a group, or -1 if it is not a Base64 character.
+	 */
+	private static final int[] DECODE_3 = new int[0x100];
+	static {
+		for (int i=0; i<0x100; i++){
+			int value = Base64.reverseBase64Chars[i];
+			if (value < 0){
+				DECODE_0[i] = DECODE_1[i] = DECODE_2[i] = DECODE_3[i] = -1;
+			} else {
+				DECODE_0[i] = value << 18;
+				DECODE_1[i] = value << 12;
+				DECODE_2[i] = value << 6;
+				DECODE_3[i] = value;
+			}
+		}
+	}
+
+	/**
+	 * Size of the buffers used to move data to and from
+	 * buffers that do not have arrays.
+	 */
+	private static final int SCRATCH_SIZE = 4 * 1024;
+
+	/**
+	 * Whether to throw an exception when unexpected data is encountered.
+	 */
+	private final boolean throwExceptions;
+
+	/**
+	 * Bits of the group so far, six for each character.
+	 */
+	private int bits;
+
+	/**
+	 * Number of characters in the group so far, zero to three.
+	 */
+	private int count;
+
+	/**
+	 * Whether padding has been seen.
+	 */
+	private boolean padded;
+
+	/**
+	 * Byte input buffer for buffers without arrays, or null until needed.
+	 */
+	private byte[] scratchIn;
+
+	/**
+	 * Character input buffer for buffers without arrays, or null until needed.
+	 */
+	private char[] scratchChars;
+
+	/**
+	 * Output buffer for buffers without arrays, or null until needed.
+	 */
+	private byte[] scratchOut;
+
+	/**
+	 * Create a decoder that ignores characters that are not
+	 * part of the Base64 alphabet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Decoder(){
+		this(false);
+	}
+
+	/**
+	 * Create a decoder.
+	 * Characters in the Base64 alphabet, white space and equals sign are
+	 * expected to be in Base64 encoded data.  The presence of other characters
+	 * could be a sign that the data is corrupted.
+	 *
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Decoder(boolean throwExceptions){
+		this.throwExceptions = throwExceptions;
+	}
+
+	/**
+	 * Get the most bytes decode() may write for the given number of further
+	 * characters of input, which depends on how much is left over from earlier calls.
+	 *
+	 * @param length number of characters of input.
+	 * @return largest number of bytes of output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getDecodedLength(int length){
+		return (int)(((long)count + length) / 4 * 3);
+	}
+
+	/**
+	 * Decode Base64 characters stored as bytes.
+	 *
+	 * @param in Base64 characters.
+	 * @param inOff offset of the first character to decode.
+	 * @param inLen number of characters to decode.
+	 * @param out array into which to write decoded bytes.
+	 * @param outOff offset at which to start writing.
+	 * @return number of bytes written.
+	 * @throws IllegalArgumentException if the output array does not have room for getDecodedLength(inLen) bytes.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int decode(byte[] in, int inOff, int inLen, byte[] out, int outOff) throws Base64DecodingException {
+		checkRoom(inLen, out, outOff);
+		int i = inOff;
+		int end = inOff + inLen;
+		int o = outOff;
+		while (i < end){
+			if (count == 0){
+				int stop = end - 3;
+				for (; i<stop; i+=4){
+					int group = DECODE_0[in[i] & 0xff] | DECODE_1[in[i+1] & 0xff] | DECODE_2[in[i+2] & 0xff] | DECODE_3[in[i+3] & 0xff];
+					if (group < 0 || (padded && throwExceptions)) break;
+					out[o++] = (byte)(group >> 16);
+					out[o++] = (byte)(group >> 8);
+					out[o++] = (byte)group;
+				}
+				if (i >= end) break;
+			}
+			o = decodeChar(in[i++] & 0xff, out, o);
+		}
+		return o - outOff;
+	}
+
+	/**
+	 * Decode Base64 characters.
+	 *
+	 * @param in Base64 characters.
+	 * @param inOff offset of the first character to decode.
+	 * @param inLen number of characters to decode.
+	 * @param out array into which to write decoded bytes.
+	 * @param outOff offset at which to start writing.
+	 * @return number of bytes written.
+	 * @throws IllegalArgumentException if the output array does not have room for getDecodedLength(inLen) bytes.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int decode(char[] in, int inOff, int inLen, byte[] out, int outOff) throws Base64DecodingException {
+		checkRoom(inLen, out, outOff);
+		int i = inOff;
+		int end = inOff + inLen;
+		int o = outOff;
+		while (i < end){
+			if (count == 0){
+				int stop = end - 3;
+				for (; i<stop; i+=4){
+					char c0 = in[i];
+					char c1 = in[i+1];
+					char c2 = in[i+2];
+					char c3 = in[i+3];
+					if (((c0 | c1 | c2 | c3) & 0xff00) != 0 || (padded && throwExceptions)) break;
+					int group = DECODE_0[c0] | DECODE_1[c1] | DECODE_2[c2] | DECODE_3[c3];
+					if (group < 0) break;
+					out[o++] = (byte)(group >> 16);
+					out[o++] = (byte)(group >> 8);
+					out[o++] = (byte)group;
+				}
+				if (i >= end) break;
+			}
+			o = decodeChar(in[i++], out, o);
+		}
+		return o - outOff;
+	}
+
+	/**
+	 * Check that there is room for the decoded bytes.
+	 *
+	 * @param inLen number of characters of input.
+	 * @param out array into which to write decoded bytes.
+	 * @param outOff offset at which to start writing.
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 */
+	private void checkRoom(int inLen, byte[] out, int outOff){
+		int outLen = getDecodedLength(inLen);
+		if (outOff < 0 || out.length - outOff < outLen) throw new IllegalArgumentException("Output array too small: need " + outLen + " bytes at offset " + outOff);
+	}
+
+	/**
+	 * Decode a single character, which may be white space,
+	 * padding, or not part of the Base64 alphabet.
+	 *
+	 * @param c the character.
+	 * @param out array into which to write decoded bytes.
+	 * @param o offset at which to write.
+	 * @return offset after any bytes written.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 */
+	private int decodeChar(int c, byte[] out, int o) throws Base64DecodingException {
+		int value = (c < 0x100) ? Base64.reverseBase64Chars[c] : Base64.NON_BASE_64;
+		if (value >= 0){
+			if (padded && throwExceptions) throw Base64.unexpectedChar(c);
+			bits = (bits << 6) | value;
+			if (++count == 4){
+				out[o++] = (byte)(bits >> 16);
+				out[o++] = (byte)(bits >> 8);
+				out[o++] = (byte)bits;
+				bits = 0;
+				count = 0;
+			}
+		} else if (value == Base64.NON_BASE_64_PADDING){
+			padded = true;
+		} else if (value == Base64.NON_BASE_64 && throwExceptions){
+			throw Base64.unexpectedChar(c);
+		}
+		return o;
+	}
+
+	/**
+	 * Write the bytes of a final group that was not complete, then
+	 * make this decoder ready for new input.  A final group of two
+	 * or three characters gives one or two bytes.
+	 *
+	 * @param out array into which to write decoded bytes.
+	 * @param outOff offset at which to start writing.
+	 * @return number of bytes written, no more than two.
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int finish(byte[] out, int outOff){
+		int length = Math.max(0, count - 1);
+		if (outOff < 0 || out.length - outOff < length) throw new IllegalArgumentException("Output array too small: need " + length + " bytes at offset " + outOff);
+		if (count == 2){
+			out[outOff] = (byte)(bits >> 4);
+		} else if (count == 3){
+			out[outOff] = (byte)(bits >> 10);
+			out[outOff+1] = (byte)(bits >> 2);
+		}
+		reset();
+		return length;
+	}
+
+	/**
+	 * Finish decoding into a buffer as by finish(byte[], int).
+	 *
+	 * @param out buffer into which to write decoded bytes.
+	 * @throws java.nio.BufferOverflowException if the buffer does not have room for the bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish(ByteBuffer out){
+		if (out.remaining() < count - 1) throw new java.nio.BufferOverflowException();
+		if (count == 2){
+			out.put((byte)(bits >> 4));
+		} else if (count == 3){
+			out.put((byte)(bits >> 10));
+			out.put((byte)(bits >> 2));
+		}
+		reset();
+	}
+
+	/**
+	 * Decode as many Base64 characters stored as bytes from one buffer into
+	 * another as there is room for.  The positions of both buffers are
+	 * advanced.  Characters for which there might not be room are left in the input.
+	 *
+	 * @param in Base64 characters.
+	 * @param out buffer into which to write decoded bytes.
+	 * @return number of characters of input used.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int decode(ByteBuffer in, ByteBuffer out) throws Base64DecodingException {
+		int used = 0;
+		while (in.hasRemaining()){
+			int length = Math.min(in.remaining(), fit(out.remaining()));
+			if (length == 0) break;
+			if (in.hasArray() && out.hasArray()){
+				int written = decode(in.array(), in.arrayOffset() + in.position(), length, out.array(), out.arrayOffset() + out.position());
+				in.position(in.position() + length);
+				out.position(out.position() + written);
+			} else {
+				if (scratchIn == null) scratchIn = new byte[SCRATCH_SIZE];
+				if (scratchOut == null) scratchOut = new byte[SCRATCH_SIZE];
+				length = Math.min(length, SCRATCH_SIZE);
+				in.get(scratchIn, 0, length);
+				out.put(scratchOut, 0, decode(scratchIn, 0, length, scratchOut, 0));
+			}
+			used += length;
+		}
+		return used;
+	}
+
+	/**
+	 * Decode as many Base64 characters from a buffer into bytes in another
+	 * buffer as there is room for.  The positions of both buffers are
+	 * advanced.  Characters for which there might not be room are left in the input.
+	 *
+	 * @param in Base64 characters.
+	 * @param out buffer into which to write decoded bytes.
+	 * @return number of characters of input used.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int decode(CharBuffer in, ByteBuffer out) throws Base64DecodingException {
+		int used = 0;
+		while (in.hasRemaining()){
+			int length = Math.min(in.remaining(), fit(out.remaining()));
+			if (length == 0) break;
+			if (in.hasArray() && out.hasArray()){
+				int written = decode(in.array(), in.arrayOffset() + in.position(), length, out.array(), out.arrayOffset() + out.position());
+				in.position(in.position() + length);
+				out.position(out.position() + written);
+			} else {
+				if (scratchChars == null) scratchChars = new char[SCRATCH_SIZE];
+				if (scratchOut == null) scratchOut = new byte[SCRATCH_SIZE];
+				length = Math.min(length, SCRATCH_SIZE);
+				in.get(scratchChars, 0, length);
+				out.put(scratchOut, 0, decode(scratchChars, 0, length, scratchOut, 0));
+			}
+			used += length;
+		}
+		return used;
+	}
+
+	/**
+	 * Get how many characters can be decoded into the given room.
+	 *
+	 * @param room space in the output.
+	 * @return number of characters that are sure to fit, possibly zero.
+	 */
+	private int fit(int room){
+		// Characters that do not complete a group need no room.
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(0, (long)room / 3 * 4 + 3 - count));
+	}
+
+	/**
+	 * Discard any partial group and padding,
+	 * so that this decoder is ready for new input.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void reset(){
+		bits = 0;
+		count = 0;
+		padded = false;
+	}
+}
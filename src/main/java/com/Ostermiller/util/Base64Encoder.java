@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.nio.*;
+
+/**
+ * Encodes bytes in Base64 a block at a time, for input that
+ * arrives in pieces.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * Each call to encode() converts as many whole groups of three bytes as it
+ * is given and keeps the one or two bytes left over for the next call.
+ * After the last of the input, finish() writes the final group with
+ * its padding.  The output is the same as from
+ * {@link Base64#encode(byte[], boolean)} for the whole input.
+ * <p>
+ * Groups are encoded twelve bits at a time with a table of pairs of
+ * Base64 characters, so there are no per-byte calls or branches on the
+ * fast path.  An encoder reuses its own small buffers and creates no
+ * objects while encoding.  It is not safe for use by several threads at once.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64Encoder {
+
+	/**
+	 * Number of Base64 characters on a line when there are line breaks.
+	 */
+	static final int LINE_LENGTH = 76;
+
+	/**
+	 * Number of groups of three bytes encoded on a full line.
+	 */
+	private static final int GROUPS_PER_LINE = LINE_LENGTH / 4;
+
+	/**
+	 * The two Base64 characters for each twelve bits of input,
+	 * the first in the high byte and the second in the low byte.
+	 */
+	private static final char[] PAIRS = new char[1 << 12];
+	static {
+		for (int i=0; i<PAIRS.length; i++){
+			PAIRS[i] = (char)((Base64.base64Chars[i >> 6] << 8) | Base64.base64Chars[i & 0x3f]);
+		}
+	}
+
+	/**
+	 * Size of the buffers used to move data to and from
+	 * byte buffers that do not have arrays.
+	 */
+	private static final int SCRATCH_SIZE = 3 * 1024;
+
+	/**
+	 * Whether to insert a line break after every 76 characters.
+	 */
+	private final boolean lineBreaks;
+
+	/**
+	 * Bytes left over from the last call that did not make a whole group,
+	 * in the low bits.
+	 */
+	private int pending;
+
+	/**
+	 * Number of bytes left over, zero to two.
+	 */
+	private int pendingCount;
+
+	/**
+	 * Number of characters written to the current line.
+	 */
+	private int lineCount;
+
+	/**
+	 * The characters written by finish() when they are copied to bytes.
+	 */
+	private final char[] tail = new char[5];
+
+	/**
+	 * Input buffer for byte buffers without arrays, or null until needed.
+	 */
+	private byte[] scratchIn;
+
+	/**
+	 * Byte output buffer for byte buffers without arrays, or null until needed.
+	 */
+	private byte[] scratchOut;
+
+	/**
+	 * Character output buffer for char buffers without arrays, or null until needed.
+	 */
+	private char[] scratchChars;
+
+	/**
+	 * Create an encoder that does not insert line breaks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Encoder(){
+		this(false);
+	}
+
+	/**
+	 * Create an encoder.
+	 *
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Encoder(boolean lineBreaks){
+		this.lineBreaks = lineBreaks;
+	}
+
+	/**
+	 * Get the number of characters encode() will write for the given number of
+	 * further input bytes, which depends on how many are left over from earlier calls.
+	 *
+	 * @param length number of bytes of input.
+	 * @return number of characters of output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getEncodedLength(int length){
+		long groups = ((long)pendingCount + length) / 3;
+		long chars = groups * 4;
+		if (lineBreaks) chars += (lineCount + chars) / LINE_LENGTH;
+		if (chars > Integer.MAX_VALUE) throw new IllegalArgumentException("Encoded length too large: " + chars);
+		return (int)chars;
+	}
+
+	/**
+	 * Get the largest number of characters that finish() writes.
+	 *
+	 * @return five: a padded group and a line break.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getFinishLength(){
+		return 5;
+	}
+
+	/**
+	 * Encode bytes into Base64 characters stored as bytes.
+	 *
+	 * @param in bytes to encode.
+	 * @param inOff offset of the first byte to encode.
+	 * @param inLen number of bytes to encode.
+	 * @param out array into which to write Base64 characters.
+	 * @param outOff offset at which to start writing.
+	 * @return number of characters written, as given by getEncodedLength(inLen).
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int encode(byte[] in, int inOff, int inLen, byte[] out, int outOff){
+		int outLen = getEncodedLength(inLen);
+		if (outOff < 0 || out.length - outOff < outLen) throw new IllegalArgumentException("Output array too small: need " + outLen + " bytes at offset " + outOff);
+		int i = inOff;
+		int end = inOff + inLen;
+		int o = outOff;
+		// Complete a group started by an earlier call
+		while (pendingCount > 0 && i < end){
+			pending = (pending << 8) | (in[i++] & 0xff);
+			if (++pendingCount == 3){
+				o = group(pending, out, o);
+				pending = 0;
+				pendingCount = 0;
+			}
+		}
+		while (end - i >= 3){
+			int groups = (end - i) / 3;
+			if (lineBreaks) groups = Math.min(groups, GROUPS_PER_LINE - lineCount / 4);
+			int stop = i + groups * 3;
+			for (; i<stop; i+=3){
+				int bits = ((in[i] & 0xff) << 16) | ((in[i+1] & 0xff) << 8) | (in[i+2] & 0xff);
+				char pair = PAIRS[bits >>> 12];
+				out[o++] = (byte)(pair >> 8);
+				out[o++] = (byte)pair;
+				pair = PAIRS[bits & 0xfff];
+				out[o++] = (byte)(pair >> 8);
+				out[o++] = (byte)pair;
+			}
+			if (lineBreaks){
+				lineCount += groups * 4;
+				if (lineCount == LINE_LENGTH){
+					out[o++] = '\n';
+					lineCount = 0;
+				}
+			}
+		}
+		for (; i<end; i++){
+			pending = (pending << 8) | (in[i] & 0xff);
+			pendingCount++;
+		}
+		return o - outOff;
+	}
+
+	/**
+	 * Encode bytes into Base64 characters.
+	 *
+	 * @param in bytes to encode.
+	 * @param inOff offset of the first byte to encode.
+	 * @param inLen number of bytes to encode.
+	 * @param out array into which to write Base64 characters.
+	 * @param outOff offset at which to start writing.
+	 * @return number of characters written, as given by getEncodedLength(inLen).
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int encode(byte[] in, int inOff, int inLen, char[] out, int outOff){
+		int outLen = getEncodedLength(inLen);
+		if (outOff < 0 || out.length - outOff < outLen) throw new IllegalArgumentException("Output array too small: need " + outLen + " chars at offset " + outOff);
+		int i = inOff;
+		int end = inOff + inLen;
+		int o = outOff;
+		// Complete a group started by an earlier call
+		while (pendingCount > 0 && i < end){
+			pending = (pending << 8) | (in[i++] & 0xff);
+			if (++pendingCount == 3){
+				o = group(pending, out, o);
+				pending = 0;
+				pendingCount = 0;
+			}
+		}
+		while (end - i >= 3){
+			int groups = (end - i) / 3;
+			if (lineBreaks) groups = Math.min(groups, GROUPS_PER_LINE - lineCount / 4);
+			int stop = i + groups * 3;
+			for (; i<stop; i+=3){
+				int bits = ((in[i] & 0xff) << 16) | ((in[i+1] & 0xff) << 8) | (in[i+2] & 0xff);
+				char pair = PAIRS[bits >>> 12];
+				out[o++] = (char)(pair >> 8);
+				out[o++] = (char)(pair & 0xff);
+				pair = PAIRS[bits & 0xfff];
+				out[o++] = (char)(pair >> 8);
+				out[o++] = (char)(pair & 0xff);
+			}
+			if (lineBreaks){
+				lineCount += groups * 4;
+				if (lineCount == LINE_LENGTH){
+					out[o++] = '\n';
+					lineCount = 0;
+				}
+			}
+		}
+		for (; i<end; i++){
+			pending = (pending << 8) | (in[i] & 0xff);
+			pendingCount++;
+		}
+		return o - outOff;
+	}
+
+	/**
+	 * Write one whole group of three bytes, and a line break if it fills the line.
+	 *
+	 * @param bits the three bytes.
+	 * @param out array into which to write.
+	 * @param o offset at which to write.
+	 * @return offset after the characters written.
+	 */
+	private int group(int bits, byte[] out, int o){
+		char pair = PAIRS[bits >>> 12];
+		out[o++] = (byte)(pair >> 8);
+		out[o++] = (byte)pair;
+		pair = PAIRS[bits & 0xfff];
+		out[o++] = (byte)(pair >> 8);
+		out[o++] = (byte)pair;
+		return lineBreak(out, o);
+	}
+
+	/**
+	 * Write one whole group of three bytes, and a line break if it fills the line.
+	 *
+	 * @param bits the three bytes.
+	 * @param out array into which to write.
+	 * @param o offset at which to write.
+	 * @return offset after the characters written.
+	 */
+	private int group(int bits, char[] out, int o){
+		char pair = PAIRS[bits >>> 12];
+		out[o++] = (char)(pair >> 8);
+		out[o++] = (char)(pair & 0xff);
+		pair = PAIRS[bits & 0xfff];
+		out[o++] = (char)(pair >> 8);
+		out[o++] = (char)(pair & 0xff);
+		return lineBreak(out, o);
+	}
+
+	/**
+	 * Count four characters written and end the line if it is full.
+	 *
+	 * @param out array into which to write.
+	 * @param o offset at which to write.
+	 * @return offset after any line break.
+	 */
+	private int lineBreak(byte[] out, int o){
+		if (lineBreaks){
+			lineCount += 4;
+			if (lineCount >= LINE_LENGTH){
+				out[o++] = '\n';
+				lineCount = 0;
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Count four characters written and end the line if it is full.
+	 *
+	 * @param out array into which to write.
+	 * @param o offset at which to write.
+	 * @return offset after any line break.
+	 */
+	private int lineBreak(char[] out, int o){
+		if (lineBreaks){
+			lineCount += 4;
+			if (lineCount >= LINE_LENGTH){
+				out[o++] = '\n';
+				lineCount = 0;
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Write the bytes left over as a final padded group, and the final
+	 * line break, then make this encoder ready for new input.
+	 *
+	 * @param out array into which to write Base64 characters.
+	 * @param outOff offset at which to start writing.
+	 * @return number of characters written, no more than getFinishLength().
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int finish(byte[] out, int outOff){
+		int length = finishLength();
+		if (outOff < 0 || out.length - outOff < length) throw new IllegalArgumentException("Output array too small: need " + length + " bytes at offset " + outOff);
+		finish(tail, 0);
+		for (int i=0; i<length; i++){
+			out[outOff+i] = (byte)tail[i];
+		}
+		return length;
+	}
+
+	/**
+	 * Write the bytes left over as a final padded group, and the final
+	 * line break, then make this encoder ready for new input.
+	 *
+	 * @param out array into which to write Base64 characters.
+	 * @param outOff offset at which to start writing.
+	 * @return number of characters written, no more than getFinishLength().
+	 * @throws IllegalArgumentException if the output array does not have room.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int finish(char[] out, int outOff){
+		int length = finishLength();
+		if (outOff < 0 || out.length - outOff < length) throw new IllegalArgumentException("Output array too small: need " + length + " chars at offset " + outOff);
+		int o = outOff;
+		if (pendingCount > 0){
+			// Pad the left over bytes with zero bits to a whole
+			// number of six bit characters.
+			int bits = pending << ((3 - pendingCount) * 8);
+			char pair = PAIRS[bits >>> 12];
+			out[o++] = (char)(pair >> 8);
+			out[o++] = (char)(pair & 0xff);
+			if (pendingCount == 2){
+				out[o++] = (char)(PAIRS[bits & 0xfff] >> 8);
+			} else {
+				out[o++] = '=';
+			}
+			out[o++] = '=';
+			lineCount += 4;
+		}
+		if (lineBreaks && lineCount >= 1){
+			out[o++] = '\n';
+		}
+		reset();
+		return o - outOff;
+	}
+
+	/**
+	 * Get the number of characters finish() will write.
+	 *
+	 * @return number of characters.
+	 */
+	private int finishLength(){
+		int length = (pendingCount > 0) ? 4 : 0;
+		if (lineBreaks && lineCount + length >= 1) length++;
+		return length;
+	}
+
+	/**
+	 * Encode as many bytes from one buffer into Base64 characters in
+	 * another buffer as there is room for.  The positions of both buffers
+	 * are advanced.  Bytes for which there is no room are left in the input.
+	 *
+	 * @param in bytes to encode.
+	 * @param out buffer into which to write Base64 characters.
+	 * @return number of bytes of input used.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int encode(ByteBuffer in, ByteBuffer out){
+		int used = 0;
+		while (in.hasRemaining()){
+			int length = fit(in.remaining(), out.remaining());
+			if (length == 0) break;
+			if (in.hasArray() && out.hasArray()){
+				int written = encode(in.array(), in.arrayOffset() + in.position(), length, out.array(), out.arrayOffset() + out.position());
+				in.position(in.position() + length);
+				out.position(out.position() + written);
+			} else {
+				if (scratchIn == null) scratchIn = new byte[SCRATCH_SIZE];
+				if (scratchOut == null) scratchOut = new byte[getEncodedLength(SCRATCH_SIZE) + SCRATCH_SIZE];
+				length = Math.min(length, SCRATCH_SIZE);
+				in.get(scratchIn, 0, length);
+				out.put(scratchOut, 0, encode(scratchIn, 0, length, scratchOut, 0));
+			}
+			used += length;
+		}
+		return used;
+	}
+
+	/**
+	 * Encode as many bytes from a buffer into Base64 characters in
+	 * a character buffer as there is room for.  The positions of both buffers
+	 * are advanced.  Bytes for which there is no room are left in the input.
+	 *
+	 * @param in bytes to encode.
+	 * @param out buffer into which to write Base64 characters.
+	 * @return number of bytes of input used.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int encode(ByteBuffer in, CharBuffer out){
+		int used = 0;
+		while (in.hasRemaining()){
+			int length = fit(in.remaining(), out.remaining());
+			if (length == 0) break;
+			if (in.hasArray() && out.hasArray()){
+				int written = encode(in.array(), in.arrayOffset() + in.position(), length, out.array(), out.arrayOffset() + out.position());
+				in.position(in.position() + length);
+				out.position(out.position() + written);
+			} else {
+				if (scratchIn == null) scratchIn = new byte[SCRATCH_SIZE];
+				if (scratchChars == null) scratchChars = new char[getEncodedLength(SCRATCH_SIZE) + SCRATCH_SIZE];
+				length = Math.min(length, SCRATCH_SIZE);
+				if (in.hasArray()){
+					System.arraycopy(in.array(), in.arrayOffset() + in.position(), scratchIn, 0, length);
+					in.position(in.position() + length);
+				} else {
+					in.get(scratchIn, 0, length);
+				}
+				out.put(scratchChars, 0, encode(scratchIn, 0, length, scratchChars, 0));
+			}
+			used += length;
+		}
+		return used;
+	}
+
+	/**
+	 * Finish encoding into a buffer as by finish(byte[], int).
+	 *
+	 * @param out buffer into which to write Base64 characters.
+	 * @throws java.nio.BufferOverflowException if the buffer has fewer than getFinishLength() bytes remaining.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish(ByteBuffer out){
+		if (out.remaining() < finishLength()) throw new java.nio.BufferOverflowException();
+		int length = finish(tail, 0);
+		for (int i=0; i<length; i++){
+			out.put((byte)tail[i]);
+		}
+	}
+
+	/**
+	 * Finish encoding into a buffer as by finish(char[], int).
+	 *
+	 * @param out buffer into which to write Base64 characters.
+	 * @throws java.nio.BufferOverflowException if the buffer has fewer than getFinishLength() chars remaining.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish(CharBuffer out){
+		if (out.remaining() < finishLength()) throw new java.nio.BufferOverflowException();
+		out.put(tail, 0, finish(tail, 0));
+	}
+
+	/**
+	 * Get how many bytes of input can be encoded into the given room.
+	 *
+	 * @param available bytes of input available.
+	 * @param room space in the output.
+	 * @return number of bytes of input that fit, possibly zero.
+	 */
+	private int fit(int available, int room){
+		// Bytes that do not complete a group need no room, so start with all of them.
+		int length = available;
+		while (length > 0){
+			int over = getEncodedLength(length) - room;
+			if (over <= 0) break;
+			length -= Math.max(1, over * 3 / 4);
+		}
+		return Math.max(0, length);
+	}
+
+	/**
+	 * Discard any bytes left over and start a new line,
+	 * so that this encoder is ready for new input.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void reset(){
+		pending = 0;
+		pendingCount = 0;
+		lineCount = 0;
+	}
+}
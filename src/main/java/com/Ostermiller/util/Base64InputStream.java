@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * An input stream that decodes Base64 data read from another stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The underlying stream is read a block at a time, so only a small fixed
+ * buffer is held no matter how much data is decoded.  White space in the
+ * encoded data is ignored, as are other characters that are not part of
+ * the Base64 alphabet unless the stream is asked to throw exceptions for them.
+ *
+ * @see Base64OutputStream
+ * @see Base64Writer
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64InputStream extends FilterInputStream {
+
+	/**
+	 * Largest number of characters read at once.
+	 */
+	private static final int BLOCK_SIZE = 4 * 1024;
+
+	/**
+	 * Decoder holding any characters left over from the last read.
+	 */
+	private Base64Decoder decoder;
+
+	/**
+	 * Encoded characters read from the underlying stream.
+	 */
+	private byte[] inBuffer = new byte[BLOCK_SIZE];
+
+	/**
+	 * Decoded bytes not yet returned.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * Position of the next decoded byte to return.
+	 */
+	private int position = 0;
+
+	/**
+	 * Number of decoded bytes in the buffer.
+	 */
+	private int length = 0;
+
+	/**
+	 * Set once the underlying stream has ended.
+	 */
+	private boolean eof = false;
+
+	/**
+	 * Single byte returned by read().
+	 */
+	private byte[] oneByte = new byte[1];
+
+	/**
+	 * Create a stream that decodes, ignoring characters that are
+	 * not part of the Base64 alphabet.
+	 *
+	 * @param in stream from which to read the encoded characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64InputStream(InputStream in){
+		this(in, false);
+	}
+
+	/**
+	 * Create a stream that decodes.
+	 * Characters in the Base64 alphabet, white space and equals sign are
+	 * expected to be in Base64 encoded data.  The presence of other characters
+	 * could be a sign that the data is corrupted.
+	 *
+	 * @param in stream from which to read the encoded characters.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64InputStream(InputStream in, boolean throwExceptions){
+		super(in);
+		decoder = new Base64Decoder(throwExceptions);
+		buffer = new byte[decoder.getDecodedLength(BLOCK_SIZE + 3)];
+	}
+
+	/**
+	 * Read a single decoded byte.
+	 *
+	 * @return the byte or -1 at the end of the data.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read() throws IOException {
+		if (read(oneByte, 0, 1) == -1) return -1;
+		return oneByte[0] & 0xff;
+	}
+
+	/**
+	 * Read decoded bytes into a portion of an array.
+	 *
+	 * @param b the buffer into which the data is read.
+	 * @param off the start offset of the data.
+	 * @param len the maximum number of bytes read.
+	 * @return the number of bytes read, or -1 at the end of the data.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		while (position == length){
+			if (eof) return -1;
+			int read = in.read(inBuffer);
+			position = 0;
+			if (read == -1){
+				length = decoder.finish(buffer, 0);
+				eof = true;
+			} else if (len >= decoder.getDecodedLength(read)){
+				// Decode straight into the caller's array when it has room.
+				length = 0;
+				int decoded = decoder.decode(inBuffer, 0, read, b, off);
+				if (decoded > 0) return decoded;
+			} else {
+				length = decoder.decode(inBuffer, 0, read, buffer, 0);
+			}
+		}
+		int read = Math.min(len, length - position);
+		System.arraycopy(buffer, position, b, off, read);
+		position += read;
+		return read;
+	}
+
+	/**
+	 * Skip over decoded bytes.
+	 *
+	 * @param n the number of bytes to skip.
+	 * @return the number of bytes skipped.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		long skipped = 0;
+		byte[] skipBuffer = new byte[(int)Math.min(n, BLOCK_SIZE)];
+		while (skipped < n){
+			int read = read(skipBuffer, 0, (int)Math.min(n - skipped, skipBuffer.length));
+			if (read == -1) break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Get the number of decoded bytes that can be read without blocking.
+	 *
+	 * @return the number of bytes already decoded.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int available(){
+		return length - position;
+	}
+
+	/**
+	 * Mark is not supported.
+	 *
+	 * @return false.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Mark is not supported, so this does nothing.
+	 *
+	 * @param readlimit ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void mark(int readlimit){
+	}
+
+	/**
+	 * Reset is not supported.
+	 *
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
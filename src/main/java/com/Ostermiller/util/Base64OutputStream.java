@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * An output stream that Base64 encodes the bytes written to it.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The encoded characters are written to the underlying stream as ASCII
+ * bytes a block at a time, so only a small fixed buffer is held no matter
+ * how much data is written.  Up to two bytes can not be encoded until
+ * more bytes or the end of the data are known, so flush() may leave them
+ * behind.  The end of the data is marked by calling finish() or close().
+ *
+ * @see Base64InputStream
+ * @see Base64Reader
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64OutputStream extends FilterOutputStream {
+
+	/**
+	 * Largest number of bytes encoded at once.
+	 */
+	private static final int BLOCK_SIZE = 3 * 1024;
+
+	/**
+	 * Encoder holding any bytes left over from the last write.
+	 */
+	private Base64Encoder encoder;
+
+	/**
+	 * Encoded characters waiting to be written.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * Single byte passed to the encoder by write(int).
+	 */
+	private byte[] oneByte = new byte[1];
+
+	/**
+	 * Create a stream that encodes with a line break
+	 * every 76 characters.
+	 *
+	 * @param out stream to which to write the encoded characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64OutputStream(OutputStream out){
+		this(out, true);
+	}
+
+	/**
+	 * Create a stream that encodes.
+	 *
+	 * @param out stream to which to write the encoded characters.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64OutputStream(OutputStream out, boolean lineBreaks){
+		super(out);
+		encoder = new Base64Encoder(lineBreaks);
+		buffer = new byte[encoder.getEncodedLength(BLOCK_SIZE + 2) + 1];
+	}
+
+	/**
+	 * Encode the specified byte.
+	 *
+	 * @param b the byte.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(int b) throws IOException {
+		oneByte[0] = (byte)b;
+		write(oneByte, 0, 1);
+	}
+
+	/**
+	 * Encode length bytes from the specified byte array starting at
+	 * offset off.
+	 *
+	 * @param b the data.
+	 * @param off the start offset in the data.
+	 * @param len the number of bytes to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(byte b[], int off, int len) throws IOException {
+		while (len > 0){
+			int length = Math.min(len, BLOCK_SIZE);
+			out.write(buffer, 0, encoder.encode(b, off, length, buffer, 0));
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Write the end of the encoded data, including padding and a final
+	 * line break, without closing the underlying stream.  Bytes written
+	 * after this start a new block of encoded data.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish() throws IOException {
+		out.write(buffer, 0, encoder.finish(buffer, 0));
+		out.flush();
+	}
+
+	/**
+	 * Finish the encoded data and close the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void close() throws IOException {
+		finish();
+		out.close();
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * A reader of the Base64 encoding of the bytes in a stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The underlying stream is read a block at a time, so only a small fixed
+ * buffer is held no matter how much data is encoded.  This is useful for
+ * putting a large attachment into a text document without first reading it all
+ * into memory.
+ *
+ * @see Base64OutputStream
+ * @see Base64Writer
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64Reader extends Reader {
+
+	/**
+	 * Largest number of bytes read at once.
+	 */
+	private static final int BLOCK_SIZE = 3 * 1024;
+
+	/**
+	 * Stream from which bytes are read.
+	 */
+	private InputStream in;
+
+	/**
+	 * Encoder holding any bytes left over from the last read.
+	 */
+	private Base64Encoder encoder;
+
+	/**
+	 * Bytes read from the underlying stream.
+	 */
+	private byte[] inBuffer = new byte[BLOCK_SIZE];
+
+	/**
+	 * Encoded characters not yet returned.
+	 */
+	private char[] buffer;
+
+	/**
+	 * Position of the next encoded character to return.
+	 */
+	private int position = 0;
+
+	/**
+	 * Number of encoded characters in the buffer.
+	 */
+	private int length = 0;
+
+	/**
+	 * Set once the underlying stream has ended.
+	 */
+	private boolean eof = false;
+
+	/**
+	 * Create a reader that encodes with a line break
+	 * every 76 characters.
+	 *
+	 * @param in stream from which to read the bytes to encode.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Reader(InputStream in){
+		this(in, true);
+	}
+
+	/**
+	 * Create a reader that encodes.
+	 *
+	 * @param in stream from which to read the bytes to encode.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Reader(InputStream in, boolean lineBreaks){
+		this.in = in;
+		encoder = new Base64Encoder(lineBreaks);
+		buffer = new char[encoder.getEncodedLength(BLOCK_SIZE + 2) + encoder.getFinishLength()];
+	}
+
+	/**
+	 * Read encoded characters into a portion of an array.
+	 *
+	 * @param cbuf the buffer into which the characters are read.
+	 * @param off the start offset of the characters.
+	 * @param len the maximum number of characters read.
+	 * @return the number of characters read, or -1 at the end of the data.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock){
+			if (len == 0) return 0;
+			while (position == length){
+				if (eof) return -1;
+				int read = in.read(inBuffer);
+				position = 0;
+				if (read == -1){
+					length = encoder.finish(buffer, 0);
+					eof = true;
+				} else {
+					length = encoder.encode(inBuffer, 0, read, buffer, 0);
+				}
+			}
+			int read = Math.min(len, length - position);
+			System.arraycopy(buffer, position, cbuf, off, read);
+			position += read;
+			return read;
+		}
+	}
+
+	/**
+	 * Tell whether encoded characters can be read without blocking.
+	 *
+	 * @return true if some characters are already encoded.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean ready(){
+		synchronized (lock){
+			return position < length;
+		}
+	}
+
+	/**
+	 * Close the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void close() throws IOException {
+		in.close();
+	}
+}
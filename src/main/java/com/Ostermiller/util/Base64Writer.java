@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * A writer that decodes the Base64 characters written to it into a stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The decoded bytes are written to the underlying stream a block at a time,
+ * so only a small fixed buffer is held no matter how much data is written.
+ * Up to three characters can not be decoded until more characters or the end
+ * of the data are known, so flush() may leave them behind.  The end of the data
+ * is marked by calling finish() or close().
+ *
+ * @see Base64InputStream
+ * @see Base64Reader
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64Writer extends Writer {
+
+	/**
+	 * Largest number of characters decoded at once.
+	 */
+	private static final int BLOCK_SIZE = 4 * 1024;
+
+	/**
+	 * Stream to which decoded bytes are written.
+	 */
+	private OutputStream out;
+
+	/**
+	 * Decoder holding any characters left over from the last write.
+	 */
+	private Base64Decoder decoder;
+
+	/**
+	 * Decoded bytes waiting to be written.
+	 */
+	private byte[] buffer;
+
+	/**
+	 * Create a writer that decodes, ignoring characters that are
+	 * not part of the Base64 alphabet.
+	 *
+	 * @param out stream to which to write the decoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Writer(OutputStream out){
+		this(out, false);
+	}
+
+	/**
+	 * Create a writer that decodes.
+	 * Characters in the Base64 alphabet, white space and equals sign are
+	 * expected to be in Base64 encoded data.  The presence of other characters
+	 * could be a sign that the data is corrupted.
+	 *
+	 * @param out stream to which to write the decoded bytes.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Writer(OutputStream out, boolean throwExceptions){
+		this.out = out;
+		decoder = new Base64Decoder(throwExceptions);
+		buffer = new byte[decoder.getDecodedLength(BLOCK_SIZE + 3)];
+	}
+
+	/**
+	 * Decode a portion of an array of characters.
+	 *
+	 * @param cbuf the characters.
+	 * @param off the start offset of the characters.
+	 * @param len the number of characters to write.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock){
+			while (len > 0){
+				int length = Math.min(len, BLOCK_SIZE);
+				out.write(buffer, 0, decoder.decode(cbuf, off, length, buffer, 0));
+				off += length;
+				len -= length;
+			}
+		}
+	}
+
+	/**
+	 * Flush the underlying stream.  Characters that do not
+	 * yet make up a whole byte are not written.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Write the bytes from the end of the encoded data without closing
+	 * the underlying stream.  Characters written after this start
+	 * a new block of encoded data.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish() throws IOException {
+		synchronized (lock){
+			out.write(buffer, 0, decoder.finish(buffer, 0));
+			out.flush();
+		}
+	}
+
+	/**
+	 * Finish the decoded data and close the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void close() throws IOException {
+		finish();
+		out.close();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Call back for values read by a CSVFieldParse.
+ * <p>
+ * The value passed to field() is a view into the parser's buffer
+ * and is only valid until field() returns.  Call toString() on it
+ * to keep a copy.
+ * <p>
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public abstract class CSVFieldListener
+{
+	/**
+	 * Called for each value that is read.
+	 *
+	 * @param value the value, valid only until this method returns.
+	 * @param lineNumber line number from which the value was taken.
+	 * @param fieldIndex position of the value in the line, starting at zero.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public abstract void field(CharSequence value, int lineNumber, int fieldIndex);
+
+	/**
+	 * Called after the last value in each line has been passed to field().
+	 * The default implementation does nothing.
+	 *
+	 * @param lineNumber line number that has ended.
+	 * @param fieldCount number of values in the line.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void endLine(int lineNumber, int fieldCount){
+	}
+}
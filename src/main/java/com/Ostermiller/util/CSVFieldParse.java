@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * A CSV parser that can return values without creating a String
+ * for each one.
+ * <p>
+ * Values are returned as a CharSequence that is a view into the
+ * parser's own buffer.  The view is reused and is only valid until
+ * the next value is read.  Applications that convert values to
+ * numbers, or only look at some of them, can avoid creating
+ * objects for each value.
+ * <p>
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface CSVFieldParse extends CSVParse {
+
+	/**
+	 * Read the next value from the file as a view into the parser's buffer.
+	 * The line number from which this value was taken can be obtained from
+	 * getLastLineNumber().
+	 * <p>
+	 * The returned CharSequence may be changed by the next call to any
+	 * method that reads from this parser.
+	 *
+	 * @return the next value or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharSequence nextField() throws IOException;
+
+	/**
+	 * Read the rest of the values from the file, passing each one to the listener.
+	 *
+	 * @param listener call back for each value and the end of each line.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void readFields(CSVFieldListener listener) throws IOException;
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Dialects of CSV that may be read by a ParallelCSVParser or MappedCSVParser.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ *
+ * @see ParallelCSVParser
+ * @see MappedCSVParser
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public enum CSVFormat {
+	/**
+	 * Backslash escaped, as read by CSVParser.
+	 */
+	CSV,
+	/**
+	 * Quotes escaped by doubling, as read by ExcelCSVParser.
+	 */
+	EXCEL
+}
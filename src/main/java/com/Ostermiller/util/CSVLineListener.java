@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Call back for lines read by a ParallelCSVParser.
+ * <p>
+ * When lines are not requested in order, this method may be
+ * called from several threads at once and must be thread safe.
+ * <p>
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public abstract class CSVLineListener
+{
+	/**
+	 * Called for each line that has at least one value.
+	 *
+	 * @param values all the values from the line.
+	 * @param lineNumber line number from which the values were taken.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public abstract void line(String[] values, int lineNumber);
+}
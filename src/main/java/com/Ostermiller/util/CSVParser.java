@@ -55,6 +55,11 @@ import java.util.*;
  * }
  * </pre>
  * <P>
+ * Applications that read a large number of values may use nextField()
+ * or readFields() instead of nextValue().  These return each value as a
+ * CharSequence that is a reusable view into the parser's buffer, so no
+ * String is created unless the application asks for one.
+ * <P>
  * Many applications use the CSV formatted that Microsoft supports in Excel Spreadsheet.
  * It is subtly different than the CSV format implemented by this class.  It does not
  * use backslash as an escape character, for example.  For reading
@@ -66,7 +71,7 @@ import java.util.*;
  * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
  * @since ostermillerutils 1.00.00
  */
-public class CSVParser implements CSVParse {
+public class CSVParser implements CSVFieldParse {
 
 	/**
 	 * InputStream on which this parser is based.
@@ -109,6 +114,13 @@ public class CSVParser implements CSVParse {
 	 */
 	private int lineCache;
 
+	/**
+	 * Reusable view on which nextField() returns values.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private CharArraySequence window = new CharArraySequence();
+
 	/**
 	 * The line number the last token came from, or -1 if
 	 * no tokens have been returned.
@@ -299,6 +311,64 @@ public class CSVParser implements CSVParse {
 		return result;
 	}
 
+	/**
+	 * Get the next value as a view into the parser's buffer rather
+	 * than as a new String.
+	 * <p>
+	 * The returned CharSequence is reused and may be changed by the next
+	 * call to any method that reads from this parser.  Call toString() on
+	 * it to keep a copy.  Values are unescaped in the same way as they are
+	 * for nextValue().
+	 *
+	 * @return the next value or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharSequence nextField() throws IOException {
+		if (tokenCache != null){
+			return nextValue();
+		}
+		String token;
+		lexer.setWindow(window);
+		try {
+			token = lexer.getNextToken();
+		} finally {
+			lexer.setWindow(null);
+		}
+		lastLine = lexer.getLineNumber();
+		if (token == CSVLexer.WINDOW_TOKEN) return window;
+		return token;
+	}
+
+	/**
+	 * Read the rest of the values from the file, passing each one
+	 * to the listener.  No String is created for a value
+	 * unless the listener creates one.
+	 * <p>
+	 * If the line has already been partially read, the first
+	 * value passed to the listener will have a field index of zero.
+	 *
+	 * @param listener call back for each value and the end of each line.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void readFields(CSVFieldListener listener) throws IOException {
+		int lineNumber = -1;
+		int fieldIndex = 0;
+		CharSequence field;
+		while ((field = nextField()) != null){
+			if (lastLine != lineNumber){
+				if (fieldIndex > 0) listener.endLine(lineNumber, fieldIndex);
+				lineNumber = lastLine;
+				fieldIndex = 0;
+			}
+			listener.field(field, lineNumber, fieldIndex++);
+		}
+		if (fieldIndex > 0) listener.endLine(lineNumber, fieldIndex);
+	}
+
 	/**
 	 * Get the line number that the last token came from.
 	 * <p>
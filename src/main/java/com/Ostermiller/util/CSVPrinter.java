@@ -129,6 +129,38 @@ public class CSVPrinter implements CSVPrint {
 	 */
 	protected String lineEnding = LINE_ENDING_DEFAULT;
 
+	/**
+	 * Number of characters collected before they are written
+	 * to the underlying writer when buffered.
+	 */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * If values are collected into large blocks before
+	 * being written to the underlying writer.
+	 */
+	private boolean buffered = false;
+
+	/**
+	 * Characters that have not yet been written to the underlying writer.
+	 */
+	private char[] buffer = new char[1024];
+
+	/**
+	 * Number of characters in the buffer.
+	 */
+	private int bufferLength = 0;
+
+	/**
+	 * Digits of a number being written.
+	 */
+	private char[] digits = new char[20];
+
+	/**
+	 * Reusable view for writing a slice of a character array.
+	 */
+	private CharArraySequence slice = new CharArraySequence();
+
 	/**
 	 * Change this printer so that it uses a new delimiter.
 	 *
@@ -470,9 +502,11 @@ public class CSVPrinter implements CSVPrint {
 	 */
 	public void writeln() throws IOException {
 		try {
-			out.write(lineEnding);
-			if (autoFlush) flush();
+			reserve(lineEnding.length());
+			lineEnding.getChars(0, lineEnding.length(), buffer, bufferLength);
+			bufferLength += lineEnding.length();
 			newLine = true;
+			endWrite();
 		} catch (IOException iox){
 			error = true;
 			throw iox;
@@ -650,8 +684,8 @@ public class CSVPrinter implements CSVPrint {
 			if (!newLine){
 				writeln();
 			}
-			out.write(commentStart);
-			out.write(' ');
+			append(commentStart);
+			append(' ');
 			for (int i=0; i<comment.length(); i++){
 				char c = comment.charAt(i);
 				switch (c){
@@ -662,11 +696,11 @@ public class CSVPrinter implements CSVPrint {
 					} //break intentionally excluded.
 					case '\n': {
 						writeln();
-						out.write(commentStart);
-						out.write(' ');
+						append(commentStart);
+						append(' ');
 					} break;
 					default: {
-						out.write(c);
+						append(c);
 					} break;
 				}
 			}
@@ -709,44 +743,29 @@ public class CSVPrinter implements CSVPrint {
 	public void write(String value) throws IOException {
 		try {
 			if (value == null) value = "";
-			boolean quote = false;
-			if (alwaysQuote){
-				quote = true;
-			} else if (value.length() > 0){
-				char c = value.charAt(0);
-				if (newLine && (c<'0' || (c>'9' && c<'A') || (c>'Z' && c<'a') || (c>'z'))){
-					quote = true;
-				}
-				if (c==' ' || c=='\f' || c=='\t'){
-					quote = true;
-				}
-				for (int i=0; i<value.length(); i++){
-					c = value.charAt(i);
-					if (c==quoteChar || c==delimiterChar || c=='\n' || c=='\r'){
-						quote = true;
-					}
-				}
-				if (c==' ' || c=='\f' || c=='\t'){
-					quote = true;
-				}
-			} else if (newLine) {
-				// always quote an empty token that is the first
-				// on the line, as it may be the only thing on the
-				// line.  If it were not quoted in that case,
-				// an empty line has no tokens.
-				quote = true;
-			}
-			if (newLine){
-				newLine = false;
-			} else {
-				out.write(delimiterChar);
-			}
-			if (quote){
-				out.write(escapeAndQuote(value));
-			} else {
-				out.write(value);
-			}
-			if (autoFlush) flush();
+			writeValue(value);
+			endWrite();
+		} catch (IOException iox){
+			error = true;
+			throw iox;
+		}
+	}
+
+	/**
+	 * Write the characters as the next value on the line.	The value
+	 * will be quoted if needed.  If value is null, an empty value is printed.
+	 * No String is created from the characters.
+	 *
+	 * @param value value to be outputted.
+	 * @throws IOException if an error occurs while writing.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void write(CharSequence value) throws IOException {
+		try {
+			if (value == null) value = "";
+			writeValue(value);
+			endWrite();
 		} catch (IOException iox){
 			error = true;
 			throw iox;
@@ -754,54 +773,204 @@ public class CSVPrinter implements CSVPrint {
 	}
 
 	/**
-	 * Enclose the value in quotes and escape the quote
-	 * and comma characters that are inside.
+	 * Write a range of a character array as the next value on the line.
+	 * The value will be quoted if needed.
 	 *
-	 * @param value needs to be escaped and quoted
-	 * @return the value, escaped and quoted.
+	 * @param value characters to be outputted.
+	 * @param offset index of the first character of the value.
+	 * @param length number of characters in the value.
+	 * @throws IOException if an error occurs while writing.
+	 * @throws IndexOutOfBoundsException if the range is not in the array.
 	 *
-	 * @since ostermillerutils 1.00.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	private String escapeAndQuote(String value){
-		int count = 2;
-		for (int i=0; i<value.length(); i++){
-			char c = value.charAt(i);
-			switch(c){
-				case '\n': case '\r': case '\\': {
-					count ++;
-				} break;
-				default: {
-					if (c == quoteChar){
-						count++;
-					}
-				} break;
+	public void write(char[] value, int offset, int length) throws IOException {
+		try {
+			slice.set(value, offset, length);
+			writeValue(slice);
+			endWrite();
+		} catch (IOException iox){
+			error = true;
+			throw iox;
+		}
+	}
+
+	/**
+	 * Write a number as the next value on the line
+	 * without creating a String for it.
+	 *
+	 * @param value value to be outputted.
+	 * @throws IOException if an error occurs while writing.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void write(long value) throws IOException {
+		try {
+			// Work with negative numbers so that Long.MIN_VALUE can be written.
+			long n = (value < 0) ? value : -value;
+			int start = digits.length;
+			do {
+				digits[--start] = (char)('0' - (n % 10));
+				n /= 10;
+			} while (n != 0);
+			if (value < 0) digits[--start] = '-';
+			slice.set(digits, start, digits.length - start);
+			writeValue(slice);
+			endWrite();
+		} catch (IOException iox){
+			error = true;
+			throw iox;
+		}
+	}
+
+	/**
+	 * Write a number as the next value on the line.
+	 * The number is formatted as by Double.toString().
+	 *
+	 * @param value value to be outputted.
+	 * @throws IOException if an error occurs while writing.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void write(double value) throws IOException {
+		write(String.valueOf(value));
+	}
+
+	/**
+	 * Make sure that there is room in the buffer for the given
+	 * number of characters, writing out what is already there if needed.
+	 *
+	 * @param count number of characters that will be added to the buffer.
+	 * @throws IOException if an error occurs while writing.
+	 */
+	private void reserve(int count) throws IOException {
+		if (buffer.length - bufferLength >= count) return;
+		writeBuffer();
+		if (buffer.length < count){
+			buffer = new char[Math.max(count, Math.min(buffer.length*2, BLOCK_SIZE))];
+		}
+	}
+
+	/**
+	 * Add a character to the buffer.
+	 *
+	 * @param c character to add.
+	 * @throws IOException if an error occurs while writing.
+	 */
+	private void append(char c) throws IOException {
+		reserve(1);
+		buffer[bufferLength++] = c;
+	}
+
+	/**
+	 * Write the contents of the buffer to the underlying writer.
+	 * When buffered, this is where auto flushing happens.
+	 *
+	 * @throws IOException if an error occurs while writing.
+	 */
+	private void writeBuffer() throws IOException {
+		if (bufferLength == 0) return;
+		out.write(buffer, 0, bufferLength);
+		bufferLength = 0;
+		if (buffered && autoFlush) out.flush();
+	}
+
+	/**
+	 * Called at the end of each write.  Unless buffered,
+	 * pass everything on to the underlying writer.
+	 *
+	 * @throws IOException if an error occurs while writing.
+	 */
+	private void endWrite() throws IOException {
+		if (buffered) return;
+		writeBuffer();
+		if (autoFlush) out.flush();
+	}
+
+	/**
+	 * Put the value into the buffer, preceded by a delimiter if it
+	 * is not the first on the line.  The value is escaped as it is
+	 * copied and then quoted if it turned out to need it.
+	 *
+	 * @param value value to be outputted.
+	 * @throws IOException if an error occurs while writing.
+	 */
+	private void writeValue(CharSequence value) throws IOException {
+		int length = value.length();
+		// delimiter, quotes, and every character escaped
+		reserve(length * 2 + 3);
+		char[] buf = buffer;
+		int pos = bufferLength;
+		boolean quote = alwaysQuote;
+		if (length > 0){
+			char c = value.charAt(0);
+			if (newLine && (c<'0' || (c>'9' && c<'A') || (c>'Z' && c<'a') || (c>'z'))){
+				quote = true;
+			}
+			if (c==' ' || c=='\f' || c=='\t'){
+				quote = true;
 			}
+			c = value.charAt(length-1);
+			if (c==' ' || c=='\f' || c=='\t'){
+				quote = true;
+			}
+		} else if (newLine) {
+			// always quote an empty token that is the first
+			// on the line, as it may be the only thing on the
+			// line.  If it were not quoted in that case,
+			// an empty line has no tokens.
+			quote = true;
+		}
+		if (newLine){
+			newLine = false;
+		} else {
+			buf[pos++] = delimiterChar;
 		}
-		StringBuffer sb = new StringBuffer(value.length() + count);
-		sb.append(quoteChar);
-		for (int i=0; i<value.length(); i++){
+		// leave room for the opening quote
+		int start = pos++;
+		boolean escapedBackslash = false;
+		for (int i=0; i<length; i++){
 			char c = value.charAt(i);
+			if (c==quoteChar || c==delimiterChar || c=='\n' || c=='\r'){
+				quote = true;
+			}
 			switch(c){
 				case '\n': {
-					sb.append("\\n");
+					buf[pos++] = '\\';
+					buf[pos++] = 'n';
 				} break;
 				case '\r': {
-					sb.append("\\r");
+					buf[pos++] = '\\';
+					buf[pos++] = 'r';
 				} break;
 				case '\\': {
-					sb.append("\\\\");
+					escapedBackslash = true;
+					buf[pos++] = '\\';
+					buf[pos++] = '\\';
 				} break;
 				default: {
 					if (c == quoteChar){
-						sb.append("\\" + quoteChar);
-					} else {
-						sb.append(c);
+						buf[pos++] = '\\';
 					}
+					buf[pos++] = c;
 				}
 			}
 		}
-		sb.append(quoteChar);
-		return (sb.toString());
+		if (quote){
+			buf[start] = quoteChar;
+			buf[pos++] = quoteChar;
+		} else if (!escapedBackslash){
+			// nothing was escaped, just remove the room for the quote
+			System.arraycopy(buf, start + 1, buf, start, length);
+			pos = start + length;
+		} else {
+			// backslashes are only escaped inside quotes
+			pos = start;
+			for (int i=0; i<length; i++){
+				buf[pos++] = value.charAt(i);
+			}
+		}
+		bufferLength = pos;
 	}
 
 	/**
@@ -811,6 +980,7 @@ public class CSVPrinter implements CSVPrint {
 	 * @since ostermillerutils 1.02.26
 	 */
 	public void flush() throws IOException {
+		writeBuffer();
 		out.flush();
 	}
 
@@ -821,7 +991,11 @@ public class CSVPrinter implements CSVPrint {
 	 * @since ostermillerutils 1.02.26
 	 */
 	public void close() throws IOException {
-		out.close();
+		try {
+			writeBuffer();
+		} finally {
+			out.close();
+		}
 	}
 
 	/**
@@ -873,4 +1047,29 @@ public class CSVPrinter implements CSVPrint {
 	public void setAlwaysQuote(boolean alwaysQuote){
 		this.alwaysQuote = alwaysQuote;
 	}
+
+	/**
+	 * Set buffering behavior.  By default, each print or write
+	 * command passes its output on to the underlying writer before it
+	 * returns.  When buffered, output is collected in an internal buffer
+	 * and passed on only in large blocks, and when flush(), checkError(),
+	 * or close() is called.  Auto flushing then happens only after each block.
+	 * <p>
+	 * Buffering is meant for writing large files quickly.  Call flush()
+	 * or close() when done, or the end of the output will be lost.
+	 *
+	 * @param buffered should output be collected into blocks.
+	 * @throws IOException if an error occurs while writing what was already buffered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setBuffered(boolean buffered) throws IOException {
+		if (!buffered) writeBuffer();
+		this.buffered = buffered;
+		if (buffered && buffer.length < BLOCK_SIZE){
+			char[] newBuffer = new char[BLOCK_SIZE];
+			System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+			buffer = newBuffer;
+		}
+	}
 }
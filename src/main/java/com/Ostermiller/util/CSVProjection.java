@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Typed access to a few labeled columns of a CSV file, one line at a time.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ * <p>
+ * A projection is obtained from {@link LabeledCSVParser#getProjection(String[])}
+ * with the labels of the wanted columns.  The labels are looked up once,
+ * and the position of each label in that list is the handle used to get
+ * its column from each line:
+ * <pre>
+ * LabeledCSVParser parser = new LabeledCSVParser(new CSVParser(in));
+ * CSVProjection row = parser.getProjection("id", "price");
+ * long total = 0;
+ * while (row.next()){
+ *     total += row.getLong(0) * row.getInt(1);
+ * }
+ * </pre>
+ * <p>
+ * When the underlying parser implements CSVFieldParse, values are read
+ * as reusable CharSequence views.  The characters of the wanted columns
+ * are copied into buffers owned by the projection and the other columns
+ * are passed over without creating a String for any of them.  Numbers
+ * are parsed straight from those buffers.  A MappedCSVParser does not
+ * decode the other columns at all.
+ * <p>
+ * Reading from a projection advances the LabeledCSVParser from which it
+ * came.  Mixing calls to both will cause each to miss lines read by the other.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class CSVProjection {
+
+	/**
+	 * Parser from which lines are read.
+	 */
+	private CSVParse parse;
+
+	/**
+	 * Parser from which lines are read if it can return views.
+	 */
+	private CSVFieldParse fieldParse;
+
+	/**
+	 * For each field index in a line, the handle of the column, or -1
+	 * if the field is not projected.
+	 */
+	private int[] handles;
+
+	/**
+	 * Characters of the value of each column in the current line.
+	 */
+	private char[][] values;
+
+	/**
+	 * Number of characters in the value of each column.
+	 */
+	private int[] lengths;
+
+	/**
+	 * Whether each column was present in the current line.
+	 */
+	private boolean[] present;
+
+	/**
+	 * Reusable views of the values.
+	 */
+	private CharArraySequence[] views;
+
+	/**
+	 * Characters of the first value of the next line, which
+	 * has to be read to find the end of the current line.
+	 */
+	private char[] pending = new char[16];
+
+	/**
+	 * Number of characters in the pending value.
+	 */
+	private int pendingLength;
+
+	/**
+	 * Line number of the pending value, or -1 if there is no pending value.
+	 */
+	private int pendingLine = -1;
+
+	/**
+	 * Line number of the current line in the underlying parser.
+	 */
+	private int lineNumber = -1;
+
+	/**
+	 * Set once there are no more lines.
+	 */
+	private boolean done = false;
+
+	/**
+	 * Create a projection of the given field indexes.
+	 *
+	 * @param parse parser from which to read, positioned after the labels.
+	 * @param fieldIndexes field index of each column, or -1 for a column that is not in the file.
+	 */
+	CSVProjection(CSVParse parse, int[] fieldIndexes){
+		this.parse = parse;
+		if (parse instanceof CSVFieldParse) fieldParse = (CSVFieldParse)parse;
+		if (parse instanceof MappedCSVParser) ((MappedCSVParser)parse).setColumns(fieldIndexes);
+		int maxIndex = -1;
+		for (int i=0; i<fieldIndexes.length; i++){
+			maxIndex = Math.max(maxIndex, fieldIndexes[i]);
+		}
+		handles = new int[maxIndex + 1];
+		Arrays.fill(handles, -1);
+		values = new char[fieldIndexes.length][];
+		lengths = new int[fieldIndexes.length];
+		present = new boolean[fieldIndexes.length];
+		views = new CharArraySequence[fieldIndexes.length];
+		for (int i=0; i<fieldIndexes.length; i++){
+			if (fieldIndexes[i] != -1) handles[fieldIndexes[i]] = i;
+			values[i] = new char[16];
+			views[i] = new CharArraySequence();
+		}
+	}
+
+	/**
+	 * Get the handle of the column at the given field index.
+	 *
+	 * @param fieldIndex index of a field in a line.
+	 * @return handle or -1 if the field is not projected.
+	 */
+	private int handle(int fieldIndex){
+		if (fieldIndex >= handles.length) return -1;
+		return handles[fieldIndex];
+	}
+
+	/**
+	 * Copy a value into the buffer for a column.
+	 *
+	 * @param handle column.
+	 * @param value characters to copy.
+	 */
+	private void store(int handle, CharSequence value){
+		int length = value.length();
+		if (values[handle].length < length) values[handle] = new char[Math.max(length, values[handle].length*2)];
+		copy(value, values[handle]);
+		lengths[handle] = length;
+		present[handle] = true;
+	}
+
+	/**
+	 * Copy characters from a sequence to the start of an array that is large enough.
+	 *
+	 * @param value characters to copy.
+	 * @param dest destination.
+	 */
+	private static void copy(CharSequence value, char[] dest){
+		if (value instanceof CharArraySequence){
+			((CharArraySequence)value).getChars(dest, 0);
+		} else {
+			int length = value.length();
+			for (int i=0; i<length; i++){
+				dest[i] = value.charAt(i);
+			}
+		}
+	}
+
+	/**
+	 * Move to the next line that has at least one value.
+	 * Lines that have values but none in the projected columns
+	 * are not skipped.
+	 *
+	 * @return true if there is a line, false at the end of the file.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean next() throws IOException {
+		Arrays.fill(present, false);
+		if (done) return false;
+		if (fieldParse == null){
+			String[] line = parse.getLine();
+			if (line == null){
+				done = true;
+				return false;
+			}
+			lineNumber = parse.getLastLineNumber();
+			for (int i=0; i<line.length; i++){
+				int handle = handle(i);
+				if (handle != -1) store(handle, line[i]);
+			}
+			return true;
+		}
+		int fieldIndex = 0;
+		if (pendingLine != -1){
+			lineNumber = pendingLine;
+			pendingLine = -1;
+			int handle = handle(0);
+			if (handle != -1){
+				char[] swap = values[handle];
+				values[handle] = pending;
+				pending = swap;
+				lengths[handle] = pendingLength;
+				present[handle] = true;
+			}
+			fieldIndex = 1;
+		}
+		CharSequence value;
+		while ((value = fieldParse.nextField()) != null){
+			int line = fieldParse.getLastLineNumber();
+			if (fieldIndex == 0){
+				lineNumber = line;
+			} else if (line != lineNumber){
+				if (handle(0) != -1){
+					pendingLength = value.length();
+					if (pending.length < pendingLength) pending = new char[Math.max(pendingLength, pending.length*2)];
+					copy(value, pending);
+				}
+				pendingLine = line;
+				return true;
+			}
+			int handle = handle(fieldIndex);
+			if (handle != -1) store(handle, value);
+			fieldIndex++;
+		}
+		if (fieldIndex == 0){
+			done = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the line number of the current line.
+	 * <p>
+	 * As with LabeledCSVParser, the first line of labels does not count
+	 * towards the line number.
+	 *
+	 * @return line number or -1 if no line has been read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getLineNumber(){
+		if (lineNumber <= 1) return -1;
+		return lineNumber - 1;
+	}
+
+	/**
+	 * Get the number of projected columns.
+	 *
+	 * @return number of column handles.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getColumnCount(){
+		return values.length;
+	}
+
+	/**
+	 * Whether the current line has a value for the column.  A column
+	 * is missing when the line has fewer values than the labels or
+	 * when its label was not found.
+	 *
+	 * @param handle column handle.
+	 * @return true if a value is available.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isPresent(int handle){
+		return present[handle];
+	}
+
+	/**
+	 * Get the value of a column in the current line as a view that
+	 * is only valid until the next call to next().
+	 *
+	 * @param handle column handle.
+	 * @return the value or null if the column is not present.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharSequence getCharSequence(int handle){
+		if (!present[handle]) return null;
+		views[handle].set(values[handle], 0, lengths[handle]);
+		return views[handle];
+	}
+
+	/**
+	 * Get the value of a column in the current line.
+	 *
+	 * @param handle column handle.
+	 * @return the value or null if the column is not present.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getString(int handle){
+		if (!present[handle]) return null;
+		return new String(values[handle], 0, lengths[handle]);
+	}
+
+	/**
+	 * Get the value of a column in the current line as an int.
+	 *
+	 * @param handle column handle.
+	 * @return the value.
+	 * @throws NumberFormatException if the column is not present or is not an int.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getInt(int handle){
+		return (int)parseLong(handle, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Get the value of a column in the current line as a long.
+	 *
+	 * @param handle column handle.
+	 * @return the value.
+	 * @throws NumberFormatException if the column is not present or is not a long.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getLong(int handle){
+		return parseLong(handle, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Get the value of a column in the current line as a double.
+	 *
+	 * @param handle column handle.
+	 * @return the value.
+	 * @throws NumberFormatException if the column is not present or is not a number.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getDouble(int handle){
+		if (!present[handle]) throw new NumberFormatException("Column " + handle + " is not present.");
+		views[handle].set(values[handle], 0, lengths[handle]);
+		double value = StringHelper.parseDouble(views[handle], 0, lengths[handle], Double.NaN);
+		if (!Double.isNaN(value)) return value;
+		// Either the value is "NaN" or it is not a number; let the exception say which.
+		return Double.parseDouble(new String(values[handle], 0, lengths[handle]));
+	}
+
+	/**
+	 * Parse the value of a column as a decimal integer, as Long.parseLong() would.
+	 *
+	 * @param handle column handle.
+	 * @param min smallest allowed value.
+	 * @param max largest allowed value.
+	 * @return the value.
+	 * @throws NumberFormatException if the column is not present or is not an integer in range.
+	 */
+	private long parseLong(int handle, long min, long max){
+		if (!present[handle]) throw new NumberFormatException("Column " + handle + " is not present.");
+		char[] chars = values[handle];
+		int length = lengths[handle];
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (chars[0] == '-' || chars[0] == '+')){
+			negative = chars[0] == '-';
+			i++;
+		}
+		if (i >= length) throw new NumberFormatException("For input string: \"" + new String(chars, 0, length) + "\"");
+		// Accumulate negatively so that the most negative value fits.
+		long limit = negative ? min : -max;
+		long multiplyMin = limit / 10;
+		long result = 0;
+		for (; i<length; i++){
+			int digit = Character.digit(chars[i], 10);
+			if (digit < 0 || result < multiplyMin || result * 10 < limit + digit){
+				throw new NumberFormatException("For input string: \"" + new String(chars, 0, length) + "\"");
+			}
+			result = result * 10 - digit;
+		}
+		return negative ? result : -result;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * A CharSequence that is a view of a range of a character array.
+ * <p>
+ * The characters are not copied, so changes to the array show up
+ * in the sequence.  The range may be moved with set(), which allows
+ * a single instance to be reused to look at many values without
+ * creating any objects.  Parsers such as CSVParser use this to
+ * hand out values that are only valid until the next value is read.
+ * Call toString() to get a copy that can be kept.
+ * <p>
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/">ostermiller.org</a>.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class CharArraySequence implements CharSequence {
+
+	/**
+	 * Array on which this is a view.
+	 */
+	private char[] array;
+
+	/**
+	 * Index of the first character in the array.
+	 */
+	private int offset;
+
+	/**
+	 * Number of characters in the view.
+	 */
+	private int length;
+
+	/**
+	 * Create an empty sequence.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharArraySequence(){
+		this(new char[0], 0, 0);
+	}
+
+	/**
+	 * Create a sequence that is a view of the given range of an array.
+	 *
+	 * @param array characters for the view.
+	 * @param offset index of the first character.
+	 * @param length number of characters.
+	 * @throws IndexOutOfBoundsException if the range is not in the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharArraySequence(char[] array, int offset, int length){
+		set(array, offset, length);
+	}
+
+	/**
+	 * Move this view to a new range of characters.
+	 *
+	 * @param array characters for the view.
+	 * @param offset index of the first character.
+	 * @param length number of characters.
+	 * @throws IndexOutOfBoundsException if the range is not in the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void set(char[] array, int offset, int length){
+		if (offset < 0 || length < 0 || offset + length > array.length){
+			throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: " + array.length);
+		}
+		this.array = array;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Get the array on which this is a view.
+	 *
+	 * @return the backing array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public char[] getArray(){
+		return array;
+	}
+
+	/**
+	 * Get the index in the backing array of the first character.
+	 *
+	 * @return offset into the backing array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getOffset(){
+		return offset;
+	}
+
+	/**
+	 * Get the number of characters in this view.
+	 *
+	 * @return the length.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int length(){
+		return length;
+	}
+
+	/**
+	 * Get a character from this view.
+	 *
+	 * @param index index of the character, relative to the start of the view.
+	 * @return the character.
+	 * @throws IndexOutOfBoundsException if the index is not in the view.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public char charAt(int index){
+		if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+		return array[offset + index];
+	}
+
+	/**
+	 * Get a new view of part of this view.  The new view
+	 * shares the same backing array.
+	 *
+	 * @param start index of the first character, inclusive.
+	 * @param end index of the last character, exclusive.
+	 * @return a new view.
+	 * @throws IndexOutOfBoundsException if the range is not in the view.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharSequence subSequence(int start, int end){
+		if (start < 0 || end > length || start > end) throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+		return new CharArraySequence(array, offset + start, end - start);
+	}
+
+	/**
+	 * Copy the characters into the given array.
+	 *
+	 * @param dest array into which to copy.
+	 * @param destOffset position in dest at which to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void getChars(char[] dest, int destOffset){
+		System.arraycopy(array, offset, dest, destOffset, length);
+	}
+
+	/**
+	 * Compare the characters in this view to those in
+	 * the given sequence.
+	 *
+	 * @param s sequence to compare
+	 * @return true iff the sequence has exactly the same characters as this view.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean contentEquals(CharSequence s){
+		if (s == null || s.length() != length) return false;
+		for (int i=0; i<length; i++){
+			if (array[offset + i] != s.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compute a hash code from the characters currently in this view.
+	 * The hash code is the same as would be returned by toString().hashCode()
+	 * but no String is created.
+	 * <p>
+	 * Because the view can be changed, this is not used as hashCode().
+	 *
+	 * @return hash code of the characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int contentHashCode(){
+		int hash = 0;
+		for (int i=0; i<length; i++){
+			hash = 31*hash + array[offset + i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Copy the characters in this view to a new String.
+	 *
+	 * @return the characters as a String.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public String toString(){
+		return new String(array, offset, length);
+	}
+}
@@ -18,6 +18,7 @@
 package com.Ostermiller.util;
 
 import java.io.*;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Implements the Circular Buffer producer/consumer model for characters.
@@ -30,7 +31,10 @@ import java.io.*;
  * and have a more complicated API that requires instantiating two
  * classes and connecting them.
  * <p>
- * This class is thread safe.
+ * This class is thread safe.  Blocked readers and writers wait to be
+ * notified of changes rather than polling.  When there is a single
+ * producer thread and a single consumer thread, the buffer can be
+ * created so that reads and writes do not lock at all.
  *
  * @see CircularByteBuffer
  * @see CircularObjectBuffer
@@ -103,7 +107,8 @@ public class CircularCharBuffer {
 	 */
 	protected volatile int markSize = 0;
 	/**
-	 * If this buffer is infinite (should resize itself when full)
+	 * If this buffer is infinite (should hold characters that do not fit
+	 * in segments when full)
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
@@ -126,7 +131,7 @@ public class CircularCharBuffer {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	protected boolean readerClosed = false;
+	protected volatile boolean readerClosed = false;
 	/**
 	 * The Writer that can fill this buffer.
 	 *
@@ -138,7 +143,74 @@ public class CircularCharBuffer {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	protected boolean writerClosed = false;
+	protected volatile boolean writerClosed = false;
+	/**
+	 * True if there is only one thread reading and one thread writing.
+	 * Reads and writes then do not lock the buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected boolean singleProducerSingleConsumer = false;
+	/**
+	 * The thread waiting for characters to read without locking, if any.
+	 */
+	private volatile Thread waitingReader = null;
+	/**
+	 * The thread waiting for space to write without locking, if any.
+	 */
+	private volatile Thread waitingWriter = null;
+	/**
+	 * Number of characters held in each segment of an infinite buffer.
+	 */
+	private final static int SEGMENT_SIZE = 8192;
+	/**
+	 * A chunk of characters written to an infinite buffer while the
+	 * circular buffer was full.
+	 */
+	private static class Segment {
+		/**
+		 * The characters.
+		 */
+		private char[] data = new char[SEGMENT_SIZE];
+		/**
+		 * Index of the first character that has not been read.
+		 */
+		private int start;
+		/**
+		 * Index after the last character written.
+		 */
+		private int end;
+		/**
+		 * The segment written after this one.
+		 */
+		private Segment next;
+	}
+	/**
+	 * First of the segments holding characters that are waiting for
+	 * room in the circular buffer, or null if there are none.
+	 */
+	private Segment overflowHead = null;
+	/**
+	 * Last of the segments holding characters that are waiting for
+	 * room in the circular buffer.
+	 */
+	private Segment overflowTail = null;
+	/**
+	 * Number of segments holding characters.
+	 */
+	private int overflowSegments = 0;
+	/**
+	 * Number of characters held in segments.
+	 */
+	private long overflowAvailable = 0;
+	/**
+	 * Emptied segments kept for reuse.
+	 */
+	private Segment pool = null;
+	/**
+	 * Number of segments in the pool.
+	 */
+	private int pooledSegments = 0;
 
 	/**
 	 * Make this buffer ready for reuse.  The contents of the buffer
@@ -152,8 +224,15 @@ public class CircularCharBuffer {
 			readPosition = 0;
 			writePosition = 0;
 			markPosition = 0;
+			overflowHead = null;
+			overflowTail = null;
+			overflowSegments = 0;
+			overflowAvailable = 0;
+			pool = null;
+			pooledSegments = 0;
 			readerClosed = false;
 			writerClosed = false;
+			notifyAll();
 		}
 	}
 
@@ -205,7 +284,7 @@ public class CircularCharBuffer {
 	 */
 	public int getAvailable(){
 		synchronized (this){
-			return available();
+			return (int)Math.min(Integer.MAX_VALUE, available() + overflowAvailable);
 		}
 	}
 
@@ -235,6 +314,9 @@ public class CircularCharBuffer {
 	 * the number of characters free may not add up to the
 	 * capacity of this buffer, as the buffer may reserve some
 	 * space for other purposes.
+	 * <p>
+	 * The size of an infinite buffer includes the segments
+	 * that currently hold characters.
 	 *
 	 * @return the size in characters of this buffer
 	 *
@@ -242,35 +324,133 @@ public class CircularCharBuffer {
 	 */
 	public int getSize(){
 		synchronized (this){
-			return buffer.length;
+			return (int)Math.min(Integer.MAX_VALUE, buffer.length + (long)overflowSegments * SEGMENT_SIZE);
 		}
 	}
 
 	/**
-	 * double the size of the buffer
+	 * Get the number of segments that an infinite buffer is using
+	 * to hold characters that did not fit while it was full.
+	 * <p>
+	 * When the circular buffer of an infinite buffer is full, further
+	 * characters are appended to a chain of fixed size segments rather than
+	 * copying everything into a larger buffer.  Segments are emptied
+	 * in order as the characters are read.
 	 *
-	 * @since ostermillerutils 1.00.00
+	 * @return number of segments in use, zero for a buffer that is not infinite.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	private void resize(){
-		char[] newBuffer = new char[buffer.length * 2];
-		int marked = marked();
-		int available = available();
-		if (markPosition <= writePosition){
-			// any space between the mark and
-			// the first write needs to be saved.
-			// In this case it is all in one piece.
-			int length = writePosition - markPosition;
-			System.arraycopy(buffer, markPosition, newBuffer, 0, length);
-		} else {
-			int length1 = buffer.length - markPosition;
-			System.arraycopy(buffer, markPosition, newBuffer, 0, length1);
-			int length2 = writePosition;
-			System.arraycopy(buffer, 0, newBuffer, length1, length2);
-		}
-		buffer = newBuffer;
-		markPosition = 0;
-		readPosition = marked;
-		writePosition = marked + available;
+	public int getSegmentCount(){
+		synchronized (this){
+			return overflowSegments;
+		}
+	}
+
+	/**
+	 * Get the number of characters in emptied segments that are kept for reuse.
+	 * <p>
+	 * The pool never holds more segments than are in use, so it is
+	 * released as the reader catches up with the writer.
+	 *
+	 * @return characters of memory in the pool.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getPooledChars(){
+		synchronized (this){
+			return (long)pooledSegments * SEGMENT_SIZE;
+		}
+	}
+
+	/**
+	 * Append characters from an array or a string to the segments of an
+	 * infinite buffer.  The caller must hold the lock on this buffer.
+	 *
+	 * @param cbuf Array of characters, or null to write from the string.
+	 * @param str String of characters, used when the array is null.
+	 * @param off Offset from which to start writing characters
+	 * @param len Number of characters to write
+	 */
+	private void writeOverflow(char[] cbuf, String str, int off, int len){
+		overflowAvailable += len;
+		while (len > 0){
+			if (overflowTail == null || overflowTail.end == SEGMENT_SIZE){
+				Segment segment = pool;
+				if (segment == null){
+					segment = new Segment();
+				} else {
+					pool = segment.next;
+					pooledSegments--;
+					segment.next = null;
+				}
+				if (overflowTail == null){
+					overflowHead = segment;
+				} else {
+					overflowTail.next = segment;
+				}
+				overflowTail = segment;
+				overflowSegments++;
+			}
+			int length = Math.min(len, SEGMENT_SIZE - overflowTail.end);
+			if (cbuf != null){
+				System.arraycopy(cbuf, off, overflowTail.data, overflowTail.end, length);
+			} else {
+				str.getChars(off, off+length, overflowTail.data, overflowTail.end);
+			}
+			overflowTail.end += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	/**
+	 * Take characters from the segments of an infinite buffer, returning
+	 * emptied segments to the pool.
+	 * The caller must hold the lock on this buffer.
+	 *
+	 * @param cbuf Destination buffer.
+	 * @param off Offset at which to start storing characters.
+	 * @param len Maximum number of characters to read.
+	 * @return The number of characters read.
+	 */
+	private int readOverflow(char[] cbuf, int off, int len){
+		int read = 0;
+		while (read < len && overflowHead != null){
+			Segment segment = overflowHead;
+			int length = Math.min(len - read, segment.end - segment.start);
+			System.arraycopy(segment.data, segment.start, cbuf, off + read, length);
+			segment.start += length;
+			read += length;
+			if (segment.start == segment.end){
+				overflowHead = segment.next;
+				if (overflowHead == null) overflowTail = null;
+				overflowSegments--;
+				segment.start = 0;
+				segment.end = 0;
+				segment.next = pool;
+				pool = segment;
+				pooledSegments++;
+				while (pooledSegments > overflowSegments){
+					pool = pool.next;
+					pooledSegments--;
+				}
+			}
+		}
+		overflowAvailable -= read;
+		return read;
+	}
+
+	/**
+	 * Move characters from the segments of an infinite buffer
+	 * into the empty circular buffer.
+	 * The caller must hold the lock on this buffer.
+	 */
+	private void refill(){
+		while (overflowHead != null && spaceLeft() > 0){
+			writePosition += readOverflow(buffer, writePosition, Math.min(spaceLeft(), buffer.length - writePosition));
+			if (writePosition == buffer.length) writePosition = 0;
+		}
 	}
 
 	/**
@@ -410,6 +590,160 @@ public class CircularCharBuffer {
 		this.blockingWrite = blockingWrite;
 	}
 
+	/**
+	 * Create a new buffer with the given capacity and
+	 * blocking behavior that is used by only one reading thread
+	 * and one writing thread.
+	 * <p>
+	 * With a single producer and a single consumer, reads and writes do
+	 * not lock the buffer.  Each side only changes its own position in
+	 * the buffer, and a thread that has to wait is parked until the other
+	 * side wakes it.  Using either stream from more than one thread at a
+	 * time will corrupt the data.  The clear() method may only be called
+	 * when neither thread is using the buffer.
+	 *
+	 * @param size desired capacity of the buffer in characters, which may not be CircularCharBuffer.INFINITE_SIZE.
+	 * @param blockingWrite true writing to a full buffer should block
+	 *        until space is available, false if an exception should
+	 *        be thrown instead.
+	 * @param singleProducerSingleConsumer true if there will be only one reading thread and one writing thread.
+	 * @throws IllegalArgumentException if an infinite buffer is requested for a single producer and consumer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularCharBuffer(int size, boolean blockingWrite, boolean singleProducerSingleConsumer){
+		this(size, blockingWrite);
+		if (singleProducerSingleConsumer && infinite) throw new IllegalArgumentException("A buffer with a single producer and consumer must have a fixed size.");
+		this.singleProducerSingleConsumer = singleProducerSingleConsumer;
+	}
+
+	/**
+	 * Wait until another thread changes this buffer.
+	 * The caller must hold the lock on this buffer.
+	 *
+	 * @param message message for the exception if the wait is interrupted.
+	 * @throws IOException if the wait is interrupted.
+	 */
+	private void waitForChange(String message) throws IOException {
+		try {
+			wait();
+		} catch (InterruptedException x){
+			throw new IOException(message);
+		}
+	}
+
+	/**
+	 * Wake up the reading thread if it is parked waiting for characters.
+	 */
+	private void unparkReader(){
+		Thread thread = waitingReader;
+		if (thread != null) LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Wake up the writing thread if it is parked waiting for space.
+	 */
+	private void unparkWriter(){
+		Thread thread = waitingWriter;
+		if (thread != null) LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Read or skip characters without locking.  Only the one reading
+	 * thread may call this.
+	 *
+	 * @param cbuf Destination buffer, or null to skip the characters.
+	 * @param off Offset at which to start storing characters.
+	 * @param len Maximum number of characters to read.
+	 * @return The number of characters read, or -1 if the end of
+	 *   the stream has been reached
+	 * @throws IOException if the stream is closed or the read is interrupted.
+	 */
+	private int lockFreeRead(char[] cbuf, int off, int len) throws IOException {
+		while (true){
+			if (readerClosed) throw new IOException("Reader has been closed; cannot read from a closed Reader.");
+			int available = available();
+			if (available > 0){
+				int length = Math.min(len, available);
+				int position = readPosition;
+				if (cbuf != null){
+					int firstLen = Math.min(length, buffer.length - position);
+					System.arraycopy(buffer, position, cbuf, off, firstLen);
+					if (length > firstLen){
+						System.arraycopy(buffer, 0, cbuf, off+firstLen, length-firstLen);
+					}
+				}
+				position += length;
+				if (position >= buffer.length) position -= buffer.length;
+				readPosition = position;
+				ensureMark();
+				unparkWriter();
+				return length;
+			} else if (writerClosed){
+				// Characters written just before the close are visible now.
+				if (available() == 0) return -1;
+			} else {
+				waitingReader = Thread.currentThread();
+				if (available() == 0 && !writerClosed && !readerClosed){
+					LockSupport.park();
+				}
+				waitingReader = null;
+				if (Thread.interrupted()) throw new IOException("Blocking read operation interrupted.");
+			}
+		}
+	}
+
+	/**
+	 * Write characters from an array or a string without locking.
+	 * Only the one writing thread may call this.
+	 *
+	 * @param cbuf Array of characters, or null to write from the string.
+	 * @param str String of characters, used when the array is null.
+	 * @param off Offset from which to start writing characters
+	 * @param len - Number of characters to write
+	 * @throws BufferOverflowException if buffer does not allow blocking writes
+	 *   and the buffer is full.
+	 * @throws IOException if the stream is closed, or the write is interrupted.
+	 */
+	private void lockFreeWrite(char[] cbuf, String str, int off, int len) throws IOException {
+		while (len > 0){
+			if (writerClosed) throw new IOException("Writer has been closed; cannot write to a closed Writer.");
+			if (readerClosed) throw new IOException("Buffer closed by Reader; cannot write to a closed buffer.");
+			int position = writePosition;
+			int mark = markPosition;
+			int spaceLeft = (position < mark) ? (mark - position - 1) : ((buffer.length - 1) - (position - mark));
+			if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularCharBuffer is full; cannot write " + len + " characters");
+			if (spaceLeft > 0){
+				int realLen = Math.min(len, spaceLeft);
+				int firstLen = Math.min(realLen, buffer.length - position);
+				if (cbuf != null){
+					System.arraycopy(cbuf, off, buffer, position, firstLen);
+					if (realLen > firstLen){
+						System.arraycopy(cbuf, off+firstLen, buffer, 0, realLen-firstLen);
+					}
+				} else {
+					str.getChars(off, off+firstLen, buffer, position);
+					if (realLen > firstLen){
+						str.getChars(off+firstLen, off+realLen, buffer, 0);
+					}
+				}
+				position += realLen;
+				if (position >= buffer.length) position -= buffer.length;
+				writePosition = position;
+				unparkReader();
+				off += realLen;
+				len -= realLen;
+			} else {
+				waitingWriter = Thread.currentThread();
+				if (spaceLeft() == 0 && !readerClosed){
+					LockSupport.park();
+				}
+				waitingWriter = null;
+				if (Thread.interrupted()) throw new IOException("Waiting for available space in buffer interrupted.");
+			}
+		}
+	}
+
 	/**
 	 * Class for reading from a circular character buffer.
 	 *
@@ -417,6 +751,11 @@ public class CircularCharBuffer {
 	 */
 	protected class CircularCharBufferReader extends Reader {
 
+		/**
+		 * Scratch space for reading a single character without locking.
+		 */
+		private char[] single = new char[1];
+
 		/**
 		 * Close the stream. Once a stream has been closed, further read(), ready(),
 		 * mark(), or reset() invocations will throw an IOException. Closing a
@@ -429,7 +768,9 @@ public class CircularCharBuffer {
 		@Override public void close() throws IOException {
 			synchronized (CircularCharBuffer.this){
 				readerClosed = true;
+				CircularCharBuffer.this.notifyAll();
 			}
+			unparkWriter();
 		}
 
 		/**
@@ -452,7 +793,9 @@ public class CircularCharBuffer {
 				if (buffer.length - 1 <= readAheadLimit) throw new IOException("Cannot mark stream, readAheadLimit bigger than buffer size.");
 				markSize = readAheadLimit;
 				markPosition = readPosition;
+				CircularCharBuffer.this.notifyAll();
 			}
+			unparkWriter();
 		}
 
 		/**
@@ -478,10 +821,18 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public int read() throws IOException {
-			while (true){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer){
+				if (lockFreeRead(single, 0, 1) == -1) return -1;
+				return single[0] & 0xffff;
+			}
+			synchronized (CircularCharBuffer.this){
+				while (true){
 					if (readerClosed) throw new IOException("Reader has been closed; cannot read from a closed Reader.");
 					int available = available();
+					if (available == 0 && overflowHead != null){
+						refill();
+						available = available();
+					}
 					if (available > 0){
 						int result = buffer[readPosition] & 0xffff;
 						readPosition++;
@@ -489,15 +840,12 @@ public class CircularCharBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularCharBuffer.this.notifyAll();
 						return result;
 					} else if (writerClosed){
 						return -1;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -533,10 +881,22 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public int read(char[] cbuf, int off, int len) throws IOException {
-			while (true){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer) return lockFreeRead(cbuf, off, len);
+			synchronized (CircularCharBuffer.this){
+				while (true){
 					if (readerClosed) throw new IOException("Reader has been closed; cannot read from a closed Reader.");
 					int available = available();
+					if (available == 0 && overflowHead != null){
+						if (markSize == 0){
+							// Nothing has to be kept for reset(), so the characters
+							// can be read straight from the segments.
+							int length = readOverflow(cbuf, off, len);
+							CircularCharBuffer.this.notifyAll();
+							return length;
+						}
+						refill();
+						available = available();
+					}
 					if (available > 0){
 						int length = Math.min(len, available);
 						int firstLen = Math.min(length, buffer.length - readPosition);
@@ -552,15 +912,12 @@ public class CircularCharBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularCharBuffer.this.notifyAll();
 						return length;
 					} else if (writerClosed){
 						return -1;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -578,7 +935,7 @@ public class CircularCharBuffer {
 		@Override public boolean ready() throws IOException {
 			synchronized (CircularCharBuffer.this){
 				if (readerClosed) throw new IOException("Reader has been closed, it is not ready.");
-				return (available() > 0);
+				return (available() > 0 || overflowHead != null);
 			}
 		}
 
@@ -612,10 +969,18 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public long skip(long n) throws IOException, IllegalArgumentException {
-			while (true){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer){
+				int skipped = lockFreeRead(null, 0, (int)Math.min(n, Integer.MAX_VALUE));
+				return (skipped == -1) ? 0 : skipped;
+			}
+			synchronized (CircularCharBuffer.this){
+				while (true){
 					if (readerClosed) throw new IOException("Reader has been closed; cannot skip characters on a closed Reader.");
 					int available = available();
+					if (available == 0 && overflowHead != null){
+						refill();
+						available = available();
+					}
 					if (available > 0){
 						int length = Math.min((int)n, available);
 						int firstLen = Math.min(length, buffer.length - readPosition);
@@ -629,15 +994,12 @@ public class CircularCharBuffer {
 							readPosition = 0;
 						}
 						ensureMark();
+						CircularCharBuffer.this.notifyAll();
 						return length;
 					} else if (writerClosed){
 						return 0;
 					}
-				}
-				try {
-					Thread.sleep(100);
-				} catch(Exception x){
-					throw new IOException("Blocking read operation interrupted.");
+					waitForChange("Blocking read operation interrupted.");
 				}
 			}
 		}
@@ -653,6 +1015,11 @@ public class CircularCharBuffer {
 	 */
 	protected class CircularCharBufferWriter extends Writer {
 
+		/**
+		 * Scratch space for writing a single character without locking.
+		 */
+		private char[] single = new char[1];
+
 		/**
 		 * Close the stream, flushing it first.
 		 * This will cause the reader associated with this circular buffer
@@ -671,7 +1038,9 @@ public class CircularCharBuffer {
 					flush();
 				}
 				writerClosed = true;
+				CircularCharBuffer.this.notifyAll();
 			}
+			unparkReader();
 		}
 
 		/**
@@ -722,16 +1091,21 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void write(char[] cbuf, int off, int len) throws IOException {
-			while (len > 0){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer){
+				lockFreeWrite(cbuf, null, off, len);
+				return;
+			}
+			synchronized (CircularCharBuffer.this){
+				while (len > 0){
 					if (writerClosed) throw new IOException("Writer has been closed; cannot write to a closed Writer.");
 					if (readerClosed) throw new IOException("Buffer closed by Reader; cannot write to a closed buffer.");
 					int spaceLeft = spaceLeft();
-					while (infinite && spaceLeft < len){
-						resize();
-						spaceLeft = spaceLeft();
+					if (infinite){
+						// Characters already waiting in segments have to be read first.
+						if (overflowHead != null) spaceLeft = 0;
+					} else if (!blockingWrite && spaceLeft < len){
+						throw new BufferOverflowException("CircularCharBuffer is full; cannot write " + len + " characters");
 					}
-					if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularCharBuffer is full; cannot write " + len + " characters");
 					int realLen = Math.min(len, spaceLeft);
 					int firstLen = Math.min(realLen, buffer.length - writePosition);
 					int secondLen = Math.min(realLen - firstLen, buffer.length - markPosition - 1);
@@ -750,12 +1124,16 @@ public class CircularCharBuffer {
 					}
 					off += written;
 					len -= written;
-				}
-				if (len > 0){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+					if (infinite && len > 0){
+						writeOverflow(cbuf, null, off, len);
+						written += len;
+						len = 0;
+					}
+					if (written > 0){
+						CircularCharBuffer.this.notifyAll();
+					}
+					if (len > 0 && spaceLeft() == 0){
+						waitForChange("Waiting for available space in buffer interrupted.");
 					}
 				}
 			}
@@ -776,15 +1154,21 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void write(int c) throws IOException {
-			boolean written = false;
-			while (!written){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer){
+				single[0] = (char)(c & 0xffff);
+				lockFreeWrite(single, null, 0, 1);
+				return;
+			}
+			synchronized (CircularCharBuffer.this){
+				while (true){
 					if (writerClosed) throw new IOException("Writer has been closed; cannot write to a closed Writer.");
 					if (readerClosed) throw new IOException("Buffer closed by Reader; cannot write to a closed buffer.");
 					int spaceLeft = spaceLeft();
-					while (infinite && spaceLeft < 1){
-						resize();
-						spaceLeft = spaceLeft();
+					if (infinite && (overflowHead != null || spaceLeft < 1)){
+						single[0] = (char)(c & 0xffff);
+						writeOverflow(single, null, 0, 1);
+						CircularCharBuffer.this.notifyAll();
+						return;
 					}
 					if (!blockingWrite && spaceLeft < 1) throw new BufferOverflowException("CircularCharBuffer is full; cannot write 1 character");
 					if (spaceLeft > 0){
@@ -793,15 +1177,10 @@ public class CircularCharBuffer {
 						if (writePosition == buffer.length) {
 							writePosition = 0;
 						}
-						written = true;
-					}
-				}
-				if (!written){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+						CircularCharBuffer.this.notifyAll();
+						return;
 					}
+					waitForChange("Waiting for available space in buffer interrupted.");
 				}
 			}
 		}
@@ -839,16 +1218,21 @@ public class CircularCharBuffer {
 		 * @since ostermillerutils 1.00.00
 		 */
 		@Override public void write(String str, int off, int len) throws IOException {
-			while (len > 0){
-				synchronized (CircularCharBuffer.this){
+			if (singleProducerSingleConsumer){
+				lockFreeWrite(null, str, off, len);
+				return;
+			}
+			synchronized (CircularCharBuffer.this){
+				while (len > 0){
 					if (writerClosed) throw new IOException("Writer has been closed; cannot write to a closed Writer.");
 					if (readerClosed) throw new IOException("Buffer closed by Reader; cannot write to a closed buffer.");
 					int spaceLeft = spaceLeft();
-					while (infinite && spaceLeft < len){
-						resize();
-						spaceLeft = spaceLeft();
+					if (infinite){
+						// Characters already waiting in segments have to be read first.
+						if (overflowHead != null) spaceLeft = 0;
+					} else if (!blockingWrite && spaceLeft < len){
+						throw new BufferOverflowException("CircularCharBuffer is full; cannot write " + len + " characters");
 					}
-					if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularCharBuffer is full; cannot write " + len + " characters");
 					int realLen = Math.min(len, spaceLeft);
 					int firstLen = Math.min(realLen, buffer.length - writePosition);
 					int secondLen = Math.min(realLen - firstLen, buffer.length - markPosition - 1);
@@ -869,12 +1253,16 @@ public class CircularCharBuffer {
 					}
 					off += written;
 					len -= written;
-				}
-				if (len > 0){
-					try {
-						Thread.sleep(100);
-					} catch(Exception x){
-						throw new IOException("Waiting for available space in buffer interrupted.");
+					if (infinite && len > 0){
+						writeOverflow(null, str, off, len);
+						written += len;
+						len = 0;
+					}
+					if (written > 0){
+						CircularCharBuffer.this.notifyAll();
+					}
+					if (len > 0 && spaceLeft() == 0){
+						waitForChange("Waiting for available space in buffer interrupted.");
 					}
 				}
 			}
@@ -0,0 +1,993 @@
+/*
+ * Circular Byte Buffer backed by direct memory
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+
+/**
+ * Implements the Circular Buffer producer/consumer model for bytes
+ * held in direct (off heap) memory.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CircularByteBuffer.html">ostermiller.org</a>.
+ * <p>
+ * This buffer works like a {@link CircularByteBuffer} but keeps its bytes
+ * in direct ByteBuffers.  As well as streams, it can be filled and emptied
+ * through channels.  When the bytes are bound for a socket or a file,
+ * {@link #transferTo(WritableByteChannel)} hands the direct memory straight
+ * to the channel, writing the data that wraps around the end of the
+ * buffer with a single gathering write and without copying it into an
+ * array first.
+ * <p>
+ * A buffer of INFINITE_SIZE grows by chaining more segments of direct
+ * memory on to the end rather than copying everything into a larger
+ * buffer.  Segments are released as they are emptied.
+ * <p>
+ * The InputStream does not support mark() and reset().
+ * <p>
+ * This class is thread safe.  A transfer to a channel holds no lock on
+ * the buffer while it writes, so a producer may keep filling the buffer
+ * while a slow channel is being written.
+ *
+ * @see CircularByteBuffer
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class CircularDirectByteBuffer {
+
+	/**
+	 * The default size for a buffer.
+	 */
+	private final static int DEFAULT_SIZE = 1024;
+
+	/**
+	 * The size of each segment of a buffer of INFINITE_SIZE.  Large
+	 * segments keep the number of direct buffers, and of views handed
+	 * to a gathering write, small when many megabytes are buffered.
+	 */
+	private final static int INFINITE_SEGMENT_SIZE = 64 * 1024;
+
+	/**
+	 * The most views of the available bytes handed to a single
+	 * read or gathering write.
+	 */
+	private final static int MAX_READ_VIEWS = 64;
+
+	/**
+	 * A buffer that will grow as things are added.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public final static int INFINITE_SIZE = -1;
+
+	/**
+	 * A piece of direct memory holding part of the buffer.
+	 * Readers and writers each have their own view of the memory
+	 * so that their positions and limits do not interfere.
+	 */
+	private static class Segment {
+		/**
+		 * View used to take bytes out of this segment.
+		 */
+		private ByteBuffer readView;
+		/**
+		 * View used to put bytes into this segment.
+		 */
+		private ByteBuffer writeView;
+		/**
+		 * The segment that follows this one in a buffer of INFINITE_SIZE.
+		 */
+		private Segment next;
+
+		/**
+		 * Allocate a segment.
+		 *
+		 * @param size number of bytes of direct memory.
+		 */
+		private Segment(int size){
+			readView = ByteBuffer.allocateDirect(size);
+			writeView = readView.duplicate();
+		}
+	}
+
+	/**
+	 * Number of bytes in the memory of the buffer, or in each
+	 * segment when the buffer is infinite.
+	 */
+	private int segmentSize;
+
+	/**
+	 * The segment from which bytes are read.
+	 */
+	private Segment head;
+
+	/**
+	 * The segment to which bytes are written.  The same as
+	 * the head unless the buffer is infinite.
+	 */
+	private Segment tail;
+
+	/**
+	 * An emptied segment kept for reuse so that a buffer of INFINITE_SIZE
+	 * that is drained as fast as it is filled does not allocate.
+	 */
+	private Segment spare;
+
+	/**
+	 * Second view for reading the bytes that wrap around to the
+	 * start of a buffer that is not infinite.
+	 */
+	private ByteBuffer wrapReadView;
+
+	/**
+	 * Second view for writing the bytes that wrap around to the
+	 * start of a buffer that is not infinite.
+	 */
+	private ByteBuffer wrapWriteView;
+
+	/**
+	 * Index in the head segment of the first byte available to be read.
+	 */
+	private int readPosition = 0;
+
+	/**
+	 * Index in the tail segment of the first byte available to be written.
+	 */
+	private int writePosition = 0;
+
+	/**
+	 * Number of bytes available to be read.
+	 */
+	private int available = 0;
+
+	/**
+	 * Views of the readable bytes, filled in for a read.
+	 */
+	private ByteBuffer[] readViews = new ByteBuffer[2];
+
+	/**
+	 * Views of the free space, filled in for a write.
+	 */
+	private ByteBuffer[] writeViews = new ByteBuffer[2];
+
+	/**
+	 * Incremented each time the buffer is cleared so that a transfer
+	 * in progress does not remove bytes written after the clear.
+	 */
+	private int clearCount = 0;
+
+	/**
+	 * Held by whichever thread is taking bytes out of the buffer,
+	 * so that readers take turns while the buffer itself stays
+	 * unlocked during a transfer to a channel.
+	 */
+	private final Object readLock = new Object();
+
+	/**
+	 * If this buffer is infinite (should chain more segments when full)
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected boolean infinite = false;
+
+	/**
+	 * True if a write to a full buffer should block until the buffer
+	 * has room, false if the write method should throw an IOException
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected boolean blockingWrite = true;
+
+	/**
+	 * true if the InputStream or the readable channel has been closed
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected volatile boolean inputStreamClosed = false;
+
+	/**
+	 * true if the OutputStream or the writable channel has been closed
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected volatile boolean outputStreamClosed = false;
+
+	/**
+	 * The InputStream that can empty this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected InputStream in = new CircularDirectByteBufferInputStream();
+
+	/**
+	 * The OutputStream that can fill this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected OutputStream out = new CircularDirectByteBufferOutputStream();
+
+	/**
+	 * The channel that can empty this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected ReadableByteChannel readableChannel = new CircularDirectByteBufferReadableChannel();
+
+	/**
+	 * The channel that can fill this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected WritableByteChannel writableChannel = new CircularDirectByteBufferWritableChannel();
+
+	/**
+	 * Create a new buffer with a default capacity.
+	 * Writing to a full buffer will block until space
+	 * is available rather than throw an exception.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularDirectByteBuffer(){
+		this (DEFAULT_SIZE, true);
+	}
+
+	/**
+	 * Create a new buffer with given capacity.
+	 * Writing to a full buffer will block until space
+	 * is available rather than throw an exception.
+	 *
+	 * @param size desired capacity of the buffer in bytes or CircularDirectByteBuffer.INFINITE_SIZE.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularDirectByteBuffer(int size){
+		this (size, true);
+	}
+
+	/**
+	 * Create a new buffer with the given capacity and
+	 * blocking behavior.
+	 * <p>
+	 * Note that if the buffer is of INFINITE_SIZE it will
+	 * neither block or throw exceptions, but rather grow
+	 * without bound.
+	 *
+	 * @param size desired capacity of the buffer in bytes or CircularDirectByteBuffer.INFINITE_SIZE.
+	 * @param blockingWrite true writing to a full buffer should block
+	 *        until space is available, false if an exception should
+	 *        be thrown instead.
+	 * @throws IllegalArgumentException if the size is not positive.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularDirectByteBuffer(int size, boolean blockingWrite){
+		if (size == INFINITE_SIZE){
+			segmentSize = INFINITE_SEGMENT_SIZE;
+			infinite = true;
+		} else {
+			if (size <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + size);
+			segmentSize = size;
+			infinite = false;
+		}
+		head = new Segment(segmentSize);
+		tail = head;
+		if (!infinite){
+			wrapReadView = head.readView.duplicate();
+			wrapWriteView = head.readView.duplicate();
+		}
+		this.blockingWrite = blockingWrite;
+	}
+
+	/**
+	 * Make this buffer ready for reuse.  The contents of the buffer
+	 * will be cleared and the streams and channels associated with this
+	 * buffer will be reopened if they had been closed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void clear(){
+		synchronized (this){
+			head.next = null;
+			tail = head;
+			readPosition = 0;
+			writePosition = 0;
+			available = 0;
+			clearCount++;
+			outputStreamClosed = false;
+			inputStreamClosed = false;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Retrieve a OutputStream that can be used to fill
+	 * this buffer.
+	 *
+	 * @return the producer for this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public OutputStream getOutputStream(){
+		return out;
+	}
+
+	/**
+	 * Retrieve a InputStream that can be used to empty
+	 * this buffer.
+	 *
+	 * @return the consumer for this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public InputStream getInputStream(){
+		return in;
+	}
+
+	/**
+	 * Retrieve a channel that can be used to fill this buffer.
+	 * Closing the channel is the same as closing the OutputStream.
+	 *
+	 * @return the producer for this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public WritableByteChannel getWritableChannel(){
+		return writableChannel;
+	}
+
+	/**
+	 * Retrieve a channel that can be used to empty this buffer.
+	 * Closing the channel is the same as closing the InputStream.
+	 *
+	 * @return the consumer for this buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ReadableByteChannel getReadableChannel(){
+		return readableChannel;
+	}
+
+	/**
+	 * Get number of bytes that are available to be read.
+	 *
+	 * @return the size in bytes of this buffer
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getAvailable(){
+		synchronized (this){
+			return available;
+		}
+	}
+
+	/**
+	 * Get the number of bytes this buffer has free for
+	 * writing.
+	 *
+	 * @return the available space in bytes of this buffer
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getSpaceLeft(){
+		synchronized (this){
+			if (infinite) return segmentSize - writePosition;
+			return segmentSize - available;
+		}
+	}
+
+	/**
+	 * Get the capacity of this buffer.
+	 * <p>
+	 * A buffer of INFINITE_SIZE reports the memory of all its segments.
+	 *
+	 * @return the size in bytes of this buffer
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getSize(){
+		synchronized (this){
+			int size = 0;
+			for (Segment segment = head; segment != null; segment = segment.next){
+				size += segmentSize;
+				if (!infinite) break;
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * Write the bytes that are available in this buffer to a channel.
+	 * <p>
+	 * The bytes are written straight from direct memory.  When the
+	 * available bytes wrap around the end of the buffer or span several
+	 * segments, they are written with a single gathering write if the
+	 * channel supports it.  A single call writes at most 64 segments of a
+	 * buffer of INFINITE_SIZE.  Only the bytes that the channel accepts
+	 * are removed from this buffer.
+	 * <p>
+	 * This method does not wait for more bytes to be written to the buffer.
+	 * It returns zero if the buffer is empty, or -1 if the buffer is empty
+	 * and the OutputStream has been closed.
+	 *
+	 * @param channel destination for the bytes.
+	 * @return the number of bytes written to the channel, or -1 at the end of the stream.
+	 * @throws IOException if the InputStream has been closed or the channel cannot be written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long transferTo(WritableByteChannel channel) throws IOException {
+		synchronized (readLock){
+			int count;
+			int clears;
+			synchronized (this){
+				if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
+				if (available == 0) return outputStreamClosed ? -1 : 0;
+				count = readViews();
+				clears = clearCount;
+			}
+			// The views are only changed by readers, so the channel
+			// is written without holding the lock on the buffer.
+			long written = 0;
+			if (channel instanceof GatheringByteChannel){
+				written = ((GatheringByteChannel)channel).write(readViews, 0, count);
+			} else {
+				for (int i=0; i<count; i++){
+					int remaining = readViews[i].remaining();
+					int length = channel.write(readViews[i]);
+					written += length;
+					if (length < remaining) break;
+				}
+			}
+			synchronized (this){
+				if (clears == clearCount) consume((int)written);
+			}
+			return written;
+		}
+	}
+
+	/**
+	 * Set the view of a segment to cover a range of bytes.
+	 *
+	 * @param view view to change.
+	 * @param start index of the first byte.
+	 * @param length number of bytes.
+	 * @return the view.
+	 */
+	private static ByteBuffer region(ByteBuffer view, int start, int length){
+		view.clear();
+		view.position(start);
+		view.limit(start + length);
+		return view;
+	}
+
+	/**
+	 * Point the read views at the available bytes, or at those
+	 * in the first MAX_READ_VIEWS segments of a buffer of INFINITE_SIZE.
+	 * The caller must hold the read lock and the lock on this buffer.
+	 *
+	 * @return the number of views filled in.
+	 */
+	private int readViews(){
+		if (!infinite){
+			int first = Math.min(available, segmentSize - readPosition);
+			readViews[0] = region(head.readView, readPosition, first);
+			if (first == available) return 1;
+			readViews[1] = region(wrapReadView, 0, available - first);
+			return 2;
+		}
+		int count = 0;
+		int start = readPosition;
+		int remaining = available;
+		for (Segment segment = head; remaining > 0 && count < MAX_READ_VIEWS; segment = segment.next){
+			int length = Math.min(remaining, segmentSize - start);
+			if (count == readViews.length){
+				ByteBuffer[] views = new ByteBuffer[Math.min(count * 2, MAX_READ_VIEWS)];
+				System.arraycopy(readViews, 0, views, 0, count);
+				readViews = views;
+			}
+			readViews[count++] = region(segment.readView, start, length);
+			remaining -= length;
+			start = 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Remove bytes that have been read from the buffer, releasing
+	 * emptied segments.  The caller must hold the read lock and the lock on this buffer.
+	 *
+	 * @param length number of bytes read.
+	 */
+	private void consume(int length){
+		if (length == 0) return;
+		available -= length;
+		if (!infinite){
+			readPosition = (readPosition + length) % segmentSize;
+		} else {
+			readPosition += length;
+			while (readPosition >= segmentSize && head != tail){
+				readPosition -= segmentSize;
+				Segment emptied = head;
+				head = head.next;
+				emptied.next = null;
+				spare = emptied;
+			}
+			if (available == 0){
+				readPosition = 0;
+				writePosition = 0;
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Wait until another thread changes this buffer.
+	 * The caller must hold the lock on this buffer.
+	 *
+	 * @param message message for the exception if the wait is interrupted.
+	 * @throws IOException if the wait is interrupted.
+	 */
+	private void waitForChange(String message) throws IOException {
+		try {
+			wait();
+		} catch (InterruptedException x){
+			throw new IOException(message);
+		}
+	}
+
+	/**
+	 * Wait until bytes are available to read.
+	 * The caller must hold the read lock and the lock on this buffer.
+	 *
+	 * @return false if there will be no more bytes.
+	 * @throws IOException if the InputStream has been closed or the wait is interrupted.
+	 */
+	private boolean awaitAvailable() throws IOException {
+		while (true){
+			if (inputStreamClosed) throw new IOException("InputStream has been closed; cannot read from a closed InputStream.");
+			if (available > 0) return true;
+			if (outputStreamClosed) return false;
+			waitForChange("Blocking read operation interrupted.");
+		}
+	}
+
+	/**
+	 * Read bytes into an array or a ByteBuffer, waiting until at least
+	 * one is available.
+	 *
+	 * @param cbuf Destination array, or null to read into the ByteBuffer.
+	 * @param dst Destination ByteBuffer, used when the array is null.
+	 * @param off Offset at which to start storing bytes in the array.
+	 * @param len Maximum number of bytes to read.
+	 * @return The number of bytes read, or -1 if the end of
+	 *   the stream has been reached
+	 * @throws IOException if the stream is closed or the read is interrupted.
+	 */
+	private int read(byte[] cbuf, ByteBuffer dst, int off, int len) throws IOException {
+		synchronized (readLock){
+			synchronized (this){
+				if (!awaitAvailable()) return -1;
+				int count = readViews();
+				int length = 0;
+				for (int i=0; i<count && length<len; i++){
+					ByteBuffer view = readViews[i];
+					int chunk = Math.min(view.remaining(), len - length);
+					if (cbuf != null){
+						view.get(cbuf, off + length, chunk);
+					} else {
+						view.limit(view.position() + chunk);
+						dst.put(view);
+					}
+					length += chunk;
+				}
+				consume(length);
+				return length;
+			}
+		}
+	}
+
+	/**
+	 * Get the views of the space into which bytes can be written.
+	 * A buffer of INFINITE_SIZE gets another segment when the last one is full.
+	 * The caller must hold the lock on this buffer.
+	 *
+	 * @param len Number of bytes to be written.
+	 * @return the number of views filled in.
+	 */
+	private int writeViews(int len){
+		if (infinite){
+			if (writePosition == segmentSize){
+				Segment segment = spare;
+				spare = null;
+				if (segment == null) segment = new Segment(segmentSize);
+				tail.next = segment;
+				tail = segment;
+				writePosition = 0;
+			}
+			writeViews[0] = region(tail.writeView, writePosition, Math.min(len, segmentSize - writePosition));
+			return 1;
+		}
+		int length = Math.min(len, segmentSize - available);
+		int first = Math.min(length, segmentSize - writePosition);
+		writeViews[0] = region(tail.writeView, writePosition, first);
+		if (first == length) return 1;
+		writeViews[1] = region(wrapWriteView, 0, length - first);
+		return 2;
+	}
+
+	/**
+	 * Write bytes from an array or a ByteBuffer, waiting for space
+	 * as needed.
+	 *
+	 * @param cbuf Array of bytes, or null to write from the ByteBuffer.
+	 * @param src ByteBuffer of bytes, used when the array is null.
+	 * @param off Offset in the array from which to start writing bytes
+	 * @param len Number of bytes to write
+	 * @throws BufferOverflowException if buffer does not allow blocking writes
+	 *   and the buffer is full.  If the exception is thrown, no data
+	 *   will have been written since the buffer was set to be non-blocking.
+	 * @throws IOException if the stream is closed, or the write is interrupted.
+	 */
+	private void write(byte[] cbuf, ByteBuffer src, int off, int len) throws IOException {
+		synchronized (this){
+			while (len > 0){
+				if (outputStreamClosed) throw new IOException("OutputStream has been closed; cannot write to a closed OutputStream.");
+				if (inputStreamClosed) throw new IOException("Buffer closed by InputStream; cannot write to a closed buffer.");
+				if (!infinite && !blockingWrite && segmentSize - available < len) throw new BufferOverflowException("CircularDirectByteBuffer is full; cannot write " + len + " bytes");
+				int count = writeViews(len);
+				int written = 0;
+				for (int i=0; i<count; i++){
+					ByteBuffer view = writeViews[i];
+					int chunk = view.remaining();
+					if (cbuf != null){
+						view.put(cbuf, off, chunk);
+						off += chunk;
+					} else {
+						int limit = src.limit();
+						src.limit(src.position() + chunk);
+						view.put(src);
+						src.limit(limit);
+					}
+					written += chunk;
+				}
+				if (written > 0){
+					available += written;
+					if (infinite){
+						writePosition += written;
+					} else {
+						writePosition = (writePosition + written) % segmentSize;
+					}
+					len -= written;
+					notifyAll();
+				} else {
+					waitForChange("Waiting for available space in buffer interrupted.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the InputStream and readable channel closed.
+	 */
+	private void closeInput(){
+		synchronized (this){
+			inputStreamClosed = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Mark the OutputStream and writable channel closed.
+	 */
+	private void closeOutput(){
+		synchronized (this){
+			outputStreamClosed = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Class for reading from a circular direct byte buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected class CircularDirectByteBufferInputStream extends InputStream {
+
+		/**
+		 * Scratch space for reading a single byte.
+		 */
+		private byte[] single = new byte[1];
+
+		/**
+		 * Returns the number of bytes that can be read (or skipped over) from this
+		 * input stream without blocking by the next caller of a method for this input
+		 * stream. The next caller might be the same thread or another thread.
+		 *
+		 * @return the number of bytes that can be read from this input stream without blocking.
+		 * @throws IOException if the stream is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public int available() throws IOException {
+			synchronized (CircularDirectByteBuffer.this){
+				if (inputStreamClosed) throw new IOException("InputStream has been closed, it is not ready.");
+				return CircularDirectByteBuffer.this.available;
+			}
+		}
+
+		/**
+		 * Close the stream. Once a stream has been closed, further read(), available(),
+		 * skip() calls will throw an IOException.
+		 * Closing a previously-closed stream, however, has no effect.
+		 *
+		 * @throws IOException never.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public void close() throws IOException {
+			closeInput();
+		}
+
+		/**
+		 * Read a single byte.
+		 * This method will block until a byte is available, an I/O error occurs,
+		 * or the end of the stream is reached.
+		 *
+		 * @return The byte read, as an integer in the range 0 to 255 (0x00-0xff),
+		 *     or -1 if the end of the stream has been reached
+		 * @throws IOException if the stream is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public int read() throws IOException {
+			synchronized (readLock){
+				if (CircularDirectByteBuffer.this.read(single, null, 0, 1) == -1) return -1;
+				return single[0] & 0xff;
+			}
+		}
+
+		/**
+		 * Read bytes into a portion of an array.
+		 * This method will block until some input is available,
+		 * an I/O error occurs, or the end of the stream is reached.
+		 *
+		 * @param cbuf Destination buffer.
+		 * @param off Offset at which to start storing bytes.
+		 * @param len Maximum number of bytes to read.
+		 * @return The number of bytes read, or -1 if the end of
+		 *   the stream has been reached
+		 * @throws IOException if the stream is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public int read(byte[] cbuf, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			return CircularDirectByteBuffer.this.read(cbuf, null, off, len);
+		}
+
+		/**
+		 * Skip bytes.
+		 * This method will block until some bytes are available,
+		 * an I/O error occurs, or the end of the stream is reached.
+		 *
+		 * @param n The number of bytes to skip
+		 * @return The number of bytes actually skipped
+		 * @throws IOException if the stream is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public long skip(long n) throws IOException {
+			if (n <= 0) return 0;
+			synchronized (readLock){
+				synchronized (CircularDirectByteBuffer.this){
+					if (!awaitAvailable()) return 0;
+					int length = (int)Math.min(n, CircularDirectByteBuffer.this.available);
+					consume(length);
+					return length;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Class for writing to a circular direct byte buffer.
+	 * If the buffer is full, the writes will either block
+	 * until there is some space available or throw an IOException
+	 * based on the CircularDirectByteBuffer's preference.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected class CircularDirectByteBufferOutputStream extends OutputStream {
+
+		/**
+		 * Scratch space for writing a single byte.
+		 */
+		private byte[] single = new byte[1];
+
+		/**
+		 * Close the stream, flushing it first.
+		 * This will cause the InputStream associated with this circular buffer
+		 * to read its last bytes once it empties the buffer.
+		 * Once a stream has been closed, further write() or flush() invocations
+		 * will cause an IOException to be thrown. Closing a previously-closed stream,
+		 * however, has no effect.
+		 *
+		 * @throws IOException never.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public void close() throws IOException {
+			closeOutput();
+		}
+
+		/**
+		 * Flush the stream.
+		 *
+		 * @throws IOException if the stream is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public void flush() throws IOException {
+			if (outputStreamClosed) throw new IOException("OutputStream has been closed; cannot flush a closed OutputStream.");
+			if (inputStreamClosed) throw new IOException("Buffer closed by inputStream; cannot flush.");
+			// this method needs to do nothing
+		}
+
+		/**
+		 * Write a portion of an array of bytes.
+		 * If the buffer allows blocking writes, this method will block until
+		 * all the data has been written rather than throw an IOException.
+		 *
+		 * @param cbuf Array of bytes
+		 * @param off Offset from which to start writing bytes
+		 * @param len - Number of bytes to write
+		 * @throws BufferOverflowException if buffer does not allow blocking writes
+		 *   and the buffer is full.  If the exception is thrown, no data
+		 *   will have been written since the buffer was set to be non-blocking.
+		 * @throws IOException if the stream is already closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public void write(byte[] cbuf, int off, int len) throws IOException {
+			CircularDirectByteBuffer.this.write(cbuf, null, off, len);
+		}
+
+		/**
+		 * Write a single byte.
+		 * The byte to be written is contained in the 8 low-order bits of the
+		 * given integer value; the 24 high-order bits are ignored.
+		 * If the buffer allows blocking writes, this method will block until
+		 * all the data has been written rather than throw an IOException.
+		 *
+		 * @param c number of bytes to be written
+		 * @throws BufferOverflowException if buffer does not allow blocking writes
+		 *   and the buffer is full.
+		 * @throws IOException if the stream is already closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public void write(int c) throws IOException {
+			synchronized (CircularDirectByteBuffer.this){
+				single[0] = (byte)c;
+				CircularDirectByteBuffer.this.write(single, null, 0, 1);
+			}
+		}
+	}
+
+	/**
+	 * Channel for reading from a circular direct byte buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected class CircularDirectByteBufferReadableChannel implements ReadableByteChannel {
+
+		/**
+		 * Read bytes into a ByteBuffer.
+		 * This method will block until some input is available,
+		 * an I/O error occurs, or the end of the stream is reached.
+		 *
+		 * @param dst Destination for the bytes.
+		 * @return The number of bytes read, or -1 if the end of
+		 *   the stream has been reached
+		 * @throws IOException if the channel is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int read(ByteBuffer dst) throws IOException {
+			if (!dst.hasRemaining()) return 0;
+			return CircularDirectByteBuffer.this.read(null, dst, 0, dst.remaining());
+		}
+
+		/**
+		 * Tell whether this channel is open.
+		 *
+		 * @return true until the InputStream or this channel is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public boolean isOpen(){
+			return !inputStreamClosed;
+		}
+
+		/**
+		 * Close the channel, which also closes the InputStream.
+		 *
+		 * @throws IOException never.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public void close() throws IOException {
+			closeInput();
+		}
+	}
+
+	/**
+	 * Channel for writing to a circular direct byte buffer.
+	 * If the buffer is full, the writes will either block
+	 * until there is some space available or throw an IOException
+	 * based on the CircularDirectByteBuffer's preference.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected class CircularDirectByteBufferWritableChannel implements WritableByteChannel {
+
+		/**
+		 * Write all the remaining bytes of a ByteBuffer.
+		 * If the buffer allows blocking writes, this method will block until
+		 * all the data has been written rather than throw an IOException.
+		 *
+		 * @param src Source of the bytes.
+		 * @return The number of bytes written.
+		 * @throws BufferOverflowException if buffer does not allow blocking writes
+		 *   and the buffer is full.  If the exception is thrown, no data
+		 *   will have been written since the buffer was set to be non-blocking.
+		 * @throws IOException if the channel is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int write(ByteBuffer src) throws IOException {
+			int length = src.remaining();
+			CircularDirectByteBuffer.this.write(null, src, 0, length);
+			return length;
+		}
+
+		/**
+		 * Tell whether this channel is open.
+		 *
+		 * @return true until the OutputStream or this channel is closed.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public boolean isOpen(){
+			return !outputStreamClosed;
+		}
+
+		/**
+		 * Close the channel, which also closes the OutputStream.
+		 *
+		 * @throws IOException never.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public void close() throws IOException {
+			closeOutput();
+		}
+	}
+}
@@ -17,12 +17,25 @@
  */
 package com.Ostermiller.util;
 
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Implements the Circular Buffer producer/consumer model for Objects.
  * More information about this class is available from <a target="_top" href=
  * "http://ostermiller.org/utils/CircularObjectBuffer.html">ostermiller.org</a>.
  * <p>
- * This class is thread safe.
+ * This class is thread safe.  Blocked readers and writers wait to be
+ * notified of changes rather than polling.  When there is a single
+ * producer thread and a single consumer thread, the buffer can be
+ * created so that reads and writes do not lock at all.  Any number of
+ * producers and consumers can also share a lock free buffer, in which
+ * they only lock the buffer when they have to wait.
+ * <p>
+ * Batches of Objects can be moved with one lock or one atomic update using
+ * {@link #drainTo(Collection, int)} and {@link #writeAll(Collection)}.
  *
  * @see CircularCharBuffer
  * @see CircularByteBuffer
@@ -47,6 +60,39 @@ public class CircularObjectBuffer <ElementType> {
 	 */
 	public final static int INFINITE_SIZE = -1;
 
+	/**
+	 * How the threads using a buffer coordinate with each other.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public enum Concurrency {
+		/**
+		 * Any number of threads read and write, locking the buffer.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		LOCKING,
+		/**
+		 * One thread reads and one thread writes without locking.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		SINGLE_PRODUCER_SINGLE_CONSUMER,
+		/**
+		 * Any number of threads read and write, claiming slots in the
+		 * buffer with atomic updates rather than locking.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		MULTI_PRODUCER_MULTI_CONSUMER;
+	}
+
+	/**
+	 * Returned by the methods that take a single Object when
+	 * no Object is available, as null may have been written.
+	 */
+	private final static Object NONE = new Object();
+
 	/**
 	 * The circular buffer.
 	 * <p>
@@ -99,7 +145,70 @@ public class CircularObjectBuffer <ElementType> {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	protected boolean inputDone = false;
+	protected volatile boolean inputDone = false;
+
+	/**
+	 * True if there is only one thread reading and one thread writing.
+	 * Reads and writes then do not lock the buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected boolean singleProducerSingleConsumer = false;
+
+	/**
+	 * The thread waiting for Objects to read without locking, if any.
+	 */
+	private volatile Thread waitingReader = null;
+
+	/**
+	 * The thread waiting for space to write without locking, if any.
+	 */
+	private volatile Thread waitingWriter = null;
+
+	/**
+	 * Scratch space for reading a single Object without locking.
+	 */
+	private ElementType[] readSingle;
+
+	/**
+	 * Scratch space for writing a single Object without locking.
+	 */
+	private ElementType[] writeSingle;
+
+	/**
+	 * True if any number of threads may read and write and they
+	 * claim slots in the buffer with atomic updates instead of locking.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected boolean lockFree = false;
+
+	/**
+	 * For each slot in a lock free buffer, the count of the write that may
+	 * use it next if it is free, or that count plus one once the Object
+	 * written there may be read.
+	 */
+	private AtomicLongArray sequences;
+
+	/**
+	 * Number of Objects that have been claimed for reading from a lock free buffer.
+	 */
+	private AtomicLong readCount;
+
+	/**
+	 * Number of Objects that have been claimed for writing to a lock free buffer.
+	 */
+	private AtomicLong writeCount;
+
+	/**
+	 * Number of threads waiting for Objects to read from a lock free buffer.
+	 */
+	private AtomicInteger waitingReaders;
+
+	/**
+	 * Number of threads waiting for space to write to a lock free buffer.
+	 */
+	private AtomicInteger waitingWriters;
 
 	/**
 	 * Make this buffer ready for reuse.  The contents of the buffer
@@ -112,7 +221,16 @@ public class CircularObjectBuffer <ElementType> {
 		synchronized (this){
 			readPosition = 0;
 			writePosition = 0;
+			if (lockFree){
+				for (int i=0; i<buffer.length; i++){
+					buffer[i] = null;
+					sequences.set(i, i);
+				}
+				readCount.set(0);
+				writeCount.set(0);
+			}
 			inputDone = false;
+			notifyAll();
 		}
 	}
 
@@ -129,6 +247,7 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int getAvailable(){
+		if (lockFree) return (int)Math.max(0, Math.min(buffer.length, writeCount.get() - readCount.get()));
 		synchronized (this){
 			return available();
 		}
@@ -148,6 +267,7 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int getSpaceLeft(){
+		if (lockFree) return buffer.length - getAvailable();
 		synchronized (this){
 			return spaceLeft();
 		}
@@ -308,6 +428,631 @@ public class CircularObjectBuffer <ElementType> {
 		this.blockingWrite = blockingWrite;
 	}
 
+	/**
+	 * Create a new buffer with the given capacity and
+	 * blocking behavior that is used by only one reading thread
+	 * and one writing thread.
+	 * <p>
+	 * With a single producer and a single consumer, reads and writes do
+	 * not lock the buffer.  Each side only changes its own position in
+	 * the buffer, and a thread that has to wait is parked until the other
+	 * side wakes it.  Reading or writing from more than one thread at a
+	 * time will corrupt the data.  The clear() method may only be called
+	 * when neither thread is using the buffer.
+	 *
+	 * @param size desired capacity of the buffer in Objects, which may not be CircularObjectBuffer.INFINITE_SIZE.
+	 * @param blockingWrite true writing to a full buffer should block
+	 *        until space is available, false if an exception should
+	 *        be thrown instead.
+	 * @param singleProducerSingleConsumer true if there will be only one reading thread and one writing thread.
+	 * @throws IllegalArgumentException if an infinite buffer is requested for a single producer and consumer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularObjectBuffer(int size, boolean blockingWrite, boolean singleProducerSingleConsumer){
+		this(size, blockingWrite, singleProducerSingleConsumer ? Concurrency.SINGLE_PRODUCER_SINGLE_CONSUMER : Concurrency.LOCKING);
+	}
+
+	/**
+	 * Create a new buffer with the given capacity, blocking behavior,
+	 * and way of coordinating the threads that use it.
+	 * <p>
+	 * A lock free buffer for many producers and consumers is a ring of
+	 * slots, each with a sequence number that tells whether it is free or
+	 * holds an Object.  A thread claims a run of slots by advancing the
+	 * read or write count with a single compare and set, so contention
+	 * costs a retry rather than a context switch.  Threads lock the buffer
+	 * only to wait when it is empty or full, and the other side only locks
+	 * it to wake them when some thread is waiting.  Every slot of a lock free
+	 * buffer can be used, and the clear() method may only be called when
+	 * no thread is using the buffer.
+	 *
+	 * @param size desired capacity of the buffer in Objects.  Only a LOCKING buffer may be CircularObjectBuffer.INFINITE_SIZE.
+	 * @param blockingWrite true writing to a full buffer should block
+	 *        until space is available, false if an exception should
+	 *        be thrown instead.
+	 * @param concurrency how the reading and writing threads coordinate.
+	 * @throws IllegalArgumentException if an infinite buffer is requested without locking.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CircularObjectBuffer(int size, boolean blockingWrite, Concurrency concurrency){
+		this(size, blockingWrite);
+		if (concurrency != Concurrency.LOCKING && infinite) throw new IllegalArgumentException("A buffer that does not lock must have a fixed size.");
+		if (concurrency == Concurrency.SINGLE_PRODUCER_SINGLE_CONSUMER){
+			singleProducerSingleConsumer = true;
+			readSingle = createArray(1);
+			writeSingle = createArray(1);
+		} else if (concurrency == Concurrency.MULTI_PRODUCER_MULTI_CONSUMER){
+			lockFree = true;
+			sequences = new AtomicLongArray(buffer.length);
+			for (int i=0; i<buffer.length; i++){
+				sequences.set(i, i);
+			}
+			readCount = new AtomicLong();
+			writeCount = new AtomicLong();
+			waitingReaders = new AtomicInteger();
+			waitingWriters = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * Wake up the reading thread if it is parked waiting for Objects.
+	 */
+	private void unparkReader(){
+		Thread thread = waitingReader;
+		if (thread != null) LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Wake up the writing thread if it is parked waiting for space.
+	 */
+	private void unparkWriter(){
+		Thread thread = waitingWriter;
+		if (thread != null) LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Read or skip Objects without locking.  Only the one reading
+	 * thread may call this.
+	 *
+	 * @param buf Destination buffer, or null to skip the Objects.
+	 * @param off Offset at which to start storing Objects.
+	 * @param len Maximum number of Objects to read.
+	 * @return The number of Objects read, or -1 there will
+	 *     be no more objects available.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	private int lockFreeRead(ElementType[] buf, int off, int len) throws InterruptedException {
+		while (true){
+			int available = available();
+			if (available > 0){
+				int length = Math.min(len, available);
+				int position = readPosition;
+				if (buf != null){
+					int firstLen = Math.min(length, buffer.length - position);
+					System.arraycopy(buffer, position, buf, off, firstLen);
+					if (length > firstLen){
+						System.arraycopy(buffer, 0, buf, off+firstLen, length-firstLen);
+					}
+				}
+				position += length;
+				if (position >= buffer.length) position -= buffer.length;
+				readPosition = position;
+				unparkWriter();
+				return length;
+			} else if (inputDone){
+				// Objects written just before done() are visible now.
+				if (available() == 0) return -1;
+			} else {
+				waitingReader = Thread.currentThread();
+				if (available() == 0 && !inputDone){
+					LockSupport.park();
+				}
+				waitingReader = null;
+				if (Thread.interrupted()) throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Write Objects without locking.  Only the one writing
+	 * thread may call this.
+	 *
+	 * @param buf Array of Objects
+	 * @param off Offset from which to start writing Objects
+	 * @param len - Number of Objects to write
+	 * @throws BufferOverflowException if buffer does not allow blocking writes
+	 *   and the buffer is full.
+	 * @throws IllegalStateException if done() has been called.
+	 * @throws InterruptedException if the write is interrupted.
+	 */
+	private void lockFreeWrite(ElementType[] buf, int off, int len) throws BufferOverflowException, InterruptedException {
+		while (len > 0){
+			if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
+			int position = writePosition;
+			int read = readPosition;
+			int spaceLeft = (position < read) ? (read - position - 1) : ((buffer.length - 1) - (position - read));
+			if (!blockingWrite && spaceLeft < len) throw new BufferOverflowException("CircularObjectBuffer is full; cannot write " + len + " Objects");
+			if (spaceLeft > 0){
+				int realLen = Math.min(len, spaceLeft);
+				int firstLen = Math.min(realLen, buffer.length - position);
+				System.arraycopy(buf, off, buffer, position, firstLen);
+				if (realLen > firstLen){
+					System.arraycopy(buf, off+firstLen, buffer, 0, realLen-firstLen);
+				}
+				position += realLen;
+				if (position >= buffer.length) position -= buffer.length;
+				writePosition = position;
+				unparkReader();
+				off += realLen;
+				len -= realLen;
+			} else {
+				waitingWriter = Thread.currentThread();
+				if (spaceLeft() == 0){
+					LockSupport.park();
+				}
+				waitingWriter = null;
+				if (Thread.interrupted()) throw new InterruptedException();
+			}
+		}
+	}
+
+
+	/**
+	 * Index of the slot used by a read or write count in a lock free buffer.
+	 *
+	 * @param count read or write count.
+	 * @return index into the buffer.
+	 */
+	private int slot(long count){
+		return (int)(count % buffer.length);
+	}
+
+	/**
+	 * Wake threads waiting to read from a lock free buffer, if there are any.
+	 */
+	private void signalReaders(){
+		if (waitingReaders.get() > 0){
+			synchronized (this){
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wake threads waiting to write to a lock free buffer, if there are any.
+	 */
+	private void signalWriters(){
+		if (waitingWriters.get() > 0){
+			synchronized (this){
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Take a run of Objects from a lock free buffer without waiting.
+	 * <p>
+	 * The run is claimed all at once, and each slot is freed once its Object
+	 * has been handed over.  If the collection refuses an Object, it and the
+	 * rest of the run are given back to the buffer.
+	 *
+	 * @param buf Destination buffer, or null to add to the collection.
+	 * @param c Destination collection, or null with a null buffer to skip the Objects.
+	 * @param off Offset at which to start storing Objects in the buffer.
+	 * @param len Maximum number of Objects to take.
+	 * @return The number of Objects taken, zero if the buffer is empty.
+	 */
+	private int lockFreeTake(ElementType[] buf, Collection<? super ElementType> c, int off, int len){
+		while (true){
+			long count = readCount.get();
+			int length = 0;
+			boolean stale = false;
+			while (length < len && length < buffer.length){
+				long sequence = sequences.get(slot(count + length));
+				if (sequence != count + length + 1){
+					// Past the count, another reader has already taken this slot.
+					stale = sequence > count + length + 1;
+					break;
+				}
+				length++;
+			}
+			if (stale) continue;
+			if (length == 0) return 0;
+			if (readCount.compareAndSet(count, count + length)){
+				int i = 0;
+				try {
+					for (; i<length; i++){
+						int slot = slot(count + i);
+						ElementType o = buffer[slot];
+						if (buf != null){
+							buf[off+i] = o;
+						} else if (c != null){
+							c.add(o);
+						}
+						buffer[slot] = null;
+						sequences.set(slot, count + i + buffer.length);
+					}
+				} finally {
+					// The collection refused an Object.
+					if (i < length) giveBack(count + i, count + length);
+					signalWriters();
+				}
+				return length;
+			}
+		}
+	}
+
+	/**
+	 * Give back Objects that were claimed from a lock free buffer but not
+	 * handed over.  If no other reader has claimed an Object since, the
+	 * claim is undone and the Objects are read again from where they are.
+	 * Otherwise their slots are freed and they are written again at the
+	 * end of the buffer.
+	 *
+	 * @param from read count of the first Object to give back.
+	 * @param to read count after the last Object to give back.
+	 */
+	private void giveBack(long from, long to){
+		if (readCount.compareAndSet(to, from)) return;
+		List<ElementType> objects = new ArrayList<ElementType>((int)(to - from));
+		for (long count=from; count<to; count++){
+			int slot = slot(count);
+			objects.add(buffer[slot]);
+			buffer[slot] = null;
+			sequences.set(slot, count + buffer.length);
+		}
+		for (ElementType o: objects){
+			while (true){
+				long count = writeCount.get();
+				int slot = slot(count);
+				long sequence = sequences.get(slot);
+				if (sequence == count){
+					if (writeCount.compareAndSet(count, count + 1)){
+						buffer[slot] = o;
+						sequences.set(slot, count + 1);
+						signalReaders();
+						break;
+					}
+				} else if (sequence < count){
+					// Full: another reader has moved on, so
+					// it will free a slot.
+					Thread.yield();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Put a run of Objects into a lock free buffer without waiting.
+	 *
+	 * @param buf Array of Objects
+	 * @param off Offset from which to start writing Objects
+	 * @param len Number of Objects to write
+	 * @param whole true to write nothing unless all the Objects fit.
+	 * @return The number of Objects written, zero if the buffer is full.
+	 * @throws IllegalStateException if done() has been called.
+	 */
+	private int lockFreePut(ElementType[] buf, int off, int len, boolean whole){
+		if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
+		while (true){
+			long count = writeCount.get();
+			int length = 0;
+			boolean stale = false;
+			while (length < len && length < buffer.length){
+				long sequence = sequences.get(slot(count + length));
+				if (sequence != count + length){
+					// Past the count, another writer has already claimed this slot.
+					stale = sequence > count + length;
+					break;
+				}
+				length++;
+			}
+			if (stale) continue;
+			if (length == 0 || (whole && length < len)) return 0;
+			if (writeCount.compareAndSet(count, count + length)){
+				for (int i=0; i<length; i++){
+					int slot = slot(count + i);
+					buffer[slot] = buf[off+i];
+					sequences.set(slot, count + i + 1);
+				}
+				signalReaders();
+				return length;
+			}
+		}
+	}
+
+	/**
+	 * Take Objects from the buffer without waiting, locking it only if
+	 * this buffer uses locks.
+	 *
+	 * @param buf Destination buffer, or null to add to the collection.
+	 * @param c Destination collection, or null with a null buffer to skip the Objects.
+	 * @param off Offset at which to start storing Objects in the buffer.
+	 * @param len Maximum number of Objects to take.
+	 * @return The number of Objects taken, zero if the buffer is empty.
+	 */
+	private int take(ElementType[] buf, Collection<? super ElementType> c, int off, int len){
+		if (lockFree) return lockFreeTake(buf, c, off, len);
+		if (singleProducerSingleConsumer){
+			int taken = ringTake(buf, c, off, len);
+			if (taken > 0) unparkWriter();
+			return taken;
+		}
+		synchronized (this){
+			int taken = ringTake(buf, c, off, len);
+			if (taken > 0) notifyAll();
+			return taken;
+		}
+	}
+
+	/**
+	 * Take Objects from the circular buffer of a buffer that is not lock free.
+	 * Unless there is a single consumer, the caller must hold the lock on this buffer.
+	 *
+	 * @param buf Destination buffer, or null to add to the collection.
+	 * @param c Destination collection, or null with a null buffer to skip the Objects.
+	 * @param off Offset at which to start storing Objects in the buffer.
+	 * @param len Maximum number of Objects to take.
+	 * @return The number of Objects taken.
+	 */
+	private int ringTake(ElementType[] buf, Collection<? super ElementType> c, int off, int len){
+		int length = Math.min(len, available());
+		int position = readPosition;
+		int taken = 0;
+		try {
+			for (; taken<length; taken++){
+				ElementType o = buffer[position];
+				if (buf != null){
+					buf[off+taken] = o;
+				} else if (c != null){
+					c.add(o);
+				}
+				position++;
+				if (position == buffer.length) position = 0;
+			}
+		} finally {
+			// An Object the collection refused stays in the buffer.
+			readPosition = position;
+		}
+		return taken;
+	}
+
+	/**
+	 * Take a single Object from the buffer without waiting.
+	 *
+	 * @return the Object, or NONE if the buffer is empty.
+	 */
+	private Object takeOne(){
+		if (lockFree){
+			while (true){
+				long count = readCount.get();
+				int slot = slot(count);
+				long sequence = sequences.get(slot);
+				if (sequence <= count) return NONE;
+				if (sequence == count + 1 && readCount.compareAndSet(count, count + 1)){
+					ElementType o = buffer[slot];
+					buffer[slot] = null;
+					sequences.set(slot, count + buffer.length);
+					signalWriters();
+					return o;
+				}
+			}
+		}
+		if (singleProducerSingleConsumer){
+			if (ringTake(readSingle, null, 0, 1) == 0) return NONE;
+			unparkWriter();
+			ElementType o = readSingle[0];
+			readSingle[0] = null;
+			return o;
+		}
+		synchronized (this){
+			if (available() == 0) return NONE;
+			ElementType o = buffer[readPosition];
+			readPosition++;
+			if (readPosition == buffer.length) readPosition = 0;
+			notifyAll();
+			return o;
+		}
+	}
+
+	/**
+	 * Put a single Object into the buffer without waiting.
+	 * An infinite buffer grows rather than being full.
+	 *
+	 * @param o Object to be written.
+	 * @return false if the buffer is full.
+	 * @throws IllegalStateException if done() has been called.
+	 */
+	private boolean putOne(ElementType o){
+		if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
+		if (lockFree){
+			while (true){
+				long count = writeCount.get();
+				int slot = slot(count);
+				long sequence = sequences.get(slot);
+				if (sequence < count) return false;
+				if (sequence == count && writeCount.compareAndSet(count, count + 1)){
+					buffer[slot] = o;
+					sequences.set(slot, count + 1);
+					signalReaders();
+					return true;
+				}
+			}
+		}
+		if (singleProducerSingleConsumer){
+			if (spaceLeft() == 0) return false;
+			int position = writePosition;
+			buffer[position] = o;
+			position++;
+			if (position == buffer.length) position = 0;
+			writePosition = position;
+			unparkReader();
+			return true;
+		}
+		synchronized (this){
+			if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
+			if (infinite && spaceLeft() < 1) resize();
+			if (spaceLeft() == 0) return false;
+			buffer[writePosition] = o;
+			writePosition++;
+			if (writePosition == buffer.length) writePosition = 0;
+			notifyAll();
+			return true;
+		}
+	}
+
+	/**
+	 * Wait until an Object may have been written or done() called.
+	 *
+	 * @param timed true if the wait should end at the deadline.
+	 * @param deadline System.nanoTime() at which to stop waiting.
+	 * @return false if the deadline has passed.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	private boolean awaitReadable(boolean timed, long deadline) throws InterruptedException {
+		long remaining = 0;
+		if (timed){
+			remaining = deadline - System.nanoTime();
+			if (remaining <= 0) return false;
+		}
+		if (singleProducerSingleConsumer){
+			waitingReader = Thread.currentThread();
+			if (available() == 0 && !inputDone){
+				if (timed){
+					LockSupport.parkNanos(remaining);
+				} else {
+					LockSupport.park();
+				}
+			}
+			waitingReader = null;
+			if (Thread.interrupted()) throw new InterruptedException();
+			return true;
+		}
+		// A lock free writer checks for waiting readers after it writes,
+		// so the reader counts itself before checking for Objects.
+		if (lockFree) waitingReaders.incrementAndGet();
+		try {
+			synchronized (this){
+				boolean empty;
+				if (lockFree){
+					long count = readCount.get();
+					empty = sequences.get(slot(count)) <= count;
+				} else {
+					empty = available() == 0;
+				}
+				if (empty && !inputDone){
+					if (timed){
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					} else {
+						wait();
+					}
+				}
+			}
+		} finally {
+			if (lockFree) waitingReaders.decrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * Wait until space may have been made available for writing.
+	 *
+	 * @param timed true if the wait should end at the deadline.
+	 * @param deadline System.nanoTime() at which to stop waiting.
+	 * @return false if the deadline has passed.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	private boolean awaitWritable(boolean timed, long deadline) throws InterruptedException {
+		long remaining = 0;
+		if (timed){
+			remaining = deadline - System.nanoTime();
+			if (remaining <= 0) return false;
+		}
+		if (singleProducerSingleConsumer){
+			waitingWriter = Thread.currentThread();
+			if (spaceLeft() == 0){
+				if (timed){
+					LockSupport.parkNanos(remaining);
+				} else {
+					LockSupport.park();
+				}
+			}
+			waitingWriter = null;
+			if (Thread.interrupted()) throw new InterruptedException();
+			return true;
+		}
+		// A lock free reader checks for waiting writers after it reads,
+		// so the writer counts itself before checking for space.
+		if (lockFree) waitingWriters.incrementAndGet();
+		try {
+			synchronized (this){
+				boolean full;
+				if (lockFree){
+					long count = writeCount.get();
+					full = sequences.get(slot(count)) < count;
+				} else {
+					full = !infinite && spaceLeft() == 0;
+				}
+				if (full){
+					if (timed){
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					} else {
+						wait();
+					}
+				}
+			}
+		} finally {
+			if (lockFree) waitingWriters.decrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * Get a single Object, waiting until one is available,
+	 * no more will be available, or the deadline passes.
+	 *
+	 * @param timed true if the wait should end at the deadline.
+	 * @param deadline System.nanoTime() at which to stop waiting.
+	 * @return The Object read, or null if there are no more objects
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	@SuppressWarnings("unchecked") private ElementType readOne(boolean timed, long deadline) throws InterruptedException {
+		while (true){
+			Object o = takeOne();
+			if (o != NONE) return (ElementType)o;
+			if (inputDone){
+				// Objects written just before done() are visible now.
+				o = takeOne();
+				return (o == NONE) ? null : (ElementType)o;
+			}
+			if (!awaitReadable(timed, deadline)) return null;
+		}
+	}
+
+	/**
+	 * Get some Objects, waiting until at least one is available
+	 * or no more will be available.
+	 *
+	 * @param buf Destination buffer, or null to skip the Objects.
+	 * @param off Offset at which to start storing Objects.
+	 * @param len Maximum number of Objects to read.
+	 * @return The number of Objects read, or -1 there will
+	 *     be no more objects available.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	private int readSome(ElementType[] buf, int off, int len) throws InterruptedException {
+		while (true){
+			int taken = take(buf, null, off, len);
+			if (taken > 0) return taken;
+			if (inputDone){
+				taken = take(buf, null, off, len);
+				return (taken > 0) ? taken : -1;
+			}
+			awaitReadable(false, 0);
+		}
+	}
 
 	/**
 	 * Get a single Object from this buffer.  This method should be called
@@ -321,8 +1066,15 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public ElementType read() throws InterruptedException {
-		while (true){
-			synchronized (this){
+		if (lockFree) return readOne(false, 0);
+		if (singleProducerSingleConsumer){
+			if (lockFreeRead(readSingle, 0, 1) == -1) return null;
+			ElementType result = readSingle[0];
+			readSingle[0] = null;
+			return result;
+		}
+		synchronized (this){
+			while (true){
 				int available = available();
 				if (available > 0){
 					ElementType result = buffer[readPosition];
@@ -330,12 +1082,13 @@ public class CircularObjectBuffer <ElementType> {
 					if (readPosition == buffer.length){
 						readPosition = 0;
 					}
+					notifyAll();
 					return result;
 				} else if (inputDone){
 					return null;
 				}
+				wait();
 			}
-			Thread.sleep(100);
 		}
 	}
 
@@ -372,8 +1125,10 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public int read(ElementType[] buf, int off, int len) throws InterruptedException {
-		while (true){
-			synchronized (this){
+		if (lockFree) return readSome(buf, off, len);
+		if (singleProducerSingleConsumer) return lockFreeRead(buf, off, len);
+		synchronized (this){
+			while (true){
 				int available = available();
 				if (available > 0){
 					int length = Math.min(len, available);
@@ -389,12 +1144,13 @@ public class CircularObjectBuffer <ElementType> {
 					if (readPosition == buffer.length) {
 						readPosition = 0;
 					}
+					notifyAll();
 					return length;
 				} else if (inputDone){
 					return -1;
 				}
+				wait();
 			}
-			Thread.sleep(100);
 		}
 	}
 
@@ -413,8 +1169,16 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public long skip(long n) throws InterruptedException, IllegalArgumentException {
-		while (true){
-			synchronized (this){
+		if (lockFree){
+			int skipped = readSome(null, 0, (int)Math.min(n, Integer.MAX_VALUE));
+			return (skipped == -1) ? 0 : skipped;
+		}
+		if (singleProducerSingleConsumer){
+			int skipped = lockFreeRead(null, 0, (int)Math.min(n, Integer.MAX_VALUE));
+			return (skipped == -1) ? 0 : skipped;
+		}
+		synchronized (this){
+			while (true){
 				int available = available();
 				if (available > 0){
 					int length = Math.min((int)n, available);
@@ -428,12 +1192,13 @@ public class CircularObjectBuffer <ElementType> {
 					if (readPosition == buffer.length) {
 						readPosition = 0;
 					}
+					notifyAll();
 					return length;
 				} else if (inputDone){
 					return 0;
 				}
+				wait();
 			}
-			Thread.sleep(100);
 		}
 	}
 
@@ -451,7 +1216,9 @@ public class CircularObjectBuffer <ElementType> {
 	public void done(){
 		synchronized (this){
 			inputDone = true;
+			notifyAll();
 		}
+		unparkReader();
 	}
 
 	/**
@@ -491,8 +1258,25 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public void write(ElementType[] buf, int off, int len) throws BufferOverflowException, IllegalStateException, InterruptedException {
-		while (len > 0){
-			synchronized (CircularObjectBuffer.this){
+		if (lockFree){
+			if (!blockingWrite){
+				if (lockFreePut(buf, off, len, true) < len) throw new BufferOverflowException("CircularObjectBuffer is full; cannot write " + len + " Objects");
+				return;
+			}
+			while (len > 0){
+				int written = lockFreePut(buf, off, len, false);
+				off += written;
+				len -= written;
+				if (written == 0) awaitWritable(false, 0);
+			}
+			return;
+		}
+		if (singleProducerSingleConsumer){
+			lockFreeWrite(buf, off, len);
+			return;
+		}
+		synchronized (this){
+			while (len > 0){
 				if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
 				int spaceLeft = spaceLeft();
 				while (infinite && spaceLeft < len){
@@ -518,9 +1302,11 @@ public class CircularObjectBuffer <ElementType> {
 				}
 				off += written;
 				len -= written;
-			}
-			if (len > 0){
-				Thread.sleep(100);
+				if (written > 0){
+					notifyAll();
+				} else if (len > 0){
+					wait();
+				}
 			}
 		}
 	}
@@ -541,9 +1327,24 @@ public class CircularObjectBuffer <ElementType> {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public void write(ElementType o) throws BufferOverflowException, IllegalStateException, InterruptedException {
-		boolean written = false;
-		while (!written){
-			synchronized (CircularObjectBuffer.this){
+		if (lockFree){
+			while (!putOne(o)){
+				if (!blockingWrite) throw new BufferOverflowException("CircularObjectBuffer is full; cannot write 1 Object");
+				awaitWritable(false, 0);
+			}
+			return;
+		}
+		if (singleProducerSingleConsumer){
+			writeSingle[0] = o;
+			try {
+				lockFreeWrite(writeSingle, 0, 1);
+			} finally {
+				writeSingle[0] = null;
+			}
+			return;
+		}
+		synchronized (this){
+			while (true){
 				if (inputDone) throw new IllegalStateException("CircularObjectBuffer.done() has been called, CircularObjectBuffer.write() failed.");
 				int spaceLeft = spaceLeft();
 				while (infinite && spaceLeft < 1){
@@ -557,12 +1358,95 @@ public class CircularObjectBuffer <ElementType> {
 					if (writePosition == buffer.length) {
 						writePosition = 0;
 					}
-					written = true;
+					notifyAll();
+					return;
 				}
+				wait();
 			}
-			if (!written){
-				Thread.sleep(100);
-			}
 		}
 	}
+
+	/**
+	 * Move the Objects that are available into a collection without waiting.
+	 * This method should be called by the consumer.
+	 * <p>
+	 * The Objects are taken with one lock, or one atomic update in a
+	 * lock free buffer.  If the collection refuses an Object by throwing an
+	 * exception, the exception is passed on and the refused Object and those
+	 * after it stay in the buffer.  In a lock free buffer where another
+	 * consumer has taken Objects in the meantime, they are put back at the
+	 * end of the buffer instead.
+	 *
+	 * @param c Collection to which to add the Objects.
+	 * @param maxElements Maximum number of Objects to move.
+	 * @return The number of Objects moved, zero if none were available.
+	 * @throws NullPointerException if the collection is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int drainTo(Collection<? super ElementType> c, int maxElements){
+		if (c == null) throw new NullPointerException();
+		return take(null, c, 0, maxElements);
+	}
+
+	/**
+	 * Get a single Object from this buffer, waiting up to the given time
+	 * for one to be available.  This method should be called by the consumer.
+	 *
+	 * @param timeout How long to wait.
+	 * @param unit Unit of the timeout.
+	 * @return The Object read, or null if there are no more objects
+	 *     or none became available in time.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ElementType poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return readOne(true, System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Add a single Object to this buffer, waiting up to the given
+	 * time for space to be available.  This method should be called by the producer.
+	 * An infinite buffer always has space.
+	 *
+	 * @param o Object to be written.
+	 * @param timeout How long to wait.
+	 * @param unit Unit of the timeout.
+	 * @return true if the Object was written, false if there was no space in time.
+	 * @throws IllegalStateException if done() has been called.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean offer(ElementType o, long timeout, TimeUnit unit) throws IllegalStateException, InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!putOne(o)){
+			if (!awaitWritable(true, deadline)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Fill this buffer with all the Objects from a collection.
+	 * This method should be called by the producer.
+	 * <p>
+	 * The Objects are written in the order of the collection's iterator
+	 * with one lock, or one atomic update in a lock free buffer, for each
+	 * run that fits in the buffer.
+	 * If the buffer allows blocking writes, this method will block until
+	 * all the data has been written rather than throw a BufferOverflowException.
+	 *
+	 * @param c Collection of Objects to be written
+	 * @throws BufferOverflowException if buffer does not allow blocking writes
+	 *   and the buffer is full.  If the exception is thrown, no data
+	 *   will have been written since the buffer was set to be non-blocking.
+	 * @throws IllegalStateException if done() has been called.
+	 * @throws InterruptedException if the write is interrupted.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@SuppressWarnings("unchecked") public void writeAll(Collection<? extends ElementType> c) throws BufferOverflowException, IllegalStateException, InterruptedException {
+		write((ElementType[])c.toArray());
+	}
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * Computes any number of digests and checksums of the data read from a stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Each buffer read from the underlying stream is given to every digest
+ * in turn while it is still in the processor cache, so several
+ * algorithms cost a single pass over the data:
+ * <pre>
+ * DigestingInputStream in = new DigestingInputStream(
+ *     new FileInputStream(file),
+ *     StreamDigest.getInstance("MD5"),
+ *     StreamDigest.getInstance("SHA-256"),
+ *     StreamDigest.getInstance("CRC32")
+ * );
+ * </pre>
+ *
+ * @see StreamDigest
+ * @see DigestingOutputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class DigestingInputStream extends FilterInputStream {
+
+	/**
+	 * Digests to update.
+	 */
+	private StreamDigest[] digests;
+
+	/**
+	 * Buffer used when reading a single byte.
+	 */
+	private byte[] oneByte = new byte[1];
+
+	/**
+	 * Create a stream that computes the given digests.
+	 *
+	 * @param in the underlying input stream.
+	 * @param digests the digests to update with the data read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public DigestingInputStream(InputStream in, StreamDigest... digests){
+		super(in);
+		this.digests = digests.clone();
+	}
+
+	/**
+	 * Reads the next byte of data from this input stream and
+	 * adds it to each digest.
+	 *
+	 * @return the next byte of data, or -1 if the end of the stream is reached.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read() throws IOException {
+		int c = in.read();
+		if (c == -1) return -1;
+		oneByte[0] = (byte)c;
+		update(oneByte, 0, 1);
+		return c;
+	}
+
+	/**
+	 * Reads up to length bytes of data from this input stream into an
+	 * array of bytes and adds them to each digest.
+	 *
+	 * @param bytes the buffer into which the data is read.
+	 * @param offset the start offset of the data.
+	 * @param length the maximum number of bytes read.
+	 * @return the number of bytes read, or -1 if the end of the stream is reached.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(byte[] bytes, int offset, int length) throws IOException {
+		int r = in.read(bytes, offset, length);
+		if (r > 0) update(bytes, offset, r);
+		return r;
+	}
+
+	/**
+	 * Reads and digests bytes rather than skipping them so that
+	 * the digests cover all of the data.
+	 *
+	 * @param n the number of bytes to skip.
+	 * @return the number of bytes skipped.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int)Math.min(n, 4096)];
+		long skipped = 0;
+		while (skipped < n){
+			int r = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			if (r == -1) break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Mark is not supported because data read again after a reset
+	 * would be digested twice.
+	 *
+	 * @return false
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Give bytes to each digest.
+	 *
+	 * @param bytes data.
+	 * @param offset index of the first byte.
+	 * @param length number of bytes.
+	 */
+	private void update(byte[] bytes, int offset, int length){
+		for (int i=0; i<digests.length; i++){
+			digests[i].update(bytes, offset, length);
+		}
+	}
+
+	/**
+	 * Get the digests computed by this stream.
+	 *
+	 * @return the digests in the order given to the constructor.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public StreamDigest[] getDigests(){
+		return digests.clone();
+	}
+
+	/**
+	 * Get the digest for an algorithm.
+	 *
+	 * @param algorithm name of the algorithm, such as "SHA-256".
+	 * @return the first digest with that algorithm, or null if there is none.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public StreamDigest getDigest(String algorithm){
+		for (int i=0; i<digests.length; i++){
+			if (digests[i].getAlgorithm().equalsIgnoreCase(algorithm)) return digests[i];
+		}
+		return null;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * Computes any number of digests and checksums of the data written to a stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Each buffer written is given to every digest in turn while it is
+ * still in the processor cache, and is then passed to the underlying
+ * stream, so several algorithms cost a single pass over the data.
+ *
+ * @see StreamDigest
+ * @see DigestingInputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+
+	/**
+	 * Digests to update.
+	 */
+	private StreamDigest[] digests;
+
+	/**
+	 * Buffer used when writing a single byte.
+	 */
+	private byte[] oneByte = new byte[1];
+
+	/**
+	 * Create a stream that computes the given digests.
+	 *
+	 * @param out the underlying output stream.
+	 * @param digests the digests to update with the data written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public DigestingOutputStream(OutputStream out, StreamDigest... digests){
+		super(out);
+		this.digests = digests.clone();
+	}
+
+	/**
+	 * Writes the specified byte to this output stream and adds
+	 * it to each digest.
+	 *
+	 * @param b the byte.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(int b) throws IOException {
+		out.write(b);
+		oneByte[0] = (byte)b;
+		update(oneByte, 0, 1);
+	}
+
+	/**
+	 * Writes length bytes from the specified byte array to this output
+	 * stream and adds them to each digest.
+	 *
+	 * @param bytes the data.
+	 * @param offset the start offset in the data.
+	 * @param length the number of bytes to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(byte[] bytes, int offset, int length) throws IOException {
+		out.write(bytes, offset, length);
+		update(bytes, offset, length);
+	}
+
+	/**
+	 * Give bytes to each digest.
+	 *
+	 * @param bytes data.
+	 * @param offset index of the first byte.
+	 * @param length number of bytes.
+	 */
+	private void update(byte[] bytes, int offset, int length){
+		for (int i=0; i<digests.length; i++){
+			digests[i].update(bytes, offset, length);
+		}
+	}
+
+	/**
+	 * Get the digests computed by this stream.
+	 *
+	 * @return the digests in the order given to the constructor.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public StreamDigest[] getDigests(){
+		return digests.clone();
+	}
+
+	/**
+	 * Get the digest for an algorithm.
+	 *
+	 * @param algorithm name of the algorithm, such as "SHA-256".
+	 * @return the first digest with that algorithm, or null if there is none.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public StreamDigest getDigest(String algorithm){
+		for (int i=0; i<digests.length; i++){
+			if (digests[i].getAlgorithm().equalsIgnoreCase(algorithm)) return digests[i];
+		}
+		return null;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.CharBuffer;
+
+/**
+ * A writer that escapes the characters written to it, as StringHelper's
+ * escape methods would, before passing them to another writer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * Characters that need no escape are passed on in runs, so a page
+ * rendered through this writer is not copied into an escaped String first:
+ * <pre>
+ * Writer html = new EscapingWriter(out, EscapingWriter.Format.HTML);
+ * html.write(userName);
+ * </pre>
+ *
+ * @see StringHelper#escapeHTML(CharSequence, Appendable)
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class EscapingWriter extends FilterWriter {
+
+	/**
+	 * Kinds of escaping.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public enum Format {
+		/**
+		 * As by {@link StringHelper#escapeHTML(String)}.
+		 */
+		HTML(StringHelper.HTML_ESCAPES, false),
+		/**
+		 * As by {@link StringHelper#escapeSQL(String)}.
+		 */
+		SQL(StringHelper.SQL_ESCAPES, false),
+		/**
+		 * As by {@link StringHelper#escapeJavaLiteral(String)}.
+		 */
+		JAVA_LITERAL(StringHelper.JAVA_LITERAL_ESCAPES, false),
+		/**
+		 * As by {@link StringHelper#escapeRegularExpressionLiteral(String)}.
+		 */
+		REGULAR_EXPRESSION_LITERAL(StringHelper.REGULAR_EXPRESSION_ESCAPES, true);
+
+		/**
+		 * Replacement for each ASCII character, or null.
+		 */
+		private String[] escapes;
+
+		/**
+		 * Whether characters beyond ASCII are escaped with a backslash.
+		 */
+		private boolean escapeOthers;
+
+		/**
+		 * Create a format.
+		 *
+		 * @param escapes replacement for each ASCII character, or null.
+		 * @param escapeOthers whether characters beyond ASCII are escaped with a backslash.
+		 */
+		private Format(String[] escapes, boolean escapeOthers){
+			this.escapes = escapes;
+			this.escapeOthers = escapeOthers;
+		}
+	}
+
+	/**
+	 * Kind of escaping done by this writer.
+	 */
+	private Format format;
+
+	/**
+	 * Buffer used when writing a single character.
+	 */
+	private char[] oneChar = new char[1];
+
+	/**
+	 * Create a writer that escapes characters in the given format.
+	 *
+	 * @param out writer to which escaped characters are passed.
+	 * @param format kind of escaping.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public EscapingWriter(Writer out, Format format){
+		super(out);
+		this.format = format;
+	}
+
+	/**
+	 * Get the kind of escaping done by this writer.
+	 *
+	 * @return the format.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Format getFormat(){
+		return format;
+	}
+
+	/**
+	 * Escape and write a single character.
+	 *
+	 * @param c character to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(int c) throws IOException {
+		oneChar[0] = (char)c;
+		write(oneChar, 0, 1);
+	}
+
+	/**
+	 * Escape and write part of an array of characters.
+	 *
+	 * @param cbuf characters to write.
+	 * @param off index of the first character to write.
+	 * @param len number of characters to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(char[] cbuf, int off, int len) throws IOException {
+		StringHelper.escape(CharBuffer.wrap(cbuf, off, len), 0, len, format.escapes, format.escapeOthers, out);
+	}
+
+	/**
+	 * Escape and write part of a string.
+	 *
+	 * @param str characters to write.
+	 * @param off index of the first character to write.
+	 * @param len number of characters to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(String str, int off, int len) throws IOException {
+		StringHelper.escape(str, off, off + len, format.escapes, format.escapeOthers, out);
+	}
+
+	/**
+	 * Escape and write characters.
+	 *
+	 * @param csq characters to write, or null to write "null".
+	 * @return this writer.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public Writer append(CharSequence csq) throws IOException {
+		if (csq == null) csq = "null";
+		StringHelper.escape(csq, 0, csq.length(), format.escapes, format.escapeOthers, out);
+		return this;
+	}
+
+	/**
+	 * Escape and write part of a sequence of characters.
+	 *
+	 * @param csq characters to write, or null to write part of "null".
+	 * @param start index of the first character to write.
+	 * @param end index after the last character to write.
+	 * @return this writer.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public Writer append(CharSequence csq, int start, int end) throws IOException {
+		if (csq == null) csq = "null";
+		if (start < 0 || start > end || end > csq.length()) throw new IndexOutOfBoundsException();
+		StringHelper.escape(csq, start, end, format.escapes, format.escapeOthers, out);
+		return this;
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Remembers the MD5 hashes of files so that files that have not
+ * changed do not have to be read again.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Each hash is stored with the absolute path, size, and last modified
+ * time of its file.  A hash is only returned while the file still has
+ * that size and modification time.  A hash is not remembered while its
+ * file was modified less than two seconds before it was hashed: file systems
+ * store modification times only to the second (or two), so the file could
+ * still change without its modification time changing.
+ * A cache may be kept in memory only,
+ * or loaded from and saved to a file so that it lasts between runs:
+ * <pre>
+ * FileHashCache cache = new FileHashCache(new File("hashes.txt"));
+ * FileHasher hasher = new FileHasher(cache);
+ * byte[][] hashes = hasher.getHashes(files);
+ * cache.save();
+ * </pre>
+ * Hashes computed by an MD5InputStream or MD5OutputStream while a file is
+ * read or written can be added with put().
+ * <p>
+ * A cache may be used by several threads at once.
+ *
+ * @see FileHasher
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class FileHashCache {
+
+	/**
+	 * Coarsest modification time resolution of common file systems (FAT), in milliseconds.
+	 */
+	static final long TIMESTAMP_GRANULARITY = 2000;
+
+	/**
+	 * A remembered hash and the state of the file when it was computed.
+	 */
+	private static class Entry {
+		/**
+		 * Size of the file in bytes.
+		 */
+		private long size;
+
+		/**
+		 * Last modified time of the file.
+		 */
+		private long modified;
+
+		/**
+		 * MD5 hash of the file.
+		 */
+		private byte[] hash;
+
+		/**
+		 * Create an entry.
+		 *
+		 * @param size size of the file in bytes.
+		 * @param modified last modified time of the file.
+		 * @param hash MD5 hash of the file.
+		 */
+		private Entry(long size, long modified, byte[] hash){
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * File in which the cache is saved, or null if it is only in memory.
+	 */
+	private File store;
+
+	/**
+	 * Entries by absolute path.
+	 */
+	private Map<String,Entry> entries = new HashMap<String,Entry>();
+
+	/**
+	 * Whether there are changes that have not been saved.
+	 */
+	private boolean changed = false;
+
+	/**
+	 * Create a cache that is kept only in memory.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public FileHashCache(){
+	}
+
+	/**
+	 * Create a cache that is saved in a file.  If the file
+	 * exists, the hashes in it are loaded.
+	 *
+	 * @param store file in which to save the cache.
+	 * @throws IOException if the file exists and can not be read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public FileHashCache(File store) throws IOException {
+		this.store = store;
+		if (store.exists()) load();
+	}
+
+	/**
+	 * Read the saved entries.  Lines that can not be understood are ignored.
+	 *
+	 * @throws IOException if the file can not be read.
+	 */
+	private void load() throws IOException {
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(store), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null){
+				String[] parts = line.split(" ", 4);
+				if (parts.length < 4) continue;
+				byte[] hash = fromHex(parts[0]);
+				if (hash == null) continue;
+				try {
+					entries.put(parts[3], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), hash));
+				} catch (NumberFormatException x){
+					// skip the line
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Convert 32 hex digits to 16 bytes.
+	 *
+	 * @param hex the hex digits.
+	 * @return the bytes or null if the string is not 32 hex digits.
+	 */
+	private static byte[] fromHex(String hex){
+		if (hex.length() != 32) return null;
+		byte[] bytes = new byte[16];
+		for (int i=0; i<16; i++){
+			int high = Character.digit(hex.charAt(i*2), 16);
+			int low = Character.digit(hex.charAt(i*2+1), 16);
+			if (high < 0 || low < 0) return null;
+			bytes[i] = (byte)((high << 4) | low);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Get the remembered hash of a file if the file has not changed.
+	 *
+	 * @param file the file.
+	 * @return a copy of the 16 byte MD5 hash, or null if it is not known.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] get(File file){
+		long modified = file.lastModified();
+		if (modified == 0) return null;
+		long size = file.length();
+		synchronized(entries){
+			Entry entry = entries.get(file.getAbsolutePath());
+			if (entry == null || entry.size != size || entry.modified != modified) return null;
+			return entry.hash.clone();
+		}
+	}
+
+	/**
+	 * Remember the hash of a file as it is now.  The hash must
+	 * have been computed from the current contents of the file.
+	 *
+	 * @param file the file.
+	 * @param hash the 16 byte MD5 hash of the file.
+	 * @throws IllegalArgumentException if the hash is not 16 bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void put(File file, byte[] hash){
+		put(file, file.length(), file.lastModified(), hash, System.currentTimeMillis());
+	}
+
+	/**
+	 * Remember the hash of a file as it was when the hash was computed.
+	 * Nothing is remembered if the file was modified within the timestamp
+	 * granularity of the time at which reading started; a later change in
+	 * that window could leave the size and modification time the same.
+	 *
+	 * @param file the file.
+	 * @param size size of the file in bytes when it was hashed.
+	 * @param modified last modified time of the file when it was hashed.
+	 * @param hash the 16 byte MD5 hash of the file.
+	 * @param hashed time at which reading the file for the hash started.
+	 * @throws IllegalArgumentException if the hash is not 16 bytes.
+	 */
+	void put(File file, long size, long modified, byte[] hash, long hashed){
+		if (hash.length != 16) throw new IllegalArgumentException("Not an MD5 hash: " + hash.length + " bytes");
+		if (modified == 0 || modified > hashed - TIMESTAMP_GRANULARITY) return;
+		synchronized(entries){
+			entries.put(file.getAbsolutePath(), new Entry(size, modified, hash.clone()));
+			changed = true;
+		}
+	}
+
+	/**
+	 * Forget the hash of a file.
+	 *
+	 * @param file the file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void remove(File file){
+		synchronized(entries){
+			if (entries.remove(file.getAbsolutePath()) != null) changed = true;
+		}
+	}
+
+	/**
+	 * Forget all hashes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void clear(){
+		synchronized(entries){
+			if (!entries.isEmpty()) changed = true;
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Get the number of remembered hashes.
+	 *
+	 * @return number of files in the cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int size(){
+		synchronized(entries){
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Save the cache to its file if it has changed since it was loaded
+	 * or last saved.  Nothing is done for a cache that is only in memory.
+	 * <p>
+	 * The new version is written to a temporary file which is then renamed
+	 * over the old one.  Where a file can be renamed over another, as on
+	 * Unix-like systems, the file is replaced all at once and a failure part
+	 * way through leaves the previous version.  Elsewhere the old file is
+	 * deleted first, and a failure between the two steps loses the cache.
+	 * <p>
+	 * Each hash is saved on its own line, so the hashes of files with
+	 * line breaks in their paths are not saved.
+	 *
+	 * @throws IOException if the file can not be written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void save() throws IOException {
+		if (store == null) return;
+		synchronized(entries){
+			if (!changed) return;
+			File temp = File.createTempFile("FileHashCache", null, store.getAbsoluteFile().getParentFile());
+			try {
+				Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+				try {
+					for (Map.Entry<String,Entry> mapEntry: entries.entrySet()){
+						// A line break would end the line early and the rest of
+						// the path could be read back as an entry for another file.
+						if (mapEntry.getKey().indexOf('\n') != -1 || mapEntry.getKey().indexOf('\r') != -1) continue;
+						Entry entry = mapEntry.getValue();
+						out.write(MD5.toHex(entry.hash) + " " + entry.size + " " + entry.modified + " " + mapEntry.getKey() + "\n");
+					}
+				} finally {
+					out.close();
+				}
+				if (!temp.renameTo(store)) FileHelper.move(temp, store, true);
+				temp = null;
+				changed = false;
+			} finally {
+				if (temp != null) temp.delete();
+			}
+		}
+	}
+}
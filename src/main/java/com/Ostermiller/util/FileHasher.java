@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compute the MD5 hashes of files, several files at once.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Large files are memory mapped a window at a time and hashed in place.
+ * Small files, for which mapping costs more than it saves, are read with
+ * a buffer.  When hashing many files, a Parallelizer hashes as many at
+ * once as the thread count allows.
+ * <p>
+ * With a FileHashCache, the hash of a file that has the same size and
+ * modification time as when it was last hashed is returned without
+ * reading the file, and new hashes are added to the cache.  Hashes of
+ * files modified in the last two seconds are not cached.
+ * <p>
+ * MD5.getHash(File) reads files through a stream; use a FileHasher to
+ * have them mapped.  Mapped windows are released only when they are
+ * garbage collected, and on some systems a file can not be deleted
+ * while part of it is mapped.
+ *
+ * @see FileHashCache
+ * @see MD5
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class FileHasher {
+
+	/**
+	 * Number of bytes mapped at once if not otherwise specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+	/**
+	 * Files smaller than this are read rather than mapped.
+	 */
+	private static final int MAP_THRESHOLD = 1 << 16;
+
+	/**
+	 * Size of the buffer used to read small files.
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * Maximum number of files hashed at once.
+	 */
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of bytes mapped at once.
+	 */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+
+	/**
+	 * Cache of hashes, or null.
+	 */
+	private FileHashCache cache;
+
+	/**
+	 * Create a hasher without a cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public FileHasher(){
+		this(null);
+	}
+
+	/**
+	 * Create a hasher that uses a cache.
+	 *
+	 * @param cache cache from which to get hashes of unchanged files and to which
+	 *     new hashes are added, or null for none.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public FileHasher(FileHashCache cache){
+		this.cache = cache;
+	}
+
+	/**
+	 * Set the maximum number of files hashed at once.
+	 * By default this is the number of available processors.
+	 *
+	 * @param threadCount number of threads, at least one.
+	 * @throws IllegalArgumentException if threadCount is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setThreadCount(int threadCount){
+		if (threadCount < 1) throw new IllegalArgumentException("Bad thread count: " + threadCount);
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Set the number of bytes of a large file that are mapped at once.
+	 *
+	 * @param windowSize number of bytes, at least one.
+	 * @throws IllegalArgumentException if windowSize is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setWindowSize(int windowSize){
+		if (windowSize < 1) throw new IllegalArgumentException("Bad window size: " + windowSize);
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Get the cache used by this hasher.
+	 *
+	 * @return the cache or null if there is none.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public FileHashCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Get the MD5 hash of a file.
+	 *
+	 * @param file the file to hash.
+	 * @return Array of 16 bytes, the hash of the contents of the file.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] getHash(File file) throws IOException {
+		if (cache == null) return hash(file, windowSize);
+		byte[] hash = cache.get(file);
+		if (hash != null) return hash;
+		long size = file.length();
+		long modified = file.lastModified();
+		long hashed = System.currentTimeMillis();
+		hash = hash(file, windowSize);
+		// Only remember the hash if the file did not change while it was read.
+		if (file.length() == size && file.lastModified() == modified){
+			cache.put(file, size, modified, hash, hashed);
+		}
+		return hash;
+	}
+
+	/**
+	 * Get the MD5 hash of a file as hex digits.
+	 *
+	 * @param file the file to hash.
+	 * @return 32-character hex representation of the hash.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getHashString(File file) throws IOException {
+		return MD5.toHex(getHash(file));
+	}
+
+	/**
+	 * Get the MD5 hashes of many files, hashing several at once.
+	 *
+	 * @param files the files to hash.
+	 * @return for each file, an array of the 16 bytes of its hash.
+	 * @throws IOException if an I/O error occurs with any of the files.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[][] getHashes(final File[] files) throws IOException {
+		final byte[][] hashes = new byte[files.length][];
+		if (files.length == 0) return hashes;
+		final Throwable[] errors = new Throwable[files.length];
+		Parallelizer parallelizer = new Parallelizer(threadCount);
+		try {
+			parallelizer.forEach(0, files.length, 1, new ParallelRangeBody(){
+				public void run(int start, int end){
+					for (int i=start; i<end; i++){
+						try {
+							hashes[i] = getHash(files[i]);
+						} catch (Throwable t){
+							errors[i] = t;
+						}
+					}
+				}
+			});
+		} catch (InterruptedException ix){
+			parallelizer.interrupt();
+			throw new InterruptedIOException(ix.getMessage());
+		}
+		for (int i=0; i<files.length; i++){
+			rethrow(errors[i]);
+		}
+		return hashes;
+	}
+
+	/**
+	 * Compute the MD5 hash of a file, mapping it if it is large.
+	 *
+	 * @param file the file to hash.
+	 * @param windowSize number of bytes to map at once.
+	 * @return Array of 16 bytes, the hash of the contents of the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static byte[] hash(File file, int windowSize) throws IOException {
+		MD5 md5 = new MD5();
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			if (size < MAP_THRESHOLD){
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1){
+					md5.update(buffer, 0, read);
+				}
+			} else {
+				for (long position = 0; position < size; position += windowSize){
+					ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+					md5.update(window);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return md5.getHash();
+	}
+
+	/**
+	 * Rethrow an exception caught in another thread.
+	 *
+	 * @param t exception to rethrow, or null.
+	 * @throws IOException if the exception was an IOException.
+	 */
+	private static void rethrow(Throwable t) throws IOException {
+		if (t == null) return;
+		if (t instanceof IOException) throw (IOException)t;
+		if (t instanceof RuntimeException) throw (RuntimeException)t;
+		if (t instanceof Error) throw (Error)t;
+		throw new RuntimeException(t);
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Recognizes HTML character entity references without creating a String
+ * for each one.  The names of the entities known to StringHelper are
+ * compiled into a trie that is walked one character at a time.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+final class HTMLEntityTrie {
+
+	/**
+	 * Most characters after the ampersand that are examined to decide
+	 * whether there is an entity, including the closing semicolon.
+	 * Numeric references with so many leading zeros that they are longer
+	 * are left as they are.
+	 */
+	static final int MAX_LENGTH = 32;
+
+	/**
+	 * Returned by decode() when the input ends before it can be known
+	 * whether there is an entity.
+	 */
+	static final int NEED_MORE = -2;
+
+	/**
+	 * For each node, the index in keys and targets of its first child.
+	 * The children of node i end where those of node i+1 begin.
+	 */
+	private static int[] offsets;
+
+	/**
+	 * Character leading to each child, sorted within each node.
+	 */
+	private static char[] keys;
+
+	/**
+	 * Node of each child.
+	 */
+	private static int[] targets;
+
+	/**
+	 * For each node, the character for the entity whose name leads to it, or -1.
+	 */
+	private static int[] values;
+
+	static {
+		// Visit the names in sorted order so that the children
+		// of each node are numbered and stored in order.
+		String[] names = StringHelper.htmlEntities.keySet().toArray(new String[0]);
+		Arrays.sort(names);
+		ArrayList<Map<Character,Integer>> children = new ArrayList<Map<Character,Integer>>();
+		children.add(new TreeMap<Character,Integer>());
+		ArrayList<Integer> nodeValues = new ArrayList<Integer>();
+		nodeValues.add(Integer.valueOf(-1));
+		for (String name: names){
+			int node = 0;
+			for (int i=0; i<name.length(); i++){
+				Character c = Character.valueOf(name.charAt(i));
+				Integer next = children.get(node).get(c);
+				if (next == null){
+					next = Integer.valueOf(children.size());
+					children.get(node).put(c, next);
+					children.add(new TreeMap<Character,Integer>());
+					nodeValues.add(Integer.valueOf(-1));
+				}
+				node = next.intValue();
+			}
+			nodeValues.set(node, StringHelper.htmlEntities.get(name));
+		}
+		int nodeCount = children.size();
+		offsets = new int[nodeCount + 1];
+		keys = new char[nodeCount - 1];
+		targets = new int[nodeCount - 1];
+		values = new int[nodeCount];
+		int position = 0;
+		for (int node=0; node<nodeCount; node++){
+			offsets[node] = position;
+			values[node] = nodeValues.get(node).intValue();
+			for (Map.Entry<Character,Integer> child: children.get(node).entrySet()){
+				keys[position] = child.getKey().charValue();
+				targets[position] = child.getValue().intValue();
+				position++;
+			}
+		}
+		offsets[nodeCount] = position;
+	}
+
+	/**
+	 * Not instantiated.
+	 */
+	private HTMLEntityTrie(){
+	}
+
+	/**
+	 * Find the child of a node for a character.
+	 *
+	 * @param node a node.
+	 * @param c next character of the name.
+	 * @return the child or -1 if there is none.
+	 */
+	private static int child(int node, char c){
+		int low = offsets[node];
+		int high = offsets[node+1] - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			char key = keys[mid];
+			if (key < c){
+				low = mid + 1;
+			} else if (key > c){
+				high = mid - 1;
+			} else {
+				return targets[mid];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decode the entity that follows an ampersand.  Named entities,
+	 * decimal references (&amp;#931;) and hexadecimal references
+	 * (&amp;#x3A3;) up to the largest Unicode code point are recognized.
+	 *
+	 * @param s characters.
+	 * @param start index of the character after the ampersand.
+	 * @param end index after the last available character.
+	 * @param codePoint set to the code point of the entity, if there is one.
+	 * @return index after the closing semicolon, -1 if there is no entity, or
+	 *     NEED_MORE if more characters are needed to know.
+	 */
+	static int decode(CharSequence s, int start, int end, int[] codePoint){
+		int limit = Math.min(end, start + MAX_LENGTH);
+		// If the input was cut short, the entity may yet be completed
+		int notFound = limit < start + MAX_LENGTH ? NEED_MORE : -1;
+		int i = start;
+		if (i >= limit) return notFound;
+		if (s.charAt(i) == '#'){
+			i++;
+			int radix = 10;
+			if (i < limit && (s.charAt(i) == 'x' || s.charAt(i) == 'X')){
+				radix = 16;
+				i++;
+			}
+			int digitsStart = i;
+			int value = 0;
+			for (; i<limit; i++){
+				char c = s.charAt(i);
+				if (c == ';'){
+					if (i == digitsStart) return -1;
+					// A lone surrogate is not a character
+					if (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) return -1;
+					codePoint[0] = value;
+					return i + 1;
+				}
+				int digit = Character.digit(c, radix);
+				if (digit < 0 || c > 'z') return -1;
+				value = value * radix + digit;
+				if (value > Character.MAX_CODE_POINT) return -1;
+			}
+		} else {
+			int node = 0;
+			for (; i<limit; i++){
+				char c = s.charAt(i);
+				if (c == ';'){
+					if (values[node] == -1) return -1;
+					codePoint[0] = values[node];
+					return i + 1;
+				}
+				node = child(node, c);
+				if (node == -1) return -1;
+			}
+		}
+		return notFound;
+	}
+
+	/**
+	 * Append a code point as one or two characters.
+	 *
+	 * @param codePoint a Unicode code point.
+	 * @param out destination.
+	 * @throws IOException if the destination throws one.
+	 */
+	static void append(int codePoint, Appendable out) throws IOException {
+		if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT){
+			out.append((char)codePoint);
+		} else {
+			out.append(highSurrogate(codePoint));
+			out.append(lowSurrogate(codePoint));
+		}
+	}
+
+	/**
+	 * Get the first character of a supplementary code point in UTF-16.
+	 *
+	 * @param codePoint a code point above 0xFFFF.
+	 * @return the high surrogate.
+	 */
+	static char highSurrogate(int codePoint){
+		return (char)(((codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT) >>> 10) + Character.MIN_HIGH_SURROGATE);
+	}
+
+	/**
+	 * Get the second character of a supplementary code point in UTF-16.
+	 *
+	 * @param codePoint a code point above 0xFFFF.
+	 * @return the low surrogate.
+	 */
+	static char lowSurrogate(int codePoint){
+		return (char)(((codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT) & 0x3ff) + Character.MIN_LOW_SURROGATE);
+	}
+}
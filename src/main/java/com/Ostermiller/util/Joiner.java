@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Joins strings with a delimiter between them, writing straight into
+ * any Appendable, such as a StringBuilder or a Writer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * As with StringHelper.join(), a null part is joined as an empty string
+ * unless the joiner is told to skip nulls or to use other text for them:
+ * <pre>
+ * Joiner.on(", ").skipNulls().appendTo(writer, names);
+ * </pre>
+ * <p>
+ * A joiner does not change after it is created and may be shared by threads.
+ *
+ * @see StringHelper#join(String[], String)
+ * @see Splitter
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public final class Joiner {
+
+	/**
+	 * Text between parts.
+	 */
+	private final String delimiter;
+
+	/**
+	 * Text for a null part, or null to skip null parts.
+	 */
+	private final String nullText;
+
+	/**
+	 * Create a joiner.
+	 *
+	 * @param delimiter text between parts.
+	 * @param nullText text for a null part, or null to skip null parts.
+	 */
+	private Joiner(String delimiter, String nullText){
+		this.delimiter = delimiter;
+		this.nullText = nullText;
+	}
+
+	/**
+	 * Get a joiner that puts the given delimiter between parts.
+	 *
+	 * @param delimiter text between parts.
+	 * @return a joiner.
+	 * @throws NullPointerException if the delimiter is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Joiner on(String delimiter){
+		if (delimiter == null) throw new NullPointerException();
+		return new Joiner(delimiter, "");
+	}
+
+	/**
+	 * Get a joiner like this one that leaves out null parts
+	 * along with their delimiters.
+	 *
+	 * @return a joiner.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Joiner skipNulls(){
+		return new Joiner(delimiter, null);
+	}
+
+	/**
+	 * Get a joiner like this one that writes the given text for null parts.
+	 *
+	 * @param text text for a null part.
+	 * @return a joiner.
+	 * @throws NullPointerException if the text is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Joiner useForNull(String text){
+		if (text == null) throw new NullPointerException();
+		return new Joiner(delimiter, text);
+	}
+
+	/**
+	 * Append parts with delimiters between them.
+	 *
+	 * @param out destination.
+	 * @param parts text to join.
+	 * @return the destination.
+	 * @throws IOException if the destination throws one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <A extends Appendable> A appendTo(A out, CharSequence... parts) throws IOException {
+		boolean first = true;
+		for (int i=0; i<parts.length; i++){
+			first = append(out, parts[i], first);
+		}
+		return out;
+	}
+
+	/**
+	 * Append parts with delimiters between them.
+	 *
+	 * @param out destination.
+	 * @param parts text to join.
+	 * @return the destination.
+	 * @throws IOException if the destination throws one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <A extends Appendable> A appendTo(A out, Iterable<? extends CharSequence> parts) throws IOException {
+		boolean first = true;
+		for (Iterator<? extends CharSequence> i = parts.iterator(); i.hasNext();){
+			first = append(out, i.next(), first);
+		}
+		return out;
+	}
+
+	/**
+	 * Append one part and the delimiter before it.
+	 *
+	 * @param out destination.
+	 * @param part text to append.
+	 * @param first whether nothing has been appended yet.
+	 * @return whether nothing has been appended yet after this part.
+	 * @throws IOException if the destination throws one.
+	 */
+	private boolean append(Appendable out, CharSequence part, boolean first) throws IOException {
+		if (part == null){
+			if (nullText == null) return first;
+			part = nullText;
+		}
+		if (!first) out.append(delimiter);
+		out.append(part);
+		return false;
+	}
+
+	/**
+	 * Join parts into a string.
+	 *
+	 * @param parts text to join.
+	 * @return the joined text.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String join(CharSequence... parts){
+		int length = 0;
+		for (int i=0; i<parts.length; i++){
+			CharSequence part = parts[i] != null ? parts[i] : nullText;
+			if (part != null) length += part.length() + delimiter.length();
+		}
+		try {
+			return appendTo(new StringBuilder(length), parts).toString();
+		} catch (IOException iox){
+			// Can't happen when appending to a StringBuilder.
+			throw new RuntimeException(iox);
+		}
+	}
+
+	/**
+	 * Join parts into a string.
+	 *
+	 * @param parts text to join.
+	 * @return the joined text.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String join(Iterable<? extends CharSequence> parts){
+		try {
+			return appendTo(new StringBuilder(), parts).toString();
+		} catch (IOException iox){
+			// Can't happen when appending to a StringBuilder.
+			throw new RuntimeException(iox);
+		}
+	}
+}
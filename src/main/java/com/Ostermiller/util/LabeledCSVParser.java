@@ -304,6 +304,33 @@ public class LabeledCSVParser implements CSVParse {
 		return (labelMap.get(label)).intValue();
 	}
 
+	/**
+	 * Get typed access to only the columns with the given labels.
+	 * The labels are looked up once, and the position of each label
+	 * in the arguments becomes its column handle in the projection.
+	 * A label that is not in the file gives a column that is never present.
+	 * <p>
+	 * The projection reads the rest of the lines from this parser.
+	 *
+	 * @param labels the field names of the wanted columns.
+	 * @return a projection positioned before the next line.
+	 * @throws IOException if an IO error occurs while reading the labels.
+	 * @throws IllegalArgumentException if a label is given more than once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CSVProjection getProjection(String... labels) throws IOException {
+		int[] fieldIndexes = new int[labels.length];
+		for (int i = 0; i < labels.length; i++){
+			fieldIndexes[i] = getLabelIdx(labels[i]);
+			for (int j = 0; j < i; j++){
+				if (labels[j].equals(labels[i])) throw new IllegalArgumentException("Label given more than once: " + labels[i]);
+			}
+		}
+		lastLine = null;
+		return new CSVProjection(parse, fieldIndexes);
+	}
+
 	/**
 	 * Given the label for the column, get the column from the last line that
 	 * was read.  If the column cannot be found in the line, null is returned.
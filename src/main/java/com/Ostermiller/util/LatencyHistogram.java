@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Counts of non-negative values, such as times in nanoseconds, from which
+ * percentiles can be read while values are still being recorded.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * Values are counted in buckets whose width grows with the value, in
+ * the manner of an HDR histogram.  Each power of two is split into sixteen
+ * buckets, so a value read back from the histogram is within about six
+ * percent of the values that were recorded.  Values of 2<sup>40</sup>
+ * or more share the last bucket, although the maximum is kept exactly.
+ * <p>
+ * Recording a value takes a few atomic updates and no locks, so many
+ * threads may record at once.  Values read while others are recorded
+ * may not include the values being recorded.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits of each value that select a bucket within a power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * Number of buckets in each power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Values with more bits than this share the last bucket.
+	 */
+	private static final int VALUE_BITS = 40;
+
+	/**
+	 * Count of values in each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(bucket((1L << VALUE_BITS) - 1) + 1);
+
+	/**
+	 * Number of values recorded.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Sum of the values recorded.
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * Largest value recorded.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Create an empty histogram.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public LatencyHistogram(){
+		// No values yet
+	}
+
+	/**
+	 * Get the bucket in which a value is counted.
+	 *
+	 * @param value non-negative value.
+	 * @return index of the bucket.
+	 */
+	private static int bucket(long value){
+		if (value < (SUB_BUCKETS << 1)) return (int)value;
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		if (shift > VALUE_BITS - 1 - SUB_BUCKET_BITS){
+			shift = VALUE_BITS - 1 - SUB_BUCKET_BITS;
+			value = (1L << VALUE_BITS) - 1;
+		}
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int)(value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Get the largest value that is counted in a bucket.
+	 *
+	 * @param bucket index of the bucket.
+	 * @return largest value in the bucket.
+	 */
+	private static long highestValue(int bucket){
+		if (bucket < (SUB_BUCKETS << 1)) return bucket;
+		int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+		long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value value to record, negative values are recorded as zero.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void record(long value){
+		if (value < 0) value = 0;
+		counts.incrementAndGet(bucket(value));
+		total.addAndGet(value);
+		long largest;
+		while (value > (largest = max.get()) && !max.compareAndSet(largest, value)){
+			// Another thread changed the maximum, check again.
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Get the number of values recorded.
+	 *
+	 * @return number of values.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getCount(){
+		return count.get();
+	}
+
+	/**
+	 * Get the largest value recorded.
+	 *
+	 * @return largest value, or zero if no values have been recorded.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getMax(){
+		return max.get();
+	}
+
+	/**
+	 * Get the mean of the values recorded.
+	 *
+	 * @return mean, or zero if no values have been recorded.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getMean(){
+		long n = count.get();
+		if (n == 0) return 0;
+		return (double)total.get() / n;
+	}
+
+	/**
+	 * Get the value at or below which the given percentage of the recorded values fall.
+	 * The value returned is the largest value in the bucket in which that
+	 * percentile falls, but not more than the maximum.
+	 *
+	 * @param percentile percentage of values from 0 to 100.
+	 * @return value at the percentile, or zero if no values have been recorded.
+	 * @throws IllegalArgumentException if the percentile is not from 0 to 100.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getValueAtPercentile(double percentile){
+		if (!(percentile >= 0 && percentile <= 100)) throw new IllegalArgumentException("Bad percentile: " + percentile);
+		long n = 0;
+		for (int i=0; i<counts.length(); i++){
+			n += counts.get(i);
+		}
+		if (n == 0) return 0;
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i=0; i<counts.length(); i++){
+			seen += counts.get(i);
+			if (seen >= rank){
+				// The last bucket has no upper bound other than the maximum.
+				if (i == counts.length() - 1) return max.get();
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Get a summary of the values recorded.
+	 *
+	 * @return count, mean, median, 99th percentile, and maximum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public String toString(){
+		return "count=" + getCount() + " mean=" + (long)getMean() + " p50=" + getValueAtPercentile(50) + " p99=" + getValueAtPercentile(99) + " max=" + getMax();
+	}
+}
@@ -27,6 +27,8 @@
 package com.Ostermiller.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * MD5 hash generator.
@@ -96,14 +98,22 @@ public class MD5 {
 		if (!finalState.valid) {
 			finalState.copy(workingState);
 			long bitCount = finalState.bitCount;
-			// Compute the number of left over bits
+			byte[] buffer = finalState.buffer;
+			// Compute the number of left over bytes
 			int leftOver = (int) (((bitCount >>> 3)) & 0x3f);
-			// Compute the amount of padding to add based on number of left over bits.
-			int padlen = (leftOver < 56) ? (56 - leftOver) : (120 - leftOver);
-			// add the padding
-			update(finalState, padding, 0, padlen);
+			// add the padding, using another block if the length does not fit in this one
+			buffer[leftOver] = (byte) 0x80;
+			if (leftOver >= 56) {
+				fill(buffer, leftOver + 1, 64);
+				transform(finalState.state, buffer, 0);
+				leftOver = -1;
+			}
+			fill(buffer, leftOver + 1, 56);
 			// add the length (computed before padding was added)
-			update(finalState, encode(bitCount), 0, 8);
+			for (int i = 0; i < 8; i++) {
+				buffer[56 + i] = (byte) (bitCount >>> (i * 8));
+			}
+			transform(finalState.state, buffer, 0);
 			finalState.valid = true;
 		}
 		// make a copy of the hash before returning it.
@@ -213,10 +223,7 @@ public class MD5 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String getHashString(File f) throws IOException {
-		InputStream is = new FileInputStream(f);
-		String hash = getHashString(is);
-		is.close();
-		return hash;
+		return toHex(getHash(f));
 	}
 
 	/**
@@ -338,16 +345,17 @@ public class MD5 {
 		int index = (int) (state.bitCount >>> 3) & 0x3f;
 
 		// add the length to the count (translate bytes to bits)
-		state.bitCount += length << 3;
+		state.bitCount += ((long) length) << 3;
 
 		int partlen = 64 - index;
 
 		int i = 0;
 		if (length >= partlen) {
 			System.arraycopy(buffer, offset, state.buffer, index, partlen);
-			transform(state, decode(state.buffer, 64, 0));
+			transform(state.state, state.buffer, 0);
+			// hash whole blocks straight from the caller's array
 			for (i = partlen; (i + 63) < length; i+= 64){
-				transform(state, decode(buffer, 64, i));
+				transform(state.state, buffer, offset + i);
 			}
 			index = 0;
 		}
@@ -410,9 +418,53 @@ public class MD5 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public void update (byte b) {
-		byte buffer[] = new byte[1];
-		buffer[0] = b;
-		update(buffer, 1);
+		finalState.valid = false;
+		MD5State state = workingState;
+		int index = (int) (state.bitCount >>> 3) & 0x3f;
+		state.bitCount += 8;
+		state.buffer[index] = b;
+		if (index == 63) {
+			transform(state.state, state.buffer, 0);
+		}
+	}
+
+	/**
+	 * Update this hash with the remaining bytes in a buffer.
+	 * The position of the buffer is advanced to its limit.
+	 * <p>
+	 * Bytes are hashed where they are, so a direct or memory mapped
+	 * buffer is not copied into an array.
+	 *
+	 * @param buffer bytes to be hashed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void update (ByteBuffer buffer) {
+		int length = buffer.remaining();
+		if (buffer.hasArray()) {
+			update(workingState, buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+			buffer.position(buffer.limit());
+			return;
+		}
+		finalState.valid = false;
+		MD5State state = workingState;
+		int index = (int) (state.bitCount >>> 3) & 0x3f;
+		state.bitCount += ((long) length) << 3;
+		if (index > 0) {
+			int partlen = Math.min(64 - index, length);
+			buffer.get(state.buffer, index, partlen);
+			if (index + partlen < 64) return;
+			transform(state.state, state.buffer, 0);
+		}
+		// words are read in little endian order, without changing the caller's buffer
+		ByteBuffer words = (buffer.order() == ByteOrder.LITTLE_ENDIAN) ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int position = buffer.position();
+		int limit = buffer.limit();
+		for (; position + 64 <= limit; position += 64) {
+			transform(state.state, words, position);
+		}
+		buffer.position(position);
+		buffer.get(state.buffer, 0, limit - position);
 	}
 
 	/**
@@ -458,30 +510,6 @@ public class MD5 {
 	 */
 	private MD5State finalState = new MD5State();
 
-	/**
-	 * Temporary buffer cached here for performance reasons.
-	 *
-	 * @since ostermillerutils 1.00.00
-	 */
-	private int[] decodeBuffer = new int[16];
-
-	/**
-	 * 64 bytes of padding that can be added if the length
-	 * is not divisible by 64.
-	 *
-	 * @since ostermillerutils 1.00.00
-	 */
-	private static final byte padding[] = {
-		(byte) 0x80, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-	};
-
 	/**
 	 * Contains internal state of the MD5 class.
 	 * Passes MD5 test suite as defined in RFC1321.
@@ -561,7 +589,7 @@ public class MD5 {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static String toHex(byte hash[]){
+	static String toHex(byte hash[]){
 		StringBuffer buf = new StringBuffer(hash.length * 2);
 		for (byte element: hash) {
 			int intVal = element & 0xff;
@@ -611,17 +639,17 @@ public class MD5 {
 		return a + b;
 	}
 
-	private static byte[] encode(long l){
-		byte[] out = new byte[8];
-		out[0] = (byte) (l & 0xff);
-		out[1] = (byte) ((l >>> 8) & 0xff);
-		out[2] = (byte) ((l >>> 16) & 0xff);
-		out[3] = (byte) ((l >>> 24) & 0xff);
-		out[4] = (byte) ((l >>> 32) & 0xff);
-		out[5] = (byte) ((l >>> 40) & 0xff);
-		out[6] = (byte) ((l >>> 48) & 0xff);
-		out[7] = (byte) ((l >>> 56) & 0xff);
-		return out;
+	/**
+	 * Set part of an array to zero.
+	 *
+	 * @param buffer array to clear.
+	 * @param from first index to clear.
+	 * @param to index after the last to clear.
+	 */
+	private static void fill(byte[] buffer, int from, int to){
+		for (int i = from; i < to; i++) {
+			buffer[i] = 0;
+		}
 	}
 
 	private static byte[] encode(int input[], int len){
@@ -636,100 +664,138 @@ public class MD5 {
 		return out;
 	}
 
-	private int[] decode(byte buffer[], int len, int offset){
-		int i, j;
-		for (i = j = 0; j < len; i++, j += 4) {
-			decodeBuffer[i] = (
-				(buffer[j + offset] & 0xff)) |
-				(((buffer[j + 1 + offset] & 0xff)) << 8) |
-				(((buffer[j + 2 + offset] & 0xff)) << 16) |
-				(((buffer[j + 3 + offset] & 0xff)) << 24
-			);
-		}
-		return decodeBuffer;
+	/**
+	 * Read a little endian word.
+	 *
+	 * @param buffer bytes.
+	 * @param offset index of the low byte of the word.
+	 * @return the word.
+	 */
+	private static int word(byte buffer[], int offset){
+		return (buffer[offset] & 0xff) |
+			((buffer[offset + 1] & 0xff) << 8) |
+			((buffer[offset + 2] & 0xff) << 16) |
+			(buffer[offset + 3] << 24);
 	}
 
-	private static void transform(MD5State state, int[] x){
-		int a = state.state[0];
-		int b = state.state[1];
-		int c = state.state[2];
-		int d = state.state[3];
+	/**
+	 * Hash a 64 byte block from an array.
+	 *
+	 * @param state the four words of state to update.
+	 * @param buffer bytes to hash.
+	 * @param offset index of the first byte of the block.
+	 */
+	private static void transform(int[] state, byte buffer[], int offset){
+		transform(state,
+			word(buffer, offset), word(buffer, offset + 4), word(buffer, offset + 8), word(buffer, offset + 12),
+			word(buffer, offset + 16), word(buffer, offset + 20), word(buffer, offset + 24), word(buffer, offset + 28),
+			word(buffer, offset + 32), word(buffer, offset + 36), word(buffer, offset + 40), word(buffer, offset + 44),
+			word(buffer, offset + 48), word(buffer, offset + 52), word(buffer, offset + 56), word(buffer, offset + 60)
+		);
+	}
+
+	/**
+	 * Hash a 64 byte block from a buffer.
+	 *
+	 * @param state the four words of state to update.
+	 * @param buffer bytes to hash, in little endian order.
+	 * @param offset index of the first byte of the block.
+	 */
+	private static void transform(int[] state, ByteBuffer buffer, int offset){
+		transform(state,
+			buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+			buffer.getInt(offset + 16), buffer.getInt(offset + 20), buffer.getInt(offset + 24), buffer.getInt(offset + 28),
+			buffer.getInt(offset + 32), buffer.getInt(offset + 36), buffer.getInt(offset + 40), buffer.getInt(offset + 44),
+			buffer.getInt(offset + 48), buffer.getInt(offset + 52), buffer.getInt(offset + 56), buffer.getInt(offset + 60)
+		);
+	}
+
+	/**
+	 * Hash the sixteen words of a block.  The words are passed
+	 * separately so that they stay in registers rather than an array.
+	 */
+	private static void transform(int[] state, int x0, int x1, int x2, int x3, int x4, int x5, int x6, int x7,
+			int x8, int x9, int x10, int x11, int x12, int x13, int x14, int x15){
+		int a = state[0];
+		int b = state[1];
+		int c = state[2];
+		int d = state[3];
 
 		/* Round 1 */
-		a = FF (a, b, c, d, x[ 0],   7, 0xd76aa478); /* 1 */
-		d = FF (d, a, b, c, x[ 1],  12, 0xe8c7b756); /* 2 */
-		c = FF (c, d, a, b, x[ 2],  17, 0x242070db); /* 3 */
-		b = FF (b, c, d, a, x[ 3],  22, 0xc1bdceee); /* 4 */
-		a = FF (a, b, c, d, x[ 4],   7, 0xf57c0faf); /* 5 */
-		d = FF (d, a, b, c, x[ 5],  12, 0x4787c62a); /* 6 */
-		c = FF (c, d, a, b, x[ 6],  17, 0xa8304613); /* 7 */
-		b = FF (b, c, d, a, x[ 7],  22, 0xfd469501); /* 8 */
-		a = FF (a, b, c, d, x[ 8],   7, 0x698098d8); /* 9 */
-		d = FF (d, a, b, c, x[ 9],  12, 0x8b44f7af); /* 10 */
-		c = FF (c, d, a, b, x[10],  17, 0xffff5bb1); /* 11 */
-		b = FF (b, c, d, a, x[11],  22, 0x895cd7be); /* 12 */
-		a = FF (a, b, c, d, x[12],   7, 0x6b901122); /* 13 */
-		d = FF (d, a, b, c, x[13],  12, 0xfd987193); /* 14 */
-		c = FF (c, d, a, b, x[14],  17, 0xa679438e); /* 15 */
-		b = FF (b, c, d, a, x[15],  22, 0x49b40821); /* 16 */
+		a = FF (a, b, c, d,  x0,   7, 0xd76aa478); /* 1 */
+		d = FF (d, a, b, c,  x1,  12, 0xe8c7b756); /* 2 */
+		c = FF (c, d, a, b,  x2,  17, 0x242070db); /* 3 */
+		b = FF (b, c, d, a,  x3,  22, 0xc1bdceee); /* 4 */
+		a = FF (a, b, c, d,  x4,   7, 0xf57c0faf); /* 5 */
+		d = FF (d, a, b, c,  x5,  12, 0x4787c62a); /* 6 */
+		c = FF (c, d, a, b,  x6,  17, 0xa8304613); /* 7 */
+		b = FF (b, c, d, a,  x7,  22, 0xfd469501); /* 8 */
+		a = FF (a, b, c, d,  x8,   7, 0x698098d8); /* 9 */
+		d = FF (d, a, b, c,  x9,  12, 0x8b44f7af); /* 10 */
+		c = FF (c, d, a, b, x10,  17, 0xffff5bb1); /* 11 */
+		b = FF (b, c, d, a, x11,  22, 0x895cd7be); /* 12 */
+		a = FF (a, b, c, d, x12,   7, 0x6b901122); /* 13 */
+		d = FF (d, a, b, c, x13,  12, 0xfd987193); /* 14 */
+		c = FF (c, d, a, b, x14,  17, 0xa679438e); /* 15 */
+		b = FF (b, c, d, a, x15,  22, 0x49b40821); /* 16 */
 
 		/* Round 2 */
-		a = GG (a, b, c, d, x[ 1],   5, 0xf61e2562); /* 17 */
-		d = GG (d, a, b, c, x[ 6],   9, 0xc040b340); /* 18 */
-		c = GG (c, d, a, b, x[11],  14, 0x265e5a51); /* 19 */
-		b = GG (b, c, d, a, x[ 0],  20, 0xe9b6c7aa); /* 20 */
-		a = GG (a, b, c, d, x[ 5],   5, 0xd62f105d); /* 21 */
-		d = GG (d, a, b, c, x[10],   9, 0x02441453); /* 22 */
-		c = GG (c, d, a, b, x[15],  14, 0xd8a1e681); /* 23 */
-		b = GG (b, c, d, a, x[ 4],  20, 0xe7d3fbc8); /* 24 */
-		a = GG (a, b, c, d, x[ 9],   5, 0x21e1cde6); /* 25 */
-		d = GG (d, a, b, c, x[14],   9, 0xc33707d6); /* 26 */
-		c = GG (c, d, a, b, x[ 3],  14, 0xf4d50d87); /* 27 */
-		b = GG (b, c, d, a, x[ 8],  20, 0x455a14ed); /* 28 */
-		a = GG (a, b, c, d, x[13],   5, 0xa9e3e905); /* 29 */
-		d = GG (d, a, b, c, x[ 2],   9, 0xfcefa3f8); /* 30 */
-		c = GG (c, d, a, b, x[ 7],  14, 0x676f02d9); /* 31 */
-		b = GG (b, c, d, a, x[12],  20, 0x8d2a4c8a); /* 32 */
+		a = GG (a, b, c, d,  x1,   5, 0xf61e2562); /* 17 */
+		d = GG (d, a, b, c,  x6,   9, 0xc040b340); /* 18 */
+		c = GG (c, d, a, b, x11,  14, 0x265e5a51); /* 19 */
+		b = GG (b, c, d, a,  x0,  20, 0xe9b6c7aa); /* 20 */
+		a = GG (a, b, c, d,  x5,   5, 0xd62f105d); /* 21 */
+		d = GG (d, a, b, c, x10,   9, 0x02441453); /* 22 */
+		c = GG (c, d, a, b, x15,  14, 0xd8a1e681); /* 23 */
+		b = GG (b, c, d, a,  x4,  20, 0xe7d3fbc8); /* 24 */
+		a = GG (a, b, c, d,  x9,   5, 0x21e1cde6); /* 25 */
+		d = GG (d, a, b, c, x14,   9, 0xc33707d6); /* 26 */
+		c = GG (c, d, a, b,  x3,  14, 0xf4d50d87); /* 27 */
+		b = GG (b, c, d, a,  x8,  20, 0x455a14ed); /* 28 */
+		a = GG (a, b, c, d, x13,   5, 0xa9e3e905); /* 29 */
+		d = GG (d, a, b, c,  x2,   9, 0xfcefa3f8); /* 30 */
+		c = GG (c, d, a, b,  x7,  14, 0x676f02d9); /* 31 */
+		b = GG (b, c, d, a, x12,  20, 0x8d2a4c8a); /* 32 */
 
 		/* Round 3 */
-		a = HH (a, b, c, d, x[ 5],   4, 0xfffa3942); /* 33 */
-		d = HH (d, a, b, c, x[ 8],  11, 0x8771f681); /* 34 */
-		c = HH (c, d, a, b, x[11],  16, 0x6d9d6122); /* 35 */
-		b = HH (b, c, d, a, x[14],  23, 0xfde5380c); /* 36 */
-		a = HH (a, b, c, d, x[ 1],   4, 0xa4beea44); /* 37 */
-		d = HH (d, a, b, c, x[ 4],  11, 0x4bdecfa9); /* 38 */
-		c = HH (c, d, a, b, x[ 7],  16, 0xf6bb4b60); /* 39 */
-		b = HH (b, c, d, a, x[10],  23, 0xbebfbc70); /* 40 */
-		a = HH (a, b, c, d, x[13],   4, 0x289b7ec6); /* 41 */
-		d = HH (d, a, b, c, x[ 0],  11, 0xeaa127fa); /* 42 */
-		c = HH (c, d, a, b, x[ 3],  16, 0xd4ef3085); /* 43 */
-		b = HH (b, c, d, a, x[ 6],  23, 0x04881d05); /* 44 */
-		a = HH (a, b, c, d, x[ 9],   4, 0xd9d4d039); /* 45 */
-		d = HH (d, a, b, c, x[12],  11, 0xe6db99e5); /* 46 */
-		c = HH (c, d, a, b, x[15],  16, 0x1fa27cf8); /* 47 */
-		b = HH (b, c, d, a, x[ 2],  23, 0xc4ac5665); /* 48 */
+		a = HH (a, b, c, d,  x5,   4, 0xfffa3942); /* 33 */
+		d = HH (d, a, b, c,  x8,  11, 0x8771f681); /* 34 */
+		c = HH (c, d, a, b, x11,  16, 0x6d9d6122); /* 35 */
+		b = HH (b, c, d, a, x14,  23, 0xfde5380c); /* 36 */
+		a = HH (a, b, c, d,  x1,   4, 0xa4beea44); /* 37 */
+		d = HH (d, a, b, c,  x4,  11, 0x4bdecfa9); /* 38 */
+		c = HH (c, d, a, b,  x7,  16, 0xf6bb4b60); /* 39 */
+		b = HH (b, c, d, a, x10,  23, 0xbebfbc70); /* 40 */
+		a = HH (a, b, c, d, x13,   4, 0x289b7ec6); /* 41 */
+		d = HH (d, a, b, c,  x0,  11, 0xeaa127fa); /* 42 */
+		c = HH (c, d, a, b,  x3,  16, 0xd4ef3085); /* 43 */
+		b = HH (b, c, d, a,  x6,  23, 0x04881d05); /* 44 */
+		a = HH (a, b, c, d,  x9,   4, 0xd9d4d039); /* 45 */
+		d = HH (d, a, b, c, x12,  11, 0xe6db99e5); /* 46 */
+		c = HH (c, d, a, b, x15,  16, 0x1fa27cf8); /* 47 */
+		b = HH (b, c, d, a,  x2,  23, 0xc4ac5665); /* 48 */
 
 		/* Round 4 */
-		a = II (a, b, c, d, x[ 0],   6, 0xf4292244); /* 49 */
-		d = II (d, a, b, c, x[ 7],  10, 0x432aff97); /* 50 */
-		c = II (c, d, a, b, x[14],  15, 0xab9423a7); /* 51 */
-		b = II (b, c, d, a, x[ 5],  21, 0xfc93a039); /* 52 */
-		a = II (a, b, c, d, x[12],   6, 0x655b59c3); /* 53 */
-		d = II (d, a, b, c, x[ 3],  10, 0x8f0ccc92); /* 54 */
-		c = II (c, d, a, b, x[10],  15, 0xffeff47d); /* 55 */
-		b = II (b, c, d, a, x[ 1],  21, 0x85845dd1); /* 56 */
-		a = II (a, b, c, d, x[ 8],   6, 0x6fa87e4f); /* 57 */
-		d = II (d, a, b, c, x[15],  10, 0xfe2ce6e0); /* 58 */
-		c = II (c, d, a, b, x[ 6],  15, 0xa3014314); /* 59 */
-		b = II (b, c, d, a, x[13],  21, 0x4e0811a1); /* 60 */
-		a = II (a, b, c, d, x[ 4],   6, 0xf7537e82); /* 61 */
-		d = II (d, a, b, c, x[11],  10, 0xbd3af235); /* 62 */
-		c = II (c, d, a, b, x[ 2],  15, 0x2ad7d2bb); /* 63 */
-		b = II (b, c, d, a, x[ 9],  21, 0xeb86d391); /* 64 */
-
-		state.state[0] += a;
-		state.state[1] += b;
-		state.state[2] += c;
-		state.state[3] += d;
+		a = II (a, b, c, d,  x0,   6, 0xf4292244); /* 49 */
+		d = II (d, a, b, c,  x7,  10, 0x432aff97); /* 50 */
+		c = II (c, d, a, b, x14,  15, 0xab9423a7); /* 51 */
+		b = II (b, c, d, a,  x5,  21, 0xfc93a039); /* 52 */
+		a = II (a, b, c, d, x12,   6, 0x655b59c3); /* 53 */
+		d = II (d, a, b, c,  x3,  10, 0x8f0ccc92); /* 54 */
+		c = II (c, d, a, b, x10,  15, 0xffeff47d); /* 55 */
+		b = II (b, c, d, a,  x1,  21, 0x85845dd1); /* 56 */
+		a = II (a, b, c, d,  x8,   6, 0x6fa87e4f); /* 57 */
+		d = II (d, a, b, c, x15,  10, 0xfe2ce6e0); /* 58 */
+		c = II (c, d, a, b,  x6,  15, 0xa3014314); /* 59 */
+		b = II (b, c, d, a, x13,  21, 0x4e0811a1); /* 60 */
+		a = II (a, b, c, d,  x4,   6, 0xf7537e82); /* 61 */
+		d = II (d, a, b, c, x11,  10, 0xbd3af235); /* 62 */
+		c = II (c, d, a, b,  x2,  15, 0x2ad7d2bb); /* 63 */
+		b = II (b, c, d, a,  x9,  21, 0xeb86d391); /* 64 */
+
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
 	}
 }
@@ -39,15 +39,18 @@ import java.io.*;
  * such as RSA.
  * <p>
  * For more information see RFC1321.
+ * <p>
+ * To compute other digests in the same pass, use a DigestingInputStream.
  *
  * @see MD5
+ * @see DigestingInputStream
  * @see MD5OutputStream
  *
  * @author Santeri Paavolainen http://santtu.iki.fi/md5/
  * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
  * @since ostermillerutils 1.00.00
  */
-public class MD5InputStream extends FilterInputStream {
+public class MD5InputStream extends DigestingInputStream {
 	/**
 	 * MD5 context
 	 */
@@ -58,51 +61,45 @@ public class MD5InputStream extends FilterInputStream {
 	 * @param in the underlying input stream
 	 */
 	public MD5InputStream (InputStream in) {
-		super(in);
-		md5 = new MD5();
+		this(in, new MD5());
+	}
+
+	/**
+	 * Creates a MD5InputStream that updates the given MD5 context.
+	 *
+	 * @param in the underlying input stream
+	 * @param md5 MD5 context
+	 */
+	private MD5InputStream (InputStream in, MD5 md5) {
+		super(in, StreamDigest.wrap(md5, false));
+		this.md5 = md5;
 	}
 
 	/**
-	 * Reads the next byte of data from this input stream. The value byte
-	 * is returned as an int in the range 0 to 255. If no byte is available
-	 * because the end of the stream has been reached, the value -1 is returned.
-	 * This method blocks until input data is available, the end of the stream is
-	 * detected, or an exception is thrown.
-	 * <p>
-	 * This method simply performs in.read() and returns the result.
+	 * Skips bytes in the underlying stream.  Unlike a DigestingInputStream,
+	 * and as in earlier versions, skipped bytes are not part of the hash.
 	 *
-	 * @return the next byte of data, or -1 if the end of the stream is reached.
+	 * @param n the number of bytes to skip.
+	 * @return the number of bytes skipped.
 	 * @throws IOException if an I/O error occurs.
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	@Override public int read() throws IOException {
-		int c = in.read();
-		if (c == -1) {
-			return -1;
-		}
-		md5.update((byte)(c & 0xff));
-		return c;
-}
+	@Override public long skip(long n) throws IOException {
+		return in.skip(n);
+	}
 
 	/**
-	 * Reads up to length bytes of data from this input stream into an
-	 * array of bytes. This method blocks until some input is available.
+	 * Whether the underlying stream supports mark and reset.  Unlike a
+	 * DigestingInputStream, and as in earlier versions, bytes read again
+	 * after a reset are added to the hash again.
 	 *
-	 * @param bytes the buffer into which the data is read.
-	 * @param offset the start offset of the data.
-	 * @param length the maximum number of bytes read.
-	 * @throws IOException if an I/O error occurs.
+	 * @return true if the underlying stream supports mark and reset.
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	@Override public int read(byte[] bytes, int offset, int length) throws IOException {
-		int	r;
-		if ((r = in.read(bytes, offset, length)) == -1) {
-			return r;
-		}
-		md5.update(bytes, offset, r);
-		return r;
+	@Override public boolean markSupported(){
+		return in.markSupported();
 	}
 
 	/**
@@ -126,4 +123,18 @@ public class MD5InputStream extends FilterInputStream {
 	public String getHashString(){
 		return md5.getHashString();
 	}
+
+	/**
+	 * Remember the hash of the stream so far as the hash of a file, so that
+	 * a FileHasher using the cache need not read the file again.  All of the
+	 * file, and nothing else, should have been read from this stream.
+	 *
+	 * @param cache the cache to which to add the hash.
+	 * @param file the file that was read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void cacheHash(FileHashCache cache, File file){
+		cache.put(file, md5.getHash());
+	}
 }
@@ -39,15 +39,18 @@ import java.io.*;
  * such as RSA.
  * <p>
  * For more information see RFC1321.
+ * <p>
+ * To compute other digests in the same pass, use a DigestingOutputStream.
  *
  * @see MD5
+ * @see DigestingOutputStream
  * @see MD5InputStream
  *
  * @author Santeri Paavolainen http://santtu.iki.fi/md5/
  * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
  * @since ostermillerutils 1.00.00
  */
-public class MD5OutputStream extends FilterOutputStream {
+public class MD5OutputStream extends DigestingOutputStream {
 
 	/**
 	 * MD5 context
@@ -61,37 +64,18 @@ public class MD5OutputStream extends FilterOutputStream {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public MD5OutputStream(OutputStream out) {
-		super(out);
-		md5 = new MD5();
-	}
-
-	/**
-	 * Writes the specified byte to this output stream.
-	 *
-	 * @param b the byte.
-	 * @throws IOException if an I/O error occurs.
-	 *
-	 * @since ostermillerutils 1.00.00
-	 */
-	@Override public void write(int b) throws IOException {
-		out.write(b);
-		md5.update((byte)(b & 0xff));
+		this(out, new MD5());
 	}
 
 	/**
-	 * Writes length bytes from the specified byte array starting a
-	 * offset off to this output stream.
+	 * Creates MD5OutputStream that updates the given MD5 context.
 	 *
-	 * @param b the data.
-	 * @param off the start offset in the data.
-	 * @param len the number of bytes to write.
-	 * @throws IOException if an I/O error occurs.
-	 *
-	 * @since ostermillerutils 1.00.00
+	 * @param out the output stream
+	 * @param md5 MD5 context
 	 */
-	@Override public void write(byte b[], int off, int len) throws IOException {
-		out.write(b, off, len);
-		md5.update(b, off, len);
+	private MD5OutputStream(OutputStream out, MD5 md5) {
+		super(out, StreamDigest.wrap(md5, false));
+		this.md5 = md5;
 	}
 
 	/**
@@ -115,5 +99,19 @@ public class MD5OutputStream extends FilterOutputStream {
 	public String getHashString(){
 		return md5.getHashString();
 	}
+
+	/**
+	 * Remember the hash of the stream so far as the hash of a file, so that
+	 * a FileHasher using the cache need not read the file again.  All of the
+	 * file, and nothing else, should have been written to this stream.
+	 *
+	 * @param cache the cache to which to add the hash.
+	 * @param file the file that was written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void cacheHash(FileHashCache cache, File file){
+		cache.put(file, md5.getHash());
+	}
 }
 
@@ -0,0 +1,931 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Read a comma separated value file by scanning its bytes directly.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ * <p>
+ * CSVParser and ExcelCSVParser read characters, so every byte of a file
+ * must be decoded before it can be parsed.  This parser maps the file
+ * into memory and finds delimiters, quotes and line breaks in the bytes
+ * themselves.  Only the values that are returned are decoded into
+ * characters, and values that are entirely ASCII are copied without
+ * going through a character set decoder at all.  When only some columns
+ * are needed, setColumns() stops the others from being decoded.
+ * <p>
+ * The values and line numbers returned are the same as those returned
+ * by CSVParser or ExcelCSVParser, depending on the format.  Like those
+ * parsers, this class implements CSVParse and may be wrapped by a
+ * LabeledCSVParser.
+ * <pre>
+ * MappedCSVParser parser = new MappedCSVParser(new File("data.csv"), CSVFormat.EXCEL, "UTF-8");
+ * String[] line;
+ * while ((line = parser.getLine()) != null){
+ *     System.out.println(parser.getLastLineNumber() + " " + line[0]);
+ * }
+ * parser.close();
+ * </pre>
+ * <p>
+ * Because the file is scanned as bytes, the character set must encode
+ * all ASCII characters as single bytes that do not appear within the
+ * encoding of any other character.  UTF-8, US-ASCII, and the ISO-8859
+ * character sets meet this requirement; UTF-16 does not.  The delimiter,
+ * quote, and comment characters must be ASCII.
+ *
+ * @see com.Ostermiller.util.CSVParser
+ * @see com.Ostermiller.util.ExcelCSVParser
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MappedCSVParser implements CSVFieldParse {
+
+	/**
+	 * Number of bytes of the file mapped at once if not otherwise specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+	/**
+	 * Scanner state: at the start of a line.
+	 */
+	private static final int LINE = 0;
+
+	/**
+	 * Scanner state: at the start of a value after a delimiter.
+	 */
+	private static final int BEFORE = 1;
+
+	/**
+	 * Scanner state: after a value, ignoring anything up to the next delimiter.
+	 */
+	private static final int AFTER = 2;
+
+	/**
+	 * Token kind: the bytes of the value.
+	 */
+	private static final int RAW = 0;
+
+	/**
+	 * Token kind: the bytes inside quotes, which may need unescaping.
+	 */
+	private static final int QUOTED = 1;
+
+	/**
+	 * Result of a scan: a token was found.
+	 */
+	private static final int FOUND = 0;
+
+	/**
+	 * Result of a scan: the end of the file was reached.
+	 */
+	private static final int END = 1;
+
+	/**
+	 * Result of a scan: the end of the mapped part of the
+	 * file was reached before the end of the token.
+	 */
+	private static final int MORE = 2;
+
+	/**
+	 * File being read.
+	 */
+	private RandomAccessFile randomAccessFile;
+
+	/**
+	 * Channel on the file being read.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Dialect of CSV.
+	 */
+	private CSVFormat format;
+
+	/**
+	 * Decodes values that are not ASCII.
+	 */
+	private CharsetDecoder decoder;
+
+	/**
+	 * Parser used to check characters as they are set.
+	 */
+	private CSVParse template;
+
+	/**
+	 * Current delimiter.
+	 */
+	private byte delimiter = ',';
+
+	/**
+	 * Current quote.
+	 */
+	private byte quote = '\"';
+
+	/**
+	 * Escape sequences in addition to \\ and \".
+	 */
+	private String escapes = "";
+
+	/**
+	 * Replacements for the escape sequences.
+	 */
+	private String replacements = "";
+
+	/**
+	 * Characters that start comment lines.
+	 */
+	private String commentDelims = "";
+
+	/**
+	 * Size of the file.
+	 */
+	private long size;
+
+	/**
+	 * Preferred number of bytes to map at once.
+	 */
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+
+	/**
+	 * Currently mapped part of the file.
+	 */
+	private ByteBuffer bytes;
+
+	/**
+	 * Position in the file of the first mapped byte.
+	 */
+	private long bytesStart = 0;
+
+	/**
+	 * Index in the mapped bytes of the next byte to scan.
+	 */
+	private int position = 0;
+
+	/**
+	 * Scanner state.
+	 */
+	private int state = LINE;
+
+	/**
+	 * Line number of the most recent token.
+	 */
+	private int lines = 0;
+
+	/**
+	 * Line breaks to add to the line number when the next line starts.
+	 */
+	private int addLine = 1;
+
+	/**
+	 * Index in the mapped bytes of the start of the most recent token.
+	 */
+	private int tokenStart;
+
+	/**
+	 * Index in the mapped bytes after the end of the most recent token.
+	 */
+	private int tokenEnd;
+
+	/**
+	 * Kind of the most recent token.
+	 */
+	private int tokenKind;
+
+	/**
+	 * Line number of the most recent token, or -1 before the first token.
+	 */
+	private int tokenLine = -1;
+
+	/**
+	 * Field index of the most recent token in its line.
+	 */
+	private int tokenIndex;
+
+	/**
+	 * Whether the value at each field index is decoded, or null to decode all of them.
+	 */
+	private boolean[] columns;
+
+	/**
+	 * Decoded characters of the most recent token.
+	 */
+	private char[] chars = new char[64];
+
+	/**
+	 * Reusable view of the decoded characters.
+	 */
+	private CharArraySequence field = new CharArraySequence();
+
+	/**
+	 * Token cache. Used for when we read a token
+	 * but can't return it because its on the next line.
+	 */
+	private String tokenCache;
+
+	/**
+	 * Line number that goes along with the tokenCache.
+	 */
+	private int lineCache;
+
+	/**
+	 * The line number the last token came from, or -1 if
+	 * no tokens have been returned.
+	 */
+	private int lastLine = -1;
+
+	/**
+	 * Create a parser to read backslash escaped comma separated values
+	 * from a file using the platform default character set.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @throws IOException if the file cannot be opened.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MappedCSVParser(File file) throws IOException {
+		this(file, CSVFormat.CSV);
+	}
+
+	/**
+	 * Create a parser to read comma separated values from a file
+	 * using the platform default character set.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @param format dialect of CSV.
+	 * @throws IOException if the file cannot be opened.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MappedCSVParser(File file, CSVFormat format) throws IOException {
+		this(file, format, Charset.defaultCharset().name());
+	}
+
+	/**
+	 * Create a parser to read comma separated values from a file.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @param format dialect of CSV.
+	 * @param charsetName character set of the file.
+	 * @throws IOException if the file cannot be opened.
+	 * @throws IllegalArgumentException if the character set cannot be read byte by byte.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MappedCSVParser(File file, CSVFormat format, String charsetName) throws IOException {
+		this.format = format;
+		Charset charset = Charset.forName(charsetName);
+		String ascii = "\r\n\t\f \"\\,;:|'#!";
+		if (!Arrays.equals(ascii.getBytes(charset.name()), ascii.getBytes("ISO-8859-1"))){
+			throw new IllegalArgumentException(charsetName + " does not encode ASCII as single bytes.");
+		}
+		decoder = charset.newDecoder();
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		if (format == CSVFormat.EXCEL){
+			template = new ExcelCSVParser(new StringReader(""));
+		} else {
+			template = new CSVParser(new StringReader(""));
+		}
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+		size = channel.size();
+	}
+
+	/**
+	 * Set the number of bytes of the file to map into memory at once.
+	 * A value that does not fit will cause more to be mapped.
+	 *
+	 * @param windowSize number of bytes, at least one.
+	 * @throws IllegalArgumentException if windowSize is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setWindowSize(int windowSize){
+		if (windowSize < 1) throw new IllegalArgumentException("Bad window size: " + windowSize);
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Change this parser so that it uses a new delimiter.
+	 * <p>
+	 * The initial character is a comma, the delimiter cannot be changed
+	 * to a quote or other character that has special meaning in CSV.
+	 *
+	 * @param newDelim delimiter to which to switch.
+	 * @throws BadDelimiterException if the character cannot be used as a delimiter.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void changeDelimiter(char newDelim) throws BadDelimiterException {
+		if (newDelim > 0x7f) throw new BadDelimiterException(newDelim + " is not an ASCII delimiter.");
+		template.changeDelimiter(newDelim);
+		delimiter = (byte)newDelim;
+	}
+
+	/**
+	 * Change this parser so that it uses a new character for quoting.
+	 * <p>
+	 * The initial character is a double quote ("), the delimiter cannot be changed
+	 * to a comma or other character that has special meaning in CSV.
+	 *
+	 * @param newQuote character to use for quoting.
+	 * @throws BadQuoteException if the character cannot be used as a quote.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void changeQuote(char newQuote) throws BadQuoteException {
+		if (newQuote > 0x7f) throw new BadQuoteException(newQuote + " is not an ASCII quote.");
+		template.changeQuote(newQuote);
+		quote = (byte)newQuote;
+	}
+
+	/**
+	 * Specify escape sequences and their replacements, as for
+	 * CSVParser.setEscapes().
+	 *
+	 * @param escapes a list of characters that will represent escape sequences.
+	 * @param replacements the list of replacement characters for those escape sequences.
+	 * @throws IllegalStateException if the format is Excel, which has no escape sequences.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setEscapes(String escapes, String replacements){
+		if (format == CSVFormat.EXCEL) throw new IllegalStateException("Excel CSV does not use escape sequences.");
+		int length = Math.min(escapes.length(), replacements.length());
+		this.escapes = escapes.substring(0, length);
+		this.replacements = replacements.substring(0, length);
+	}
+
+	/**
+	 * Set the characters that indicate a comment at the beginning of the line.
+	 * By default there are no comments.
+	 *
+	 * @param commentDelims list of ASCII characters a comment line may start with.
+	 * @throws IllegalArgumentException if a character is not ASCII.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setCommentStart(String commentDelims){
+		for (int i=0; i<commentDelims.length(); i++){
+			if (commentDelims.charAt(i) > 0x7f) throw new IllegalArgumentException(commentDelims.charAt(i) + " is not an ASCII comment character.");
+		}
+		this.commentDelims = commentDelims;
+	}
+
+	/**
+	 * Decode only the values at the given field indexes.  Values at other
+	 * field indexes are still scanned, so that line numbers and field
+	 * counts are unchanged, but they are returned as empty values.
+	 *
+	 * @param fieldIndexes indexes of the values to decode, starting at zero;
+	 *     negative indexes are ignored.  Null to decode every value.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setColumns(int... fieldIndexes){
+		if (fieldIndexes == null){
+			columns = null;
+			return;
+		}
+		int maxIndex = -1;
+		for (int i=0; i<fieldIndexes.length; i++){
+			maxIndex = Math.max(maxIndex, fieldIndexes[i]);
+		}
+		columns = new boolean[maxIndex + 1];
+		for (int i=0; i<fieldIndexes.length; i++){
+			if (fieldIndexes[i] >= 0) columns[fieldIndexes[i]] = true;
+		}
+	}
+
+	/**
+	 * Map the file starting at the given index in the currently mapped
+	 * bytes, making the window larger if the scan that needs it had
+	 * already reached the end of the window.
+	 *
+	 * @param from index in the mapped bytes that should become the first mapped byte.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void remap(int from) throws IOException {
+		int needed = (bytes == null) ? 0 : bytes.limit() - from;
+		long length = windowSize;
+		if (needed >= length) length = Math.min(Integer.MAX_VALUE, needed * 2L);
+		bytesStart += from;
+		if (bytesStart + length > size) length = size - bytesStart;
+		bytes = channel.map(FileChannel.MapMode.READ_ONLY, bytesStart, length);
+		position -= from;
+	}
+
+	/**
+	 * Whether the given index is past the end of the file.
+	 *
+	 * @param index index in the mapped bytes.
+	 * @return true if at the end of the mapped bytes and they reach the end of the file.
+	 */
+	private boolean atEnd(int index){
+		return index >= bytes.limit() && bytesStart + bytes.limit() >= size;
+	}
+
+	/**
+	 * Whether the given byte is space, tab, or form feed, which are
+	 * ignored around values that are not in Excel format.
+	 *
+	 * @param b byte to check.
+	 * @return true if the byte is white space that is not the delimiter.
+	 */
+	private boolean isSpace(byte b){
+		return format == CSVFormat.CSV && b != delimiter && (b == ' ' || b == '\t' || b == '\f');
+	}
+
+	/**
+	 * Find the end of the line break at the given index.
+	 *
+	 * @param index index of a carriage return or line feed.
+	 * @return index after the line break, or -1 if more bytes need to be mapped.
+	 */
+	private int endOfLineBreak(int index){
+		if (bytes.get(index) == '\r'){
+			if (index + 1 >= bytes.limit()){
+				if (!atEnd(index + 1)) return -1;
+			} else if (bytes.get(index + 1) == '\n'){
+				return index + 2;
+			}
+		}
+		return index + 1;
+	}
+
+	/**
+	 * Set the most recent token.
+	 *
+	 * @param start index of the first byte.
+	 * @param end index after the last byte.
+	 * @param kind kind of token.
+	 * @return FOUND
+	 */
+	private int token(int start, int end, int kind){
+		tokenStart = start;
+		tokenEnd = end;
+		tokenKind = kind;
+		return FOUND;
+	}
+
+	/**
+	 * Scan a value that starts at the current position.
+	 *
+	 * @return FOUND or MORE
+	 */
+	private int scanValue(){
+		int start = position;
+		int limit = bytes.limit();
+		int end = start;
+		int i = start;
+		while (i < limit){
+			byte b = bytes.get(i);
+			if (b == delimiter || b == '\r' || b == '\n') break;
+			i++;
+			if (!isSpace(b)) end = i;
+		}
+		if (i >= limit && !atEnd(i)) return MORE;
+		if (format == CSVFormat.EXCEL) end = i;
+		position = end;
+		state = AFTER;
+		return token(start, end, RAW);
+	}
+
+	/**
+	 * Scan a quoted value that starts at the current position.
+	 *
+	 * @return FOUND or MORE
+	 */
+	private int scanQuoted(){
+		int start = position;
+		int limit = bytes.limit();
+		int i = start + 1;
+		while (i < limit){
+			byte b = bytes.get(i);
+			if (b == quote){
+				if (format == CSVFormat.CSV) break;
+				if (i + 1 >= limit){
+					if (!atEnd(i + 1)) return MORE;
+					break;
+				}
+				if (bytes.get(i + 1) != quote) break;
+				i += 2;
+			} else if (b == '\\' && format == CSVFormat.CSV){
+				if (i + 1 >= limit && !atEnd(i + 1)) return MORE;
+				i += 2;
+			} else {
+				i++;
+			}
+		}
+		if (i < limit){
+			position = i + 1;
+			state = AFTER;
+			return token(start + 1, i, QUOTED);
+		}
+		if (!atEnd(limit)) return MORE;
+		// No closing quote, the rest of the file is returned as is,
+		// except for a trailing backslash that has nothing to escape.
+		int end = (i > limit) ? limit - 1 : limit;
+		position = end;
+		state = LINE;
+		return token(start, end, RAW);
+	}
+
+	/**
+	 * Scan for the next token within the mapped bytes.
+	 *
+	 * @return FOUND, END, or MORE
+	 */
+	private int scanMapped(){
+		int limit = bytes.limit();
+		while (true){
+			if (position >= limit){
+				if (!atEnd(position)) return MORE;
+				if (state != BEFORE) return END;
+				state = LINE;
+				addLine++;
+				return token(position, position, RAW);
+			}
+			byte b = bytes.get(position);
+			switch (state){
+				case LINE: {
+					if (isSpace(b)){
+						int i = position;
+						while (i < limit && isSpace(bytes.get(i))) i++;
+						if (i >= limit && !atEnd(i)) return MORE;
+						if (i < limit && (bytes.get(i) == '\r' || bytes.get(i) == '\n')){
+							int next = endOfLineBreak(i);
+							if (next == -1) return MORE;
+							position = next;
+							addLine++;
+						} else {
+							lines += addLine;
+							addLine = 0;
+							position = i;
+							state = BEFORE;
+						}
+					} else if (b == '\r' || b == '\n'){
+						int next = endOfLineBreak(position);
+						if (next == -1) return MORE;
+						position = next;
+						addLine++;
+					} else {
+						lines += addLine;
+						addLine = 0;
+						int found;
+						if (b == delimiter){
+							position++;
+							state = BEFORE;
+							found = token(position, position, RAW);
+						} else if (b == quote){
+							found = scanQuoted();
+						} else if (commentDelims.indexOf((char)b) != -1){
+							int i = position;
+							while (i < limit && bytes.get(i) != '\r' && bytes.get(i) != '\n') i++;
+							position = i;
+							// stay at the start of the line so that the line break is counted
+							continue;
+						} else {
+							found = scanValue();
+						}
+						return found;
+					}
+				} break;
+				case BEFORE: {
+					if (isSpace(b)){
+						position++;
+					} else if (b == '\r' || b == '\n'){
+						int next = endOfLineBreak(position);
+						if (next == -1) return MORE;
+						int start = position;
+						position = next;
+						addLine++;
+						state = LINE;
+						return token(start, start, RAW);
+					} else if (b == delimiter){
+						position++;
+						return token(position, position, RAW);
+					} else if (b == quote){
+						return scanQuoted();
+					} else {
+						return scanValue();
+					}
+				} break;
+				default: {
+					if (b == delimiter){
+						position++;
+						state = BEFORE;
+					} else if (b == '\r' || b == '\n'){
+						int next = endOfLineBreak(position);
+						if (next == -1) return MORE;
+						position = next;
+						addLine++;
+						state = LINE;
+					} else {
+						position++;
+					}
+				} break;
+			}
+		}
+	}
+
+	/**
+	 * Find the next token, mapping more of the file as needed.
+	 *
+	 * @return true if a token was found, false at the end of the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private boolean nextToken() throws IOException {
+		if (bytes == null) remap(0);
+		while (true){
+			int start = position;
+			int startState = state;
+			int startLines = lines;
+			int startAddLine = addLine;
+			int result = scanMapped();
+			if (result == FOUND){
+				tokenIndex = (lines == tokenLine) ? tokenIndex + 1 : 0;
+				tokenLine = lines;
+			}
+			if (result != MORE) return result == FOUND;
+			// Map again starting from where this scan started and scan again.
+			position = start;
+			state = startState;
+			lines = startLines;
+			addLine = startAddLine;
+			remap(start);
+		}
+	}
+
+	/**
+	 * Decode the most recent token into the character buffer,
+	 * removing quotes and escape sequences.
+	 *
+	 * @return the token on the reusable view.
+	 */
+	private CharArraySequence decodeToken(){
+		if (columns != null && (tokenIndex >= columns.length || !columns[tokenIndex])){
+			field.set(chars, 0, 0);
+			return field;
+		}
+		int length = tokenEnd - tokenStart;
+		if (chars.length < length) chars = new char[Math.max(length, chars.length*2)];
+		int i = 0;
+		while (i < length){
+			byte b = bytes.get(tokenStart + i);
+			if (b < 0) break;
+			chars[i++] = (char)b;
+		}
+		if (i < length){
+			ByteBuffer in = bytes.duplicate();
+			in.limit(tokenEnd);
+			in.position(tokenStart + i);
+			int maxChars = i + (int)Math.ceil((length - i) * (double)decoder.maxCharsPerByte());
+			if (chars.length < maxChars){
+				char[] newChars = new char[maxChars];
+				System.arraycopy(chars, 0, newChars, 0, i);
+				chars = newChars;
+			}
+			CharBuffer out = CharBuffer.wrap(chars, i, chars.length - i);
+			decoder.reset();
+			decoder.decode(in, out, true);
+			decoder.flush(out);
+			length = out.position();
+		}
+		if (tokenKind == QUOTED) length = unescape(length);
+		field.set(chars, 0, length);
+		return field;
+	}
+
+	/**
+	 * Remove escape sequences from the decoded characters in the same
+	 * way that the lexer for the format does.
+	 *
+	 * @param length number of decoded characters.
+	 * @return number of characters after unescaping.
+	 */
+	private int unescape(int length){
+		int out = 0;
+		if (format == CSVFormat.EXCEL){
+			for (int i=0; i<length; i++){
+				char c = chars[i];
+				if (c == '\"' && i + 1 < length && chars[i+1] == '\"') i++;
+				chars[out++] = c;
+			}
+		} else {
+			for (int i=0; i<length; i++){
+				char c = chars[i];
+				if (c == '\\' && i + 1 < length){
+					c = chars[++i];
+					int index;
+					if (c != '\\' && c != '\"' && (index = escapes.indexOf(c)) != -1){
+						c = replacements.charAt(index);
+					}
+				}
+				chars[out++] = c;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Get the next value as a view into the parser's buffer rather
+	 * than as a new String.
+	 * <p>
+	 * The returned CharSequence is reused and may be changed by the next
+	 * call to any method that reads from this parser.  Call toString() on
+	 * it to keep a copy.
+	 *
+	 * @return the next value or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CharSequence nextField() throws IOException {
+		if (tokenCache != null){
+			return nextValue();
+		}
+		boolean found = nextToken();
+		lastLine = lines;
+		if (!found) return null;
+		return decodeToken();
+	}
+
+	/**
+	 * Read the rest of the values from the file, passing each one
+	 * to the listener.  No String is created for a value
+	 * unless the listener creates one.
+	 *
+	 * @param listener call back for each value and the end of each line.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void readFields(CSVFieldListener listener) throws IOException {
+		int lineNumber = -1;
+		int fieldIndex = 0;
+		CharSequence value;
+		while ((value = nextField()) != null){
+			if (lastLine != lineNumber){
+				if (fieldIndex > 0) listener.endLine(lineNumber, fieldIndex);
+				lineNumber = lastLine;
+				fieldIndex = 0;
+			}
+			listener.field(value, lineNumber, fieldIndex++);
+		}
+		if (fieldIndex > 0) listener.endLine(lineNumber, fieldIndex);
+	}
+
+	/**
+	 * Read the next token as a String.
+	 *
+	 * @return the next token or null at the end of the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private String nextTokenString() throws IOException {
+		if (!nextToken()) return null;
+		return decodeToken().toString();
+	}
+
+	/**
+	 * get the next value.
+	 *
+	 * @return the next value or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String nextValue() throws IOException {
+		if (tokenCache == null){
+			tokenCache = nextTokenString();
+			lineCache = lines;
+		}
+		lastLine = lineCache;
+		String result = tokenCache;
+		tokenCache = null;
+		return result;
+	}
+
+	/**
+	 * Get the line number that the last token came from.
+	 * <p>
+	 * New line breaks that occur in the middle of a token are not
+	 * counted in the line number count.
+	 *
+	 * @return line number or -1 if no tokens have been returned yet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int lastLineNumber(){
+		return lastLine;
+	}
+
+	/**
+	 * Get all the values from a line.
+	 * <p>
+	 * If the line has already been partially read, only the
+	 * values that have not already been read will be included.
+	 *
+	 * @return all the values from the line or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] getLine() throws IOException {
+		int lineNumber = -1;
+		ArrayList<String> v = new ArrayList<String>();
+		if (tokenCache != null){
+			v.add(tokenCache);
+			lineNumber = lineCache;
+		}
+		while ((tokenCache = nextTokenString()) != null
+				&& (lineNumber == -1 || lines == lineNumber)){
+			v.add(tokenCache);
+			lineNumber = lines;
+		}
+		if (v.size() == 0){
+			return null;
+		}
+		lastLine = lineNumber;
+		lineCache = lines;
+		String[] result = new String[v.size()];
+		return v.toArray(result);
+	}
+
+	/**
+	 * Get the line number that the last token came from.
+	 *
+	 * @return line number or -1 if no tokens have been returned.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getLastLineNumber(){
+		return lastLine;
+	}
+
+	/**
+	 * Get all the values from the file.
+	 * <p>
+	 * If the file has already been partially read, only the
+	 * values that have not already been read will be included.
+	 * <p>
+	 * Each line of the file that has at least one value will be
+	 * represented. Comments and empty lines are ignored.
+	 * <p>
+	 * The resulting double array may be jagged.
+	 *
+	 * @return all the values from the file or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[][] getAllValues() throws IOException {
+		ArrayList<String[]> v = new ArrayList<String[]>();
+		String[] line;
+		while((line = getLine()) != null){
+			v.add(line);
+		}
+		if (v.size() == 0){
+			return null;
+		}
+		String[][] result = new String[v.size()][];
+		return v.toArray(result);
+	}
+
+	/**
+	 * Close the file.
+	 *
+	 * @throws IOException if an error occurs while closing the file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void close() throws IOException {
+		randomAccessFile.close();
+	}
+}
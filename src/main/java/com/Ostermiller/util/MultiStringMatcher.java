@@ -0,0 +1,553 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.util.*;
+
+/**
+ * Finds any of a set of terms in strings, in time linear in the length of
+ * the string no matter how many terms there are.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * The terms are compiled once into an Aho-Corasick automaton, which may then
+ * be used for any number of strings:
+ * <pre>
+ * MultiStringMatcher matcher = new MultiStringMatcher(terms);
+ * for (String line: lines){
+ *     if (matcher.containsAny(line)) ...
+ * }
+ * </pre>
+ * <p>
+ * When case is ignored, two characters match if they are the same after
+ * being converted to upper case and then to lower case, as with
+ * String.equalsIgnoreCase().
+ * <p>
+ * A matcher does not change after it is created and may be shared by threads.
+ *
+ * @see StringHelper#containsAny(String, String[])
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MultiStringMatcher {
+
+	/**
+	 * An occurrence of a term in a string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static class Match {
+
+		/**
+		 * Index of the term in the list of terms.
+		 */
+		private int termIndex;
+
+		/**
+		 * The term.
+		 */
+		private String term;
+
+		/**
+		 * Index of the first character of the occurrence.
+		 */
+		private int start;
+
+		/**
+		 * Index after the last character of the occurrence.
+		 */
+		private int end;
+
+		/**
+		 * Create a match.
+		 *
+		 * @param termIndex index of the term.
+		 * @param term the term.
+		 * @param start index of the first character.
+		 * @param end index after the last character.
+		 */
+		Match(int termIndex, String term, int start, int end){
+			this.termIndex = termIndex;
+			this.term = term;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Get the index of the term that matched in the list of terms
+		 * given to the matcher.  When a term is listed more than once,
+		 * or differs only in case from another and case is ignored,
+		 * its first index is used.
+		 *
+		 * @return index of the term.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getTermIndex(){
+			return termIndex;
+		}
+
+		/**
+		 * Get the term that matched.
+		 *
+		 * @return the term as it was given to the matcher.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public String getTerm(){
+			return term;
+		}
+
+		/**
+		 * Get the index in the string of the first character of the match.
+		 *
+		 * @return start index.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getStart(){
+			return start;
+		}
+
+		/**
+		 * Get the index in the string after the last character of the match.
+		 *
+		 * @return end index.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getEnd(){
+			return end;
+		}
+
+		/**
+		 * Describe the match.
+		 *
+		 * @return the term and its position.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public String toString(){
+			return "\"" + term + "\" [" + start + "," + end + ")";
+		}
+	}
+
+	/**
+	 * The terms.
+	 */
+	private String[] terms;
+
+	/**
+	 * Whether case is ignored.
+	 */
+	private boolean ignoreCase;
+
+	/**
+	 * For each state, the index in keys and targets of its first transition.
+	 * The transitions of state i end where those of state i+1 begin.
+	 */
+	private int[] offsets;
+
+	/**
+	 * Character of each transition, sorted within each state.
+	 */
+	private char[] keys;
+
+	/**
+	 * State to which each transition goes.
+	 */
+	private int[] targets;
+
+	/**
+	 * For each state, the state for the longest proper suffix of its
+	 * prefix that is also a prefix of some term.
+	 */
+	private int[] fail;
+
+	/**
+	 * For each state, the index of the term that is its prefix, or -1.
+	 */
+	private int[] termAt;
+
+	/**
+	 * For each state, the nearest state following failure links (starting
+	 * with the state itself) at which a term ends, or -1.
+	 */
+	private int[] output;
+
+	/**
+	 * For each state, the length of its prefix.
+	 */
+	private int[] depth;
+
+	/**
+	 * Compile a matcher that is case sensitive.
+	 *
+	 * @param terms strings for which to search.
+	 * @throws IllegalArgumentException if there are no terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiStringMatcher(String[] terms){
+		this(terms, false);
+	}
+
+	/**
+	 * Compile a matcher.
+	 *
+	 * @param terms strings for which to search.
+	 * @param ignoreCase whether upper and lower case letters match each other.
+	 * @throws IllegalArgumentException if there are no terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiStringMatcher(String[] terms, boolean ignoreCase){
+		if (terms.length == 0) throw new IllegalArgumentException("There must be at least one term to find.");
+		this.terms = terms.clone();
+		this.ignoreCase = ignoreCase;
+
+		// Build the trie with a map of transitions for each state
+		ArrayList<Map<Character,Integer>> children = new ArrayList<Map<Character,Integer>>();
+		ArrayList<Integer> terminal = new ArrayList<Integer>();
+		children.add(new HashMap<Character,Integer>());
+		terminal.add(Integer.valueOf(-1));
+		int transitionCount = 0;
+		for (int i=0; i<this.terms.length; i++){
+			String term = this.terms[i];
+			int state = 0;
+			for (int j=0; j<term.length(); j++){
+				Character c = Character.valueOf(fold(term.charAt(j)));
+				Integer next = children.get(state).get(c);
+				if (next == null){
+					next = Integer.valueOf(children.size());
+					children.get(state).put(c, next);
+					children.add(new HashMap<Character,Integer>());
+					terminal.add(Integer.valueOf(-1));
+					transitionCount++;
+				}
+				state = next.intValue();
+			}
+			if (terminal.get(state).intValue() == -1) terminal.set(state, Integer.valueOf(i));
+		}
+
+		// Flatten the trie into arrays with sorted transitions
+		int stateCount = children.size();
+		offsets = new int[stateCount + 1];
+		keys = new char[transitionCount];
+		targets = new int[transitionCount];
+		termAt = new int[stateCount];
+		int position = 0;
+		for (int state=0; state<stateCount; state++){
+			offsets[state] = position;
+			termAt[state] = terminal.get(state).intValue();
+			Map<Character,Integer> map = children.get(state);
+			Character[] chars = map.keySet().toArray(new Character[map.size()]);
+			Arrays.sort(chars);
+			for (int i=0; i<chars.length; i++){
+				keys[position] = chars[i].charValue();
+				targets[position] = map.get(chars[i]).intValue();
+				position++;
+			}
+		}
+		offsets[stateCount] = position;
+
+		// Failure links in breadth first order, so that the link of
+		// each state's parent is known before the state itself
+		fail = new int[stateCount];
+		output = new int[stateCount];
+		depth = new int[stateCount];
+		output[0] = termAt[0] != -1 ? 0 : -1;
+		int[] queue = new int[stateCount];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		while (head < tail){
+			int state = queue[head++];
+			for (int i=offsets[state]; i<offsets[state+1]; i++){
+				int child = targets[i];
+				depth[child] = depth[state] + 1;
+				if (state == 0){
+					fail[child] = 0;
+				} else {
+					fail[child] = step(fail[state], keys[i]);
+				}
+				output[child] = termAt[child] != -1 ? child : output[fail[child]];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/**
+	 * Convert a character to the form in which it is matched.
+	 *
+	 * @param c a character.
+	 * @return the character, or its case folded form when case is ignored.
+	 */
+	private char fold(char c){
+		if (!ignoreCase) return c;
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Follow the transition of a state for a character.
+	 *
+	 * @param state current state.
+	 * @param c folded character.
+	 * @return the next state, or -1 if there is no such transition.
+	 */
+	private int transition(int state, char c){
+		int low = offsets[state];
+		int high = offsets[state+1] - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			char key = keys[mid];
+			if (key < c){
+				low = mid + 1;
+			} else if (key > c){
+				high = mid - 1;
+			} else {
+				return targets[mid];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Advance the automaton by a character, following failure
+	 * links until a transition is found.
+	 *
+	 * @param state current state.
+	 * @param c folded character.
+	 * @return the next state.
+	 */
+	private int step(int state, char c){
+		while (true){
+			int next = transition(state, c);
+			if (next != -1) return next;
+			if (state == 0) return 0;
+			state = fail[state];
+		}
+	}
+
+	/**
+	 * Create a match for a state at which a term ends.
+	 *
+	 * @param state state with a term.
+	 * @param end index after the end of the match.
+	 * @return the match.
+	 */
+	private Match match(int state, int end){
+		int termIndex = termAt[state];
+		return new Match(termIndex, terms[termIndex], end - depth[state], end);
+	}
+
+	/**
+	 * Advance the automaton by a character of the string being searched.
+	 *
+	 * @param state current state, zero at the start.
+	 * @param c next character of the string.
+	 * @return the next state.
+	 */
+	int next(int state, char c){
+		return step(state, fold(c));
+	}
+
+	/**
+	 * Get the longest term that ends at a state.
+	 *
+	 * @param state a state.
+	 * @return a state at which a term ends, or -1 if no term ends here.
+	 */
+	int firstMatch(int state){
+		return output[state];
+	}
+
+	/**
+	 * Get the next shorter term that ends where a term ends.
+	 *
+	 * @param matchState state returned by firstMatch() or nextMatch().
+	 * @return a state at which a shorter term ends, or -1 if there are no more.
+	 */
+	int nextMatch(int matchState){
+		if (matchState == 0) return -1;
+		return output[fail[matchState]];
+	}
+
+	/**
+	 * Get the number of characters that lead to a state, which for a state
+	 * returned by firstMatch() or nextMatch() is the length of its term.
+	 *
+	 * @param state a state.
+	 * @return the depth of the state.
+	 */
+	int depth(int state){
+		return depth[state];
+	}
+
+	/**
+	 * Get the term that ends at a state.
+	 *
+	 * @param matchState state returned by firstMatch() or nextMatch().
+	 * @return index of the term.
+	 */
+	int termIndex(int matchState){
+		return termAt[matchState];
+	}
+
+	/**
+	 * Get the terms for which this matcher searches.
+	 *
+	 * @return a copy of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] getTerms(){
+		return terms.clone();
+	}
+
+	/**
+	 * Whether this matcher ignores case.
+	 *
+	 * @return true if upper and lower case letters match each other.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isIgnoreCase(){
+		return ignoreCase;
+	}
+
+	/**
+	 * Tests to see if the given string contains any of the terms.
+	 *
+	 * @param s string that may contain any of the terms.
+	 * @return true iff one of the terms is a substring of the given string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean containsAny(CharSequence s){
+		int length = s.length();
+		if (output[0] != -1) return true;
+		int state = 0;
+		for (int i=0; i<length; i++){
+			state = step(state, fold(s.charAt(i)));
+			if (output[state] != -1) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tests to see if the given string starts with any of the terms.
+	 *
+	 * @param s string that may start with any of the terms.
+	 * @return true iff the given string starts with one of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean startsWithAny(CharSequence s){
+		int length = s.length();
+		int state = 0;
+		for (int i=0; termAt[state] == -1; i++){
+			if (i >= length) return false;
+			state = transition(state, fold(s.charAt(i)));
+			if (state == -1) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests to see if the given string equals any of the terms.
+	 *
+	 * @param s string that may equal any of the terms.
+	 * @return true iff one of the terms is equal to the given string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean equalsAny(CharSequence s){
+		int length = s.length();
+		int state = 0;
+		for (int i=0; i<length; i++){
+			state = transition(state, fold(s.charAt(i)));
+			if (state == -1) return false;
+		}
+		return termAt[state] != -1;
+	}
+
+	/**
+	 * Tests to see if the given string ends with any of the terms.
+	 *
+	 * @param s string that may end with any of the terms.
+	 * @return true iff the given string ends with one of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean endsWithAny(CharSequence s){
+		int length = s.length();
+		int state = 0;
+		for (int i=0; i<length; i++){
+			state = step(state, fold(s.charAt(i)));
+		}
+		return output[state] != -1;
+	}
+
+	/**
+	 * Find the first occurrence of any term, starting at the given index.
+	 * The first occurrence is the one that ends first.  Of the terms that end
+	 * there, the longest is chosen.
+	 *
+	 * @param s string to search.
+	 * @param fromIndex index at which to start searching.
+	 * @return the match, or null if no term occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Match find(CharSequence s, int fromIndex){
+		if (output[0] != -1) return match(0, fromIndex);
+		int length = s.length();
+		int state = 0;
+		for (int i=fromIndex; i<length; i++){
+			state = step(state, fold(s.charAt(i)));
+			if (output[state] != -1) return match(output[state], i+1);
+		}
+		return null;
+	}
+
+	/**
+	 * Find every occurrence of every term, including those that overlap.
+	 * Matches are listed in order of where they end, with the longest
+	 * first when several end at the same place.
+	 *
+	 * @param s string to search.
+	 * @return list of matches, empty if no term occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public List<Match> findAll(CharSequence s){
+		ArrayList<Match> matches = new ArrayList<Match>();
+		if (output[0] != -1) matches.add(match(0, 0));
+		int length = s.length();
+		int state = 0;
+		for (int i=0; i<length; i++){
+			state = step(state, fold(s.charAt(i)));
+			for (int o=firstMatch(state); o!=-1; o=nextMatch(o)){
+				matches.add(match(o, i+1));
+			}
+		}
+		return matches;
+	}
+}
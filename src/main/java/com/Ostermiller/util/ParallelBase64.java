@@ -0,0 +1,469 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base64 encode or decode a large file using several threads at once.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The input file is memory mapped and split into blocks.  When encoding,
+ * each block is a whole number of 57 byte lines, so the place of its
+ * characters in the output is known before it is encoded.  When decoding,
+ * the Base64 characters in each block are counted first so that the place of
+ * its bytes in the output is known.  The blocks are then converted in parallel
+ * by a Parallelizer and written into an output file of the final size with
+ * positional writes.  The output is the same as from
+ * {@link Base64#encode(File, File, boolean)} or {@link Base64#decode(File, File, boolean)}.
+ * <pre>
+ * ParallelBase64 base64 = new ParallelBase64();
+ * base64.encode(new File("backup.tar"), new File("backup.b64"), true);
+ * System.out.println(base64.getMegabytesPerSecond() + " MB/s");
+ * </pre>
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class ParallelBase64 {
+
+	/**
+	 * Number of bytes in each block if not otherwise specified,
+	 * a whole number of 57 byte lines.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 57 * (1 << 16);
+
+	/**
+	 * Number of bytes encoded into each line of 76 characters.
+	 */
+	private static final int LINE_BYTES = 57;
+
+	/**
+	 * Number of bytes of input copied out of the mapped block at once.
+	 * A whole number of lines.
+	 */
+	private static final int PIECE_SIZE = LINE_BYTES * 1024;
+
+	/**
+	 * Maximum number of blocks converted at once.
+	 */
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of bytes of input in each block.
+	 */
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	/**
+	 * Number of bytes read in the last conversion.
+	 */
+	private long inputBytes = 0;
+
+	/**
+	 * Number of bytes written in the last conversion.
+	 */
+	private long outputBytes = 0;
+
+	/**
+	 * Nanoseconds taken by the last conversion.
+	 */
+	private long elapsedNanos = 0;
+
+	/**
+	 * Create a converter that uses a thread for each processor.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelBase64(){
+	}
+
+	/**
+	 * Set the maximum number of blocks that will be converted at once.
+	 * By default this is the number of available processors.
+	 *
+	 * @param threadCount number of threads, at least one.
+	 * @throws IllegalArgumentException if threadCount is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setThreadCount(int threadCount){
+		if (threadCount < 1) throw new IllegalArgumentException("Bad thread count: " + threadCount);
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Set the number of bytes of input in each block.
+	 * The size is rounded down to a whole number of 57 byte lines.
+	 *
+	 * @param blockSize number of bytes, at least 57.
+	 * @throws IllegalArgumentException if blockSize is less than 57.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setBlockSize(int blockSize){
+		if (blockSize < LINE_BYTES) throw new IllegalArgumentException("Bad block size: " + blockSize);
+		this.blockSize = blockSize - blockSize % LINE_BYTES;
+	}
+
+	/**
+	 * Get the number of bytes read by the last conversion.
+	 *
+	 * @return size of the input file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getInputBytes(){
+		return inputBytes;
+	}
+
+	/**
+	 * Get the number of bytes written by the last conversion.
+	 *
+	 * @return size of the output file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getOutputBytes(){
+		return outputBytes;
+	}
+
+	/**
+	 * Get the time taken by the last conversion.
+	 *
+	 * @return elapsed time in nanoseconds.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getElapsedNanos(){
+		return elapsedNanos;
+	}
+
+	/**
+	 * Get the speed of the last conversion in megabytes
+	 * (1,048,576 bytes) of input per second.
+	 *
+	 * @return throughput, or zero if nothing has been converted.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getMegabytesPerSecond(){
+		if (elapsedNanos <= 0) return 0;
+		return (inputBytes / (double)(1 << 20)) / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Encode a file in Base64.
+	 *
+	 * @param fIn File to be encoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @throws IOException if an input or output error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void encode(File fIn, File fOut, final boolean lineBreaks) throws IOException {
+		long startTime = System.nanoTime();
+		RandomAccessFile in = new RandomAccessFile(fIn, "r");
+		RandomAccessFile out = null;
+		File temp = null;
+		try {
+			final FileChannel inChannel = in.getChannel();
+			final long inLength = inChannel.size();
+			long chars = (inLength + 2) / 3 * 4;
+			long outLength = lineBreaks ? chars + (chars + 75) / 76 : chars;
+			temp = File.createTempFile("Base64", null, fOut.getAbsoluteFile().getParentFile());
+			out = new RandomAccessFile(temp, "rw");
+			out.setLength(outLength);
+			final FileChannel outChannel = out.getChannel();
+			final int block = blockSize;
+			final int blockCount = (int)((inLength + block - 1) / block);
+			runBlocks(blockCount, new BlockTask(){
+				@Override void run(int index) throws IOException {
+					long start = (long)index * block;
+					int length = (int)Math.min(block, inLength - start);
+					long position = start / 3 * 4;
+					if (lineBreaks) position += start / LINE_BYTES;
+					ByteBuffer bytes = inChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+					Base64Encoder encoder = new Base64Encoder(lineBreaks);
+					byte[] inBuffer = new byte[Math.min(length, PIECE_SIZE)];
+					byte[] outBuffer = new byte[encoder.getEncodedLength(inBuffer.length) + encoder.getFinishLength()];
+					while (bytes.hasRemaining()){
+						int read = Math.min(bytes.remaining(), inBuffer.length);
+						bytes.get(inBuffer, 0, read);
+						int written = encoder.encode(inBuffer, 0, read, outBuffer, 0);
+						if (!bytes.hasRemaining() && index == blockCount - 1){
+							written += encoder.finish(outBuffer, written);
+						}
+						position += write(outChannel, outBuffer, written, position);
+					}
+				}
+			});
+			out.close();
+			out = null;
+			in.close();
+			in = null;
+			FileHelper.move(temp, fOut, true);
+			temp = null;
+			record(inLength, outLength, startTime);
+		} finally {
+			if (out != null) out.close();
+			if (in != null) in.close();
+			if (temp != null) temp.delete();
+		}
+	}
+
+	/**
+	 * Decode a Base64 encoded file.
+	 *
+	 * @param fIn File to be decoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an input or output error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void decode(File fIn, File fOut, boolean throwExceptions) throws IOException {
+		long startTime = System.nanoTime();
+		RandomAccessFile in = new RandomAccessFile(fIn, "r");
+		RandomAccessFile out = null;
+		File temp = null;
+		try {
+			final FileChannel inChannel = in.getChannel();
+			final long inLength = inChannel.size();
+			final int block = blockSize;
+			final int blockCount = (int)((inLength + block - 1) / block);
+
+			// Count the Base64 characters in each block and look for
+			// unexpected characters.
+			final long[] counts = new long[blockCount + 1];
+			final long[] firstPadding = new long[blockCount];
+			final long[] lastCharacter = new long[blockCount];
+			final boolean[] unexpected = new boolean[blockCount];
+			runBlocks(blockCount, new BlockTask(){
+				@Override void run(int index) throws IOException {
+					long start = (long)index * block;
+					int length = (int)Math.min(block, inLength - start);
+					ByteBuffer bytes = inChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+					byte[] inBuffer = new byte[Math.min(length, PIECE_SIZE)];
+					long count = 0;
+					firstPadding[index] = -1;
+					lastCharacter[index] = -1;
+					while (bytes.hasRemaining()){
+						long offset = start + bytes.position();
+						int read = Math.min(bytes.remaining(), inBuffer.length);
+						bytes.get(inBuffer, 0, read);
+						for (int i=0; i<read; i++){
+							int value = Base64.reverseBase64Chars[inBuffer[i] & 0xff];
+							if (value >= 0){
+								count++;
+								lastCharacter[index] = offset + i;
+							} else if (value == Base64.NON_BASE_64_PADDING){
+								if (firstPadding[index] == -1) firstPadding[index] = offset + i;
+							} else if (value == Base64.NON_BASE_64){
+								unexpected[index] = true;
+							}
+						}
+					}
+					counts[index + 1] = count;
+				}
+			});
+			long padding = -1;
+			long last = -1;
+			boolean bad = false;
+			for (int i=0; i<blockCount; i++){
+				if (padding == -1) padding = firstPadding[i];
+				last = Math.max(last, lastCharacter[i]);
+				bad |= unexpected[i];
+				counts[i + 1] += counts[i];
+			}
+			if (throwExceptions && (bad || (padding != -1 && last > padding))){
+				// Report the problem exactly as decoding the file in order would.
+				InputStream stream = new BufferedInputStream(new FileInputStream(fIn));
+				try {
+					Base64.decode(stream, new OutputStream(){
+						@Override public void write(int b){
+						}
+						@Override public void write(byte[] b, int off, int len){
+						}
+					}, true);
+				} finally {
+					stream.close();
+				}
+			}
+			final long total = counts[blockCount];
+			long outLength = total / 4 * 3 + Math.max(0, total % 4 - 1);
+
+			temp = File.createTempFile("Base64", null, fOut.getAbsoluteFile().getParentFile());
+			out = new RandomAccessFile(temp, "rw");
+			out.setLength(outLength);
+			final FileChannel outChannel = out.getChannel();
+			runBlocks(blockCount, new BlockTask(){
+				@Override void run(int index) throws IOException {
+					// This block decodes from the first group that starts in it
+					// through the end of the last group that starts in it.
+					long from = (counts[index] + 3) / 4 * 4;
+					long to = Math.min(total, (counts[index + 1] + 3) / 4 * 4);
+					if (from >= to) return;
+					long start = (long)index * block;
+					int length = (int)Math.min(block, inLength - start);
+					long position = from / 4 * 3;
+					ByteBuffer bytes = inChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+					Base64Decoder decoder = new Base64Decoder(false);
+					byte[] inBuffer = new byte[Math.min(length, PIECE_SIZE)];
+					byte[] outBuffer = new byte[decoder.getDecodedLength(inBuffer.length + 3) + 2];
+					long skip = from - counts[index];
+					while (bytes.hasRemaining()){
+						int read = Math.min(bytes.remaining(), inBuffer.length);
+						bytes.get(inBuffer, 0, read);
+						int i = 0;
+						for (; skip > 0 && i < read; i++){
+							if (Base64.reverseBase64Chars[inBuffer[i] & 0xff] >= 0) skip--;
+						}
+						position += write(outChannel, outBuffer, decoder.decode(inBuffer, i, read - i, outBuffer, 0), position);
+					}
+					// Complete the last group from the blocks that follow.
+					long needed = to - counts[index + 1];
+					long offset = start + length;
+					ByteBuffer following = ByteBuffer.wrap(inBuffer, 0, Math.min(inBuffer.length, 64));
+					while (needed > 0){
+						following.clear();
+						int read = inChannel.read(following, offset);
+						if (read <= 0) break;
+						offset += read;
+						for (int i=0; needed > 0 && i<read; i++){
+							if (Base64.reverseBase64Chars[inBuffer[i] & 0xff] >= 0){
+								needed--;
+								position += write(outChannel, outBuffer, decoder.decode(inBuffer, i, 1, outBuffer, 0), position);
+							}
+						}
+					}
+					if (to == total){
+						write(outChannel, outBuffer, decoder.finish(outBuffer, 0), position);
+					}
+				}
+			});
+			out.close();
+			out = null;
+			in.close();
+			in = null;
+			FileHelper.move(temp, fOut, true);
+			temp = null;
+			record(inLength, outLength, startTime);
+		} finally {
+			if (out != null) out.close();
+			if (in != null) in.close();
+			if (temp != null) temp.delete();
+		}
+	}
+
+	/**
+	 * Work done for one block.
+	 */
+	private static abstract class BlockTask {
+		/**
+		 * Convert a block.
+		 *
+		 * @param index which block.
+		 * @throws IOException if an input or output error occurs.
+		 */
+		abstract void run(int index) throws IOException;
+	}
+
+	/**
+	 * Run a task for each block in parallel.
+	 *
+	 * @param blockCount number of blocks.
+	 * @param task work to do for each block.
+	 * @throws IOException if the task throws one for any block.
+	 */
+	private void runBlocks(int blockCount, final BlockTask task) throws IOException {
+		if (blockCount == 0) return;
+		final Throwable[] errors = new Throwable[blockCount];
+		Parallelizer parallelizer = new Parallelizer(threadCount);
+		try {
+			parallelizer.forEach(0, blockCount, 1, new ParallelRangeBody(){
+				public void run(int start, int end){
+					for (int i=start; i<end; i++){
+						try {
+							task.run(i);
+						} catch (Throwable t){
+							errors[i] = t;
+						}
+					}
+				}
+			});
+		} catch (InterruptedException ix){
+			parallelizer.interrupt();
+			throw new InterruptedIOException(ix.getMessage());
+		}
+		for (int i=0; i<blockCount; i++){
+			rethrow(errors[i]);
+		}
+	}
+
+	/**
+	 * Write the start of an array at a position in a file.
+	 *
+	 * @param channel file to which to write.
+	 * @param bytes data to write.
+	 * @param length number of bytes to write.
+	 * @param position place in the file at which to write.
+	 * @return the length.
+	 * @throws IOException if an output error occurs.
+	 */
+	private static int write(FileChannel channel, byte[] bytes, int length, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+		while (buffer.hasRemaining()){
+			channel.write(buffer, position + buffer.position());
+		}
+		return length;
+	}
+
+	/**
+	 * Save the statistics of a conversion that has finished.
+	 *
+	 * @param inLength bytes read.
+	 * @param outLength bytes written.
+	 * @param startTime value of System.nanoTime() when the conversion started.
+	 */
+	private void record(long inLength, long outLength, long startTime){
+		inputBytes = inLength;
+		outputBytes = outLength;
+		elapsedNanos = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Rethrow an exception caught in another thread.
+	 *
+	 * @param t exception to rethrow, or null.
+	 * @throws IOException if the exception was an IOException.
+	 */
+	private static void rethrow(Throwable t) throws IOException {
+		if (t == null) return;
+		if (t instanceof IOException) throw (IOException)t;
+		if (t instanceof RuntimeException) throw (RuntimeException)t;
+		if (t instanceof Error) throw (Error)t;
+		throw new RuntimeException(t);
+	}
+}
@@ -0,0 +1,1094 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Read a comma separated value file using several threads at once.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/CSV.html">ostermiller.org</a>.
+ * <p>
+ * The file is split into chunks of bytes.  Each chunk is scanned for
+ * quotes and line breaks to find where the first record that starts in
+ * it begins, taking into account line breaks inside of quoted values.
+ * The records from each chunk are then read by a CSVParser or an
+ * ExcelCSVParser, with chunks being read in parallel by a Parallelizer.
+ * The values returned are the same as would be returned by reading the
+ * whole file with a single parser, and line numbers are counted from the
+ * start of the file.
+ * <p>
+ * Values may be read in order through the CSVParse interface, or passed
+ * to a CSVLineListener by readLines() either in order or as soon
+ * as each chunk is read.
+ * <pre>
+ * ParallelCSVParser parser = new ParallelCSVParser(new File("data.csv"), CSVFormat.EXCEL);
+ * parser.readLines(new CSVLineListener(){
+ *     public void line(String[] values, int lineNumber){
+ *         // must be thread safe when not read in order
+ *     }
+ * }, false);
+ * parser.close();
+ * </pre>
+ * <p>
+ * Because the file is scanned as bytes, the character set must encode
+ * all ASCII characters as single bytes that do not appear within the
+ * encoding of any other character.  UTF-8, US-ASCII, and the ISO-8859
+ * character sets meet this requirement; UTF-16 does not.  The delimiter,
+ * quote, and comment characters must be ASCII.
+ *
+ * @see com.Ostermiller.util.CSVParser
+ * @see com.Ostermiller.util.ExcelCSVParser
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class ParallelCSVParser implements CSVParse {
+
+	/**
+	 * Number of bytes in each chunk if not otherwise specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+	/**
+	 * Scanner state: at the start of a line.
+	 */
+	private static final int LINE = 0;
+
+	/**
+	 * Scanner state: at the start of a value after a delimiter or white space.
+	 */
+	private static final int FIELD = 1;
+
+	/**
+	 * Scanner state: in a value that is not quoted, or after a closing quote.
+	 */
+	private static final int VALUE = 2;
+
+	/**
+	 * Scanner state: inside quotes.
+	 */
+	private static final int QUOTED = 3;
+
+	/**
+	 * Scanner state: after a backslash inside quotes.
+	 */
+	private static final int ESCAPE = 4;
+
+	/**
+	 * Scanner state: after a quote that may be closing or may be doubled.
+	 */
+	private static final int QUOTE_END = 5;
+
+	/**
+	 * Scanner state: in a comment line.
+	 */
+	private static final int COMMENT = 6;
+
+	/**
+	 * Number of scanner states.
+	 */
+	private static final int STATE_COUNT = 7;
+
+	/**
+	 * Byte class: no special meaning.
+	 */
+	private static final int OTHER = 0;
+
+	/**
+	 * Byte class: the delimiter.
+	 */
+	private static final int DELIMITER = 1;
+
+	/**
+	 * Byte class: the quote.
+	 */
+	private static final int QUOTE = 2;
+
+	/**
+	 * Byte class: backslash.
+	 */
+	private static final int BACKSLASH = 3;
+
+	/**
+	 * Byte class: carriage return.
+	 */
+	private static final int CR = 4;
+
+	/**
+	 * Byte class: line feed.
+	 */
+	private static final int LF = 5;
+
+	/**
+	 * Byte class: space, tab or form feed.
+	 */
+	private static final int WHITESPACE = 6;
+
+	/**
+	 * Added to a byte class if the byte may start a comment.
+	 */
+	private static final int COMMENT_START = 8;
+
+	/**
+	 * Number of byte classes.
+	 */
+	private static final int CLASS_COUNT = 16;
+
+	/**
+	 * File being read.
+	 */
+	private RandomAccessFile randomAccessFile;
+
+	/**
+	 * Channel on the file being read.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Dialect of CSV.
+	 */
+	private CSVFormat format;
+
+	/**
+	 * Character set of the file.
+	 */
+	private Charset charset;
+
+	/**
+	 * Parser used to check characters as they are set.
+	 */
+	private CSVParse template;
+
+	/**
+	 * Current delimiter.
+	 */
+	private char delimiter = ',';
+
+	/**
+	 * Current quote.
+	 */
+	private char quote = '\"';
+
+	/**
+	 * Delimiter and quote changes in the order that they were made,
+	 * as the letter D or Q followed by the new character.  Some
+	 * changes are only allowed in a particular order, so they are
+	 * replayed in the same order for each chunk.
+	 */
+	private StringBuilder changes = new StringBuilder();
+
+	/**
+	 * Escape sequences as given to setEscapes().
+	 */
+	private String escapes = "";
+
+	/**
+	 * Replacements as given to setEscapes().
+	 */
+	private String replacements = "";
+
+	/**
+	 * Comment characters as given to setCommentStart().
+	 */
+	private String commentDelims = "";
+
+	/**
+	 * Maximum number of chunks read at once.
+	 */
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Number of bytes in each chunk.
+	 */
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Class of each byte value, set when reading starts.
+	 */
+	private int[] byteClasses;
+
+	/**
+	 * Next scanner state, indexed by state then byte class.
+	 */
+	private int[][] transitions;
+
+	/**
+	 * The chunks of the file, null until reading starts.
+	 */
+	private Chunk[] chunks;
+
+	/**
+	 * Runs the jobs that read chunks.
+	 */
+	private Parallelizer parallelizer;
+
+	/**
+	 * Index of the next chunk to be given to the parallelizer.
+	 */
+	private int nextToSchedule = 0;
+
+	/**
+	 * Index of the chunk from which lines are being returned.
+	 */
+	private int current = 0;
+
+	/**
+	 * Index of the next line to return from the current chunk.
+	 */
+	private int currentLine = 0;
+
+	/**
+	 * Index of the next value to return from the current line.
+	 */
+	private int currentValue = 0;
+
+	/**
+	 * The line number the last value came from, or -1 if
+	 * no values have been returned.
+	 */
+	private int lastLine = -1;
+
+	/**
+	 * Create a parser to read backslash escaped comma separated values
+	 * from a file using the platform default character set.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @throws IOException if the file cannot be opened.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelCSVParser(File file) throws IOException {
+		this(file, CSVFormat.CSV);
+	}
+
+	/**
+	 * Create a parser to read comma separated values from a file
+	 * using the platform default character set.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @param format dialect of CSV.
+	 * @throws IOException if the file cannot be opened.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelCSVParser(File file, CSVFormat format) throws IOException {
+		this(file, format, Charset.defaultCharset().name());
+	}
+
+	/**
+	 * Create a parser to read comma separated values from a file.
+	 *
+	 * @param file file that contains comma separated values.
+	 * @param format dialect of CSV.
+	 * @param charsetName character set of the file.
+	 * @throws IOException if the file cannot be opened.
+	 * @throws IllegalArgumentException if the character set cannot be read byte by byte.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelCSVParser(File file, CSVFormat format, String charsetName) throws IOException {
+		this.format = format;
+		charset = Charset.forName(charsetName);
+		String ascii = "\r\n\t\f \"\\,;:|'#!";
+		if (!Arrays.equals(ascii.getBytes(charset.name()), ascii.getBytes("ISO-8859-1"))){
+			throw new IllegalArgumentException(charsetName + " does not encode ASCII as single bytes.");
+		}
+		if (format == CSVFormat.EXCEL){
+			template = new ExcelCSVParser(new StringReader(""));
+		} else {
+			template = new CSVParser(new StringReader(""));
+		}
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+	}
+
+	/**
+	 * Throw an exception if reading has started.
+	 *
+	 * @throws IllegalStateException if reading has started.
+	 */
+	private void checkNotStarted(){
+		if (chunks != null) throw new IllegalStateException("Reading has already started.");
+	}
+
+	/**
+	 * Set the maximum number of chunks that will be read at once.
+	 * By default this is the number of available processors.
+	 *
+	 * @param threadCount number of threads, at least one.
+	 * @throws IllegalArgumentException if threadCount is less than one.
+	 * @throws IllegalStateException if reading has started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setThreadCount(int threadCount){
+		checkNotStarted();
+		if (threadCount < 1) throw new IllegalArgumentException("Bad thread count: " + threadCount);
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Set the number of bytes in each chunk.
+	 *
+	 * @param chunkSize number of bytes, at least one.
+	 * @throws IllegalArgumentException if chunkSize is less than one.
+	 * @throws IllegalStateException if reading has started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setChunkSize(int chunkSize){
+		checkNotStarted();
+		if (chunkSize < 1) throw new IllegalArgumentException("Bad chunk size: " + chunkSize);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Change this parser so that it uses a new delimiter.
+	 * <p>
+	 * The initial character is a comma, the delimiter cannot be changed
+	 * to a quote or other character that has special meaning in CSV.
+	 *
+	 * @param newDelim delimiter to which to switch.
+	 * @throws BadDelimiterException if the character cannot be used as a delimiter.
+	 * @throws IllegalStateException if reading has started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void changeDelimiter(char newDelim) throws BadDelimiterException {
+		checkNotStarted();
+		if (newDelim > 0x7f) throw new BadDelimiterException(newDelim + " is not an ASCII delimiter.");
+		template.changeDelimiter(newDelim);
+		delimiter = newDelim;
+		changes.append('D').append(newDelim);
+	}
+
+	/**
+	 * Change this parser so that it uses a new character for quoting.
+	 * <p>
+	 * The initial character is a double quote ("), the delimiter cannot be changed
+	 * to a comma or other character that has special meaning in CSV.
+	 *
+	 * @param newQuote character to use for quoting.
+	 * @throws BadQuoteException if the character cannot be used as a quote.
+	 * @throws IllegalStateException if reading has started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void changeQuote(char newQuote) throws BadQuoteException {
+		checkNotStarted();
+		if (newQuote > 0x7f) throw new BadQuoteException(newQuote + " is not an ASCII quote.");
+		template.changeQuote(newQuote);
+		quote = newQuote;
+		changes.append('Q').append(newQuote);
+	}
+
+	/**
+	 * Specify escape sequences and their replacements, as for
+	 * CSVParser.setEscapes().
+	 *
+	 * @param escapes a list of characters that will represent escape sequences.
+	 * @param replacements the list of replacement characters for those escape sequences.
+	 * @throws IllegalStateException if reading has started or the format is Excel, which has no escape sequences.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setEscapes(String escapes, String replacements){
+		checkNotStarted();
+		if (format == CSVFormat.EXCEL) throw new IllegalStateException("Excel CSV does not use escape sequences.");
+		this.escapes = escapes;
+		this.replacements = replacements;
+	}
+
+	/**
+	 * Set the characters that indicate a comment at the beginning of the line.
+	 * By default there are no comments.
+	 *
+	 * @param commentDelims list of ASCII characters a comment line may start with.
+	 * @throws IllegalArgumentException if a character is not ASCII.
+	 * @throws IllegalStateException if reading has started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setCommentStart(String commentDelims){
+		checkNotStarted();
+		for (int i=0; i<commentDelims.length(); i++){
+			if (commentDelims.charAt(i) > 0x7f) throw new IllegalArgumentException(commentDelims.charAt(i) + " is not an ASCII comment character.");
+		}
+		this.commentDelims = commentDelims;
+	}
+
+	/**
+	 * Create a parser for part of the file with the current settings.
+	 *
+	 * @param in reader for part of the file.
+	 * @return a parser.
+	 */
+	private CSVParse createParser(Reader in){
+		CSVParse parser;
+		if (format == CSVFormat.EXCEL){
+			ExcelCSVParser excelParser = new ExcelCSVParser(in);
+			excelParser.setCommentStart(commentDelims);
+			parser = excelParser;
+		} else {
+			parser = new CSVParser(in, escapes, replacements, commentDelims);
+		}
+		for (int i=0; i<changes.length(); i+=2){
+			if (changes.charAt(i) == 'D'){
+				parser.changeDelimiter(changes.charAt(i+1));
+			} else {
+				parser.changeQuote(changes.charAt(i+1));
+			}
+		}
+		return parser;
+	}
+
+	/**
+	 * Set up the byte classes and state transitions for the scanner.
+	 */
+	private void buildTables(){
+		byteClasses = new int[256];
+		for (int b=0; b<256; b++){
+			int byteClass = OTHER;
+			if (b == delimiter){
+				byteClass = DELIMITER;
+			} else if (b == quote){
+				byteClass = QUOTE;
+			} else if (b == '\r'){
+				byteClass = CR;
+			} else if (b == '\n'){
+				byteClass = LF;
+			} else if (format == CSVFormat.CSV && (b == ' ' || b == '\t' || b == '\f')){
+				byteClass = WHITESPACE;
+			} else if (format == CSVFormat.CSV && b == '\\'){
+				byteClass = BACKSLASH;
+			}
+			if ((byteClass == OTHER || byteClass == BACKSLASH) && commentDelims.indexOf((char)b) != -1){
+				byteClass += COMMENT_START;
+			}
+			byteClasses[b] = byteClass;
+		}
+		transitions = new int[STATE_COUNT][CLASS_COUNT];
+		for (int byteClass=0; byteClass<CLASS_COUNT; byteClass++){
+			int c = byteClass & ~COMMENT_START;
+			boolean eol = (c == CR || c == LF);
+			// A new value starts at the start of a line or after a delimiter.
+			int startValue;
+			if (c == DELIMITER || c == WHITESPACE){
+				startValue = FIELD;
+			} else if (c == QUOTE){
+				startValue = QUOTED;
+			} else if (eol){
+				startValue = LINE;
+			} else {
+				startValue = VALUE;
+			}
+			transitions[LINE][byteClass] = ((byteClass & COMMENT_START) != 0) ? COMMENT : startValue;
+			transitions[FIELD][byteClass] = startValue;
+			transitions[VALUE][byteClass] = (c == DELIMITER) ? FIELD : (eol ? LINE : VALUE);
+			if (c == QUOTE){
+				transitions[QUOTED][byteClass] = (format == CSVFormat.EXCEL) ? QUOTE_END : VALUE;
+			} else if (c == BACKSLASH){
+				transitions[QUOTED][byteClass] = ESCAPE;
+			} else {
+				transitions[QUOTED][byteClass] = QUOTED;
+			}
+			transitions[ESCAPE][byteClass] = QUOTED;
+			transitions[QUOTE_END][byteClass] = (c == QUOTE) ? QUOTED : transitions[VALUE][byteClass];
+			transitions[COMMENT][byteClass] = eol ? LINE : COMMENT;
+		}
+	}
+
+	/**
+	 * Map part of the file into memory.
+	 *
+	 * @param position first byte to map.
+	 * @param length maximum number of bytes to map.
+	 * @return the mapped bytes, which may be fewer than requested at the end of the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private ByteBuffer map(long position, long length) throws IOException {
+		long size = channel.size();
+		if (position + length > size) length = size - position;
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+	}
+
+	/**
+	 * Scan a chunk starting from every possible scanner state at once.
+	 * Scans that reach the same state are merged and continue as one.
+	 *
+	 * @param bytes the chunk followed by one byte of look ahead if available.
+	 * @param length number of bytes in the chunk.
+	 * @param endStates set to the state at the end of the chunk for each start state.
+	 * @param lineCounts set to the number of line breaks outside quotes for each start state.
+	 * @param firstLines set to the index after the first line break outside quotes
+	 *     for each start state, or -1 if there is none.
+	 * @return whether the chunk ends with the carriage return of a CR LF pair.
+	 */
+	private boolean summarize(ByteBuffer bytes, int length, int[] endStates, int[] lineCounts, int[] firstLines){
+		int[] pathStates = new int[STATE_COUNT];
+		int[] pathLines = new int[STATE_COUNT];
+		int[] startPaths = new int[STATE_COUNT];
+		int[] lineOffsets = new int[STATE_COUNT];
+		for (int state=0; state<STATE_COUNT; state++){
+			pathStates[state] = state;
+			startPaths[state] = state;
+			firstLines[state] = -1;
+		}
+		int paths = STATE_COUNT;
+		int unresolved = STATE_COUNT;
+		int limit = bytes.limit();
+		boolean crlf = false;
+		for (int i=0; i<length; i++){
+			int byteClass = byteClasses[bytes.get(i) & 0xff];
+			crlf = byteClass == CR && i+1 < limit && bytes.get(i+1) == '\n';
+			for (int path=0; path<paths; path++){
+				int next = transitions[pathStates[path]][byteClass];
+				if (next == LINE && !crlf){
+					pathLines[path]++;
+					if (unresolved > 0){
+						for (int state=0; state<STATE_COUNT; state++){
+							if (startPaths[state] == path && firstLines[state] == -1){
+								firstLines[state] = i + 1;
+								unresolved--;
+							}
+						}
+					}
+				}
+				pathStates[path] = next;
+			}
+			if (paths > 1 && byteClass != OTHER){
+				for (int path=paths-1; path>0; path--){
+					for (int other=0; other<path; other++){
+						if (pathStates[path] == pathStates[other]){
+							// merge this path into the other and move the last path into its place
+							paths--;
+							for (int state=0; state<STATE_COUNT; state++){
+								if (startPaths[state] == path){
+									startPaths[state] = other;
+									lineOffsets[state] += pathLines[path] - pathLines[other];
+								} else if (startPaths[state] == paths){
+									startPaths[state] = path;
+								}
+							}
+							pathStates[path] = pathStates[paths];
+							pathLines[path] = pathLines[paths];
+							break;
+						}
+					}
+				}
+			}
+		}
+		for (int state=0; state<STATE_COUNT; state++){
+			endStates[state] = pathStates[startPaths[state]];
+			lineCounts[state] = pathLines[startPaths[state]] + lineOffsets[state];
+		}
+		return crlf;
+	}
+
+	/**
+	 * Scan the file in parallel to find the state and line number at the
+	 * start of each chunk, and where the first line that starts in each
+	 * chunk begins.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void start() throws IOException {
+		if (chunks != null) return;
+		buildTables();
+		long size = channel.size();
+		int chunkCount = (int)((size + chunkSize - 1) / chunkSize);
+		final Chunk[] newChunks = new Chunk[chunkCount];
+		parallelizer = new Parallelizer(threadCount);
+		for (int i=0; i<chunkCount; i++){
+			final Chunk chunk = new Chunk(i, (long)i * chunkSize);
+			newChunks[i] = chunk;
+			parallelizer.run(new Runnable(){
+				public void run(){
+					try {
+						ByteBuffer bytes = map(chunk.position, chunkSize + 1L);
+						chunk.endsInCRLF = summarize(bytes, Math.min(chunkSize, bytes.limit()), chunk.endStates, chunk.lineCounts, chunk.firstLines);
+					} catch (Throwable t){
+						chunk.error = t;
+					}
+				}
+			});
+		}
+		try {
+			parallelizer.join();
+		} catch (InterruptedException ix){
+			parallelizer.interrupt();
+			throw new InterruptedIOException(ix.getMessage());
+		}
+		int state = LINE;
+		int lineNumber = 0;
+		for (int i=0; i<chunkCount; i++){
+			Chunk chunk = newChunks[i];
+			rethrow(chunk.error);
+			chunk.startState = state;
+			chunk.startLineNumber = lineNumber;
+			state = chunk.endStates[state];
+			lineNumber += chunk.lineCounts[chunk.startState];
+		}
+		// Work backwards so that a chunk in which no line starts can take
+		// the line start of the chunk after it.
+		long lineStart = size;
+		int lineStartBreaks = 0;
+		for (int i=chunkCount-1; i>0; i--){
+			Chunk chunk = newChunks[i];
+			if (chunk.startState == LINE && !newChunks[i-1].endsInCRLF){
+				lineStart = chunk.position;
+				lineStartBreaks = 0;
+			} else if (chunk.firstLines[chunk.startState] != -1){
+				lineStart = chunk.position + chunk.firstLines[chunk.startState];
+				lineStartBreaks = 1;
+			}
+			chunk.lineStart = lineStart;
+			chunk.lineStartBreaks = lineStartBreaks;
+		}
+		chunks = newChunks;
+	}
+
+	/**
+	 * Rethrow an exception caught in another thread.
+	 *
+	 * @param t exception to rethrow, or null.
+	 * @throws IOException if the exception was an IOException.
+	 */
+	private static void rethrow(Throwable t) throws IOException {
+		if (t == null) return;
+		if (t instanceof IOException) throw (IOException)t;
+		if (t instanceof RuntimeException) throw (RuntimeException)t;
+		if (t instanceof Error) throw (Error)t;
+		throw new RuntimeException(t);
+	}
+
+	/**
+	 * A chunk of the file and the lines read from it.
+	 */
+	private class Chunk implements Runnable {
+
+		/**
+		 * Index of this chunk.
+		 */
+		private final int index;
+
+		/**
+		 * Position in the file of the first byte of this chunk.
+		 */
+		private final long position;
+
+		/**
+		 * State at the end of this chunk for each possible start state.
+		 */
+		private final int[] endStates = new int[STATE_COUNT];
+
+		/**
+		 * Line breaks outside quotes in this chunk for each possible start state.
+		 */
+		private final int[] lineCounts = new int[STATE_COUNT];
+
+		/**
+		 * For each possible start state, the index in this chunk after the
+		 * first line break outside quotes, or -1 if there is none.
+		 */
+		private final int[] firstLines = new int[STATE_COUNT];
+
+		/**
+		 * Whether this chunk ends with the carriage return of a CR LF pair.
+		 */
+		private boolean endsInCRLF;
+
+		/**
+		 * Scanner state at the first byte of this chunk.
+		 */
+		private int startState;
+
+		/**
+		 * Position in the file of the first line that starts in this chunk,
+		 * or of a later chunk if none does.
+		 */
+		private long lineStart;
+
+		/**
+		 * Number of line breaks between the first byte of this chunk and lineStart.
+		 */
+		private int lineStartBreaks;
+
+		/**
+		 * Number of line breaks before the first byte of this chunk.
+		 */
+		private int startLineNumber;
+
+		/**
+		 * Listener to which lines are passed, or null to keep the lines.
+		 */
+		private CSVLineListener listener;
+
+		/**
+		 * Lines read from this chunk if there is no listener.
+		 */
+		private ArrayList<String[]> lines = new ArrayList<String[]>();
+
+		/**
+		 * Line number of each line read from this chunk.
+		 */
+		private int[] lineNumbers = new int[16];
+
+		/**
+		 * Highest line number read from this chunk.
+		 */
+		private int lastLineNumber = -1;
+
+		/**
+		 * Exception thrown while scanning or reading this chunk.
+		 */
+		private Throwable error;
+
+		/**
+		 * Whether this chunk has been read.
+		 */
+		private boolean done = false;
+
+		/**
+		 * Create a chunk.
+		 *
+		 * @param index index of the chunk
+		 * @param position position in the file of the first byte of the chunk
+		 */
+		private Chunk(int index, long position){
+			this.index = index;
+			this.position = position;
+		}
+
+		/**
+		 * Read the lines that start in this chunk.
+		 */
+		public void run(){
+			try {
+				long start;
+				int lineNumberOffset;
+				if (index == 0){
+					start = 0;
+					lineNumberOffset = 0;
+				} else {
+					start = lineStart;
+					lineNumberOffset = startLineNumber + lineStartBreaks;
+				}
+				long end;
+				if (index + 1 == chunks.length){
+					end = channel.size();
+				} else {
+					end = chunks[index+1].lineStart;
+				}
+				if (end > start){
+					CSVParse parser = createParser(new InputStreamReader(new ChannelInputStream(channel, start, end), charset));
+					String[] line;
+					while ((line = parser.getLine()) != null){
+						int lineNumber = parser.getLastLineNumber() + lineNumberOffset;
+						lastLineNumber = lineNumber;
+						if (listener != null){
+							listener.line(line, lineNumber);
+						} else {
+							if (lines.size() == lineNumbers.length){
+								int[] newLineNumbers = new int[lineNumbers.length * 2];
+								System.arraycopy(lineNumbers, 0, newLineNumbers, 0, lineNumbers.length);
+								lineNumbers = newLineNumbers;
+							}
+							lineNumbers[lines.size()] = lineNumber;
+							lines.add(line);
+						}
+					}
+				}
+			} catch (Throwable t){
+				error = t;
+			} finally {
+				synchronized(ParallelCSVParser.this){
+					done = true;
+					ParallelCSVParser.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a range of bytes from a file channel without changing
+	 * the position of the channel, so that many of these may
+	 * read from the same channel at once.
+	 */
+	private static class ChannelInputStream extends InputStream {
+
+		/**
+		 * Channel from which to read.
+		 */
+		private FileChannel channel;
+
+		/**
+		 * Position of the next byte to read.
+		 */
+		private long position;
+
+		/**
+		 * Position after the last byte to read.
+		 */
+		private long end;
+
+		/**
+		 * Create a stream on part of a channel.
+		 *
+		 * @param channel channel from which to read.
+		 * @param start position of the first byte.
+		 * @param end position after the last byte.
+		 */
+		private ChannelInputStream(FileChannel channel, long start, long end){
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read = read(b, 0, 1);
+			if (read <= 0) return -1;
+			return b[0] & 0xff;
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end) return -1;
+			if (len > end - position) len = (int)(end - position);
+			int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+			if (read > 0) position += read;
+			return read;
+		}
+	}
+
+	/**
+	 * Give chunks to the parallelizer so that the given number of chunks
+	 * past the current one are being read.
+	 *
+	 * @param ahead number of chunks to schedule past the current chunk.
+	 * @param listener listener for the scheduled chunks, or null to keep the lines.
+	 */
+	private void schedule(int ahead, CSVLineListener listener){
+		while (nextToSchedule < chunks.length && nextToSchedule <= current + ahead){
+			Chunk chunk = chunks[nextToSchedule++];
+			chunk.listener = listener;
+			parallelizer.run(chunk);
+		}
+	}
+
+	/**
+	 * Wait for the given chunk to be read.
+	 *
+	 * @param chunk chunk for which to wait.
+	 * @throws IOException if an error occurred while reading the chunk.
+	 */
+	private void waitFor(Chunk chunk) throws IOException {
+		synchronized(this){
+			while (!chunk.done){
+				try {
+					wait();
+				} catch (InterruptedException ix){
+					throw new InterruptedIOException(ix.getMessage());
+				}
+			}
+		}
+		rethrow(chunk.error);
+	}
+
+	/**
+	 * Move to the next line that has values that have not been
+	 * returned, reading chunks as needed.
+	 *
+	 * @return the chunk containing the line, or null if there are no more lines.
+	 * @throws IOException if an error occurs while reading.
+	 */
+	private Chunk advance() throws IOException {
+		start();
+		while (current < chunks.length){
+			schedule(threadCount * 2, null);
+			Chunk chunk = chunks[current];
+			waitFor(chunk);
+			if (currentLine < chunk.lines.size()){
+				if (currentValue < chunk.lines.get(currentLine).length) return chunk;
+				currentLine++;
+				currentValue = 0;
+				if (currentLine < chunk.lines.size()) return chunk;
+			}
+			// Done with this chunk, release its lines.
+			chunk.lines = null;
+			current++;
+			currentLine = 0;
+			currentValue = 0;
+		}
+		return null;
+	}
+
+	/**
+	 * Read the next value from the file.  The line number from
+	 * which this value was taken can be obtained from getLastLineNumber().
+	 *
+	 * @return the next value or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String nextValue() throws IOException {
+		Chunk chunk = advance();
+		if (chunk == null) return null;
+		lastLine = chunk.lineNumbers[currentLine];
+		return chunk.lines.get(currentLine)[currentValue++];
+	}
+
+	/**
+	 * Get the line number that the last value came from.
+	 *
+	 * @return line number or -1 if no values have been returned yet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int lastLineNumber(){
+		return lastLine;
+	}
+
+	/**
+	 * Get all the values from a line.
+	 * <p>
+	 * If the line has already been partially read, only the
+	 * values that have not already been read will be included.
+	 *
+	 * @return all the values from the line or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] getLine() throws IOException {
+		Chunk chunk = advance();
+		if (chunk == null) return null;
+		String[] line = chunk.lines.get(currentLine);
+		if (currentValue > 0){
+			String[] rest = new String[line.length - currentValue];
+			System.arraycopy(line, currentValue, rest, 0, rest.length);
+			line = rest;
+		}
+		lastLine = chunk.lineNumbers[currentLine];
+		currentLine++;
+		currentValue = 0;
+		return line;
+	}
+
+	/**
+	 * Get the line number that the last value came from.
+	 * <p>
+	 * New line breaks that occur in the middle of a value are not
+	 * counted in the line number count.
+	 *
+	 * @return line number or -1 if no values have been returned yet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getLastLineNumber(){
+		return lastLine;
+	}
+
+	/**
+	 * Get all the values from the file.
+	 * <p>
+	 * If the file has already been partially read, only the
+	 * values that have not already been read will be included.
+	 * <p>
+	 * Each line of the file that has at least one value will be
+	 * represented.  Comments and empty lines are ignored.
+	 * <p>
+	 * The resulting double array may be jagged.
+	 *
+	 * @return all the values from the file or null if there are no more values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[][] getAllValues() throws IOException {
+		ArrayList<String[]> v = new ArrayList<String[]>();
+		String[] line;
+		while((line = getLine()) != null){
+			v.add(line);
+		}
+		if (v.size() == 0){
+			return null;
+		}
+		String[][] result = new String[v.size()][];
+		return v.toArray(result);
+	}
+
+	/**
+	 * Read the rest of the lines from the file, passing each one to the listener.
+	 * <p>
+	 * When the lines are not requested in order, each chunk of the file
+	 * passes its lines to the listener from the thread that reads it,
+	 * so the listener will be called from several threads at once.
+	 * The lines from each chunk are still passed in order and all lines
+	 * have been passed by the time this method returns.
+	 *
+	 * @param listener call back for each line.
+	 * @param inOrder true to pass lines in order from the calling thread,
+	 *     false to pass them from many threads as soon as they are read.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void readLines(CSVLineListener listener, boolean inOrder) throws IOException {
+		if (inOrder){
+			String[] line;
+			while((line = getLine()) != null){
+				listener.line(line, lastLine);
+			}
+			return;
+		}
+		start();
+		// Chunks that have already been given to the parallelizer keep their lines.
+		int scheduled = nextToSchedule;
+		schedule(chunks.length, listener);
+		String[] line;
+		while (current < scheduled && (line = getLine()) != null){
+			listener.line(line, lastLine);
+		}
+		for (int i=scheduled; i<chunks.length; i++){
+			waitFor(chunks[i]);
+			if (chunks[i].lastLineNumber > lastLine) lastLine = chunks[i].lastLineNumber;
+		}
+		current = chunks.length;
+	}
+
+	/**
+	 * Close the file.
+	 *
+	 * @throws IOException if an error occurs while closing the file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void close() throws IOException {
+		if (parallelizer != null) parallelizer.interrupt();
+		randomAccessFile.close();
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Function applied to each item of a parallel map run by a Parallelizer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * Items are handed to the mapper from several threads at once.
+ *
+ * @param <T> type of the items
+ * @param <R> type of the results
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface ParallelMapper<T,R> {
+
+	/**
+	 * Compute the result for one item.
+	 *
+	 * @param item the item.
+	 * @return the result for the item.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public R map(T item);
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Work done for each chunk of a parallel loop over a range of integers
+ * run by a Parallelizer.  More information about this class is available from
+ * <a target="_top" href="http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * The body loops over each chunk itself, so no object is created
+ * for each index.  Chunks are handed to the body from several threads at once.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface ParallelRangeBody {
+
+	/**
+	 * Do the work for each index in a chunk.
+	 *
+	 * @param start first index of the chunk.
+	 * @param end index after the last index of the chunk.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void run(int start, int end);
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Combines the items of a parallel reduction run by a Parallelizer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * Each thread of the reduction creates its own accumulator and folds
+ * the items it is given into it without any locking.  When all the
+ * items have been accumulated, the accumulators are combined in the
+ * calling thread.  The result does not depend on how the items were
+ * divided among the threads as long as accumulating and combining are
+ * associative and the accumulator from create() adds nothing.
+ *
+ * @param <T> type of the items
+ * @param <A> type of the accumulators
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface ParallelReducer<T,A> {
+
+	/**
+	 * Create an empty accumulator.
+	 *
+	 * @return an accumulator that has no items.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public A create();
+
+	/**
+	 * Add an item to an accumulator.
+	 *
+	 * @param accumulator the accumulator, which may be changed.
+	 * @param item the item.
+	 * @return the accumulator with the item added, which may be the same object.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public A accumulate(A accumulator, T item);
+
+	/**
+	 * Combine two accumulators.
+	 *
+	 * @param first accumulator of the earlier items, which may be changed.
+	 * @param second accumulator of the later items.
+	 * @return an accumulator of the items of both, which may be the first.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public A combine(A first, A second);
+
+}
@@ -21,6 +21,7 @@
 package com.Ostermiller.util;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Runs multiple jobs in parallel, n threads at a time, and waits
@@ -48,7 +49,24 @@ import java.util.*;
  * }
  * parallelizer.join();
  * System.out.println("done");
- *
+ * </pre>
+ * <p>
+ * By default each job is run in a new thread.  When there are many short
+ * jobs, a Parallelizer may instead be given an ExecutorService, such as
+ * a fixed thread pool, to which its jobs are handed.  The threads of the
+ * executor are reused from job to job, while the Parallelizer still limits
+ * how many of its jobs run at once, tracks which threads are running them,
+ * and rethrows their exceptions and errors from join().
+ * <p>
+ * The number of jobs that are queued, running, and finished, and histograms
+ * of how long jobs waited and ran, are available from getMetrics() while the
+ * jobs run.  A ParallelizerListener may be set to be told of each job.
+ * <p>
+ * The queue of jobs waiting to be run has no limit by default.  It may be
+ * limited, with an AdmissionPolicy that decides whether run() waits for room,
+ * runs the job itself, throws, or drops the oldest waiting job when the queue
+ * is full.
+ * <p>
  * More information about this class is available from <a target="_top" href=
  * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
  *
@@ -67,12 +85,84 @@ public class Parallelizer
 	 */
 	public static final int INFINITE_THREAD_LIMIT = 0;
 
+	/**
+	 * Constant that may be passed as the queueLimit argument
+	 * of a constructor indicating that no limit should be placed
+	 * on the number of jobs that may wait to be run.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int INFINITE_QUEUE_LIMIT = -1;
+
+	/**
+	 * What run() does with a job when the queue of jobs waiting to be
+	 * run is full.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public enum AdmissionPolicy {
+		/**
+		 * Wait until there is room in the queue.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		BLOCK,
+		/**
+		 * Run the job in the calling thread before returning.
+		 * This slows the caller to the rate at which jobs finish.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		CALLER_RUNS,
+		/**
+		 * Throw a java.util.concurrent.RejectedExecutionException.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		REJECT,
+		/**
+		 * Remove the job that has waited longest from the queue,
+		 * without running it, to make room.  When the queue limit
+		 * is zero there is nothing to remove and the job is
+		 * rejected as with REJECT.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		DROP_OLDEST
+	}
+
 	/**
 	 * The number of threads that are allowed to be run concurrently.
 	 * (INFINITE_THREAD_LIMIT for no limit)
 	 */
 	private int concurrentThreadLimit = INFINITE_THREAD_LIMIT;
 
+	/**
+	 * Executor that runs the jobs, or null to start a new thread for each job.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * The number of jobs that may wait to be run.
+	 * (INFINITE_QUEUE_LIMIT for no limit)
+	 */
+	private int queueLimit = INFINITE_QUEUE_LIMIT;
+
+	/**
+	 * What to do with a job when the queue is full.
+	 */
+	private AdmissionPolicy admissionPolicy = AdmissionPolicy.BLOCK;
+
+	/**
+	 * Counts and timings of the jobs.
+	 */
+	private final ParallelizerMetrics metrics = new ParallelizerMetrics();
+
+	/**
+	 * Listener for the progress of jobs, or null.
+	 */
+	private volatile ParallelizerListener listener;
+
 	/**
 	 * Create a new Parallelizer with no limit on the number
 	 * of threads that will be allowed to be run concurrently.
@@ -103,6 +193,104 @@ public class Parallelizer
 		this.concurrentThreadLimit = concurrentThreadLimit;
 	}
 
+	/**
+	 * Create a new Parallelizer that runs its jobs with the given executor
+	 * with no limit on the number of jobs that will be allowed to be run
+	 * concurrently other than any limit of the executor.
+	 *
+	 * @param executor executor to which jobs are handed when they are started.
+	 * @throws NullPointerException if executor is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(ExecutorService executor){
+		this(executor, INFINITE_THREAD_LIMIT);
+	}
+
+	/**
+	 * Create a new Parallelizer that runs its jobs with the given executor
+	 * with the specified limit on the number of jobs that will be allowed
+	 * to be run concurrently.
+	 * <p>
+	 * Jobs beyond the limit are queued by the Parallelizer and handed to
+	 * the executor as earlier jobs finish.  The executor may be shared with
+	 * other Parallelizers and other work.  The Parallelizer never shuts it down.
+	 * <p>
+	 * The thread group, thread name, and stack size given to the run methods
+	 * are ignored because the jobs run in the threads of the executor.
+	 *
+	 * @param executor executor to which jobs are handed when they are started.
+	 * @param concurrentThreadLimit number of jobs that will be allowed
+	 *     to run simultaneously or INFINITE_THREAD_LIMIT for no limit.
+	 * @throws IllegalArgumentException if concurrentThreadLimit not a whole
+	 *     number or INFINITE_THREAD_LIMIT
+	 * @throws NullPointerException if executor is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(ExecutorService executor, int concurrentThreadLimit){
+		this(concurrentThreadLimit);
+		if (executor == null) throw new NullPointerException();
+		this.executor = executor;
+	}
+
+	/**
+	 * Create a new Parallelizer with the specified limits on the number
+	 * of threads that will be allowed to be run concurrently and on the
+	 * number of jobs that may be queued while waiting to run.
+	 * <p>
+	 * When the queue is full, the admission policy decides what run()
+	 * does with a new job, so that a fast producer of jobs can be slowed
+	 * to the rate at which they are run.
+	 *
+	 * @param concurrentThreadLimit number of threads that will be allowed
+	 *     to run simultaneously or INFINITE_THREAD_LIMIT for no limit.
+	 * @param queueLimit number of jobs that may wait to be run
+	 *     or INFINITE_QUEUE_LIMIT for no limit.
+	 * @param admissionPolicy what to do with a job when the queue is full.
+	 * @throws IllegalArgumentException if concurrentThreadLimit not a whole
+	 *     number or INFINITE_THREAD_LIMIT, or if queueLimit is not a whole
+	 *     number or INFINITE_QUEUE_LIMIT
+	 * @throws NullPointerException if admissionPolicy is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(int concurrentThreadLimit, int queueLimit, AdmissionPolicy admissionPolicy){
+		this(concurrentThreadLimit);
+		if (queueLimit < INFINITE_QUEUE_LIMIT) throw new IllegalArgumentException("Bad queue limit: " + queueLimit);
+		if (admissionPolicy == null) throw new NullPointerException();
+		this.queueLimit = queueLimit;
+		this.admissionPolicy = admissionPolicy;
+	}
+
+	/**
+	 * Create a new Parallelizer that runs its jobs with the given executor
+	 * with the specified limits on the number of jobs that will be allowed
+	 * to be run concurrently and on the number of jobs that may be queued
+	 * while waiting to run.
+	 * <p>
+	 * The executor is used as by {@link #Parallelizer(ExecutorService, int)}
+	 * and the queue is limited as by {@link #Parallelizer(int, int, AdmissionPolicy)}.
+	 *
+	 * @param executor executor to which jobs are handed when they are started.
+	 * @param concurrentThreadLimit number of jobs that will be allowed
+	 *     to run simultaneously or INFINITE_THREAD_LIMIT for no limit.
+	 * @param queueLimit number of jobs that may wait to be run
+	 *     or INFINITE_QUEUE_LIMIT for no limit.
+	 * @param admissionPolicy what to do with a job when the queue is full.
+	 * @throws IllegalArgumentException if concurrentThreadLimit not a whole
+	 *     number or INFINITE_THREAD_LIMIT, or if queueLimit is not a whole
+	 *     number or INFINITE_QUEUE_LIMIT
+	 * @throws NullPointerException if executor or admissionPolicy is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(ExecutorService executor, int concurrentThreadLimit, int queueLimit, AdmissionPolicy admissionPolicy){
+		this(concurrentThreadLimit, queueLimit, admissionPolicy);
+		if (executor == null) throw new NullPointerException();
+		this.executor = executor;
+	}
+
 	/**
 	 * A Set of threads that are currently running.
 	 * This set is also used as a lock to synchronize
@@ -111,9 +299,30 @@ public class Parallelizer
 	private HashSet<Thread> runningThreads = new HashSet<Thread>();
 
 	/**
-	 * A queue of jobs that have not yet been started.
+	 * For each thread, the number of jobs of this Parallelizer that
+	 * it is running.  More than one when a job runs another in the
+	 * same thread, as the caller does when it runs a job that does not
+	 * fit in the queue, or as an executor may.  A thread stays in the
+	 * set of running threads until its outermost job is done.
 	 */
-	private LinkedList<Thread> toRunQueue = new LinkedList<Thread>();
+	private ThreadLocal<int[]> jobDepth = new ThreadLocal<int[]>(){
+		@Override protected int[] initialValue(){
+			return new int[1];
+		}
+	};
+
+	/**
+	 * The number of jobs that have been started and have not finished.
+	 * A job handed to an executor counts as running before
+	 * its thread is in the set of running threads.
+	 */
+	private int runningJobs = 0;
+
+	/**
+	 * A queue of jobs that have not yet been started.  Without an
+	 * executor, each job is a thread that has not been started.
+	 */
+	private LinkedList<Runnable> toRunQueue = new LinkedList<Runnable>();
 
 	/**
 	 * Run the given job.  The given job is either run
@@ -128,6 +337,8 @@ public class Parallelizer
 	 * @param job job which is to be run in parallel with other jobs.
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the admission
+	 *     policy is to reject, or if interrupted while waiting for room in the queue.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
@@ -149,6 +360,8 @@ public class Parallelizer
 	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the admission
+	 *     policy is to reject, or if interrupted while waiting for room in the queue.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
@@ -170,6 +383,8 @@ public class Parallelizer
 	 * @param job job which is to be run in parallel with other jobs.
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the admission
+	 *     policy is to reject, or if interrupted while waiting for room in the queue.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
@@ -192,6 +407,8 @@ public class Parallelizer
 	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the admission
+	 *     policy is to reject, or if interrupted while waiting for room in the queue.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
@@ -215,31 +432,191 @@ public class Parallelizer
 	 * @param stackSize system dependent stack size suggestion for thread creation (0 for default stack size).
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the admission
+	 *     policy is to reject, or if interrupted while waiting for room in the queue.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
-	public void run(ThreadGroup threadGroup, final Runnable job, String threadName, long stackSize){
+	public void run(ThreadGroup threadGroup, Runnable job, String threadName, long stackSize){
+		try {
+			submit(threadGroup, job, threadName, stackSize, false, 0);
+		} catch (InterruptedException interruptedException){
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for room in the queue", interruptedException);
+		}
+	}
+
+	/**
+	 * Run the given job, waiting up to the given time for room in the
+	 * queue if the queue is full.  The given job is either run
+	 * immediately or if the max number of concurrent jobs are already
+	 * running, it is queued to be run when some job is finished.
+	 * <p>
+	 * This method waits for room whatever the admission policy.
+	 * The job is never run by the calling thread and no other job
+	 * is dropped to make room for it.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
+	 *
+	 * @param job job which is to be run in parallel with other jobs.
+	 * @param timeout how long to wait for room in the queue.
+	 * @param unit unit of the timeout.
+	 * @return true if the job was queued or started, false if there was no room in time.
+	 * @throws Error if any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if job is null.
+	 * @throws InterruptedException if interrupted while waiting.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean run(Runnable job, long timeout, TimeUnit unit) throws InterruptedException {
+		return submit(null, job, null, 0, true, System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Admit a job to the queue according to the admission policy, and start it if possible.
+	 *
+	 * @param threadGroup group in which this job should be run (null for default group).
+	 * @param job job which is to be run in parallel with other jobs.
+	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
+	 * @param stackSize system dependent stack size suggestion for thread creation (0 for default stack size).
+	 * @param timed true to wait for room no later than the deadline, regardless of the admission policy.
+	 * @param deadline System.nanoTime() at which to stop waiting.
+	 * @return false if the deadline passed before there was room.
+	 * @throws Error if any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if job is null.
+	 * @throws RejectedExecutionException if the queue is full and the policy is to reject.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	private boolean submit(ThreadGroup threadGroup, final Runnable job, String threadName, long stackSize, boolean timed, long deadline) throws InterruptedException {
 		throwFirstError();
 
-		Runnable jobWrapper = new Runnable(){
+		if (job == null) throw new NullPointerException();
+
+		long submitTime = System.nanoTime();
+		metrics.jobSubmitted();
+		ParallelizerListener submitListener = listener;
+		if (submitListener != null) submitListener.jobSubmitted(job);
+
+		Runnable task = newTask(job, submitTime, Thread.currentThread());
+
+		Runnable queued = task;
+		if (executor == null){
+			// ensure the thread name is not null, and auto generate a name if it is
+			threadName = getNextThreadName(threadName);
+			queued = new Thread(
+				threadGroup,
+				task,
+				threadName,
+				stackSize
+			);
+		}
+
+		boolean callerRuns = false;
+		synchronized(runningThreads){
+			while (!hasRoom()){
+				if (timed){
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0){
+						metrics.jobRejected();
+						return false;
+					}
+					try {
+						TimeUnit.NANOSECONDS.timedWait(runningThreads, remaining);
+					} catch (InterruptedException interruptedException){
+						metrics.jobRejected();
+						throw interruptedException;
+					}
+				} else if (admissionPolicy == AdmissionPolicy.BLOCK){
+					try {
+						runningThreads.wait();
+					} catch (InterruptedException interruptedException){
+						metrics.jobRejected();
+						throw interruptedException;
+					}
+				} else if (admissionPolicy == AdmissionPolicy.CALLER_RUNS){
+					// Count the job as running so that it is waited for by join()
+					runningJobs++;
+					callerRuns = true;
+					break;
+				} else if (admissionPolicy == AdmissionPolicy.DROP_OLDEST && !toRunQueue.isEmpty()){
+					toRunQueue.removeFirst();
+					metrics.jobDropped();
+				} else {
+					metrics.jobRejected();
+					throw new RejectedExecutionException("Parallelizer queue is full: " + toRunQueue.size() + " jobs waiting");
+				}
+			}
+			if (!callerRuns){
+				// If we are already running the max number of jobs, queue this job up
+				toRunQueue.add(queued);
+			}
+		}
+
+		if (callerRuns){
+			task.run();
+		} else {
+			// Now that the job is in the queue of jobs to run,
+			// check the queue and see if the job should be started
+			startAJobIfNeeded();
+		}
+		return true;
+	}
+
+	/**
+	 * Wrap a job so that it is counted as running while it runs, its failure
+	 * is put in the exception or error queue, and the metrics and listener
+	 * are told about it.
+	 *
+	 * @param job job to run.
+	 * @param submitTime System.nanoTime() when the job was submitted.
+	 * @param submitter thread that submitted the job.
+	 * @return the wrapped job.
+	 */
+	private Runnable newTask(final Runnable job, final long submitTime, final Thread submitter){
+		return new Runnable(){
 			public void run(){
+				long startTime = System.nanoTime();
+				final int[] depth = jobDepth.get();
+				depth[0]++;
+				synchronized(runningThreads){
+					runningThreads.add(Thread.currentThread());
+				}
+				metrics.jobStarted(startTime - submitTime);
+				ParallelizerListener jobListener = listener;
+				Throwable failure = null;
 				try {
+					if (jobListener != null) jobListener.jobStarted(job, Thread.currentThread(), startTime - submitTime);
 					job.run();
 				} catch (RuntimeException runtimeException){
+					failure = runtimeException;
 					// Put exceptions in the exception queue
 					synchronized(runningThreads){
 						exceptionList.add(runtimeException);
 					}
 				} catch (Error error){
+					failure = error;
 					// Put errors in the error queue
 					synchronized(runningThreads){
 						errorList.add(error);
 					}
 				} finally {
+					long runTime = System.nanoTime() - startTime;
+					metrics.jobFinished(runTime, failure != null);
+					if (jobListener != null) jobEnded(jobListener, job, failure, runTime);
 					synchronized(runningThreads){
 						// when done remove ourselves from the list
-						// of running threads.
-						runningThreads.remove(Thread.currentThread());
+						// of running threads, unless this job was run
+						// by another job in the same thread.
+						depth[0]--;
+						if (depth[0] == 0) runningThreads.remove(Thread.currentThread());
+						runningJobs--;
+						// A pooled thread goes on to other work, so it should not
+						// keep an interrupt meant for this job.  A caller that ran
+						// the job itself keeps its own interrupt status.
+						if (executor != null && Thread.currentThread() != submitter) Thread.interrupted();
 						// Notify the block method.
 						runningThreads.notifyAll();
 					}
@@ -249,25 +626,91 @@ public class Parallelizer
 				}
 			}
 		};
+	}
 
-		// ensure the thread name is not null, and auto generate a name if it is
-		threadName = getNextThreadName(threadName);
-
-		// If we are already running the max number of jobs, queue this job up
+	/**
+	 * Run a job in the calling thread without going through the queue,
+	 * as if it had been submitted and started at once.
+	 *
+	 * @param job job to run.
+	 */
+	private void runInCaller(Runnable job){
+		long submitTime = System.nanoTime();
+		metrics.jobSubmitted();
+		ParallelizerListener submitListener = listener;
+		if (submitListener != null) submitListener.jobSubmitted(job);
 		synchronized(runningThreads){
-			toRunQueue.add(
-				new Thread(
-					threadGroup,
-					jobWrapper,
-					threadName,
-					stackSize
-				)
-			);
+			// Count the job as running so that it is waited for by join()
+			runningJobs++;
 		}
+		newTask(job, submitTime, Thread.currentThread()).run();
+	}
 
-		// Now that the job is in the queue of jobs to run,
-		// check the queue and see if the job should be started
-		startAJobIfNeeded();
+	/**
+	 * Whether another job may be admitted.  The caller must
+	 * hold the lock on the running threads.
+	 *
+	 * @return true if the queue has room or the job could be started without waiting in the queue.
+	 */
+	private boolean hasRoom(){
+		if (queueLimit == INFINITE_QUEUE_LIMIT) return true;
+		if (toRunQueue.size() < queueLimit) return true;
+		// A job that can start right away does not wait in the queue.
+		if (toRunQueue.size() > 0) return false;
+		return concurrentThreadLimit == INFINITE_THREAD_LIMIT || runningJobs < concurrentThreadLimit;
+	}
+
+	/**
+	 * Tell the listener that a job has finished or failed.  An exception or
+	 * error from the listener is queued as if the job had thrown it.
+	 *
+	 * @param jobListener listener to tell.
+	 * @param job the job.
+	 * @param failure exception or error thrown by the job, or null if it finished.
+	 * @param runTime nanoseconds for which the job ran.
+	 */
+	private void jobEnded(ParallelizerListener jobListener, Runnable job, Throwable failure, long runTime){
+		try {
+			if (failure == null){
+				jobListener.jobFinished(job, runTime);
+			} else {
+				jobListener.jobFailed(job, failure, runTime);
+			}
+		} catch (RuntimeException runtimeException){
+			synchronized(runningThreads){
+				exceptionList.add(runtimeException);
+			}
+		} catch (Error error){
+			synchronized(runningThreads){
+				errorList.add(error);
+			}
+		}
+	}
+
+	/**
+	 * Get the counts and timings of the jobs of this Parallelizer.
+	 * The metrics are recorded for every job without locking and
+	 * may be read at any time, including while jobs are running.
+	 *
+	 * @return live metrics for this Parallelizer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelizerMetrics getMetrics(){
+		return metrics;
+	}
+
+	/**
+	 * Set the listener that is told as jobs are submitted, start,
+	 * finish, and fail.  Jobs that were submitted before the
+	 * listener was set are reported from when they start.
+	 *
+	 * @param listener the listener, or null for none.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setListener(ParallelizerListener listener){
+		this.listener = listener;
 	}
 
 	/**
@@ -324,28 +767,53 @@ public class Parallelizer
 	}
 
 	/**
-	 * Remove a job from the toRunQueue, create a thread for it,
-	 * start the thread, and put the job in the set of running jobs.
+	 * Remove a job from the toRunQueue and start it, either in its
+	 * own thread which is put in the set of running threads, or
+	 * by handing it to the executor.
 	 * But do all this only if there are jobs queued up to be run
 	 * and we are not already running the max number of concurrent
 	 * jobs at once.
+	 * <p>
+	 * If the executor rejects the job, the rejection is put in the
+	 * exception queue so that it is thrown by join().
 	 */
 	private void startAJobIfNeeded(){
+		Runnable job;
 		synchronized(runningThreads){
 			// If we are already running the max number of jobs, just return
 			if (concurrentThreadLimit != INFINITE_THREAD_LIMIT){
-				if (runningThreads.size() >= concurrentThreadLimit) return;
+				if (runningJobs >= concurrentThreadLimit) return;
 			}
 
 			// If there are no more job to run, return
 			if (toRunQueue.size() == 0) return;
 
 			// Get a job out of the queue
-			Thread thread = toRunQueue.removeFirst();
+			job = toRunQueue.removeFirst();
+			runningJobs++;
 
-			// Put the thread in the list of running threads
-			runningThreads.add(thread);
-			thread.start();
+			// Wake callers waiting for room in the queue
+			if (queueLimit != INFINITE_QUEUE_LIMIT) runningThreads.notifyAll();
+
+			if (executor == null){
+				// Put the thread in the list of running threads
+				Thread thread = (Thread)job;
+				runningThreads.add(thread);
+				thread.start();
+				return;
+			}
+		}
+		// The executor may run the job in this thread,
+		// so it is handed over without holding the lock.
+		try {
+			executor.execute(job);
+		} catch (RejectedExecutionException rejectedExecutionException){
+			metrics.jobRejected();
+			synchronized(runningThreads){
+				runningJobs--;
+				exceptionList.add(rejectedExecutionException);
+				runningThreads.notifyAll();
+			}
 		}
 	}
 
@@ -366,7 +834,7 @@ public class Parallelizer
 	public boolean done(){
 		throwFirstError();
 		synchronized(runningThreads){
-			return (toRunQueue.size() + runningThreads.size()) == 0;
+			return (toRunQueue.size() + runningJobs) == 0;
 		}
 	}
 
@@ -375,6 +843,9 @@ public class Parallelizer
 	 * The threads interrupted threads may die, causing
 	 * jobs that were queued but not yet started, to start.
 	 * <p>
+	 * With an executor, only the threads that are running jobs from
+	 * this Parallelizer are interrupted.
+	 * <p>
 	 * If this method throws an error, that
 	 * error may be handled and this method
 	 * may be called again as it will not re-throw the same
@@ -423,6 +894,9 @@ public class Parallelizer
 	 * are queued and do not yet have threads.  These job are not
 	 * returned.
 	 * <p>
+	 * With an executor, these are the threads of the executor that
+	 * are running jobs from this Parallelizer.
+	 * <p>
 	 * If this method throws an error, that
 	 * error may be handled and this method
 	 * may be called again as it will not re-throw the same
@@ -464,5 +938,576 @@ public class Parallelizer
 				throwFirstException();
 			}
 		}
+		// A job may have failed after the last check, or before
+		// this method was called, in which case the loop never ran.
+		throwFirstException();
+	}
+
+	/**
+	 * Run a body for each index in a range, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * <p>
+	 * The range is split among as many worker jobs as this Parallelizer
+	 * allows to run at once, or the number of processors if it has no limit.
+	 * Each worker takes chunks from its own part of the range.  A worker
+	 * that runs out of chunks steals half of what is left of another
+	 * worker's part, so uneven chunks keep all the workers busy.
+	 * <p>
+	 * If the body throws, the other workers stop taking chunks and
+	 * the first exception or error is thrown once they have stopped.
+	 * <p>
+	 * The calling thread works on the loop too.  A loop may be run from
+	 * within a job of this Parallelizer, for example to nest one loop
+	 * inside another.  It then waits only for its own workers, as waiting
+	 * for all the jobs would include the job that is waiting.  Workers
+	 * that have not started by the time the calling thread runs out of
+	 * chunks are not waited for and do nothing when they start.
+	 *
+	 * @param start first index.
+	 * @param end index after the last index.
+	 * @param chunkSize the number of indexes handed to the body at once.
+	 * @param body work to do for each chunk.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the body is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void forEach(int start, int end, int chunkSize, final ParallelRangeBody body) throws InterruptedException {
+		if (body == null) throw new NullPointerException();
+		runLoop(start, end, chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				body.run(chunkStart, chunkEnd);
+			}
+		});
+	}
+
+	/**
+	 * Run a body for each item in an array, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 *
+	 * @param <T> type of the items
+	 * @param items the items.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param body work to do for each item.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the items or the body are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T> void forEach(final T[] items, int chunkSize, final ParallelBody<? super T> body) throws InterruptedException {
+		if (body == null) throw new NullPointerException();
+		runLoop(0, items.length, chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				for (int i=chunkStart; i<chunkEnd; i++){
+					body.run(items[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Run a body for each item, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 * <p>
+	 * Unless the items are a random access list, they are
+	 * first copied into a list in the calling thread.
+	 *
+	 * @param <T> type of the items
+	 * @param items the items.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param body work to do for each item.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the items or the body are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T> void forEach(Iterable<T> items, int chunkSize, final ParallelBody<? super T> body) throws InterruptedException {
+		if (body == null) throw new NullPointerException();
+		final List<T> list = toList(items);
+		runLoop(0, list.size(), chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				for (int i=chunkStart; i<chunkEnd; i++){
+					body.run(list.get(i));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compute a result for each item in an array, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 *
+	 * @param <T> type of the items
+	 * @param <R> type of the results
+	 * @param items the items.
+	 * @param results array into which the result for each item is stored at the index of the item.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param mapper function that computes the result for an item.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive or the results array is shorter than the items.
+	 * @throws NullPointerException if the items, results, or mapper are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T,R> void map(final T[] items, final R[] results, int chunkSize, final ParallelMapper<? super T, ? extends R> mapper) throws InterruptedException {
+		if (mapper == null) throw new NullPointerException();
+		if (results.length < items.length) throw new IllegalArgumentException("Results array is shorter than the items: " + results.length + " < " + items.length);
+		runLoop(0, items.length, chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				for (int i=chunkStart; i<chunkEnd; i++){
+					results[i] = mapper.map(items[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compute a result for each item, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 * <p>
+	 * Unless the items are a random access list, they are
+	 * first copied into a list in the calling thread.
+	 *
+	 * @param <T> type of the items
+	 * @param <R> type of the results
+	 * @param items the items.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param mapper function that computes the result for an item.
+	 * @return the results in the order of the items.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the items or the mapper are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T,R> List<R> map(Iterable<T> items, int chunkSize, final ParallelMapper<? super T, ? extends R> mapper) throws InterruptedException {
+		if (mapper == null) throw new NullPointerException();
+		final List<T> list = toList(items);
+		final Object[] results = new Object[list.size()];
+		runLoop(0, list.size(), chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				for (int i=chunkStart; i<chunkEnd; i++){
+					results[i] = mapper.map(list.get(i));
+				}
+			}
+		});
+		@SuppressWarnings("unchecked") List<R> resultList = (List<R>)Arrays.asList(results);
+		return resultList;
+	}
+
+	/**
+	 * Reduce the items in an array, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 * <p>
+	 * Each worker accumulates the items it takes into its own accumulator.
+	 * The accumulators of the workers are then combined in the calling thread.
+	 *
+	 * @param <T> type of the items
+	 * @param <A> type of the accumulators
+	 * @param items the items.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param reducer creates, accumulates, and combines accumulators.
+	 * @return an accumulator of all the items, or an empty accumulator if there are none.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the items or the reducer are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T,A> A reduce(final T[] items, int chunkSize, final ParallelReducer<? super T, A> reducer) throws InterruptedException {
+		return reduce(Arrays.asList(items), chunkSize, reducer);
+	}
+
+	/**
+	 * Reduce the items, in chunks of the given size,
+	 * and wait until all the jobs of this Parallelizer are done.
+	 * The work is shared among worker jobs as by
+	 * {@link #forEach(int, int, int, ParallelRangeBody)}.
+	 * <p>
+	 * Each worker accumulates the items it takes into its own accumulator.
+	 * The accumulators of the workers are then combined in the calling thread.
+	 * Unless the items are a random access list, they are
+	 * first copied into a list in the calling thread.
+	 *
+	 * @param <T> type of the items
+	 * @param <A> type of the accumulators
+	 * @param items the items.
+	 * @param chunkSize the number of items taken by a worker at once.
+	 * @param reducer creates, accumulates, and combines accumulators.
+	 * @return an accumulator of all the items, or an empty accumulator if there are none.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 * @throws NullPointerException if the items or the reducer are null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T,A> A reduce(Iterable<T> items, int chunkSize, final ParallelReducer<? super T, A> reducer) throws InterruptedException {
+		if (reducer == null) throw new NullPointerException();
+		final List<T> list = toList(items);
+		final Object[] accumulators = new Object[loopWorkers(list.size(), chunkSize)];
+		runLoop(0, list.size(), chunkSize, new LoopWorker(){
+			@Override void run(int worker, int chunkStart, int chunkEnd){
+				@SuppressWarnings("unchecked") A accumulator = (A)accumulators[worker];
+				if (accumulator == null) accumulator = reducer.create();
+				for (int i=chunkStart; i<chunkEnd; i++){
+					accumulator = reducer.accumulate(accumulator, list.get(i));
+				}
+				accumulators[worker] = accumulator;
+			}
+		});
+		A result = reducer.create();
+		for (Object accumulator: accumulators){
+			@SuppressWarnings("unchecked") A a = (A)accumulator;
+			if (a != null) result = reducer.combine(result, a);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the items as a list that can be read by index from several threads.
+	 *
+	 * @param items the items.
+	 * @return the items if they are a random access list, otherwise a copy.
+	 */
+	private static <T> List<T> toList(Iterable<T> items){
+		if (items instanceof List && items instanceof RandomAccess) return (List<T>)items;
+		List<T> list = new ArrayList<T>();
+		for (T item: items){
+			list.add(item);
+		}
+		return list;
+	}
+
+	/**
+	 * Work done by one worker of a loop for each chunk it takes.
+	 */
+	private static abstract class LoopWorker {
+
+		/**
+		 * Do the work for a chunk.
+		 *
+		 * @param worker index of the worker, from zero to one less than the number of workers.
+		 * @param chunkStart first index of the chunk.
+		 * @param chunkEnd index after the last index of the chunk.
+		 */
+		abstract void run(int worker, int chunkStart, int chunkEnd);
+	}
+
+	/**
+	 * The part of a loop's range that one worker has yet to take.
+	 * The owner takes chunks from the front and other workers
+	 * steal from the back.  Each lock is held only briefly
+	 * and never while holding the lock of another part.
+	 */
+	private static class LoopPart {
+
+		/**
+		 * First index not yet taken.
+		 */
+		private int next;
+
+		/**
+		 * Index after the last index not yet taken.
+		 */
+		private int end;
+
+		/**
+		 * Create a part of a range.
+		 *
+		 * @param next first index.
+		 * @param end index after the last index.
+		 */
+		LoopPart(int next, int end){
+			this.next = next;
+			this.end = end;
+		}
+
+		/**
+		 * Take a chunk from the front of this part.
+		 *
+		 * @param chunkSize most indexes to take.
+		 * @param chunk array in which to store the start and end of the chunk.
+		 * @return false if this part is empty.
+		 */
+		synchronized boolean take(int chunkSize, int[] chunk){
+			if (next >= end) return false;
+			chunk[0] = next;
+			next += Math.min(chunkSize, end - next);
+			chunk[1] = next;
+			return true;
+		}
+
+		/**
+		 * Steal half of what is left of this part from the back,
+		 * or all of it if that is no more than one chunk.
+		 *
+		 * @param chunkSize number of indexes in a chunk.
+		 * @param stolen array in which to store the start and end of the stolen indexes.
+		 * @return false if this part is empty.
+		 */
+		synchronized boolean steal(int chunkSize, int[] stolen){
+			int left = end - next;
+			if (left <= 0) return false;
+			int steal = (left <= chunkSize) ? left : Math.max(left / 2, chunkSize);
+			stolen[1] = end;
+			end -= steal;
+			stolen[0] = end;
+			return true;
+		}
+
+		/**
+		 * Replace this empty part with stolen indexes.
+		 *
+		 * @param stolen start and end of the stolen indexes.
+		 */
+		synchronized void set(int[] stolen){
+			next = stolen[0];
+			end = stolen[1];
+		}
+	}
+
+	/**
+	 * Get the number of workers for a loop.
+	 *
+	 * @param size number of indexes in the loop.
+	 * @param chunkSize number of indexes in a chunk.
+	 * @return at least one, and no more than the number of chunks or the number of jobs that may run at once.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 */
+	private int loopWorkers(int size, int chunkSize){
+		if (chunkSize < 1) throw new IllegalArgumentException("Bad chunk size: " + chunkSize);
+		int workers = concurrentThreadLimit;
+		if (workers == INFINITE_THREAD_LIMIT) workers = Runtime.getRuntime().availableProcessors();
+		long chunks = ((long)size + chunkSize - 1) / chunkSize;
+		return (int)Math.max(1, Math.min(workers, chunks));
+	}
+
+	/**
+	 * Split a range among worker jobs, run them and the first worker in
+	 * the calling thread, and wait until the workers are done.  Unless
+	 * called from a job of this Parallelizer, also wait until all the jobs
+	 * of this Parallelizer are done.  The first exception or error from a
+	 * worker is then thrown, followed by any from other jobs as by join().
+	 *
+	 * @param start first index.
+	 * @param end index after the last index.
+	 * @param chunkSize the number of indexes taken by a worker at once.
+	 * @param loopWorker work to do for each chunk.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 */
+	private void runLoop(int start, int end, final int chunkSize, final LoopWorker loopWorker) throws InterruptedException {
+		int size = Math.max(0, end - start);
+		final int workers = loopWorkers(size, chunkSize);
+		final LoopPart[] parts = new LoopPart[workers];
+		for (int i=0; i<workers; i++){
+			parts[i] = new LoopPart(start + (int)((long)size * i / workers), start + (int)((long)size * (i + 1) / workers));
+		}
+		final LoopState state = new LoopState();
+		for (int i=1; i<workers; i++){
+			final int worker = i;
+			Runnable workerJob = new Runnable(){
+				public void run(){
+					if (!state.enter()) return;
+					try {
+						runLoopWorker(parts, worker, chunkSize, loopWorker, state);
+					} finally {
+						state.exit();
+					}
+				}
+			};
+			// A worker that is not admitted right away is not waited for;
+			// its part is stolen by the other workers.
+			run(workerJob, 0, TimeUnit.NANOSECONDS);
+		}
+		boolean nested = jobDepth.get()[0] > 0;
+		// The first worker is a job run by the calling thread, so its
+		// failures are counted and queued like those of the others.
+		runInCaller(new Runnable(){
+			public void run(){
+				runLoopWorker(parts, 0, chunkSize, loopWorker, state);
+			}
+		});
+		// Let the other workers stop before a failure is thrown so that
+		// nothing is still running the loop when this method returns.
+		state.close();
+		if (!nested){
+			synchronized(runningThreads){
+				while (toRunQueue.size() + runningJobs > 0){
+					runningThreads.wait();
+				}
+			}
+		}
+		Throwable failure = state.getFailure();
+		if (failure != null){
+			// Thrown here rather than by a later join().
+			synchronized(runningThreads){
+				exceptionList.remove(failure);
+				errorList.remove(failure);
+			}
+			if (failure instanceof Error) throw (Error)failure;
+			throw (RuntimeException)failure;
+		}
+		if (!nested) join();
+	}
+
+	/**
+	 * Take and run chunks of a loop until there are none left
+	 * or some worker has failed.  A failure is kept in the loop
+	 * state, so that the other workers stop, and thrown on to the job
+	 * that runs the worker, which puts it in the exception or error queue.
+	 *
+	 * @param parts the parts of each worker.
+	 * @param worker index of this worker.
+	 * @param chunkSize the number of indexes taken at once.
+	 * @param loopWorker work to do for each chunk.
+	 * @param state state shared by the workers of the loop.
+	 */
+	private static void runLoopWorker(LoopPart[] parts, int worker, int chunkSize, LoopWorker loopWorker, LoopState state){
+		int[] chunk = new int[2];
+		try {
+			while (!state.isFailed()){
+				if (parts[worker].take(chunkSize, chunk)){
+					loopWorker.run(worker, chunk[0], chunk[1]);
+				} else if (!stealChunks(parts, worker, chunkSize, chunk)){
+					break;
+				}
+			}
+		} catch (RuntimeException runtimeException){
+			state.fail(runtimeException);
+			throw runtimeException;
+		} catch (Error error){
+			state.fail(error);
+			throw error;
+		}
+	}
+
+	/**
+	 * The workers of one loop that are running, and the first failure
+	 * among them.  The failures also go to the exception and error
+	 * queues of the Parallelizer as those of any job do.  Once the thread that started the loop has run out of
+	 * chunks the loop is closed and workers that start later do nothing.
+	 */
+	private static class LoopState {
+
+		/**
+		 * Number of workers that have started and not finished.
+		 */
+		private int active = 0;
+
+		/**
+		 * Set once no more workers may start.
+		 */
+		private boolean closed = false;
+
+		/**
+		 * The first exception or error thrown by a worker, or null.
+		 */
+		private volatile Throwable failure;
+
+		/**
+		 * Start a worker unless the loop is closed.
+		 *
+		 * @return false if the worker should do nothing.
+		 */
+		synchronized boolean enter(){
+			if (closed) return false;
+			active++;
+			return true;
+		}
+
+		/**
+		 * Finish a worker that has entered.
+		 */
+		synchronized void exit(){
+			active--;
+			if (active == 0) notifyAll();
+		}
+
+		/**
+		 * Keep a failure if it is the first.
+		 *
+		 * @param throwable the exception or error thrown by a worker.
+		 */
+		synchronized void fail(Throwable throwable){
+			if (failure == null) failure = throwable;
+		}
+
+		/**
+		 * Whether a worker has failed, so the others should stop.
+		 *
+		 * @return true after the first failure.
+		 */
+		boolean isFailed(){
+			return failure != null;
+		}
+
+		/**
+		 * Stop more workers from starting and wait for those
+		 * that have started to finish.
+		 *
+		 * @throws InterruptedException if interrupted while waiting.
+		 */
+		synchronized void close() throws InterruptedException {
+			closed = true;
+			while (active > 0){
+				wait();
+			}
+		}
+
+		/**
+		 * Get the first failure.
+		 *
+		 * @return the first exception or error thrown by a worker, or null.
+		 */
+		synchronized Throwable getFailure(){
+			return failure;
+		}
+	}
+
+	/**
+	 * Steal indexes from the part of another worker into the part of this worker.
+	 *
+	 * @param parts the parts of each worker.
+	 * @param worker index of this worker, whose part is empty.
+	 * @param chunkSize number of indexes in a chunk.
+	 * @param stolen scratch array for the stolen range.
+	 * @return false if every other part is empty.
+	 */
+	private static boolean stealChunks(LoopPart[] parts, int worker, int chunkSize, int[] stolen){
+		for (int i=1; i<parts.length; i++){
+			if (parts[(worker + i) % parts.length].steal(chunkSize, stolen)){
+				parts[worker].set(stolen);
+				return true;
+			}
+		}
+		return false;
 	}
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+/**
+ * Call back for the progress of the jobs of a Parallelizer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * The methods do nothing unless they are overridden.  Apart from
+ * jobSubmitted(), they are called from the threads that run the jobs,
+ * and may be called from several threads at once.  An exception
+ * thrown by a method is treated as if it were thrown by the job.
+ * <p>
+ * A job that is rejected, or dropped from a full queue, is not reported to
+ * the listener after it is submitted.  It is counted by
+ * {@link ParallelizerMetrics#getRejectedJobs()} or
+ * {@link ParallelizerMetrics#getDroppedJobs()}.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public abstract class ParallelizerListener
+{
+	/**
+	 * Called when a job is given to the Parallelizer,
+	 * in the thread that gave it.
+	 *
+	 * @param job the job.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void jobSubmitted(Runnable job){
+		// Nothing by default
+	}
+
+	/**
+	 * Called in the thread that runs a job just before the job is run.
+	 *
+	 * @param job the job.
+	 * @param thread the thread running the job.
+	 * @param waitNanos nanoseconds from when the job was given to the Parallelizer until it started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void jobStarted(Runnable job, Thread thread, long waitNanos){
+		// Nothing by default
+	}
+
+	/**
+	 * Called in the thread that ran a job after the job returns.
+	 *
+	 * @param job the job.
+	 * @param runNanos nanoseconds for which the job ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void jobFinished(Runnable job, long runNanos){
+		// Nothing by default
+	}
+
+	/**
+	 * Called in the thread that ran a job after the job throws.
+	 *
+	 * @param job the job.
+	 * @param failure the runtime exception or error thrown by the job.
+	 * @param runNanos nanoseconds for which the job ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void jobFailed(Runnable job, Throwable failure, long runNanos){
+		// Nothing by default
+	}
+}
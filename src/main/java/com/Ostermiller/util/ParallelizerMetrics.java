@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counts and timings of the jobs of a Parallelizer.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
+ * <p>
+ * The metrics are obtained from {@link Parallelizer#getMetrics()} and
+ * change as jobs are run.  They are kept with atomic counters rather than
+ * the lock of the Parallelizer, so reading them never waits for jobs and
+ * recording them never makes jobs wait for each other.  Counts read
+ * while jobs start and finish may be a job or two apart from each other.
+ * <p>
+ * Times are in nanoseconds.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class ParallelizerMetrics {
+
+	/**
+	 * Number of jobs given to the Parallelizer.
+	 */
+	private final AtomicLong submitted = new AtomicLong();
+
+	/**
+	 * Number of jobs that have started running.
+	 */
+	private final AtomicLong started = new AtomicLong();
+
+	/**
+	 * Number of jobs that have finished running, successfully or not.
+	 */
+	private final AtomicLong finished = new AtomicLong();
+
+	/**
+	 * Number of jobs that have thrown an exception or error.
+	 */
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Number of jobs that were refused by the admission policy or an executor.
+	 */
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Number of queued jobs dropped to make room for newer jobs.
+	 */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Time from when each job was given to the Parallelizer until it started.
+	 */
+	private final LatencyHistogram waitTimes = new LatencyHistogram();
+
+	/**
+	 * Time for which each job ran.
+	 */
+	private final LatencyHistogram runTimes = new LatencyHistogram();
+
+	/**
+	 * Create metrics with no jobs.
+	 */
+	ParallelizerMetrics(){
+		// No jobs yet
+	}
+
+	/**
+	 * Record that a job was given to the Parallelizer.
+	 */
+	void jobSubmitted(){
+		submitted.incrementAndGet();
+	}
+
+	/**
+	 * Record that a job started.
+	 *
+	 * @param waitNanos time from when the job was given to the Parallelizer until it started.
+	 */
+	void jobStarted(long waitNanos){
+		waitTimes.record(waitNanos);
+		started.incrementAndGet();
+	}
+
+	/**
+	 * Record that a job finished.
+	 *
+	 * @param runNanos time for which the job ran.
+	 * @param failure true if the job threw an exception or error.
+	 */
+	void jobFinished(long runNanos, boolean failure){
+		runTimes.record(runNanos);
+		if (failure) failed.incrementAndGet();
+		finished.incrementAndGet();
+	}
+
+	/**
+	 * Record that a job was refused.
+	 */
+	void jobRejected(){
+		rejected.incrementAndGet();
+	}
+
+	/**
+	 * Record that a queued job was dropped.
+	 */
+	void jobDropped(){
+		dropped.incrementAndGet();
+	}
+
+	/**
+	 * Get the number of jobs that have been given to the Parallelizer.
+	 *
+	 * @return number of jobs submitted.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getSubmittedJobs(){
+		return submitted.get();
+	}
+
+	/**
+	 * Get the number of jobs that have started running.
+	 *
+	 * @return number of jobs started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getStartedJobs(){
+		return started.get();
+	}
+
+	/**
+	 * Get the number of jobs that have finished running, including those that failed.
+	 *
+	 * @return number of jobs finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getFinishedJobs(){
+		return finished.get();
+	}
+
+	/**
+	 * Get the number of jobs that have thrown a runtime exception or error.
+	 *
+	 * @return number of jobs failed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getFailedJobs(){
+		return failed.get();
+	}
+
+	/**
+	 * Get the number of jobs that were refused, either because the queue was
+	 * full or because an executor would not run them.
+	 *
+	 * @return number of jobs rejected.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getRejectedJobs(){
+		return rejected.get();
+	}
+
+	/**
+	 * Get the number of queued jobs that were dropped without being run
+	 * to make room for newer jobs.
+	 *
+	 * @return number of jobs dropped.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getDroppedJobs(){
+		return dropped.get();
+	}
+
+	/**
+	 * Get the number of jobs that are waiting to be started.
+	 * This is the depth of the queue of the Parallelizer
+	 * including any jobs handed to an executor that has not
+	 * yet started them.
+	 *
+	 * @return number of jobs waiting.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getQueuedJobs(){
+		// Read the later counters first so that the result is not negative.
+		long started = this.started.get();
+		long rejected = this.rejected.get();
+		long dropped = this.dropped.get();
+		return Math.max(0, submitted.get() - started - rejected - dropped);
+	}
+
+	/**
+	 * Get the number of jobs that are running.
+	 *
+	 * @return number of jobs running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getRunningJobs(){
+		long finished = this.finished.get();
+		return Math.max(0, started.get() - finished);
+	}
+
+	/**
+	 * Get the times from when jobs were given to the Parallelizer until they started.
+	 *
+	 * @return live histogram of wait times in nanoseconds.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public LatencyHistogram getWaitTimes(){
+		return waitTimes;
+	}
+
+	/**
+	 * Get the times for which jobs ran.
+	 *
+	 * @return live histogram of run times in nanoseconds.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public LatencyHistogram getRunTimes(){
+		return runTimes;
+	}
+
+	/**
+	 * Get a summary of the metrics.
+	 *
+	 * @return counts of jobs and summaries of their times.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public String toString(){
+		return "submitted=" + getSubmittedJobs() + " queued=" + getQueuedJobs() + " running=" + getRunningJobs()
+			+ " finished=" + getFinishedJobs() + " failed=" + getFailedJobs() + " rejected=" + getRejectedJobs() + " dropped=" + getDroppedJobs()
+			+ " wait=[" + waitTimes + "] run=[" + runTimes + "]";
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.*;
+
+/**
+ * Replaces any number of strings with others in a single pass.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * The strings to find are compiled once into an automaton, so the time
+ * to rewrite a string depends on its length and not on how many
+ * replacements there are:
+ * <pre>
+ * Map&lt;String,String&gt; pairs = new HashMap&lt;String,String&gt;();
+ * pairs.put("colour", "color");
+ * pairs.put("centre", "center");
+ * Replacer replacer = new Replacer(pairs);
+ * String normalized = replacer.replace(document);
+ * </pre>
+ * <p>
+ * Where strings to find overlap, the one that starts first is replaced, and
+ * of those that start at the same place, the longest.  Replacement text is
+ * not searched again.  With a single pair, the result is the same as from
+ * {@link StringHelper#replace(String, String, String)}.
+ * <p>
+ * A replacer does not change after it is created and may be shared by threads.
+ *
+ * @see MultiStringMatcher
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Replacer {
+
+	/**
+	 * Number of characters read at once when replacing in a stream.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Automaton for the strings to find, or null if there are none.
+	 */
+	private MultiStringMatcher matcher;
+
+	/**
+	 * Replacement for each string to find, in the order of the matcher's terms.
+	 */
+	private String[] replacements;
+
+	/**
+	 * Compile a replacer.  Strings to find that are empty are ignored,
+	 * and a null replacement is the same as an empty one.
+	 *
+	 * @param replacements map from strings to find to the strings that replace them.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Replacer(Map<String,String> replacements){
+		ArrayList<String> finds = new ArrayList<String>(replacements.size());
+		ArrayList<String> replaces = new ArrayList<String>(replacements.size());
+		for (Map.Entry<String,String> entry: replacements.entrySet()){
+			String find = entry.getKey();
+			if (find == null || find.length() == 0) continue;
+			finds.add(find);
+			replaces.add(entry.getValue() == null ? "" : entry.getValue());
+		}
+		this.replacements = replaces.toArray(new String[replaces.size()]);
+		if (finds.size() > 0) matcher = new MultiStringMatcher(finds.toArray(new String[finds.size()]));
+	}
+
+	/**
+	 * Replace in a string.
+	 *
+	 * @param s characters in which to replace.
+	 * @return the characters with replacements made, which is s itself
+	 *     if s is a String in which there is nothing to replace.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String replace(CharSequence s){
+		int length = s.length();
+		if (matcher == null || (s instanceof String && !matcher.containsAny(s))) return s.toString();
+		StringBuilder sb = new StringBuilder(length + 16);
+		try {
+			replace(s, 0, length, true, sb);
+		} catch (IOException iox){
+			// Can't happen when appending to a StringBuilder.
+			throw new RuntimeException(iox);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Replace in a string, appending the result to the given destination.
+	 *
+	 * @param s characters in which to replace.
+	 * @param out destination for the characters with replacements made.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void replace(CharSequence s, Appendable out) throws IOException {
+		replace(s, 0, s.length(), true, out);
+	}
+
+	/**
+	 * Replace in all the characters from a reader, writing the result.
+	 * Only enough of the input to hold the longest string to find is
+	 * kept in memory.  Neither stream is closed.
+	 *
+	 * @param in characters in which to replace.
+	 * @param out destination for the characters with replacements made.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void replace(Reader in, Writer out) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		CharBuffer view = CharBuffer.wrap(buffer);
+		int limit = 0;
+		int read;
+		while ((read = in.read(buffer, limit, buffer.length - limit)) != -1){
+			limit += read;
+			int keep = replace(view, 0, limit, false, out);
+			System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+			limit -= keep;
+			if (limit == buffer.length){
+				// A string to find is longer than the buffer
+				char[] bigger = new char[buffer.length * 2];
+				System.arraycopy(buffer, 0, bigger, 0, limit);
+				buffer = bigger;
+				view = CharBuffer.wrap(buffer);
+			}
+		}
+		replace(view, 0, limit, true, out);
+	}
+
+	/**
+	 * Replace in a range of characters.  Unless this is the last of the
+	 * input, stop before any characters that could be part of a match
+	 * that continues past the end of the range.
+	 *
+	 * @param s characters in which to replace.
+	 * @param start index of the first character.
+	 * @param end index after the last character.
+	 * @param last whether there are no characters after the range.
+	 * @param out destination for the characters with replacements made.
+	 * @return index of the first character that was not written.
+	 * @throws IOException if the destination throws one.
+	 */
+	private int replace(CharSequence s, int start, int end, boolean last, Appendable out) throws IOException {
+		if (matcher == null){
+			StringHelper.appendRun(s, start, end, out);
+			return end;
+		}
+		int state = 0;
+		// Start of the characters that have not yet been written
+		int run = start;
+		// Leftmost longest match found so far, if any
+		int matchTerm = -1;
+		int matchStart = 0;
+		int matchEnd = 0;
+		for (int i=start; i<end; i++){
+			state = matcher.next(state, s.charAt(i));
+			// Matches that end here are listed longest first
+			for (int o=matcher.firstMatch(state); o!=-1; o=matcher.nextMatch(o)){
+				int oStart = i + 1 - matcher.depth(o);
+				if (matchTerm == -1 || oStart < matchStart || (oStart == matchStart && i + 1 > matchEnd)){
+					matchTerm = matcher.termIndex(o);
+					matchStart = oStart;
+					matchEnd = i + 1;
+				}
+			}
+			if (matchTerm != -1 && i + 1 - matcher.depth(state) > matchStart){
+				// No match that is yet to be found can start at or before this one.
+				StringHelper.appendRun(s, run, matchStart, out);
+				out.append(replacements[matchTerm]);
+				run = matchEnd;
+				matchTerm = -1;
+				// Search again after the match
+				state = 0;
+				i = matchEnd - 1;
+			}
+		}
+		if (!last){
+			// A match that is found but not yet replaced starts
+			// at or after the prefix that is still being followed.
+			int keep = end - matcher.depth(state);
+			StringHelper.appendRun(s, run, keep, out);
+			return keep;
+		}
+		if (matchTerm != -1){
+			StringHelper.appendRun(s, run, matchStart, out);
+			out.append(replacements[matchTerm]);
+			run = matchEnd;
+			// Anything after the match could still contain more matches
+			return replace(s, run, end, true, out);
+		}
+		StringHelper.appendRun(s, run, end, out);
+		return end;
+	}
+}
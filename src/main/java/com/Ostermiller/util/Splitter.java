@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.util.*;
+
+/**
+ * Splits strings into fields on a delimiter, with the delimiter and
+ * options chosen once and reused for any number of strings.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * A splitter is created for a single character, a string, or any of a set
+ * of characters, and options return a new splitter:
+ * <pre>
+ * Splitter splitter = Splitter.on(',').trimResults().omitEmptyStrings();
+ * for (CharSequence field: splitter.iterate(line)){
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Besides returning an array of Strings, a splitter can store fields into
+ * an array that is reused from one line to the next, pass each field to a
+ * handler, or iterate over the fields.  The last two give views of the
+ * fields in the original characters, which are not copied until toString()
+ * is called on a view.
+ * <p>
+ * A splitter does not change after it is created and may be shared by threads.
+ *
+ * @see StringHelper#split(String, String)
+ * @see Joiner
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public final class Splitter {
+
+	/**
+	 * Receives the fields of a string, one at a time.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public interface FieldHandler {
+
+		/**
+		 * Called for each field.
+		 *
+		 * @param field view of the field that is only valid until this method returns.
+		 * @param index number of fields before this one.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public void field(CharSequence field, int index);
+	}
+
+	/**
+	 * Delimiter that is a single character, or -1.
+	 */
+	private final int delimiterChar;
+
+	/**
+	 * Delimiter that is a string, or null.
+	 */
+	private final String delimiterString;
+
+	/**
+	 * Characters any of which is a delimiter, or null.
+	 */
+	private final String delimiterChars;
+
+	/**
+	 * Whether each ASCII character is in delimiterChars.
+	 */
+	private final boolean[] asciiDelimiters;
+
+	/**
+	 * Most fields to return.
+	 */
+	private final int limit;
+
+	/**
+	 * Whether white space is removed from the ends of fields.
+	 */
+	private final boolean trim;
+
+	/**
+	 * Whether empty fields are left out.
+	 */
+	private final boolean omitEmpty;
+
+	/**
+	 * Create a splitter.
+	 *
+	 * @param delimiterChar delimiter that is a single character, or -1.
+	 * @param delimiterString delimiter that is a string, or null.
+	 * @param delimiterChars characters any of which is a delimiter, or null.
+	 * @param limit most fields to return.
+	 * @param trim whether white space is removed from the ends of fields.
+	 * @param omitEmpty whether empty fields are left out.
+	 */
+	private Splitter(int delimiterChar, String delimiterString, String delimiterChars, int limit, boolean trim, boolean omitEmpty){
+		this.delimiterChar = delimiterChar;
+		this.delimiterString = delimiterString;
+		this.delimiterChars = delimiterChars;
+		if (delimiterChars != null){
+			asciiDelimiters = new boolean[128];
+			for (int i=0; i<delimiterChars.length(); i++){
+				char c = delimiterChars.charAt(i);
+				if (c < 128) asciiDelimiters[c] = true;
+			}
+		} else {
+			asciiDelimiters = null;
+		}
+		this.limit = limit;
+		this.trim = trim;
+		this.omitEmpty = omitEmpty;
+	}
+
+	/**
+	 * Get a splitter that splits on a character.
+	 *
+	 * @param delimiter character that separates fields.
+	 * @return a splitter.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Splitter on(char delimiter){
+		return new Splitter(delimiter, null, null, Integer.MAX_VALUE, false, false);
+	}
+
+	/**
+	 * Get a splitter that splits on a string.  As with
+	 * StringHelper.split(), the string is a literal and not a pattern.
+	 *
+	 * @param delimiter string that separates fields.
+	 * @return a splitter.
+	 * @throws IllegalArgumentException if the delimiter is empty.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Splitter on(String delimiter){
+		if (delimiter.length() == 0) throw new IllegalArgumentException("The delimiter must not be empty.");
+		if (delimiter.length() == 1) return on(delimiter.charAt(0));
+		return new Splitter(-1, delimiter, null, Integer.MAX_VALUE, false, false);
+	}
+
+	/**
+	 * Get a splitter that splits on any one of a set of characters.
+	 *
+	 * @param delimiters characters each of which separates fields.
+	 * @return a splitter.
+	 * @throws IllegalArgumentException if there are no delimiters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Splitter onAnyOf(String delimiters){
+		if (delimiters.length() == 0) throw new IllegalArgumentException("There must be at least one delimiter.");
+		return new Splitter(-1, null, delimiters, Integer.MAX_VALUE, false, false);
+	}
+
+	/**
+	 * Get a splitter like this one that returns at most the given number of
+	 * fields.  The last field holds the rest of the string, delimiters and all.
+	 * Fields that are left out because they are empty do not count.
+	 *
+	 * @param limit most fields to return.
+	 * @return a splitter.
+	 * @throws IllegalArgumentException if the limit is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Splitter limit(int limit){
+		if (limit < 1) throw new IllegalArgumentException("Bad limit: " + limit);
+		return new Splitter(delimiterChar, delimiterString, delimiterChars, limit, trim, omitEmpty);
+	}
+
+	/**
+	 * Get a splitter like this one that removes white space from the ends
+	 * of each field, as String.trim() would.
+	 *
+	 * @return a splitter.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Splitter trimResults(){
+		return new Splitter(delimiterChar, delimiterString, delimiterChars, limit, true, omitEmpty);
+	}
+
+	/**
+	 * Get a splitter like this one that leaves out fields that are empty,
+	 * after trimming if fields are trimmed.
+	 *
+	 * @return a splitter.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Splitter omitEmptyStrings(){
+		return new Splitter(delimiterChar, delimiterString, delimiterChars, limit, trim, true);
+	}
+
+	/**
+	 * Find the next delimiter.
+	 *
+	 * @param s characters being split.
+	 * @param from index at which to start looking.
+	 * @return index of the delimiter or -1 if there is none.
+	 */
+	private int indexOfDelimiter(CharSequence s, int from){
+		int length = s.length();
+		if (delimiterChar != -1){
+			if (s instanceof String) return ((String)s).indexOf(delimiterChar, from);
+			for (int i=from; i<length; i++){
+				if (s.charAt(i) == delimiterChar) return i;
+			}
+		} else if (delimiterString != null){
+			if (s instanceof String) return ((String)s).indexOf(delimiterString, from);
+			char first = delimiterString.charAt(0);
+			int last = length - delimiterString.length();
+			for (int i=from; i<=last; i++){
+				if (s.charAt(i) == first && regionMatches(s, i, delimiterString)) return i;
+			}
+		} else {
+			for (int i=from; i<length; i++){
+				char c = s.charAt(i);
+				if (c < 128 ? asciiDelimiters[c] : delimiterChars.indexOf(c) != -1) return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether a string is found at a position in a sequence.
+	 *
+	 * @param s characters.
+	 * @param offset position in the characters.
+	 * @param find string that may be there.
+	 * @return true if all the characters of the string are found at the position.
+	 */
+	private static boolean regionMatches(CharSequence s, int offset, String find){
+		for (int i=1; i<find.length(); i++){
+			if (s.charAt(offset + i) != find.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of characters in the delimiter.
+	 *
+	 * @return length of a delimiter.
+	 */
+	private int delimiterLength(){
+		return delimiterString != null ? delimiterString.length() : 1;
+	}
+
+	/**
+	 * Find the next field.
+	 *
+	 * @param s characters being split.
+	 * @param from index at which the field may start, or -1 if there are no more fields.
+	 * @param count number of fields found so far.
+	 * @param bounds set to the start and end of the field and the index
+	 *     at which the one after it may start, or -1 if there are no more.
+	 * @return true if there is a field, false if there are no more.
+	 */
+	private boolean nextField(CharSequence s, int from, int count, int[] bounds){
+		while (from != -1){
+			int start = from;
+			int end;
+			int delimiter = indexOfDelimiter(s, from);
+			if (delimiter == -1){
+				end = s.length();
+				from = -1;
+			} else {
+				end = delimiter;
+				from = delimiter + delimiterLength();
+			}
+			if (trim){
+				while (start < end && s.charAt(start) <= ' ') start++;
+				while (end > start && s.charAt(end - 1) <= ' ') end--;
+			}
+			if (omitEmpty && start == end) continue;
+			if (count == limit - 1 && from != -1){
+				// The last field allowed takes the rest
+				end = s.length();
+				from = -1;
+				if (trim){
+					while (end > start && s.charAt(end - 1) <= ' ') end--;
+				}
+			}
+			bounds[0] = start;
+			bounds[1] = end;
+			bounds[2] = from;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Split a string into a new array of fields.
+	 *
+	 * @param s characters to split.
+	 * @return the fields.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] split(CharSequence s){
+		ArrayList<String> fields = new ArrayList<String>();
+		int[] bounds = new int[3];
+		int from = 0;
+		while (nextField(s, from, fields.size(), bounds)){
+			fields.add(s.subSequence(bounds[0], bounds[1]).toString());
+			from = bounds[2];
+		}
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * Split a string into an array that may be reused from call to call.
+	 * If there are more fields than the array holds, the rest are
+	 * counted but not stored.
+	 *
+	 * @param s characters to split.
+	 * @param fields array into which to store fields, starting at index zero.
+	 * @return the number of fields in the string.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int split(CharSequence s, String[] fields){
+		int[] bounds = new int[3];
+		int count = 0;
+		int from = 0;
+		while (nextField(s, from, count, bounds)){
+			if (count < fields.length) fields[count] = s.subSequence(bounds[0], bounds[1]).toString();
+			count++;
+			from = bounds[2];
+		}
+		return count;
+	}
+
+	/**
+	 * Split a string, passing each field to a handler as a view into the
+	 * string.  The same view object is given for every field.
+	 *
+	 * @param s characters to split.
+	 * @param handler receives each field.
+	 * @return the number of fields in the string.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int split(CharSequence s, FieldHandler handler){
+		Field field = new Field(s);
+		int[] bounds = new int[3];
+		int count = 0;
+		int from = 0;
+		while (nextField(s, from, count, bounds)){
+			field.set(bounds[0], bounds[1]);
+			handler.field(field, count);
+			count++;
+			from = bounds[2];
+		}
+		return count;
+	}
+
+	/**
+	 * Iterate over the fields of a string without splitting it up front.
+	 * Each field is a view into the string that stays valid
+	 * as long as the string does not change.
+	 *
+	 * @param s characters to split.
+	 * @return fields that are found as they are iterated.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Iterable<CharSequence> iterate(final CharSequence s){
+		if (s == null) throw new NullPointerException();
+		return new Iterable<CharSequence>(){
+			public Iterator<CharSequence> iterator(){
+				return new Iterator<CharSequence>(){
+					private int[] bounds = new int[3];
+					private int from = 0;
+					private int count = 0;
+					private boolean found = false;
+					public boolean hasNext(){
+						if (!found){
+							found = nextField(s, from, count, bounds);
+							if (!found) from = -1;
+						}
+						return found;
+					}
+					public CharSequence next(){
+						if (!hasNext()) throw new NoSuchElementException();
+						found = false;
+						from = bounds[2];
+						count++;
+						Field field = new Field(s);
+						field.set(bounds[0], bounds[1]);
+						return field;
+					}
+					public void remove(){
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * A field as a view of part of the characters being split.
+	 */
+	private static class Field implements CharSequence {
+
+		/**
+		 * Characters being split.
+		 */
+		private CharSequence s;
+
+		/**
+		 * Index of the first character of the field.
+		 */
+		private int start;
+
+		/**
+		 * Index after the last character of the field.
+		 */
+		private int end;
+
+		/**
+		 * Create a view of a string.
+		 *
+		 * @param s characters being split.
+		 */
+		Field(CharSequence s){
+			this.s = s;
+		}
+
+		/**
+		 * Move the view.
+		 *
+		 * @param start index of the first character of the field.
+		 * @param end index after the last character of the field.
+		 */
+		void set(int start, int end){
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Get the number of characters in the field.
+		 *
+		 * @return the length.
+		 */
+		public int length(){
+			return end - start;
+		}
+
+		/**
+		 * Get a character of the field.
+		 *
+		 * @param index index of the character, relative to the start of the field.
+		 * @return the character.
+		 * @throws IndexOutOfBoundsException if the index is not in the field.
+		 */
+		public char charAt(int index){
+			if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException("index: " + index + ", length: " + (end - start));
+			return s.charAt(start + index);
+		}
+
+		/**
+		 * Get a new view of part of the field.
+		 *
+		 * @param subStart index of the first character, inclusive.
+		 * @param subEnd index of the last character, exclusive.
+		 * @return a new view.
+		 * @throws IndexOutOfBoundsException if the range is not in the field.
+		 */
+		public CharSequence subSequence(int subStart, int subEnd){
+			if (subStart < 0 || subEnd > end - start || subStart > subEnd) throw new IndexOutOfBoundsException("start: " + subStart + ", end: " + subEnd + ", length: " + (end - start));
+			Field field = new Field(s);
+			field.set(start + subStart, start + subEnd);
+			return field;
+		}
+
+		/**
+		 * Copy the characters of the field into a String.
+		 *
+		 * @return the field.
+		 */
+		@Override public String toString(){
+			return s.subSequence(start, end).toString();
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * A digest or checksum computed over the data passing through a
+ * DigestingInputStream or DigestingOutputStream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Instances wrap a MessageDigest, a Checksum, or this library's MD5 class,
+ * so that any mix of them can be computed in a single pass over the data.
+ * Each keeps a count of the bytes it has been given and the time
+ * it has spent on them, from which its throughput can be found.
+ * Only updates of at least 256 bytes are timed, because reading
+ * the clock costs more than digesting a few bytes.
+ * <p>
+ * A StreamDigest is not safe for use by several threads at once.
+ *
+ * @see DigestingInputStream
+ * @see DigestingOutputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public abstract class StreamDigest {
+
+	/**
+	 * Name of the algorithm.
+	 */
+	private String algorithm;
+
+	/**
+	 * Number of bytes given to the algorithm.
+	 */
+	private long byteCount = 0;
+
+	/**
+	 * Updates shorter than this are not timed.
+	 */
+	private static final int TIMED_LENGTH = 256;
+
+	/**
+	 * Whether updates are timed at all.
+	 */
+	private boolean timed = true;
+
+	/**
+	 * Number of bytes given to the algorithm in timed updates.
+	 */
+	private long timedByteCount = 0;
+
+	/**
+	 * Nanoseconds spent in the algorithm during timed updates.
+	 */
+	private long nanos = 0;
+
+	/**
+	 * Create a digest.
+	 *
+	 * @param algorithm name of the algorithm.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected StreamDigest(String algorithm){
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Get a digest for an algorithm by name.  The names "MD5", "CRC32",
+	 * and "Adler32" are provided by this library and java.util.zip; other
+	 * names are looked up with MessageDigest.getInstance().
+	 *
+	 * @param algorithm name of the algorithm, such as "SHA-256".
+	 * @return a new digest.
+	 * @throws NoSuchAlgorithmException if the algorithm is not available.
+	 * @throws IllegalArgumentException if the provider's MessageDigest can not be cloned.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static StreamDigest getInstance(String algorithm) throws NoSuchAlgorithmException {
+		if ("MD5".equalsIgnoreCase(algorithm)) return wrap(new MD5());
+		if ("CRC32".equalsIgnoreCase(algorithm)) return wrap("CRC32", new CRC32());
+		if ("Adler32".equalsIgnoreCase(algorithm)) return wrap("Adler32", new Adler32());
+		return wrap(MessageDigest.getInstance(algorithm));
+	}
+
+	/**
+	 * Compute a MessageDigest.  The message digest must be cloneable
+	 * so that its hash can be taken while more data may follow.
+	 *
+	 * @param digest the message digest to update.
+	 * @return a digest that updates the message digest.
+	 * @throws IllegalArgumentException if the message digest can not be cloned.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static StreamDigest wrap(final MessageDigest digest){
+		try {
+			digest.clone();
+		} catch (CloneNotSupportedException x){
+			throw new IllegalArgumentException("MessageDigest can not be cloned: " + digest.getAlgorithm());
+		}
+		return new StreamDigest(digest.getAlgorithm()){
+			@Override protected void updateDigest(byte[] bytes, int offset, int length){
+				digest.update(bytes, offset, length);
+			}
+			@Override protected byte[] digest(){
+				try {
+					// Finish a copy so that more data may follow.
+					return ((MessageDigest)digest.clone()).digest();
+				} catch (CloneNotSupportedException x){
+					// checked when wrapped
+					throw new IllegalStateException(x.getMessage());
+				}
+			}
+			@Override protected void resetDigest(){
+				digest.reset();
+			}
+		};
+	}
+
+	/**
+	 * Compute a Checksum.  The hash is the low four bytes of
+	 * the checksum value with the most significant byte first.
+	 *
+	 * @param algorithm name of the checksum algorithm.
+	 * @param checksum the checksum to update.
+	 * @return a digest that updates the checksum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static StreamDigest wrap(String algorithm, final Checksum checksum){
+		return new StreamDigest(algorithm){
+			@Override protected void updateDigest(byte[] bytes, int offset, int length){
+				checksum.update(bytes, offset, length);
+			}
+			@Override protected byte[] digest(){
+				long value = checksum.getValue();
+				return new byte[] {
+					(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value
+				};
+			}
+			@Override protected void resetDigest(){
+				checksum.reset();
+			}
+		};
+	}
+
+	/**
+	 * Compute an MD5 hash with this library's MD5 class.
+	 *
+	 * @param md5 the MD5 sum to update.
+	 * @return a digest that updates the MD5 sum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static StreamDigest wrap(MD5 md5){
+		return wrap(md5, true);
+	}
+
+	/**
+	 * Compute an MD5 hash with this library's MD5 class, optionally
+	 * without timing any updates.  The MD5 streams read a byte at a time
+	 * as often as not and never report the time.
+	 *
+	 * @param md5 the MD5 sum to update.
+	 * @param timed false to leave the time and throughput at zero.
+	 * @return a digest that updates the MD5 sum.
+	 */
+	static StreamDigest wrap(final MD5 md5, boolean timed){
+		StreamDigest streamDigest = new StreamDigest("MD5"){
+			@Override protected void updateDigest(byte[] bytes, int offset, int length){
+				md5.update(bytes, offset, length);
+			}
+			@Override protected byte[] digest(){
+				return md5.getHash();
+			}
+			@Override protected void resetDigest(){
+				md5.reset();
+			}
+		};
+		streamDigest.timed = timed;
+		return streamDigest;
+	}
+
+	/**
+	 * Give bytes to the algorithm.
+	 *
+	 * @param bytes data.
+	 * @param offset index of the first byte.
+	 * @param length number of bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected abstract void updateDigest(byte[] bytes, int offset, int length);
+
+	/**
+	 * Compute the result for the bytes so far, without preventing more
+	 * bytes from being added.
+	 *
+	 * @return the digest or checksum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected abstract byte[] digest();
+
+	/**
+	 * Return the algorithm to its initial state.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	protected abstract void resetDigest();
+
+	/**
+	 * Update the digest with some bytes and count them.
+	 *
+	 * @param bytes data.
+	 * @param offset index of the first byte.
+	 * @param length number of bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void update(byte[] bytes, int offset, int length){
+		if (timed && length >= TIMED_LENGTH){
+			long start = System.nanoTime();
+			updateDigest(bytes, offset, length);
+			nanos += System.nanoTime() - start;
+			timedByteCount += length;
+		} else {
+			updateDigest(bytes, offset, length);
+		}
+		byteCount += length;
+	}
+
+	/**
+	 * Get the name of the algorithm.
+	 *
+	 * @return the algorithm, such as "MD5" or "SHA-256".
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getAlgorithm(){
+		return algorithm;
+	}
+
+	/**
+	 * Get the digest or checksum of the bytes so far.
+	 *
+	 * @return the bytes of the result.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] getHash(){
+		return digest();
+	}
+
+	/**
+	 * Get the digest or checksum of the bytes so far as hex digits.
+	 *
+	 * @return two lower case hex digits for each byte of the result.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getHashString(){
+		return MD5.toHex(digest());
+	}
+
+	/**
+	 * Get the number of bytes given to the algorithm.
+	 *
+	 * @return number of bytes since creation or the last reset.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getByteCount(){
+		return byteCount;
+	}
+
+	/**
+	 * Get the time spent in the algorithm during updates
+	 * of at least 256 bytes.
+	 *
+	 * @return nanoseconds since creation or the last reset.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getNanos(){
+		return nanos;
+	}
+
+	/**
+	 * Get the speed of the algorithm in megabytes (1,048,576 bytes)
+	 * per second of time spent in it, measured over the updates
+	 * of at least 256 bytes.
+	 *
+	 * @return throughput, or zero if no time has been spent.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getMegabytesPerSecond(){
+		if (nanos <= 0) return 0;
+		return (timedByteCount / (double)(1 << 20)) / (nanos / 1e9);
+	}
+
+	/**
+	 * Return the algorithm to its initial state and clear the counters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void reset(){
+		resetDigest();
+		byteCount = 0;
+		timedByteCount = 0;
+		nanos = 0;
+	}
+
+	/**
+	 * Get the algorithm and the hex digits of the result.
+	 *
+	 * @return a string such as "MD5 d41d8cd98f00b204e9800998ecf8427e".
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public String toString(){
+		return algorithm + " " + getHashString();
+	}
+}
@@ -17,8 +17,14 @@
 
 package com.Ostermiller.util;
 
-import java.util.Map;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -236,6 +242,12 @@ public class StringHelper {
 	 * result: {"123"}<br>
 	 * StringHelper.split("1-2---3----4", "--");<br>
 	 * result: {"1-2","-3","","4"}<br>
+	 * <P>
+	 * To split many strings on the same delimiter, a Splitter
+	 * can be created once and can avoid creating the array and the
+	 * token Strings.
+	 *
+	 * @see Splitter
 	 *
 	 * @param s String to be split.
 	 * @param delimiter String literal on which to split.
@@ -410,6 +422,11 @@ public class StringHelper {
 	 * If the given array empty an empty string
 	 * will be returned.  Null elements of the array are allowed
 	 * and will be treated like empty Strings.
+	 * <p>
+	 * To write the result to a Writer or other Appendable
+	 * without building the String, use a Joiner.
+	 *
+	 * @see Joiner
 	 *
 	 * @param array Array to be joined into a string.
 	 * @param delimiter String to place between array elements.
@@ -493,6 +510,11 @@ public class StringHelper {
 	 * result: "1-2|-3||4"<br>
 	 * StringHelper.replace("1-2---3----4", "--", "---");<br>
 	 * result: "1-2----3------4"<br>
+	 * <p>
+	 * To make many different replacements, a Replacer makes
+	 * them all in one pass over the string.
+	 *
+	 * @see Replacer
 	 *
 	 * @param s String to be modified.
 	 * @param find String to find.
@@ -574,6 +596,154 @@ public class StringHelper {
 		return (sb.toString());
 	}
 
+	/**
+	 * Replacement for each ASCII character when escaping HTML,
+	 * or null if the character is not replaced.
+	 */
+	static final String[] HTML_ESCAPES = new String[128];
+
+	/**
+	 * Replacement for each ASCII character when escaping SQL,
+	 * or null if the character is not replaced.
+	 */
+	static final String[] SQL_ESCAPES = new String[128];
+
+	/**
+	 * Replacement for each ASCII character when escaping Java string literals,
+	 * or null if the character is not replaced.
+	 */
+	static final String[] JAVA_LITERAL_ESCAPES = new String[128];
+
+	/**
+	 * Replacement for each ASCII character when escaping regular expression
+	 * literals, or null if the character is not replaced.  Characters beyond
+	 * ASCII are all escaped with a backslash.
+	 */
+	static final String[] REGULAR_EXPRESSION_ESCAPES = new String[128];
+
+	static {
+		for (char c=0; c<32; c++){
+			// Remove control characters other than white space
+			if (c != '\r' && c != '\n' && c != '\t' && c != '\f') HTML_ESCAPES[c] = "";
+		}
+		HTML_ESCAPES['\"'] = "&quot;";
+		HTML_ESCAPES['\''] = "&#39;";
+		HTML_ESCAPES['&'] = "&amp;";
+		HTML_ESCAPES['<'] = "&lt;";
+		HTML_ESCAPES['>'] = "&gt;";
+
+		SQL_ESCAPES['\\'] = "\\\\";
+		SQL_ESCAPES['\"'] = "\\\"";
+		SQL_ESCAPES['\''] = "\\\'";
+		SQL_ESCAPES['\0'] = "\\0";
+
+		JAVA_LITERAL_ESCAPES['\"'] = "\\\"";
+		JAVA_LITERAL_ESCAPES['\''] = "\\\'";
+		JAVA_LITERAL_ESCAPES['\n'] = "\\n";
+		JAVA_LITERAL_ESCAPES['\r'] = "\\r";
+		JAVA_LITERAL_ESCAPES['\t'] = "\\t";
+		JAVA_LITERAL_ESCAPES['\\'] = "\\\\";
+
+		for (char c=0; c<128; c++){
+			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z'))){
+				REGULAR_EXPRESSION_ESCAPES[c] = "\\" + c;
+			}
+		}
+	}
+
+	/**
+	 * Escape a string, returning the same string if nothing needs to be escaped.
+	 *
+	 * @param s String to be escaped.
+	 * @param escapes replacement for each ASCII character, or null.
+	 * @param escapeOthers whether characters beyond ASCII are escaped with a backslash.
+	 * @return escaped String.
+	 * @throws NullPointerException if s is null.
+	 */
+	private static String escape(String s, String[] escapes, boolean escapeOthers){
+		int length = s.length();
+		int i = 0;
+		// Find the first character that needs an escape
+		for (; i<length; i++){
+			char c = s.charAt(i);
+			if (c < escapes.length ? escapes[c] != null : escapeOthers) break;
+		}
+		if (i == length){
+			// nothing to escape in the string
+			return s;
+		}
+		StringBuilder sb = new StringBuilder(length + 16);
+		sb.append(s, 0, i);
+		try {
+			escape(s, i, length, escapes, escapeOthers, sb);
+		} catch (IOException iox){
+			// Can't happen when appending to a StringBuilder.
+			throw new RuntimeException(iox);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Escape characters, copying runs of characters that need no escape
+	 * to the destination in bulk.
+	 *
+	 * @param s characters to be escaped.
+	 * @param start index of the first character to escape.
+	 * @param end index after the last character to escape.
+	 * @param escapes replacement for each ASCII character, or null.
+	 * @param escapeOthers whether characters beyond ASCII are escaped with a backslash.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 */
+	static void escape(CharSequence s, int start, int end, String[] escapes, boolean escapeOthers, Appendable out) throws IOException {
+		int run = start;
+		for (int i=start; i<end; i++){
+			char c = s.charAt(i);
+			if (c < escapes.length){
+				String escape = escapes[c];
+				if (escape != null){
+					appendRun(s, run, i, out);
+					out.append(escape);
+					run = i + 1;
+				}
+			} else if (escapeOthers){
+				appendRun(s, run, i, out);
+				out.append('\\');
+				// The character itself starts the next run
+				run = i;
+			}
+		}
+		appendRun(s, run, end, out);
+	}
+
+	/**
+	 * Append a range of characters, writing straight from the string
+	 * or array behind them when the destination is a Writer, because
+	 * Writer.append() would copy the range into a new String.
+	 *
+	 * @param s characters.
+	 * @param start index of the first character to append.
+	 * @param end index after the last character to append.
+	 * @param out destination.
+	 * @throws IOException if the destination throws one.
+	 */
+	static void appendRun(CharSequence s, int start, int end, Appendable out) throws IOException {
+		if (start >= end) return;
+		if (out instanceof Writer){
+			Writer writer = (Writer)out;
+			if (s instanceof String){
+				writer.write((String)s, start, end - start);
+				return;
+			}
+			if (s instanceof CharBuffer && ((CharBuffer)s).hasArray()){
+				CharBuffer buffer = (CharBuffer)s;
+				writer.write(buffer.array(), buffer.arrayOffset() + buffer.position() + start, end - start);
+				return;
+			}
+		}
+		out.append(s, start, end);
+	}
+
 	/**
 	 * Replaces characters that may be confused by a HTML
 	 * parser with their equivalent character entity references.
@@ -613,91 +783,42 @@ public class StringHelper {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String escapeHTML(String s){
-		int length = s.length();
-		int newLength = length;
-		boolean someCharacterEscaped = false;
-		// first check for characters that might
-		// be dangerous and calculate a length
-		// of the string that has escapes.
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			int cint = 0xffff & c;
-			if (cint < 32){
-				switch(c){
-					case '\r':
-					case '\n':
-					case '\t':
-					case '\f':{
-						// Leave whitespace untouched
-					} break;
-					default: {
-						newLength -= 1;
-						someCharacterEscaped = true;
-					}
-				}
-			} else {
-				switch(c){
-					case '\"':{
-						newLength += 5;
-						someCharacterEscaped = true;
-					} break;
-					case '&':
-					case '\'':{
-						newLength += 4;
-						someCharacterEscaped = true;
-					} break;
-					case '<':
-					case '>':{
-						newLength += 3;
-						someCharacterEscaped = true;
-					} break;
-				}
-			}
-		}
-		if (!someCharacterEscaped){
-			// nothing to escape in the string
-			return s;
-		}
-		StringBuffer sb = new StringBuffer(newLength);
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			int cint = 0xffff & c;
-			if (cint < 32){
-				switch(c){
-					case '\r':
-					case '\n':
-					case '\t':
-					case '\f':{
-						sb.append(c);
-					} break;
-					default: {
-						// Remove this character
-					}
-				}
-			} else {
-				switch(c){
-					case '\"':{
-						sb.append("&quot;");
-					} break;
-					case '\'':{
-						sb.append("&#39;");
-					} break;
-					case '&':{
-						sb.append("&amp;");
-					} break;
-					case '<':{
-						sb.append("&lt;");
-					} break;
-					case '>':{
-						sb.append("&gt;");
-					} break;
-					default: {
-						sb.append(c);
-					}
-				}
-			}
-		}
-		return sb.toString();
+		return escape(s, HTML_ESCAPES, false);
+	}
+
+	/**
+	 * Escape HTML characters and append the result, as
+	 * {@link #escapeHTML(String)} would return it, to the given destination.
+	 * Characters that need no escape are copied in runs, and the escaped
+	 * string is never built in memory.
+	 *
+	 * @param s characters to be escaped.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeHTML(CharSequence s, Appendable out) throws IOException {
+		escape(s, 0, s.length(), HTML_ESCAPES, false, out);
+	}
+
+	/**
+	 * Escape HTML characters from part of a character array and append
+	 * the result, as {@link #escapeHTML(String)} would return it, to
+	 * the given destination.
+	 *
+	 * @param chars characters to be escaped.
+	 * @param offset index of the first character to escape.
+	 * @param length number of characters to escape.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws IndexOutOfBoundsException if the offset and length are not within the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeHTML(char[] chars, int offset, int length, Appendable out) throws IOException {
+		escape(CharBuffer.wrap(chars, offset, length), 0, length, HTML_ESCAPES, false, out);
 	}
 
 	/**
@@ -727,48 +848,42 @@ public class StringHelper {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String escapeSQL(String s){
-		int length = s.length();
-		int newLength = length;
-		// first check for characters that might
-		// be dangerous and calculate a length
-		// of the string that has escapes.
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			switch(c){
-				case '\\':
-				case '\"':
-				case '\'':
-				case '\0':{
-					newLength += 1;
-				} break;
-			}
-		}
-		if (length == newLength){
-			// nothing to escape in the string
-			return s;
-		}
-		StringBuffer sb = new StringBuffer(newLength);
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			switch(c){
-				case '\\':{
-					sb.append("\\\\");
-				} break;
-				case '\"':{
-					sb.append("\\\"");
-				} break;
-				case '\'':{
-					sb.append("\\\'");
-				} break;
-				case '\0':{
-					sb.append("\\0");
-				} break;
-				default: {
-					sb.append(c);
-				}
-			}
-		}
-		return sb.toString();
+		return escape(s, SQL_ESCAPES, false);
+	}
+
+	/**
+	 * Escape SQL characters and append the result, as
+	 * {@link #escapeSQL(String)} would return it, to the given destination.
+	 * Characters that need no escape are copied in runs, and the escaped
+	 * string is never built in memory.
+	 *
+	 * @param s characters to be escaped.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeSQL(CharSequence s, Appendable out) throws IOException {
+		escape(s, 0, s.length(), SQL_ESCAPES, false, out);
+	}
+
+	/**
+	 * Escape SQL characters from part of a character array and append
+	 * the result, as {@link #escapeSQL(String)} would return it, to
+	 * the given destination.
+	 *
+	 * @param chars characters to be escaped.
+	 * @param offset index of the first character to escape.
+	 * @param length number of characters to escape.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws IndexOutOfBoundsException if the offset and length are not within the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeSQL(char[] chars, int offset, int length, Appendable out) throws IOException {
+		escape(CharBuffer.wrap(chars, offset, length), 0, length, SQL_ESCAPES, false, out);
 	}
 
 	/**
@@ -784,56 +899,42 @@ public class StringHelper {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String escapeJavaLiteral(String s){
-		int length = s.length();
-		int newLength = length;
-		// first check for characters that might
-		// be dangerous and calculate a length
-		// of the string that has escapes.
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			switch(c){
-				case '\"':
-				case '\'':
-				case '\n':
-				case '\r':
-				case '\t':
-				case '\\':{
-					newLength += 1;
-				} break;
-			}
-		}
-		if (length == newLength){
-			// nothing to escape in the string
-			return s;
-		}
-		StringBuffer sb = new StringBuffer(newLength);
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			switch(c){
-				case '\"':{
-					sb.append("\\\"");
-				} break;
-				case '\'':{
-					sb.append("\\\'");
-				} break;
-				case '\n':{
-					sb.append("\\n");
-				} break;
-				case '\r':{
-					sb.append("\\r");
-				} break;
-				case '\t':{
-					sb.append("\\t");
-				} break;
-				case '\\':{
-					sb.append("\\\\");
-				} break;
-				default: {
-					sb.append(c);
-				}
-			}
-		}
-		return sb.toString();
+		return escape(s, JAVA_LITERAL_ESCAPES, false);
+	}
+
+	/**
+	 * Escape Java string literal characters and append the result, as
+	 * {@link #escapeJavaLiteral(String)} would return it, to the given destination.
+	 * Characters that need no escape are copied in runs, and the escaped
+	 * string is never built in memory.
+	 *
+	 * @param s characters to be escaped.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeJavaLiteral(CharSequence s, Appendable out) throws IOException {
+		escape(s, 0, s.length(), JAVA_LITERAL_ESCAPES, false, out);
+	}
+
+	/**
+	 * Escape Java string literal characters from part of a character array and append
+	 * the result, as {@link #escapeJavaLiteral(String)} would return it, to
+	 * the given destination.
+	 *
+	 * @param chars characters to be escaped.
+	 * @param offset index of the first character to escape.
+	 * @param length number of characters to escape.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws IndexOutOfBoundsException if the offset and length are not within the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeJavaLiteral(char[] chars, int offset, int length, Appendable out) throws IOException {
+		escape(CharBuffer.wrap(chars, offset, length), 0, length, JAVA_LITERAL_ESCAPES, false, out);
 	}
 
 	/**
@@ -887,7 +988,10 @@ public class StringHelper {
 		return s.substring(start, end);
 	}
 
-	private static HashMap<String,Integer> htmlEntities = new HashMap<String,Integer>();
+	/**
+	 * Character for each named HTML entity.
+	 */
+	static HashMap<String,Integer> htmlEntities = new HashMap<String,Integer>();
 	static {
 		htmlEntities.put("n"+"b"+"s"+"p", new Integer(160));
 		htmlEntities.put("i"+"e"+"x"+"c"+"l", new Integer(161));
@@ -1146,6 +1250,11 @@ public class StringHelper {
 	/**
 	 * Turn any HTML escape entities in the string into
 	 * characters and return the resulting string.
+	 * <p>
+	 * Named entities, decimal references such as &amp;#931; and hexadecimal
+	 * references such as &amp;#x3A3; are decoded, including those for
+	 * characters beyond the basic multilingual plane.  Anything else that
+	 * starts with an ampersand is left as it is.
 	 *
 	 * @param s String to be un-escaped.
 	 * @return un-escaped String.
@@ -1154,39 +1263,63 @@ public class StringHelper {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String unescapeHTML(String s){
-		StringBuffer result = new StringBuffer(s.length());
-		int ampInd = s.indexOf("&");
-		int lastEnd = 0;
-		while (ampInd >= 0){
-			int nextAmp = s.indexOf("&", ampInd+1);
-			int nextSemi = s.indexOf(";", ampInd+1);
-			if (nextSemi != -1 && (nextAmp == -1 || nextSemi < nextAmp)){
-				int value = -1;
-				String escape = s.substring(ampInd+1,nextSemi);
-				try {
-					if (escape.startsWith("#")){
-						value = Integer.parseInt(escape.substring(1), 10);
-					} else {
-						if (htmlEntities.containsKey(escape)){
-							value = htmlEntities.get(escape).intValue();
-						}
-					}
-				} catch (NumberFormatException x){
-					// Could not parse the entity,
-					// output it verbatim
-				}
-				result.append(s.substring(lastEnd, ampInd));
-				lastEnd = nextSemi + 1;
-				if (value >= 0 && value <= 0xffff){
-					result.append((char)value);
-				} else {
-					result.append("&").append(escape).append(";");
+		int ampInd = s.indexOf('&');
+		if (ampInd == -1){
+			// nothing to un-escape in the string
+			return s;
+		}
+		StringBuilder sb = new StringBuilder(s.length());
+		sb.append(s, 0, ampInd);
+		try {
+			unescapeHTML(s, ampInd, s.length(), sb);
+		} catch (IOException iox){
+			// Can't happen when appending to a StringBuilder.
+			throw new RuntimeException(iox);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Turn any HTML escape entities into characters and append the
+	 * result, as {@link #unescapeHTML(String)} would return it, to the
+	 * given destination.  The characters are read once, and characters
+	 * that are not part of an entity are copied in runs.
+	 *
+	 * @param s characters to be un-escaped.
+	 * @param out destination of the un-escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void unescapeHTML(CharSequence s, Appendable out) throws IOException {
+		unescapeHTML(s, 0, s.length(), out);
+	}
+
+	/**
+	 * Turn any HTML escape entities in a range of characters into characters.
+	 *
+	 * @param s characters to be un-escaped.
+	 * @param start index of the first character.
+	 * @param end index after the last character.
+	 * @param out destination of the un-escaped characters.
+	 * @throws IOException if the destination throws one.
+	 */
+	private static void unescapeHTML(CharSequence s, int start, int end, Appendable out) throws IOException {
+		int[] codePoint = new int[1];
+		int run = start;
+		for (int i=start; i<end; i++){
+			if (s.charAt(i) == '&'){
+				int entityEnd = HTMLEntityTrie.decode(s, i+1, end, codePoint);
+				if (entityEnd >= 0){
+					appendRun(s, run, i, out);
+					HTMLEntityTrie.append(codePoint[0], out);
+					run = entityEnd;
+					i = entityEnd - 1;
 				}
 			}
-			ampInd = nextAmp;
 		}
-		result.append(s.substring(lastEnd));
-		return result.toString();
+		appendRun(s, run, end, out);
 	}
 
 	/**
@@ -1214,31 +1347,42 @@ public class StringHelper {
 		// is part of an un-escaped construct.
 		//
 		// As a result, escape everything except [0-9a-zA-Z]
+		return escape(s, REGULAR_EXPRESSION_ESCAPES, true);
+	}
 
-		int length = s.length();
-		int newLength = length;
-		// first check for characters that might
-		// be dangerous and calculate a length
-		// of the string that has escapes.
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z'))){
-				newLength += 1;
-			}
-		}
-		if (length == newLength){
-			// nothing to escape in the string
-			return s;
-		}
-		StringBuffer sb = new StringBuffer(newLength);
-		for (int i=0; i<length; i++){
-			char c = s.charAt(i);
-			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z'))){
-				sb.append('\\');
-			}
-			sb.append(c);
-		}
-		return sb.toString();
+	/**
+	 * Escape regular expression characters and append the result, as
+	 * {@link #escapeRegularExpressionLiteral(String)} would return it, to the given destination.
+	 * Characters that need no escape are copied in runs, and the escaped
+	 * string is never built in memory.
+	 *
+	 * @param s characters to be escaped.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeRegularExpressionLiteral(CharSequence s, Appendable out) throws IOException {
+		escape(s, 0, s.length(), REGULAR_EXPRESSION_ESCAPES, true, out);
+	}
+
+	/**
+	 * Escape regular expression characters from part of a character array and append
+	 * the result, as {@link #escapeRegularExpressionLiteral(String)} would return it, to
+	 * the given destination.
+	 *
+	 * @param chars characters to be escaped.
+	 * @param offset index of the first character to escape.
+	 * @param length number of characters to escape.
+	 * @param out destination of the escaped characters.
+	 * @throws IOException if the destination throws one.
+	 * @throws IndexOutOfBoundsException if the offset and length are not within the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void escapeRegularExpressionLiteral(char[] chars, int offset, int length, Appendable out) throws IOException {
+		escape(CharBuffer.wrap(chars, offset, length), 0, length, REGULAR_EXPRESSION_ESCAPES, true, out);
 	}
 
 	/**
@@ -1454,18 +1598,83 @@ public class StringHelper {
 		return Pattern.compile(sb.toString());
 	}
 
+	/**
+	 * Number of compiled matchers to keep for each of the case sensitive
+	 * and case insensitive methods.
+	 */
+	private static final int MATCHER_CACHE_SIZE = 16;
+
+	/**
+	 * Recently used case sensitive matchers, keyed by their terms.
+	 */
+	private static final Map<List<String>,MultiStringMatcher> matcherCache = new MatcherCache();
+
+	/**
+	 * Recently used case insensitive matchers, keyed by their terms.
+	 */
+	private static final Map<List<String>,MultiStringMatcher> ignoreCaseMatcherCache = new MatcherCache();
+
+	/**
+	 * A map that forgets the least recently used matcher once it is full.
+	 */
+	private static class MatcherCache extends LinkedHashMap<List<String>,MultiStringMatcher> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Create an empty cache in access order.
+		 */
+		MatcherCache(){
+			super(MATCHER_CACHE_SIZE * 2, 0.75f, true);
+		}
+
+		/**
+		 * Remove the least recently used matcher when there are too many.
+		 *
+		 * @param eldest least recently used entry.
+		 * @return true if the cache is over its size.
+		 */
+		@Override protected boolean removeEldestEntry(Map.Entry<List<String>,MultiStringMatcher> eldest){
+			return size() > MATCHER_CACHE_SIZE;
+		}
+	}
+
+	/**
+	 * Get a compiled matcher for the terms, from the cache if possible.
+	 *
+	 * @param terms strings for which to search.
+	 * @param ignoreCase whether upper and lower case letters match each other.
+	 * @return a matcher.
+	 * @throws IllegalArgumentException if there are no terms.
+	 */
+	private static MultiStringMatcher getMatcher(String[] terms, boolean ignoreCase){
+		Map<List<String>,MultiStringMatcher> cache = ignoreCase ? ignoreCaseMatcherCache : matcherCache;
+		// Copy the terms so that the key does not change if the caller changes the array.
+		List<String> key = Arrays.asList(terms.clone());
+		MultiStringMatcher matcher;
+		synchronized(cache){
+			matcher = cache.get(key);
+		}
+		if (matcher == null){
+			matcher = new MultiStringMatcher(terms, ignoreCase);
+			synchronized(cache){
+				cache.put(key, matcher);
+			}
+		}
+		return matcher;
+	}
+
 	/**
 	 * Tests to see if the given string contains any of the given terms.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getContainsAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may contain any of the given terms.
 	 * @param terms list of substrings that may be contained in the given string.
@@ -1474,7 +1683,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean containsAny(String s, String[] terms){
-		return getContainsAnyPattern(terms).matcher(s).matches();
+		return getMatcher(terms, false).containsAny(s);
 	}
 
 	/**
@@ -1482,13 +1691,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEqualsAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may equal any of the given terms.
 	 * @param terms list of strings that may equal the given string.
@@ -1497,7 +1706,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean equalsAny(String s, String[] terms){
-		return getEqualsAnyPattern(terms).matcher(s).matches();
+		return getMatcher(terms, false).equalsAny(s);
 	}
 
 	/**
@@ -1505,13 +1714,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getStartsWithAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may start with any of the given terms.
 	 * @param terms list of strings that may start with the given string.
@@ -1520,7 +1729,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean startsWithAny(String s, String[] terms){
-		return getStartsWithAnyPattern(terms).matcher(s).matches();
+		return getMatcher(terms, false).startsWithAny(s);
 	}
 
 	/**
@@ -1528,13 +1737,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEndsWithAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may end with any of the given terms.
 	 * @param terms list of strings that may end with the given string.
@@ -1543,7 +1752,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean endsWithAny(String s, String[] terms){
-		return getEndsWithAnyPattern(terms).matcher(s).matches();
+		return getMatcher(terms, false).endsWithAny(s);
 	}
 
 	/**
@@ -1553,13 +1762,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getContainsAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may contain any of the given terms.
 	 * @param terms list of substrings that may be contained in the given string.
@@ -1568,7 +1777,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean containsAnyIgnoreCase(String s, String[] terms){
-		return getContainsAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return getMatcher(terms, true).containsAny(s);
 	}
 
 	/**
@@ -1578,13 +1787,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEqualsAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may equal any of the given terms.
 	 * @param terms list of strings that may equal the given string.
@@ -1593,7 +1802,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean equalsAnyIgnoreCase(String s, String[] terms){
-		return getEqualsAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return getMatcher(terms, true).equalsAny(s);
 	}
 
 	/**
@@ -1603,13 +1812,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getStartsWithAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may start with any of the given terms.
 	 * @param terms list of strings that may start with the given string.
@@ -1618,7 +1827,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean startsWithAnyIgnoreCase(String s, String[] terms){
-		return getStartsWithAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return getMatcher(terms, true).startsWithAny(s);
 	}
 
 	/**
@@ -1628,13 +1837,13 @@ public class StringHelper {
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
 	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * a MultiStringMatcher that tests all the terms at once in time linear
+	 * in the length of the string.  The most recently used matchers are cached.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEndsWithAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a MultiStringMatcher
+	 * once and reuse it.
+	 * @see MultiStringMatcher
 	 *
 	 * @param s String that may end with any of the given terms.
 	 * @param terms list of strings that may end with the given string.
@@ -1643,7 +1852,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean endsWithAnyIgnoreCase(String s, String[] terms){
-		return getEndsWithAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return getMatcher(terms, true).endsWithAny(s);
 	}
 
 	/**
@@ -1741,6 +1950,323 @@ public class StringHelper {
 		return defaultValue;
 	}
 
+	/**
+	 * Liberal parse method for integer values in part of a character sequence.
+	 * If the characters from start to end are a representation of an integer,
+	 * that value will be returned.  Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * Base prefixes are handled as by {@link #parseInt(String, int)}.
+	 * <p>
+	 * This method does NOT throw number format exceptions and does not
+	 * create any objects, so it may be used on fields that are held as
+	 * slices of a larger buffer without creating a String for each one.
+	 *
+	 * @param s characters containing an integer value to be parsed
+	 * @param start index of the first character to parse
+	 * @param end index after the last character to parse
+	 * @param defaultValue value returned if the characters are not an integer
+	 * @return parsed integer value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in s
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int parseInt(CharSequence s, int start, int end, int defaultValue){
+		checkRange(s.length(), start, end);
+		return (int)parseLong(s, null, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+	}
+
+	/**
+	 * Liberal parse method for integer values in part of an array of ASCII bytes.
+	 * If the bytes from start to end are a representation of an integer,
+	 * that value will be returned.  Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * Base prefixes are handled as by {@link #parseInt(String, int)}.
+	 * <p>
+	 * This method does NOT throw number format exceptions and does not
+	 * create any objects.
+	 *
+	 * @param b bytes containing an integer value to be parsed
+	 * @param start index of the first byte to parse
+	 * @param end index after the last byte to parse
+	 * @param defaultValue value returned if the bytes are not an integer
+	 * @return parsed integer value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in b
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int parseInt(byte[] b, int start, int end, int defaultValue){
+		checkRange(b.length, start, end);
+		return (int)parseLong(null, b, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE, defaultValue);
+	}
+
+	/**
+	 * Liberal parse method for long values in part of a character sequence.
+	 * If the characters from start to end are a representation of a long,
+	 * that value will be returned.  Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * Base prefixes are handled as by {@link #parseInt(String, int)}.
+	 * <p>
+	 * This method does NOT throw number format exceptions and does not
+	 * create any objects.
+	 *
+	 * @param s characters containing a long value to be parsed
+	 * @param start index of the first character to parse
+	 * @param end index after the last character to parse
+	 * @param defaultValue value returned if the characters are not a long
+	 * @return parsed long value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in s
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static long parseLong(CharSequence s, int start, int end, long defaultValue){
+		checkRange(s.length(), start, end);
+		return parseLong(s, null, start, end, Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+	}
+
+	/**
+	 * Liberal parse method for long values in part of an array of ASCII bytes.
+	 * If the bytes from start to end are a representation of a long,
+	 * that value will be returned.  Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * Base prefixes are handled as by {@link #parseInt(String, int)}.
+	 * <p>
+	 * This method does NOT throw number format exceptions and does not
+	 * create any objects.
+	 *
+	 * @param b bytes containing a long value to be parsed
+	 * @param start index of the first byte to parse
+	 * @param end index after the last byte to parse
+	 * @param defaultValue value returned if the bytes are not a long
+	 * @return parsed long value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in b
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static long parseLong(byte[] b, int start, int end, long defaultValue){
+		checkRange(b.length, start, end);
+		return parseLong(null, b, start, end, Long.MIN_VALUE, Long.MAX_VALUE, defaultValue);
+	}
+
+	/**
+	 * Liberal parse method for double values in part of a character sequence.
+	 * If the characters from start to end are a number that
+	 * Double.parseDouble() accepts, that value will be returned.
+	 * Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * This method does NOT throw number format exceptions.  Plain decimal
+	 * numbers with no more than fifteen significant digits and a small exponent
+	 * are converted without creating any objects.  Other numbers are passed
+	 * to Double.parseDouble() and give exactly the same value.
+	 *
+	 * @param s characters containing a double value to be parsed
+	 * @param start index of the first character to parse
+	 * @param end index after the last character to parse
+	 * @param defaultValue value returned if the characters are not a number
+	 * @return parsed double value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in s
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static double parseDouble(CharSequence s, int start, int end, double defaultValue){
+		checkRange(s.length(), start, end);
+		return parseDouble(s, null, start, end, defaultValue);
+	}
+
+	/**
+	 * Liberal parse method for double values in part of an array of ASCII bytes.
+	 * If the bytes from start to end are a number that
+	 * Double.parseDouble() accepts, that value will be returned.
+	 * Otherwise the default value is returned.
+	 * Surrounding white space is NOT significant.
+	 * <p>
+	 * This method does NOT throw number format exceptions.  Plain decimal
+	 * numbers with no more than fifteen significant digits and a small exponent
+	 * are converted without creating any objects.
+	 *
+	 * @param b bytes containing a double value to be parsed
+	 * @param start index of the first byte to parse
+	 * @param end index after the last byte to parse
+	 * @param defaultValue value returned if the bytes are not a number
+	 * @return parsed double value or the default value
+	 * @throws IndexOutOfBoundsException if start and end are not a range in b
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static double parseDouble(byte[] b, int start, int end, double defaultValue){
+		checkRange(b.length, start, end);
+		return parseDouble(null, b, start, end, defaultValue);
+	}
+
+	/**
+	 * Check that start and end are a range within a sequence.
+	 *
+	 * @param length length of the sequence
+	 * @param start index of the first element in the range
+	 * @param end index after the last element in the range
+	 * @throws IndexOutOfBoundsException if the range is not in the sequence
+	 */
+	private static void checkRange(int length, int start, int end){
+		if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+	}
+
+	/**
+	 * Get a character from whichever of the character sequence or
+	 * ASCII bytes is being parsed.
+	 *
+	 * @param s characters, or null when parsing bytes
+	 * @param b bytes, used when s is null
+	 * @param index position of the character
+	 * @return the character
+	 */
+	private static char charAt(CharSequence s, byte[] b, int index){
+		if (s != null) return s.charAt(index);
+		return (char)(b[index] & 0xff);
+	}
+
+	/**
+	 * Parse an integer, with the same rules as {@link #parseInteger(String)},
+	 * from characters or ASCII bytes.
+	 *
+	 * @param s characters, or null when parsing bytes
+	 * @param b bytes, used when s is null
+	 * @param start index of the first character to parse
+	 * @param end index after the last character to parse
+	 * @param min smallest allowed value
+	 * @param max largest allowed value
+	 * @param defaultValue value returned if there is no integer in range
+	 * @return parsed value or the default value
+	 */
+	private static long parseLong(CharSequence s, byte[] b, int start, int end, long min, long max, long defaultValue){
+		while (start < end && charAt(s, b, start) <= ' ') start++;
+		while (end > start && charAt(s, b, end-1) <= ' ') end--;
+		int radix = 10;
+		// Prefixes are removed one after another, as parseInteger(String) does.
+		if (end - start >= 2 && charAt(s, b, start) == '0' && (charAt(s, b, start+1) | 0x20) == 'x'){
+			radix = 16;
+			start += 2;
+		}
+		if (end - start >= 2 && charAt(s, b, start) == '0' && (charAt(s, b, start+1) | 0x20) == 'c'){
+			radix = 8;
+			start += 2;
+		}
+		if (end - start >= 2 && charAt(s, b, start) == '0' && (charAt(s, b, start+1) | 0x20) == 'b'){
+			radix = 2;
+			start += 2;
+		}
+		while (start < end && charAt(s, b, start) <= ' ') start++;
+		boolean negative = false;
+		if (start < end && (charAt(s, b, start) == '-' || charAt(s, b, start) == '+')){
+			negative = charAt(s, b, start) == '-';
+			start++;
+		}
+		if (start >= end) return defaultValue;
+		// Accumulate negatively so that the most negative value fits.
+		long limit = negative ? min : -max;
+		long multiplyMin = limit / radix;
+		long result = 0;
+		for (int i=start; i<end; i++){
+			char c = charAt(s, b, i);
+			int digit = (c >= '0' && c <= '9') ? c - '0' : Character.digit(c, radix);
+			if (digit < 0 || digit >= radix || result < multiplyMin || result * radix < limit + digit) return defaultValue;
+			result = result * radix - digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Powers of ten that are exactly representable as doubles.
+	 */
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+		1e21, 1e22,
+	};
+
+	/**
+	 * Parse a double from characters or ASCII bytes.
+	 * <p>
+	 * When the digits form an integer below 2<sup>53</sup> and the power of ten
+	 * is no more than 22, both are exact doubles and a single multiplication
+	 * or division rounds correctly, giving the same value as Double.parseDouble().
+	 * Anything else is left to Double.parseDouble().
+	 *
+	 * @param s characters, or null when parsing bytes
+	 * @param b bytes, used when s is null
+	 * @param start index of the first character to parse
+	 * @param end index after the last character to parse
+	 * @param defaultValue value returned if there is no number
+	 * @return parsed value or the default value
+	 */
+	private static double parseDouble(CharSequence s, byte[] b, int start, int end, double defaultValue){
+		while (start < end && charAt(s, b, start) <= ' ') start++;
+		while (end > start && charAt(s, b, end-1) <= ' ') end--;
+		if (start >= end) return defaultValue;
+		int i = start;
+		boolean negative = false;
+		char c = charAt(s, b, i);
+		if (c == '-' || c == '+'){
+			negative = c == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean slow = false;
+		for (; i < end && (c = charAt(s, b, i)) >= '0' && c <= '9'; i++){
+			if (mantissa > (Long.MAX_VALUE - 9) / 10) slow = true;
+			mantissa = mantissa * 10 + (c - '0');
+			digits++;
+		}
+		if (i < end && charAt(s, b, i) == '.'){
+			for (i++; i < end && (c = charAt(s, b, i)) >= '0' && c <= '9'; i++){
+				if (mantissa > (Long.MAX_VALUE - 9) / 10) slow = true;
+				mantissa = mantissa * 10 + (c - '0');
+				exponent--;
+				digits++;
+			}
+		}
+		if (digits > 0 && i < end && (charAt(s, b, i) | 0x20) == 'e'){
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (charAt(s, b, i) == '-' || charAt(s, b, i) == '+')){
+				negativeExponent = charAt(s, b, i) == '-';
+				i++;
+			}
+			int exponentStart = i;
+			int e = 0;
+			for (; i < end && (c = charAt(s, b, i)) >= '0' && c <= '9'; i++){
+				if (e < 1000) e = e * 10 + (c - '0');
+			}
+			if (i == exponentStart) slow = true;
+			exponent += negativeExponent ? -e : e;
+		}
+		if (!slow && digits > 0 && i == end && mantissa < 1L << 53 && exponent >= -22 && exponent <= 22){
+			double value = mantissa;
+			if (exponent < 0){
+				value /= EXACT_POWERS_OF_TEN[-exponent];
+			} else {
+				value *= EXACT_POWERS_OF_TEN[exponent];
+			}
+			return negative ? -value : value;
+		}
+		// Hexadecimal, NaN, Infinity, type suffixes, long mantissas,
+		// large exponents, and anything that is not a number at all.
+		String string;
+		if (s != null){
+			string = s.subSequence(start, end).toString();
+		} else {
+			char[] chars = new char[end - start];
+			for (int j=0; j<chars.length; j++){
+				chars[j] = (char)(b[start + j] & 0xff);
+			}
+			string = new String(chars);
+		}
+		try {
+			return Double.parseDouble(string);
+		} catch (NumberFormatException nfx){
+			return defaultValue;
+		}
+	}
+
 	private static Map<String, Boolean> TRUE_FALSE_VALUES = getTrueFalseValues();
 
 	private static Map<String, Boolean> getTrueFalseValues() {
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.CharBuffer;
+
+/**
+ * A reader that turns HTML escape entities into characters as they are read.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * The result is the same as {@link StringHelper#unescapeHTML(String)}
+ * would give for the whole input, but input of any size may be read
+ * with a buffer of fixed size.  At most a few dozen characters past an
+ * ampersand are read ahead to decide whether it starts an entity.
+ * <p>
+ * Mark and reset are not supported.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class UnescapeHTMLReader extends FilterReader {
+
+	/**
+	 * Characters read from the underlying reader.
+	 */
+	private char[] buffer = new char[8192];
+
+	/**
+	 * View of the buffer for the entity decoder.
+	 */
+	private CharBuffer view = CharBuffer.wrap(buffer);
+
+	/**
+	 * Index of the next character in the buffer.
+	 */
+	private int position = 0;
+
+	/**
+	 * Index after the last character in the buffer.
+	 */
+	private int limit = 0;
+
+	/**
+	 * Set once the underlying reader has no more characters.
+	 */
+	private boolean eof = false;
+
+	/**
+	 * Second half of a decoded surrogate pair for which there
+	 * was no room in the last read, or -1.
+	 */
+	private int pendingLowSurrogate = -1;
+
+	/**
+	 * Buffer used when reading a single character.
+	 */
+	private char[] oneChar = new char[1];
+
+	/**
+	 * Code point of the last decoded entity.
+	 */
+	private int[] codePoint = new int[1];
+
+	/**
+	 * Create a reader that decodes HTML entities from another reader.
+	 *
+	 * @param in the reader with HTML escaped characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public UnescapeHTMLReader(Reader in){
+		super(in);
+	}
+
+	/**
+	 * Read more characters into the buffer until at least the given
+	 * number are available or the end of the input is reached.
+	 *
+	 * @param needed number of characters wanted after the current position.
+	 * @throws IOException if the underlying reader throws one.
+	 */
+	private void fill(int needed) throws IOException {
+		if (position > 0){
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (!eof && limit < needed){
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read == -1){
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+	}
+
+	/**
+	 * Read a single un-escaped character.
+	 *
+	 * @return the character, or -1 at the end of the input.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read() throws IOException {
+		synchronized(lock){
+			if (read(oneChar, 0, 1) == -1) return -1;
+			return oneChar[0];
+		}
+	}
+
+	/**
+	 * Read un-escaped characters into part of an array.
+	 *
+	 * @param cbuf destination.
+	 * @param off index at which to start storing characters.
+	 * @param len most characters to read.
+	 * @return number of characters read, or -1 at the end of the input.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(char[] cbuf, int off, int len) throws IOException {
+		synchronized(lock){
+			if (off < 0 || len < 0 || off + len > cbuf.length) throw new IndexOutOfBoundsException();
+			if (len == 0) return 0;
+			int count = 0;
+			if (pendingLowSurrogate != -1){
+				cbuf[off + count++] = (char)pendingLowSurrogate;
+				pendingLowSurrogate = -1;
+			}
+			while (count < len){
+				if (position == limit){
+					// Don't block for more once something has been read
+					if (count > 0 && !in.ready()) break;
+					fill(1);
+					if (position == limit) break;
+				}
+				if (buffer[position] != '&'){
+					// Copy up to the next ampersand
+					int end = Math.min(limit, position + len - count);
+					int start = position;
+					while (position < end && buffer[position] != '&') position++;
+					System.arraycopy(buffer, start, cbuf, off + count, position - start);
+					count += position - start;
+				} else {
+					if (limit - position <= HTMLEntityTrie.MAX_LENGTH && !eof){
+						fill(HTMLEntityTrie.MAX_LENGTH + 1);
+					}
+					int entityEnd = HTMLEntityTrie.decode(view, position + 1, limit, codePoint);
+					if (entityEnd < 0){
+						cbuf[off + count++] = '&';
+						position++;
+					} else if (codePoint[0] < Character.MIN_SUPPLEMENTARY_CODE_POINT){
+						cbuf[off + count++] = (char)codePoint[0];
+						position = entityEnd;
+					} else {
+						cbuf[off + count++] = HTMLEntityTrie.highSurrogate(codePoint[0]);
+						char low = HTMLEntityTrie.lowSurrogate(codePoint[0]);
+						if (count < len){
+							cbuf[off + count++] = low;
+						} else {
+							pendingLowSurrogate = low;
+						}
+						position = entityEnd;
+					}
+				}
+			}
+			if (count == 0) return -1;
+			return count;
+		}
+	}
+
+	/**
+	 * Skip un-escaped characters.
+	 *
+	 * @param n number of characters to skip.
+	 * @return number of characters skipped.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		if (n < 0L) throw new IllegalArgumentException("skip value is negative");
+		char[] skipBuffer = new char[(int)Math.min(n, 512)];
+		long skipped = 0;
+		while (skipped < n){
+			int read = read(skipBuffer, 0, (int)Math.min(n - skipped, skipBuffer.length));
+			if (read == -1) break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Tell whether a read will not block.
+	 *
+	 * @return true if characters are buffered or the underlying reader is ready.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean ready() throws IOException {
+		synchronized(lock){
+			return pendingLowSurrogate != -1 || position < limit || in.ready();
+		}
+	}
+
+	/**
+	 * Mark is not supported.
+	 *
+	 * @return false
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Mark is not supported.
+	 *
+	 * @param readAheadLimit ignored.
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() not supported");
+	}
+
+	/**
+	 * Reset is not supported.
+	 *
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void reset() throws IOException {
+		throw new IOException("reset() not supported");
+	}
+}
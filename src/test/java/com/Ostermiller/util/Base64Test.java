@@ -17,8 +17,14 @@
 package com.Ostermiller.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -100,6 +106,233 @@ public class Base64Test extends TestCase {
 		assertNotBase64("\uffff");
 	}
 
+	public void testBlockCodec() throws IOException {
+		Random rand = new Random(987654321);
+		for (int i = 0; i < 200; i++) {
+			byte[] before = new byte[rand.nextInt(400)];
+			rand.nextBytes(before);
+			for (int lines = 0; lines < 2; lines++) {
+				boolean lineBreaks = lines == 1;
+				String whole = new String(Base64.encode(before, lineBreaks), "ASCII");
+				if (lineBreaks) {
+					String[] split = whole.split("\n");
+					for (int j = 0; j < split.length; j++) {
+						assertTrue(split[j].length() == 76 || j == split.length - 1);
+					}
+				}
+				// Encode in random pieces, alternating between arrays and buffers
+				Base64Encoder encoder = new Base64Encoder(lineBreaks);
+				char[] encoded = new char[encoder.getEncodedLength(before.length) + encoder.getFinishLength()];
+				CharBuffer encodedBuffer = CharBuffer.wrap(encoded);
+				for (int pos = 0; pos < before.length; ) {
+					int length = Math.min(before.length - pos, rand.nextInt(70));
+					if (rand.nextBoolean()) {
+						encodedBuffer.position(encodedBuffer.position() + encoder.encode(before, pos, length, encoded, encodedBuffer.position()));
+					} else {
+						ByteBuffer in = ByteBuffer.allocateDirect(length);
+						in.put(before, pos, length).flip();
+						assertEquals(length, encoder.encode(in, encodedBuffer));
+					}
+					pos += length;
+				}
+				encoder.finish(encodedBuffer);
+				assertEquals(whole, new String(encoded, 0, encodedBuffer.position()));
+
+				// Decode in random pieces, with the output sometimes in a direct buffer
+				Base64Decoder decoder = new Base64Decoder(true);
+				ByteBuffer decoded = ByteBuffer.allocateDirect(before.length + 3);
+				byte[] wholeBytes = whole.getBytes("ASCII");
+				for (int pos = 0; pos < wholeBytes.length; ) {
+					int length = Math.min(wholeBytes.length - pos, rand.nextInt(70));
+					if (rand.nextBoolean()) {
+						ByteBuffer in = ByteBuffer.wrap(wholeBytes, pos, length);
+						assertEquals(length, decoder.decode(in, decoded));
+					} else {
+						byte[] out = new byte[decoder.getDecodedLength(length)];
+						decoded.put(out, 0, decoder.decode(whole.toCharArray(), pos, length, out, 0));
+					}
+					pos += length;
+				}
+				decoder.finish(decoded);
+				byte[] after = new byte[decoded.flip().remaining()];
+				decoded.get(after);
+				assertTrue(byteArraysEqual(before, after));
+				assertTrue(byteArraysEqual(before, Base64.decodeToBytes(whole)));
+				assertTrue(byteArraysEqual(before, Base64.decodeToBytes(new ByteArrayInputStream(wholeBytes))));
+			}
+		}
+	}
+
+	public void testBlockCodecUnexpected() throws IOException {
+		assertEquals("te", Base64.decodeToString("d G\nU="));
+		assertEquals("te", Base64.decodeToString("d*G!U"));
+		assertEquals("cobte", Base64.decodeToString("Y2=9i\u00ffd\u0100GU"));
+		assertEquals("cob", new String(Base64.decodeToBytes(new byte[] {'Y', '2', (byte)0xff, '9', 'i'})));
+		String[] bad = {"Y2*9i", "aA==aA==", "Y29\u00ff", "Y\u01009i"};
+		char[] badChars = {'*', 'a', '\u00ff', '\u0100'};
+		for (int i = 0; i < bad.length; i++) {
+			try {
+				Base64.decode(bad[i], new java.io.ByteArrayOutputStream());
+				fail("Expected exception for " + bad[i]);
+			} catch (Base64DecodingException x) {
+				assertEquals(badChars[i], x.getChar());
+			}
+		}
+	}
+
+	public void testStreams() throws IOException {
+		Random rand = new Random(24681357);
+		for (int i = 0; i < 50; i++) {
+			byte[] before = new byte[rand.nextInt(i < 40 ? 300 : 20000)];
+			rand.nextBytes(before);
+			boolean lineBreaks = rand.nextBoolean();
+			String whole = new String(Base64.encode(before, lineBreaks), "ASCII");
+
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+			Base64OutputStream out = new Base64OutputStream(encoded, lineBreaks);
+			for (int pos = 0; pos < before.length; ) {
+				int length = Math.min(before.length - pos, rand.nextInt(5000));
+				if (length == 1) {
+					out.write(before[pos]);
+				} else {
+					out.write(before, pos, length);
+				}
+				pos += length;
+			}
+			out.close();
+			assertEquals(whole, encoded.toString("ASCII"));
+
+			Base64Reader reader = new Base64Reader(new ByteArrayInputStream(before), lineBreaks);
+			StringBuilder sb = new StringBuilder();
+			char[] chars = new char[1 + rand.nextInt(5000)];
+			int read;
+			while ((read = reader.read(chars, 0, 1 + rand.nextInt(chars.length))) != -1) {
+				sb.append(chars, 0, read);
+			}
+			assertEquals(whole, sb.toString());
+
+			Base64InputStream in = new Base64InputStream(new ByteArrayInputStream(whole.getBytes("ASCII")), true);
+			ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			byte[] bytes = new byte[1 + rand.nextInt(5000)];
+			int b = in.read();
+			if (b != -1) decoded.write(b);
+			while ((read = in.read(bytes, 0, 1 + rand.nextInt(bytes.length))) != -1) {
+				decoded.write(bytes, 0, read);
+			}
+			assertTrue(byteArraysEqual(before, decoded.toByteArray()));
+
+			decoded.reset();
+			Base64Writer writer = new Base64Writer(decoded, true);
+			for (int pos = 0; pos < whole.length(); ) {
+				int length = Math.min(whole.length() - pos, rand.nextInt(5000));
+				writer.write(whole, pos, length);
+				pos += length;
+			}
+			writer.close();
+			assertTrue(byteArraysEqual(before, decoded.toByteArray()));
+		}
+		Base64InputStream in = new Base64InputStream(new ByteArrayInputStream("Y29i*dGU=".getBytes("ASCII")), true);
+		try {
+			in.skip(10);
+			fail("Expected exception");
+		} catch (Base64DecodingException x) {
+			assertEquals('*', x.getChar());
+		}
+		in = new Base64InputStream(new ByteArrayInputStream("Y29i*dGU=".getBytes("ASCII")));
+		assertEquals(2, in.skip(2));
+		assertEquals('b', in.read());
+		assertEquals('t', in.read());
+	}
+
+	public void testParallelFiles() throws IOException {
+		Random rand = new Random(11235813);
+		File in = File.createTempFile("Base64Test", ".bin");
+		File encoded = File.createTempFile("Base64Test", ".b64");
+		File expected = File.createTempFile("Base64Test", ".b64");
+		File decoded = File.createTempFile("Base64Test", ".out");
+		try {
+			ParallelBase64 base64 = new ParallelBase64();
+			base64.setThreadCount(3);
+			int[] sizes = {0, 1, 56, 57, 58, 114, 1000, 5001, 20000};
+			for (int i = 0; i < sizes.length; i++) {
+				byte[] before = new byte[sizes[i]];
+				rand.nextBytes(before);
+				writeFile(in, before);
+				base64.setBlockSize(57 * (1 + rand.nextInt(5)));
+				for (int lines = 0; lines < 2; lines++) {
+					boolean lineBreaks = lines == 1;
+					base64.encode(in, encoded, lineBreaks);
+					Base64.encode(in, expected, lineBreaks);
+					assertTrue(byteArraysEqual(readFile(expected), readFile(encoded)));
+					assertEquals(before.length, base64.getInputBytes());
+					assertEquals(encoded.length(), base64.getOutputBytes());
+					assertTrue(base64.getMegabytesPerSecond() >= 0);
+
+					base64.decode(encoded, decoded, true);
+					assertTrue(byteArraysEqual(before, readFile(decoded)));
+				}
+				// Decode with white space, padding, and junk in uneven places
+				StringBuilder sb = new StringBuilder();
+				String text = Base64.encodeToString(before, false);
+				for (int j = 0; j < text.length(); j++) {
+					int r = rand.nextInt(20);
+					if (r == 0) sb.append("\r\n");
+					if (r == 1) sb.append('*');
+					if (r == 2) sb.append("   ");
+					sb.append(text.charAt(j));
+				}
+				writeFile(in, sb.toString().getBytes("ASCII"));
+				base64.setBlockSize(57 + rand.nextInt(100));
+				base64.decode(in, decoded, false);
+				assertTrue(byteArraysEqual(Base64.decodeToBytes(sb.toString()), readFile(decoded)));
+				if (sb.indexOf("*") != -1) {
+					try {
+						base64.decode(in, decoded, true);
+						fail("Expected exception");
+					} catch (Base64DecodingException x) {
+						assertEquals('*', x.getChar());
+					}
+				}
+			}
+			writeFile(in, "aA==aA==".getBytes("ASCII"));
+			try {
+				base64.decode(in, decoded, true);
+				fail("Expected exception");
+			} catch (Base64DecodingException x) {
+				assertEquals('a', x.getChar());
+			}
+		} finally {
+			in.delete();
+			encoded.delete();
+			expected.delete();
+			decoded.delete();
+		}
+	}
+
+	private static void writeFile(File file, byte[] bytes) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[(int)file.length()];
+			int pos = 0;
+			int read;
+			while (pos < bytes.length && (read = in.read(bytes, pos, bytes.length - pos)) != -1) {
+				pos += read;
+			}
+			return bytes;
+		} finally {
+			in.close();
+		}
+	}
+
 	private void assertBase64(String s){
 		try {
 			assertTrue(Base64.isBase64(s));
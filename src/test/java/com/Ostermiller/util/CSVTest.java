@@ -19,6 +19,7 @@ package com.Ostermiller.util;
 
 import junit.framework.TestCase;
 import java.io.*;
+import java.util.Random;
 
 /**
  * Regression test for CSV.
@@ -140,6 +141,286 @@ public class CSVTest extends TestCase {
 		compare(output, getAllValues(csvParser));
 	}
 
+	public void testNextFieldMatchesNextValue() throws IOException {
+		String input = "!comment\n\"a\\\"b\\n\",plain, \"quoted\" ,,\n \"two\nlines\",\"unterminated";
+		CSVParser values = new CSVParser(new StringReader(input), "nrtf", "\n\r\t\f", "!");
+		CSVParser fields = new CSVParser(new StringReader(input), "nrtf", "\n\r\t\f", "!");
+		compareFields(values, fields);
+	}
+
+	public void testExcelNextFieldMatchesNextValue() throws IOException {
+		String input = "\"a\"\"b\",plain, \"\"\"\" ,,\n\"two\nlines\",\"unterminated";
+		ExcelCSVParser values = new ExcelCSVParser(new StringReader(input));
+		ExcelCSVParser fields = new ExcelCSVParser(new StringReader(input));
+		compareFields(values, fields);
+	}
+
+	public void testNextFieldAfterGetLine() throws IOException {
+		CSVParser csvParser = new CSVParser(new StringReader("a,b\nc,d"));
+		compare(csvParser.getLine(), new String[]{"a", "b"});
+		compare(csvParser.nextField().toString(), csvParser.getLastLineNumber(), "c", 2);
+		compare(csvParser.nextField().toString(), csvParser.getLastLineNumber(), "d", 2);
+		assertNull(csvParser.nextField());
+	}
+
+	public void testReadFields() throws IOException {
+		final StringBuffer sb = new StringBuffer();
+		CSVParser csvParser = new CSVParser(new StringReader("a,\"b\\\"\"\n\nc,,d\n"));
+		csvParser.readFields(new CSVFieldListener(){
+			@Override public void field(CharSequence value, int lineNumber, int fieldIndex){
+				sb.append(lineNumber).append(':').append(fieldIndex).append('=').append(value).append(' ');
+			}
+			@Override public void endLine(int lineNumber, int fieldCount){
+				sb.append(lineNumber).append('#').append(fieldCount).append(' ');
+			}
+		});
+		assertEquals("1:0=a 1:1=b\" 1#2 3:0=c 3:1= 3:2=d 3#3 ", sb.toString());
+	}
+
+	public void testParallelMatchesSerial() throws IOException {
+		String[] pieces = {"a", "bc", " ", ",", ",", "\"", "\"", "\\", "\n", "\r\n", "\r", "#", "\t", "\u00e9"};
+		Random random = new Random(42);
+		for (int run=0; run<20; run++){
+			StringBuffer sb = new StringBuffer();
+			for (int i=0; i<200; i++){
+				sb.append(pieces[random.nextInt(pieces.length)]);
+			}
+			File file = File.createTempFile("CSVTest", ".csv");
+			try {
+				Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+				out.write(sb.toString());
+				out.close();
+				for (CSVFormat format: CSVFormat.values()){
+					for (int chunkSize=1; chunkSize<40; chunkSize+=7){
+						CSVParse serial;
+						if (format == CSVFormat.EXCEL){
+							ExcelCSVParser excel = new ExcelCSVParser(new StringReader(sb.toString()));
+							excel.setCommentStart("#");
+							serial = excel;
+						} else {
+							serial = new CSVParser(new StringReader(sb.toString()), "n", "\n", "#");
+						}
+						ParallelCSVParser parallel = new ParallelCSVParser(file, format, "UTF-8");
+						parallel.setChunkSize(chunkSize);
+						parallel.setThreadCount(3);
+						parallel.setCommentStart("#");
+						if (format == CSVFormat.CSV) parallel.setEscapes("n", "\n");
+						String[] line;
+						while ((line = serial.getLine()) != null){
+							compare(line, parallel.getLine());
+							assertEquals(serial.getLastLineNumber(), parallel.getLastLineNumber());
+						}
+						assertNull(parallel.getLine());
+						parallel.close();
+					}
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	public void testParallelUnordered() throws IOException {
+		File file = File.createTempFile("CSVTest", ".csv");
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			for (int i=1; i<=1000; i++){
+				out.write(i + ",\"line\n" + i + "\"\n");
+			}
+			out.close();
+			final boolean[] seen = new boolean[1001];
+			ParallelCSVParser parallel = new ParallelCSVParser(file, CSVFormat.EXCEL, "UTF-8");
+			parallel.setChunkSize(100);
+			assertEquals("1", parallel.nextValue());
+			parallel.readLines(new CSVLineListener(){
+				@Override public void line(String[] values, int lineNumber){
+					synchronized(seen){
+						assertEquals(Integer.toString(lineNumber), values[values.length-1].substring(5));
+						seen[lineNumber] = true;
+					}
+				}
+			}, false);
+			parallel.close();
+			for (int i=1; i<=1000; i++){
+				assertTrue("line " + i, seen[i]);
+			}
+			assertEquals(1000, parallel.getLastLineNumber());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testMappedMatchesSerial() throws IOException {
+		String[] pieces = {"a", "bc", " ", ",", ",", "\"", "\"", "\\", "\n", "\r\n", "\r", "#", "\t", "\f", "\u00E9"};
+		Random random = new Random(7);
+		for (int run=0; run<40; run++){
+			StringBuffer sb = new StringBuffer();
+			for (int i=0; i<200; i++){
+				sb.append(pieces[random.nextInt(pieces.length)]);
+			}
+			File file = File.createTempFile("CSVTest", ".csv");
+			try {
+				Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+				out.write(sb.toString());
+				out.close();
+				for (CSVFormat format: CSVFormat.values()){
+					for (int windowSize=1; windowSize<300; windowSize+=37){
+						for (int mode=0; mode<2; mode++){
+							CSVFieldParse serial;
+							if (format == CSVFormat.EXCEL){
+								ExcelCSVParser excel = new ExcelCSVParser(new StringReader(sb.toString()));
+								excel.setCommentStart("#");
+								serial = excel;
+							} else {
+								serial = new CSVParser(new StringReader(sb.toString()), "n", "\n", "#");
+							}
+							MappedCSVParser mapped = new MappedCSVParser(file, format, "UTF-8");
+							mapped.setWindowSize(windowSize);
+							mapped.setCommentStart("#");
+							if (format == CSVFormat.CSV) mapped.setEscapes("n", "\n");
+							if (mode == 0){
+								compareFields(serial, mapped);
+							} else {
+								String[] line;
+								while ((line = serial.getLine()) != null){
+									compare(line, mapped.getLine());
+									assertEquals(serial.getLastLineNumber(), mapped.getLastLineNumber());
+								}
+								assertNull(mapped.getLine());
+							}
+							mapped.close();
+						}
+					}
+				}
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	public void testMappedLabeled() throws IOException {
+		File file = File.createTempFile("CSVTest", ".csv");
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			out.write("name;city\n\"Ren\u00E9\";Paris\nAnna;\"Z\u00FCrich; CH\"\n");
+			out.close();
+			MappedCSVParser mapped = new MappedCSVParser(file, CSVFormat.EXCEL, "UTF-8");
+			mapped.changeDelimiter(';');
+			LabeledCSVParser labeled = new LabeledCSVParser(mapped);
+			assertEquals(1, labeled.getLabelIdx("city"));
+			compare(new String[]{"Ren\u00E9", "Paris"}, labeled.getLine());
+			assertEquals(1, labeled.getLastLineNumber());
+			compare(new String[]{"Anna", "Z\u00FCrich; CH"}, labeled.getLine());
+			assertEquals("Z\u00FCrich; CH", labeled.getValueByLabel("city"));
+			assertNull(labeled.getLine());
+			labeled.close();
+
+			// Only the selected columns are decoded
+			mapped = new MappedCSVParser(file, CSVFormat.EXCEL, "UTF-8");
+			mapped.changeDelimiter(';');
+			mapped.setColumns(1, 5);
+			compare(new String[]{"", "city"}, mapped.getLine());
+			assertEquals("", mapped.nextValue());
+			assertEquals("Paris", mapped.nextField().toString());
+			compare(new String[]{"", "Z\u00FCrich; CH"}, mapped.getLine());
+			assertEquals(3, mapped.getLastLineNumber());
+			mapped.close();
+
+			mapped = new MappedCSVParser(file, CSVFormat.EXCEL, "UTF-8");
+			mapped.changeDelimiter(';');
+			CSVProjection row = new LabeledCSVParser(mapped).getProjection("city");
+			assertTrue(row.next());
+			assertEquals("Paris", row.getString(0));
+			assertTrue(row.next());
+			assertEquals("Z\u00FCrich; CH", row.getString(0));
+			assertFalse(row.next());
+			mapped.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testPrinterValues() throws IOException {
+		StringWriter sw = new StringWriter();
+		CSVPrinter csvOut = new CSVPrinter(sw);
+		csvOut.write("-5");
+		csvOut.write("a\\b");
+		csvOut.write(" x");
+		csvOut.write(new StringBuffer("q\"\n"));
+		csvOut.write("abcdef".toCharArray(), 1, 3);
+		csvOut.write(Long.MIN_VALUE);
+		csvOut.write(-0.5);
+		csvOut.writeln();
+		csvOut.write(-12L);
+		csvOut.writeln("");
+		assertEquals("\"-5\",a\\b,\" x\",\"q\\\"\\n\",bcd,-9223372036854775808,-0.5\n\"-12\",\n", sw.toString());
+
+		sw = new StringWriter();
+		ExcelCSVPrinter excelOut = new ExcelCSVPrinter(sw);
+		excelOut.write("-5");
+		excelOut.write("a\\b");
+		excelOut.write(new StringBuffer("q\"\n"));
+		excelOut.write("abcdef".toCharArray(), 1, 3);
+		excelOut.write(0L);
+		excelOut.writeln("a,b");
+		excelOut.writeln("");
+		assertEquals("-5,a\\b,\"q\"\"\n\",bcd,0,\"a,b\"\n\"\"\n", sw.toString());
+	}
+
+	public void testBufferedPrinter() throws IOException {
+		String[] pieces = {"a", "bc", " ", ",", "\"", "\\", "\n", "\r", "#", "\t", "-", "1"};
+		Random random = new Random(3);
+		for (int format=0; format<2; format++){
+			StringWriter sw = new StringWriter();
+			CSVPrint printer;
+			if (format == 0){
+				CSVPrinter csvOut = new CSVPrinter(sw);
+				csvOut.setBuffered(true);
+				printer = csvOut;
+			} else {
+				ExcelCSVPrinter excelOut = new ExcelCSVPrinter(sw);
+				excelOut.setBuffered(true);
+				printer = excelOut;
+			}
+			String[][] values = new String[2000][];
+			for (int i=0; i<values.length; i++){
+				values[i] = new String[1 + random.nextInt(5)];
+				for (int j=0; j<values[i].length; j++){
+					StringBuffer sb = new StringBuffer();
+					int length = random.nextInt(30);
+					for (int k=0; k<length; k++){
+						sb.append(pieces[random.nextInt(pieces.length)]);
+					}
+					values[i][j] = sb.toString();
+				}
+				printer.writeln(values[i]);
+			}
+			int written = sw.getBuffer().length();
+			printer.flush();
+			assertTrue(written < sw.getBuffer().length());
+			CSVParse parser;
+			if (format == 0){
+				parser = new CSVParser(new StringReader(sw.toString()), "nr", "\n\r", "");
+			} else {
+				parser = new ExcelCSVParser(new StringReader(sw.toString()));
+			}
+			compare(values, parser.getAllValues());
+		}
+	}
+
+	private static void compareFields(CSVFieldParse values, CSVFieldParse fields) throws IOException {
+		String value;
+		do {
+			value = values.nextValue();
+			CharSequence field = fields.nextField();
+			compare((field == null)?null:field.toString(), fields.getLastLineNumber(), value, values.getLastLineNumber());
+		} while (value != null);
+	}
+
+	private static void compare(String[] a, String[] b){
+		compare(new String[][]{a}, new String[][]{b});
+	}
+
 	private static String[][] getAllValues(CSVParser csvParser){
 		try {
 			return csvParser.getAllValues();
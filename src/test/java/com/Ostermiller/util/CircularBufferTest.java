@@ -19,7 +19,10 @@ package com.Ostermiller.util;
 
 import junit.framework.TestCase;
 import java.io.*;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Regression test for circular buffers.  When run, this program
@@ -92,6 +95,506 @@ public class CircularBufferTest extends TestCase {
 	private static final int SLEEP_BASE=10;
 	private static final int UP_TO_ADDITIONAL_SLEEP=20;
 
+	/**
+	 * Move Objects in batches and with timeouts in each kind of buffer,
+	 * and share a lock free buffer among several producers and consumers.
+	 */
+	/**
+	 * A list that refuses one Object.  Before refusing, it may
+	 * take the next Object from a buffer as another consumer would.
+	 */
+	private static class Refusing extends AbstractList<String> {
+		private List<String> list;
+		private String refused;
+		private CircularObjectBuffer<String> other;
+		Refusing(List<String> list, String refused, CircularObjectBuffer<String> other){
+			this.list = list;
+			this.refused = refused;
+			this.other = other;
+		}
+		@Override public boolean add(String o){
+			if (o.equals(refused)){
+				if (other != null){
+					try {
+						list.add(other.poll(0, TimeUnit.MILLISECONDS));
+					} catch (InterruptedException x){
+						throw new RuntimeException(x);
+					}
+				}
+				throw new IllegalArgumentException("Refused " + o);
+			}
+			return list.add(o);
+		}
+		@Override public String get(int index){
+			return list.get(index);
+		}
+		@Override public int size(){
+			return list.size();
+		}
+	}
+
+	public void testObjectBatches() throws Exception {
+		CircularObjectBuffer.Concurrency[] modes = CircularObjectBuffer.Concurrency.values();
+		for (int m=0; m<modes.length; m++){
+			CircularObjectBuffer<String> buffer = new CircularObjectBuffer<String>(5, false, modes[m]);
+			buffer.writeAll(Arrays.asList(new String[]{"a", "b", "c"}));
+			try {
+				buffer.writeAll(Arrays.asList(new String[]{"d", "e", "f"}));
+				fail("Expected buffer overflow");
+			} catch (BufferOverflowException x){
+				// expected
+			}
+			assertTrue(buffer.offer("d", 0, TimeUnit.MILLISECONDS));
+			List<String> drained = new ArrayList<String>();
+			assertEquals(2, buffer.drainTo(drained, 2));
+			assertEquals("[a, b]", drained.toString());
+			assertEquals(2, buffer.drainTo(drained, 10));
+			assertEquals("[a, b, c, d]", drained.toString());
+			assertEquals(0, buffer.drainTo(drained, 10));
+			assertNull(buffer.poll(10, TimeUnit.MILLISECONDS));
+			// Objects the collection refuses stay in the buffer
+			buffer.writeAll(Arrays.asList(new String[]{"p", "q", "r"}));
+			drained.clear();
+			try {
+				buffer.drainTo(new Refusing(drained, "q", null), 10);
+				fail("Expected refusal");
+			} catch (IllegalArgumentException x){
+				// expected
+			}
+			assertEquals("[p]", drained.toString());
+			assertEquals(2, buffer.drainTo(drained, 10));
+			assertEquals("[p, q, r]", drained.toString());
+			if (modes[m] == CircularObjectBuffer.Concurrency.MULTI_PRODUCER_MULTI_CONSUMER){
+				// Once another consumer has moved on, they go to the end
+				buffer.writeAll(Arrays.asList(new String[]{"p", "q", "r", "s"}));
+				drained.clear();
+				try {
+					buffer.drainTo(new Refusing(drained, "q", buffer), 2);
+					fail("Expected refusal");
+				} catch (IllegalArgumentException x){
+					// expected
+				}
+				assertEquals("[p, r]", drained.toString());
+				assertEquals(2, buffer.drainTo(drained, 10));
+				assertEquals("[p, r, s, q]", drained.toString());
+			}
+			int capacity = 0;
+			while (buffer.offer("x", 10, TimeUnit.MILLISECONDS)) capacity++;
+			assertEquals(buffer.getSize() - (modes[m] == CircularObjectBuffer.Concurrency.MULTI_PRODUCER_MULTI_CONSUMER ? 0 : 1), capacity);
+			assertEquals("x", buffer.poll(0, TimeUnit.MILLISECONDS));
+			buffer.done();
+			assertEquals(capacity - 1, buffer.skip(100));
+			assertNull(buffer.poll(1, TimeUnit.DAYS));
+		}
+
+		final int producers = 4;
+		final int consumers = 4;
+		final int perProducer = 50000;
+		final CircularObjectBuffer<Integer> shared = new CircularObjectBuffer<Integer>(16, true, CircularObjectBuffer.Concurrency.MULTI_PRODUCER_MULTI_CONSUMER);
+		final Exception[] failure = new Exception[1];
+		final long[] sums = new long[consumers];
+		final int[] counts = new int[consumers];
+		Thread[] threads = new Thread[producers + consumers];
+		for (int t=0; t<producers; t++){
+			final int producer = t;
+			threads[t] = new Thread(){
+				@Override public void run(){
+					try {
+						List<Integer> batch = new ArrayList<Integer>();
+						Integer[] array = new Integer[3];
+						int i = 0;
+						while (i < perProducer){
+							switch (i % 3){
+								case 0: shared.write(new Integer(producer * perProducer + i++)); break;
+								case 1: {
+									batch.clear();
+									for (int j=0; j<5 && i<perProducer; j++) batch.add(new Integer(producer * perProducer + i++));
+									shared.writeAll(batch);
+								} break;
+								default: {
+									int len = 0;
+									for (; len<array.length && i<perProducer; len++) array[len] = new Integer(producer * perProducer + i++);
+									shared.write(array, 0, len);
+								} break;
+							}
+						}
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+		}
+		for (int t=0; t<consumers; t++){
+			final int consumer = t;
+			threads[producers + t] = new Thread(){
+				@Override public void run(){
+					try {
+						List<Integer> drained = new ArrayList<Integer>();
+						Integer[] array = new Integer[7];
+						for (int step=0; true; step++){
+							drained.clear();
+							switch (step % 3){
+								case 0: {
+									Integer value = shared.read();
+									if (value == null) return;
+									drained.add(value);
+								} break;
+								case 1: {
+									int read = shared.read(array, 1, 6);
+									if (read == -1) return;
+									for (int j=0; j<read; j++) drained.add(array[j+1]);
+								} break;
+								default: {
+									if (shared.drainTo(drained, 9) == 0){
+										Integer value = shared.poll(1, TimeUnit.MILLISECONDS);
+										if (value != null) drained.add(value);
+									}
+								} break;
+							}
+							for (int j=0; j<drained.size(); j++){
+								sums[consumer] += drained.get(j).intValue();
+								counts[consumer]++;
+							}
+						}
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+		}
+		for (int t=0; t<threads.length; t++){
+			threads[t].start();
+		}
+		for (int t=0; t<producers; t++){
+			threads[t].join();
+		}
+		shared.done();
+		for (int t=producers; t<threads.length; t++){
+			threads[t].join();
+		}
+		if (failure[0] != null) throw failure[0];
+		long total = (long)producers * perProducer;
+		long sum = 0;
+		long count = 0;
+		for (int t=0; t<consumers; t++){
+			sum += sums[t];
+			count += counts[t];
+		}
+		assertEquals(total, count);
+		assertEquals(total * (total - 1) / 2, sum);
+	}
+
+	/**
+	 * Fill infinite buffers far past their initial size, then drain
+	 * them, checking that segments are used, pooled, and released.
+	 */
+	public void testInfiniteSegments() throws Exception {
+		int count = 100000;
+		byte[] data = new byte[count];
+		rand.nextBytes(data);
+		CircularByteBuffer bytes = new CircularByteBuffer(CircularByteBuffer.INFINITE_SIZE);
+		OutputStream out = bytes.getOutputStream();
+		out.write(data, 0, 10);
+		out.write(data[10]);
+		out.write(data, 11, count - 11);
+		assertEquals(count, bytes.getAvailable());
+		assertEquals(count, bytes.getInputStream().available());
+		int segments = bytes.getSegmentCount();
+		assertTrue(segments > 1);
+		assertTrue(bytes.getSize() >= count);
+		assertEquals(0, bytes.getPooledBytes());
+
+		InputStream in = bytes.getInputStream();
+		byte[] result = new byte[count];
+		int read = 0;
+		while (read < 20000){
+			read += in.read(result, read, 20000 - read);
+		}
+		assertTrue(bytes.getSegmentCount() < segments);
+		assertTrue(bytes.getPooledBytes() > 0);
+		in.mark(100);
+		byte[] marked = new byte[50];
+		assertEquals(50, in.read(marked));
+		in.reset();
+		while (read < count / 2){
+			result[read++] = (byte)in.read();
+		}
+		assertEquals(10, in.skip(10));
+		System.arraycopy(data, read, result, read, 10);
+		read += 10;
+		out.write(data, 0, 3);
+		int length;
+		while (read < count && (length = in.read(result, read, Math.min(777, count - read))) != -1){
+			read += length;
+		}
+		assertEqual(data, result);
+		assertEquals(3, in.read(result, 0, 100));
+		assertEquals(0, bytes.getSegmentCount());
+		assertEquals(0, bytes.getPooledBytes());
+
+		StringBuffer sb = new StringBuffer();
+		for (int i=0; sb.length()<count; i++){
+			sb.append(i).append(' ');
+		}
+		String text = sb.toString();
+		CircularCharBuffer chars = new CircularCharBuffer(CircularCharBuffer.INFINITE_SIZE);
+		Writer writer = chars.getWriter();
+		writer.write(text.substring(0, 100));
+		writer.write(text.charAt(100));
+		writer.write(text, 101, text.length() - 201);
+		writer.write(text.substring(text.length() - 100).toCharArray());
+		writer.close();
+		assertEquals(text.length(), chars.getAvailable());
+		assertTrue(chars.getSegmentCount() > 1);
+		Reader reader = chars.getReader();
+		sb.setLength(0);
+		sb.append((char)reader.read());
+		char[] cbuf = new char[1000];
+		while ((length = reader.read(cbuf)) != -1){
+			sb.append(cbuf, 0, length);
+		}
+		assertEquals(text, sb.toString());
+		assertEquals(0, chars.getSegmentCount());
+		assertEquals(0, chars.getPooledChars());
+	}
+
+	/**
+	 * Pump data through direct buffers using streams, channels, and
+	 * transfers, with fixed sizes that wrap and infinite sizes that chain.
+	 */
+	public void testDirectBuffer() throws Exception {
+		final int count = 100000;
+		final byte[] data = new byte[count];
+		rand.nextBytes(data);
+		int[] sizes = {7, 100, CircularDirectByteBuffer.INFINITE_SIZE};
+		for (int s=0; s<sizes.length; s++){
+			final CircularDirectByteBuffer buffer = new CircularDirectByteBuffer(sizes[s]);
+			final Exception[] failure = new Exception[1];
+			Thread producer = new Thread(){
+				@Override public void run(){
+					try {
+						int i = 0;
+						while (i < count){
+							int len = Math.min(count - i, rand.nextInt(20) + 1);
+							switch (rand.nextInt(3)){
+								case 0: buffer.getOutputStream().write(data[i]); len = 1; break;
+								case 1: buffer.getOutputStream().write(data, i, len); break;
+								default: buffer.getWritableChannel().write(ByteBuffer.wrap(data, i, len)); break;
+							}
+							i += len;
+						}
+						buffer.getWritableChannel().close();
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+			producer.start();
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			WritableByteChannel sink = Channels.newChannel(result);
+			ByteBuffer dst = ByteBuffer.allocate(13);
+			byte[] buf = new byte[17];
+			boolean done = false;
+			while (!done){
+				int read;
+				switch (rand.nextInt(4)){
+					case 0: {
+						read = buffer.getInputStream().read();
+						if (read == -1){
+							done = true;
+						} else {
+							result.write(read);
+						}
+					} break;
+					case 1: {
+						read = buffer.getInputStream().read(buf, 1, buf.length - 1);
+						if (read == -1){
+							done = true;
+						} else {
+							result.write(buf, 1, read);
+						}
+					} break;
+					case 2: {
+						dst.clear();
+						read = buffer.getReadableChannel().read(dst);
+						if (read == -1){
+							done = true;
+						} else {
+							result.write(dst.array(), 0, read);
+						}
+					} break;
+					default: {
+						if (buffer.transferTo(sink) == -1) done = true;
+					} break;
+				}
+			}
+			producer.join();
+			if (failure[0] != null) throw failure[0];
+			assertEqual(data, result.toByteArray());
+		}
+
+		// Megabytes in a buffer of INFINITE_SIZE are handed to the
+		// channel a limited number of segments at a time.
+		CircularDirectByteBuffer big = new CircularDirectByteBuffer(CircularDirectByteBuffer.INFINITE_SIZE);
+		byte[] bigData = new byte[5 << 20];
+		rand.nextBytes(bigData);
+		big.getOutputStream().write(bigData);
+		big.getOutputStream().close();
+		ByteArrayOutputStream bigResult = new ByteArrayOutputStream();
+		WritableByteChannel bigSink = Channels.newChannel(bigResult);
+		long transferred = big.transferTo(bigSink);
+		assertTrue("Transferred " + transferred, transferred > 0 && transferred <= 4 << 20);
+		while (big.transferTo(bigSink) != -1);
+		assertEqual(bigData, bigResult.toByteArray());
+
+		CircularDirectByteBuffer buffer = new CircularDirectByteBuffer(10, false);
+		OutputStream out = buffer.getOutputStream();
+		InputStream in = buffer.getInputStream();
+		out.write(data, 0, 8);
+		assertEquals(5, in.skip(5));
+		out.write(data, 8, 7);
+		try {
+			out.write(data, 15, 1);
+			fail("Expected buffer overflow");
+		} catch (BufferOverflowException x){
+			// expected
+		}
+		assertEquals(10, buffer.getAvailable());
+		File file = File.createTempFile("CircularBufferTest", ".bin");
+		try {
+			FileOutputStream fileOut = new FileOutputStream(file);
+			try {
+				// The bytes wrap around the end of the buffer, so a file
+				// channel receives them in one gathering write.
+				assertEquals(10, buffer.transferTo(fileOut.getChannel()));
+			} finally {
+				fileOut.close();
+			}
+			assertEquals(0, buffer.getAvailable());
+			byte[] expected = new byte[10];
+			System.arraycopy(data, 5, expected, 0, 10);
+			byte[] actual = new byte[10];
+			FileInputStream fileIn = new FileInputStream(file);
+			try {
+				assertEquals(10, fileIn.read(actual));
+			} finally {
+				fileIn.close();
+			}
+			assertEqual(expected, actual);
+		} finally {
+			file.delete();
+		}
+		out.close();
+		assertEquals(-1, buffer.transferTo(Channels.newChannel(new ByteArrayOutputStream())));
+	}
+
+	/**
+	 * Pump data through small buffers with a single producer and a single
+	 * consumer, with and without locking, and check that none is lost.
+	 */
+	public void testSingleProducerSingleConsumer() throws Exception {
+		for (int spsc=0; spsc<2; spsc++){
+			final int count = 200000;
+			final CircularByteBuffer bytes = new CircularByteBuffer(7, true, spsc==1);
+			final Exception[] failure = new Exception[1];
+			Thread producer = new Thread(){
+				@Override public void run(){
+					try {
+						OutputStream out = bytes.getOutputStream();
+						byte[] chunk = new byte[13];
+						int i = 0;
+						while (i < count){
+							int len = Math.min(count - i, rand.nextInt(chunk.length) + 1);
+							if (len == 1){
+								out.write(i++);
+							} else {
+								for (int j=0; j<len; j++) chunk[j] = (byte)i++;
+								out.write(chunk, 0, len);
+							}
+						}
+						out.close();
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+			producer.start();
+			InputStream in = bytes.getInputStream();
+			byte[] chunk = new byte[11];
+			int expected = 0;
+			int read;
+			while ((read = in.read(chunk, 0, rand.nextInt(chunk.length) + 1)) != -1){
+				for (int j=0; j<read; j++){
+					assertEquals((byte)expected++, chunk[j]);
+				}
+				if ((read = in.read()) != -1) assertEquals((byte)expected++, (byte)read);
+			}
+			producer.join();
+			if (failure[0] != null) throw failure[0];
+			assertEquals(count, expected);
+
+			final CircularCharBuffer chars = new CircularCharBuffer(5, true, spsc==1);
+			producer = new Thread(){
+				@Override public void run(){
+					try {
+						Writer out = chars.getWriter();
+						for (int i=0; i<count; i+=10){
+							out.write(Integer.toString(i % 100000 + 100000).substring(1), 0, 5);
+							out.write(Integer.toString(i % 100000 + 100000).substring(1).toCharArray());
+						}
+						out.close();
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+			producer.start();
+			Reader reader = chars.getReader();
+			StringBuffer sb = new StringBuffer();
+			char[] cbuf = new char[9];
+			while ((read = reader.read(cbuf, 0, rand.nextInt(cbuf.length) + 1)) != -1){
+				sb.append(cbuf, 0, read);
+			}
+			producer.join();
+			if (failure[0] != null) throw failure[0];
+			assertEquals(count, sb.length());
+			for (int i=0; i<count; i+=10){
+				String number = Integer.toString(i % 100000 + 100000).substring(1);
+				assertEquals(number + number, sb.substring(i, i + 10));
+			}
+
+			final CircularObjectBuffer<Integer> objects = new CircularObjectBuffer<Integer>(3, true, spsc==1);
+			producer = new Thread(){
+				@Override public void run(){
+					try {
+						Integer[] chunk = new Integer[4];
+						for (int i=0; i<count; i+=5){
+							objects.write(new Integer(i));
+							for (int j=0; j<4; j++) chunk[j] = new Integer(i+j+1);
+							objects.write(chunk);
+						}
+						objects.done();
+					} catch (Exception x){
+						failure[0] = x;
+					}
+				}
+			};
+			producer.start();
+			Integer[] ibuf = new Integer[6];
+			expected = 0;
+			while ((read = objects.read(ibuf, 0, rand.nextInt(ibuf.length) + 1)) != -1){
+				for (int j=0; j<read; j++){
+					assertEquals(expected++, ibuf[j].intValue());
+				}
+				Integer next = objects.read();
+				if (next != null) assertEquals(expected++, next.intValue());
+			}
+			producer.join();
+			if (failure[0] != null) throw failure[0];
+			assertEquals(count, expected);
+		}
+	}
+
 
 	public void testAll() throws Exception {
 
@@ -116,4 +116,78 @@ public class LabeledCSVParserTest extends TestCase {
 		assertNotNull(illegalStateException);
 		assertNull(parse.getLine());
 	}
+
+	public void testProjection() throws IOException {
+		String input =
+			"id,name,count,price\n" +
+			"1,\"FOO\",-7,9.25\n" +
+			"\n" +
+			"9223372036854775807,BAR\n" +
+			"3,BAZ,2147483647,1e3\n";
+		CSVParse[] parsers = {
+			new CSVParser(new StringReader(input)),
+			// not a CSVFieldParse, so lines are read with getLine()
+			new LabeledCSVParser(new CSVParser(new StringReader("skipped\n" + input))),
+		};
+		for (int i=0; i<parsers.length; i++){
+			LabeledCSVParser parse = new LabeledCSVParser(parsers[i]);
+			CSVProjection row = parse.getProjection("price", "id", "missing", "count");
+			assertEquals(4, row.getColumnCount());
+			assertTrue(row.next());
+			assertEquals(9.25, row.getDouble(0), 0);
+			assertEquals(1, row.getInt(1));
+			assertFalse(row.isPresent(2));
+			assertNull(row.getCharSequence(2));
+			assertEquals(-7, row.getLong(3));
+			assertEquals("-7", row.getCharSequence(3).toString());
+			assertTrue(row.next());
+			assertEquals(Long.MAX_VALUE, row.getLong(1));
+			assertFalse(row.isPresent(0));
+			assertFalse(row.isPresent(3));
+			try {
+				row.getInt(1);
+				fail("int overflow not detected");
+			} catch (NumberFormatException x){
+			}
+			assertTrue(row.next());
+			assertEquals(3, row.getInt(1));
+			assertEquals(Integer.MAX_VALUE, row.getInt(3));
+			assertEquals("1e3", row.getString(0));
+			assertEquals(1000.0, row.getDouble(0), 0);
+			assertFalse(row.next());
+			assertFalse(row.next());
+		}
+	}
+
+	public void testProjectionLineNumbers() throws IOException {
+		LabeledCSVParser parse = new LabeledCSVParser(
+			new CSVParser(
+				new StringReader(
+					"a,b\n" +
+					"x,1\n" +
+					"\"y\nz\",2\n" +
+					"w"
+				)
+			)
+		);
+		CSVProjection row = parse.getProjection("a", "b");
+		assertEquals(-1, row.getLineNumber());
+		assertTrue(row.next());
+		assertEquals(1, row.getLineNumber());
+		assertEquals("x", row.getString(0));
+		assertTrue(row.next());
+		assertEquals(2, row.getLineNumber());
+		assertEquals("y\nz", row.getString(0));
+		assertEquals(2, row.getInt(1));
+		assertTrue(row.next());
+		assertEquals(3, row.getLineNumber());
+		assertEquals("w", row.getString(0));
+		assertFalse(row.isPresent(1));
+		assertFalse(row.next());
+		try {
+			parse.getProjection("a", "a");
+			fail("duplicate label not detected");
+		} catch (IllegalArgumentException x){
+		}
+	}
 }
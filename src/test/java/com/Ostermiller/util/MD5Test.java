@@ -16,7 +16,15 @@
  */
 package com.Ostermiller.util;
 
-import java.io.UnsupportedEncodingException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
 import junit.framework.TestCase;
 
 /**
@@ -63,4 +71,215 @@ public class MD5Test extends TestCase {
 	public void testLonger(){
 		runTest("57edf4a22be3c955ac49da2e2107b67a", getBytes("12345678901234567890123456789012345678901234567890123456789012345678901234567890"));
 	}
+
+	public void testPieces() throws Exception {
+		Random rand = new Random(31415926);
+		for (int i = 0; i < 300; i++){
+			byte[] bytes = new byte[rand.nextInt(1000)];
+			rand.nextBytes(bytes);
+			MessageDigest expected = MessageDigest.getInstance("MD5");
+			MD5 md5 = new MD5();
+			for (int pos = 0; pos < bytes.length; ){
+				int length = Math.min(bytes.length - pos, rand.nextInt(200));
+				switch (rand.nextInt(5)){
+					case 0: {
+						md5.update(bytes, pos, length);
+					} break;
+					case 1: {
+						for (int j = pos; j < pos + length; j++){
+							md5.update(bytes[j]);
+						}
+					} break;
+					case 2: {
+						ByteBuffer buffer = ByteBuffer.wrap(bytes, pos, length).slice();
+						md5.update(buffer);
+						assertFalse(buffer.hasRemaining());
+					} break;
+					default: {
+						ByteBuffer buffer = ByteBuffer.allocateDirect(length + 3);
+						buffer.order(rand.nextBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+						buffer.position(3);
+						buffer.put(bytes, pos, length);
+						buffer.position(3);
+						ByteOrder order = buffer.order();
+						md5.update(buffer);
+						assertFalse(buffer.hasRemaining());
+						assertEquals(order, buffer.order());
+					} break;
+				}
+				expected.update(bytes, pos, length);
+				pos += length;
+				if (rand.nextInt(4) == 0){
+					// getting the hash part way through must not disturb the rest
+					assertTrue(MessageDigest.isEqual(((MessageDigest)expected.clone()).digest(), md5.getHash()));
+				}
+			}
+			assertTrue(MessageDigest.isEqual(expected.digest(), md5.getHash()));
+		}
+	}
+
+	public void testFileHasher() throws Exception {
+		Random rand = new Random(27182818);
+		int[] sizes = {0, 1, 64, 1000, 65535, 65536, 200000};
+		File[] files = new File[sizes.length];
+		byte[][] expected = new byte[sizes.length][];
+		File store = File.createTempFile("MD5Test", ".cache");
+		store.delete();
+		try {
+			for (int i = 0; i < sizes.length; i++){
+				byte[] bytes = new byte[sizes[i]];
+				rand.nextBytes(bytes);
+				files[i] = File.createTempFile("MD5Test", ".bin");
+				writeFile(files[i], bytes);
+				expected[i] = MessageDigest.getInstance("MD5").digest(bytes);
+				assertTrue(MessageDigest.isEqual(expected[i], MD5.getHash(files[i])));
+				// Recently modified files are not cached
+				assertTrue(files[i].setLastModified(System.currentTimeMillis() - 60000));
+			}
+			FileHashCache cache = new FileHashCache(store);
+			FileHasher hasher = new FileHasher(cache);
+			hasher.setThreadCount(3);
+			hasher.setWindowSize(4096 + 7);
+			byte[][] hashes = hasher.getHashes(files);
+			for (int i = 0; i < sizes.length; i++){
+				assertTrue(MessageDigest.isEqual(expected[i], hashes[i]));
+			}
+			assertEquals(sizes.length, cache.size());
+			// A path with a line break can not forge an entry for another file
+			File forged = new File(store.getParentFile(), "x\n" + MD5.getHashString("") + " 1 1 " + new File(store.getParentFile(), "forged").getAbsolutePath());
+			cache.put(forged, 1, 1, MD5.getHash(""), System.currentTimeMillis());
+			cache.save();
+
+			// A new cache loaded from the store knows every file
+			cache = new FileHashCache(store);
+			assertEquals(sizes.length, cache.size());
+			for (int i = 0; i < sizes.length; i++){
+				assertTrue(MessageDigest.isEqual(expected[i], cache.get(files[i])));
+			}
+
+			// A changed file is hashed again
+			writeFile(files[3], new byte[] {'a'});
+			assertNull(cache.get(files[3]));
+			hasher = new FileHasher(cache);
+			assertEquals("0cc175b9c0f1b6a831c399e269772661", hasher.getHashString(files[3]));
+			// but not cached until its modification time is safely in the past
+			assertNull(cache.get(files[3]));
+			assertTrue(files[3].setLastModified(System.currentTimeMillis() - 60000));
+			assertEquals("0cc175b9c0f1b6a831c399e269772661", hasher.getHashString(files[3]));
+			assertEquals("0cc175b9c0f1b6a831c399e269772661", MD5.toHex(cache.get(files[3])));
+
+			// Hashes from streams can be added
+			cache.clear();
+			MD5InputStream in = new MD5InputStream(new FileInputStream(files[4]));
+			while (in.read(new byte[1000]) != -1);
+			in.close();
+			in.cacheHash(cache, files[4]);
+			assertTrue(MessageDigest.isEqual(expected[4], cache.get(files[4])));
+		} finally {
+			for (int i = 0; i < files.length; i++){
+				if (files[i] != null) files[i].delete();
+			}
+			store.delete();
+		}
+	}
+
+	public void testDigestingStreams() throws Exception {
+		Random rand = new Random(14142135);
+		byte[] bytes = new byte[100000];
+		rand.nextBytes(bytes);
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		long crcValue = crc.getValue();
+
+		DigestingInputStream in = new DigestingInputStream(
+			new ByteArrayInputStream(bytes),
+			StreamDigest.getInstance("MD5"),
+			StreamDigest.getInstance("SHA-256"),
+			StreamDigest.getInstance("CRC32")
+		);
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		DigestingOutputStream out = new DigestingOutputStream(
+			copy,
+			StreamDigest.wrap(MessageDigest.getInstance("SHA-256")),
+			StreamDigest.wrap("CRC32", new CRC32())
+		);
+		byte[] buffer = new byte[999];
+		out.write(in.read());
+		in.skip(500);
+		out.write(bytes, 1, 500);
+		int r;
+		while ((r = in.read(buffer)) != -1){
+			out.write(buffer, 0, r);
+		}
+		assertTrue(Arrays.equals(bytes, copy.toByteArray()));
+
+		assertTrue(MessageDigest.isEqual(MessageDigest.getInstance("MD5").digest(bytes), in.getDigest("md5").getHash()));
+		byte[] sha = MessageDigest.getInstance("SHA-256").digest(bytes);
+		assertTrue(MessageDigest.isEqual(sha, in.getDigest("SHA-256").getHash()));
+		assertTrue(MessageDigest.isEqual(sha, out.getDigest("SHA-256").getHash()));
+		// Getting the hash does not end the digest
+		assertTrue(MessageDigest.isEqual(sha, out.getDigests()[0].getHash()));
+		assertEquals(Long.toHexString(0x100000000L | crcValue).substring(1), in.getDigest("CRC32").getHashString());
+		assertEquals(in.getDigest("CRC32").getHashString(), out.getDigest("CRC32").getHashString());
+		assertNull(in.getDigest("SHA-1"));
+		for (StreamDigest digest: in.getDigests()){
+			assertEquals(bytes.length, digest.getByteCount());
+			assertTrue(digest.getNanos() >= 0);
+		}
+		StreamDigest digest = in.getDigests()[0];
+		digest.reset();
+		assertEquals(0, digest.getByteCount());
+		assertEquals("MD5 d41d8cd98f00b204e9800998ecf8427e", digest.toString());
+		try {
+			StreamDigest.getInstance("no such algorithm");
+			fail("Expected NoSuchAlgorithmException");
+		} catch (NoSuchAlgorithmException x){
+			// expected
+		}
+		// A digest that can not be cloned would be ended by getHash()
+		try {
+			StreamDigest.wrap(new MessageDigest("uncloneable"){
+				@Override protected void engineUpdate(byte input){
+				}
+				@Override protected void engineUpdate(byte[] input, int offset, int len){
+				}
+				@Override protected byte[] engineDigest(){
+					return new byte[0];
+				}
+				@Override protected void engineReset(){
+				}
+			});
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+		// A DigestingInputStream digests skipped bytes
+		in = new DigestingInputStream(new ByteArrayInputStream(bytes), StreamDigest.getInstance("MD5"));
+		assertFalse(in.markSupported());
+		assertEquals(10, in.skip(10));
+		while (in.read(buffer) != -1);
+		assertEquals(MD5.getHashString(bytes), in.getDigest("MD5").getHashString());
+
+		MD5InputStream md5In = new MD5InputStream(new ByteArrayInputStream(bytes));
+		while (md5In.read(buffer) != -1);
+		assertEquals(MD5.getHashString(bytes), md5In.getHashString());
+		assertEquals(bytes.length, md5In.getDigest("MD5").getByteCount());
+		// but an MD5InputStream skips them and supports mark as before
+		md5In = new MD5InputStream(new ByteArrayInputStream(bytes));
+		assertTrue(md5In.markSupported());
+		assertEquals(10, md5In.skip(10));
+		while (md5In.read(buffer) != -1);
+		byte[] rest = new byte[bytes.length - 10];
+		System.arraycopy(bytes, 10, rest, 0, rest.length);
+		assertEquals(MD5.getHashString(rest), md5In.getHashString());
+	}
+
+	private static void writeFile(File file, byte[] bytes) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
 }
@@ -18,6 +18,7 @@ package com.Ostermiller.util;
 
 import junit.framework.TestCase;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Regression test for Parallelizer. More information about this class is
@@ -82,4 +83,434 @@ public class ParallelizerTest extends TestCase {
 		assertNotNull(rx);
 		assertEquals("Testing Parallelizer", rx.getMessage());
 	}
+
+	public void testExecutor() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(SIMULTANEOUS_THREADS + 2);
+		try {
+			final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+			final int[] running = new int[2];
+			final boolean[] listed = new boolean[]{true};
+			final Parallelizer pll = new Parallelizer(executor, SIMULTANEOUS_THREADS);
+			for (int i = 0; i < NUMBER_OF_RUNS * THREADS_PER_RUN; i++) {
+				pll.run(new Runnable() {
+					public void run() {
+						threads.add(Thread.currentThread());
+						synchronized (running) {
+							running[0]++;
+							running[1] = Math.max(running[1], running[0]);
+						}
+						try {
+							Thread.sleep(1);
+						} catch (InterruptedException x) {
+							throw new RuntimeException(x);
+						}
+						if (!Arrays.asList(pll.getRunningThreads()).contains(Thread.currentThread())) {
+							listed[0] = false;
+						}
+						synchronized (running) {
+							running[0]--;
+						}
+					}
+				});
+			}
+			pll.join();
+			assertTrue(pll.done());
+			assertTrue(listed[0]);
+			assertTrue("Ran " + running[1] + " jobs at once", running[1] <= SIMULTANEOUS_THREADS);
+			assertTrue("Used " + threads.size() + " threads", threads.size() <= SIMULTANEOUS_THREADS + 2);
+			assertEquals(0, pll.getRunningThreads().length);
+
+			pll.run(new Runnable() {
+				public void run() {
+					throw new RuntimeException("Testing Parallelizer");
+				}
+			});
+			RuntimeException rx = null;
+			try {
+				pll.join();
+			} catch (RuntimeException rtx) {
+				rx = rtx;
+			}
+			assertNotNull(rx);
+			assertEquals("Testing Parallelizer", rx.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testLoops() throws InterruptedException {
+		final int size = 10000;
+		final int[] visits = new int[size];
+		final int[] running = new int[2];
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		pll.forEach(0, size, 7, new ParallelRangeBody() {
+			public void run(int start, int end) {
+				synchronized (running) {
+					running[0]++;
+					running[1] = Math.max(running[1], running[0]);
+				}
+				for (int i = start; i < end; i++) {
+					visits[i]++;
+				}
+				// Make the first part of the range slow so that it is stolen
+				if (start < size / SIMULTANEOUS_THREADS) {
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException x) {
+						throw new RuntimeException(x);
+					}
+				}
+				synchronized (running) {
+					running[0]--;
+				}
+			}
+		});
+		for (int i = 0; i < size; i++) {
+			assertEquals("Index " + i, 1, visits[i]);
+		}
+		assertTrue("Ran " + running[1] + " chunks at once", running[1] <= SIMULTANEOUS_THREADS);
+
+		Integer[] numbers = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = new Integer(i);
+		}
+		final int[] sum = new int[1];
+		pll.forEach(Arrays.asList(numbers), 100, new ParallelBody<Integer>() {
+			public void run(Integer item) {
+				synchronized (sum) {
+					sum[0] += item.intValue();
+				}
+			}
+		});
+		assertEquals(size * (size - 1) / 2, sum[0]);
+
+		ParallelMapper<Integer,String> toString = new ParallelMapper<Integer,String>() {
+			public String map(Integer item) {
+				return item.toString();
+			}
+		};
+		String[] strings = new String[size];
+		pll.map(numbers, strings, 13, toString);
+		List<String> stringList = pll.map(new LinkedHashSet<Integer>(Arrays.asList(numbers)), 13, toString);
+		assertEquals(size, stringList.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(Integer.toString(i), strings[i]);
+			assertEquals(Integer.toString(i), stringList.get(i));
+		}
+
+		ParallelReducer<Integer,long[]> summer = new ParallelReducer<Integer,long[]>() {
+			public long[] create() {
+				return new long[1];
+			}
+			public long[] accumulate(long[] accumulator, Integer item) {
+				accumulator[0] += item.intValue();
+				return accumulator;
+			}
+			public long[] combine(long[] first, long[] second) {
+				first[0] += second[0];
+				return first;
+			}
+		};
+		assertEquals((long)size * (size - 1) / 2, pll.reduce(numbers, 10, summer)[0]);
+		assertEquals(0, pll.reduce(new Integer[0], 10, summer)[0]);
+
+		final int[] failed = new int[1];
+		pll.setListener(new ParallelizerListener() {
+			@Override public void jobFailed(Runnable job, Throwable failure, long runNanos) {
+				synchronized (failed) {
+					failed[0]++;
+				}
+			}
+		});
+		long failedJobs = pll.getMetrics().getFailedJobs();
+		RuntimeException rx = null;
+		try {
+			pll.forEach(numbers, 1, new ParallelBody<Integer>() {
+				public void run(Integer item) {
+					if (item.intValue() == 500) throw new RuntimeException("Testing Parallelizer");
+				}
+			});
+		} catch (RuntimeException rtx) {
+			rx = rtx;
+		}
+		assertNotNull(rx);
+		assertEquals("Testing Parallelizer", rx.getMessage());
+		assertTrue(pll.done());
+		// The failed chunk is reported like any failed job, and is not thrown again
+		assertEquals(failedJobs + 1, pll.getMetrics().getFailedJobs());
+		assertEquals(1, failed[0]);
+		pll.join();
+		pll.setListener(null);
+
+		// A loop run from inside a job of the same Parallelizer
+		final int[][] grid = new int[50][50];
+		final Parallelizer nested = new Parallelizer(SIMULTANEOUS_THREADS);
+		nested.forEach(0, grid.length, 1, new ParallelRangeBody() {
+			public void run(final int row, int rowEnd) {
+				try {
+					nested.forEach(0, grid[row].length, 3, new ParallelRangeBody() {
+						public void run(int start, int end) {
+							for (int i = start; i < end; i++) {
+								grid[row][i]++;
+							}
+						}
+					});
+				} catch (InterruptedException x) {
+					throw new RuntimeException(x);
+				}
+			}
+		});
+		for (int i = 0; i < grid.length; i++) {
+			for (int j = 0; j < grid[i].length; j++) {
+				assertEquals(1, grid[i][j]);
+			}
+		}
+		assertTrue(nested.done());
+	}
+
+	public void testMetrics() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500.0, histogram.getMean(), 0.001);
+		long median = histogram.getValueAtPercentile(50);
+		assertTrue("Median " + median, median >= 500000 && median <= 500000 * 1.07);
+		long p99 = histogram.getValueAtPercentile(99);
+		assertTrue("99th percentile " + p99, p99 >= 990000 && p99 <= 1000000);
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+		final int[] events = new int[4];
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		pll.setListener(new ParallelizerListener() {
+			@Override public synchronized void jobSubmitted(Runnable job) {
+				events[0]++;
+			}
+			@Override public synchronized void jobStarted(Runnable job, Thread thread, long waitNanos) {
+				events[1]++;
+			}
+			@Override public synchronized void jobFinished(Runnable job, long runNanos) {
+				events[2]++;
+			}
+			@Override public synchronized void jobFailed(Runnable job, Throwable failure, long runNanos) {
+				events[3]++;
+			}
+		});
+		for (int i = 0; i < THREADS_PER_RUN; i++) {
+			final int threadNum = i;
+			pll.run(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException x) {
+						throw new RuntimeException(x);
+					}
+					if (threadNum == 0) throw new RuntimeException("Testing Parallelizer");
+				}
+			});
+		}
+		ParallelizerMetrics metrics = pll.getMetrics();
+		assertEquals(THREADS_PER_RUN, metrics.getSubmittedJobs());
+		assertTrue(metrics.getRunningJobs() <= SIMULTANEOUS_THREADS);
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (RuntimeException rtx) {
+			assertEquals("Testing Parallelizer", rtx.getMessage());
+		}
+		pll.join();
+		assertEquals(THREADS_PER_RUN, metrics.getStartedJobs());
+		assertEquals(THREADS_PER_RUN, metrics.getFinishedJobs());
+		assertEquals(1, metrics.getFailedJobs());
+		assertEquals(0, metrics.getRejectedJobs());
+		assertEquals(0, metrics.getQueuedJobs());
+		assertEquals(0, metrics.getRunningJobs());
+		assertEquals(THREADS_PER_RUN, metrics.getRunTimes().getCount());
+		assertTrue(metrics.getRunTimes().getValueAtPercentile(50) >= 4000000);
+		assertEquals(THREADS_PER_RUN, metrics.getWaitTimes().getCount());
+		// Jobs beyond the limit wait for a running job to finish
+		assertTrue(metrics.getWaitTimes().getMax() >= 4000000);
+		assertEquals(THREADS_PER_RUN, events[0]);
+		assertEquals(THREADS_PER_RUN, events[1]);
+		assertEquals(THREADS_PER_RUN - 1, events[2]);
+		assertEquals(1, events[3]);
+	}
+
+	public void testAdmission() throws InterruptedException {
+		final Object gate = new Object();
+		final boolean[] open = new boolean[1];
+		final int[] ran = new int[1];
+		final Runnable waitForGate = new Runnable() {
+			public void run() {
+				synchronized (gate) {
+					try {
+						while (!open[0]) gate.wait();
+					} catch (InterruptedException x) {
+						throw new RuntimeException(x);
+					}
+					ran[0]++;
+				}
+			}
+		};
+
+		// One running and two queued fill a Parallelizer that rejects
+		Parallelizer pll = new Parallelizer(1, 2, Parallelizer.AdmissionPolicy.REJECT);
+		for (int i = 0; i < 3; i++) {
+			pll.run(waitForGate);
+		}
+		try {
+			pll.run(waitForGate);
+			fail("Expected rejection");
+		} catch (RejectedExecutionException x) {
+			// expected
+		}
+		assertFalse(pll.run(waitForGate, 10, TimeUnit.MILLISECONDS));
+		assertEquals(2, pll.getMetrics().getRejectedJobs());
+		while (pll.getMetrics().getStartedJobs() < 1) {
+			Thread.sleep(1);
+		}
+		assertEquals(2, pll.getMetrics().getQueuedJobs());
+		synchronized (gate) {
+			open[0] = true;
+			gate.notifyAll();
+		}
+		pll.join();
+		assertEquals(3, ran[0]);
+
+		// The caller runs the job itself when the queue is full
+		open[0] = false;
+		ran[0] = 0;
+		pll = new Parallelizer(1, 0, Parallelizer.AdmissionPolicy.CALLER_RUNS);
+		pll.run(waitForGate);
+		final Thread caller = Thread.currentThread();
+		final boolean[] ranInCaller = new boolean[1];
+		pll.run(new Runnable() {
+			public void run() {
+				ranInCaller[0] = Thread.currentThread() == caller;
+			}
+		});
+		assertTrue(ranInCaller[0]);
+		synchronized (gate) {
+			open[0] = true;
+			gate.notifyAll();
+		}
+		pll.join();
+		assertEquals(1, ran[0]);
+
+		// The oldest queued job is dropped to make room
+		open[0] = false;
+		ran[0] = 0;
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		pll = new Parallelizer(1, 2, Parallelizer.AdmissionPolicy.DROP_OLDEST);
+		pll.run(waitForGate);
+		for (int i = 0; i < 4; i++) {
+			final int jobNum = i;
+			pll.run(new Runnable() {
+				public void run() {
+					order.add(new Integer(jobNum));
+				}
+			});
+		}
+		assertEquals(2, pll.getMetrics().getDroppedJobs());
+		synchronized (gate) {
+			open[0] = true;
+			gate.notifyAll();
+		}
+		pll.join();
+		assertEquals("[2, 3]", order.toString());
+
+		// With no queue there is nothing to drop, so the job is rejected
+		open[0] = false;
+		ran[0] = 0;
+		pll = new Parallelizer(1, 0, Parallelizer.AdmissionPolicy.DROP_OLDEST);
+		pll.run(waitForGate);
+		try {
+			pll.run(waitForGate);
+			fail("Expected rejection");
+		} catch (RejectedExecutionException x) {
+			// expected
+		}
+		assertEquals(1, pll.getMetrics().getRejectedJobs());
+		assertEquals(0, pll.getMetrics().getDroppedJobs());
+		synchronized (gate) {
+			open[0] = true;
+			gate.notifyAll();
+		}
+		pll.join();
+		assertEquals(1, ran[0]);
+		assertEquals(0, pll.getMetrics().getQueuedJobs());
+
+		// A blocked producer is held to the rate at which jobs run
+		final int[] running = new int[2];
+		pll = new Parallelizer(2, 1, Parallelizer.AdmissionPolicy.BLOCK);
+		for (int i = 0; i < 20; i++) {
+			pll.run(new Runnable() {
+				public void run() {
+					synchronized (running) {
+						running[0]++;
+					}
+					try {
+						Thread.sleep(2);
+					} catch (InterruptedException x) {
+						throw new RuntimeException(x);
+					}
+					synchronized (running) {
+						running[0]--;
+						running[1]++;
+					}
+				}
+			});
+			// Jobs taken from the queue count as queued until their threads start
+			assertTrue(pll.getMetrics().getQueuedJobs() <= 3);
+		}
+		pll.join();
+		assertEquals(20, running[1]);
+
+		// A job that runs another job itself stays a running job
+		final Parallelizer callerRuns = new Parallelizer(1, 0, Parallelizer.AdmissionPolicy.CALLER_RUNS);
+		final boolean[] stillRunning = new boolean[1];
+		final int[] visits = new int[10];
+		callerRuns.run(new Runnable() {
+			public void run() {
+				try {
+					callerRuns.run(new Runnable() {
+						public void run() {
+							// runs in this thread as there is no room
+						}
+					});
+					stillRunning[0] = Arrays.asList(callerRuns.getRunningThreads()).contains(Thread.currentThread());
+					callerRuns.forEach(0, visits.length, 1, new ParallelRangeBody() {
+						public void run(int start, int end) {
+							for (int i = start; i < end; i++) {
+								visits[i]++;
+							}
+						}
+					});
+				} catch (InterruptedException x) {
+					throw new RuntimeException(x);
+				}
+			}
+		});
+		Thread joiner = new Thread() {
+			@Override public void run() {
+				try {
+					callerRuns.join();
+				} catch (InterruptedException x) {
+					// the test fails below
+				}
+			}
+		};
+		joiner.start();
+		joiner.join(10000);
+		assertFalse("join() did not return", joiner.isAlive());
+		assertTrue(stillRunning[0]);
+		for (int i = 0; i < visits.length; i++) {
+			assertEquals(1, visits[i]);
+		}
+	}
 }
@@ -16,7 +16,18 @@
  */
 package com.Ostermiller.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
 import junit.framework.TestCase;
 
 /**
@@ -217,6 +228,38 @@ public class StringHelperTest extends TestCase {
 		);
 	}
 
+	public void testUnescapeHTML2() throws IOException {
+		assertEquals("\u03A3\u03A3\uD83D\uDE00&#xZ;&#;&bogus;&amp", StringHelper.unescapeHTML("&#931;&#x3a3;&#x1F600;&#xZ;&#;&bogus;&amp"));
+		assertEquals("&#xD800;&#57343;\uD7FF", StringHelper.unescapeHTML("&#xD800;&#57343;&#xD7FF;"));
+		String plain = "no entities";
+		assertSame(plain, StringHelper.unescapeHTML(plain));
+		String[] parts = {"&", ";", "#", "x", "1", "6", "0", "a", "F", "amp", "euro", "thetasym", " ", "1114111", "128512"};
+		Random rand = new Random(27182818);
+		for (int i=0; i<500; i++){
+			StringBuffer sb = new StringBuffer();
+			int count = rand.nextInt(i < 490 ? 12 : 3000);
+			for (int j=0; j<count; j++){
+				sb.append(parts[rand.nextInt(parts.length)]);
+			}
+			String s = sb.toString();
+			String expected = StringHelper.unescapeHTML(s);
+			StringWriter out = new StringWriter();
+			StringHelper.unescapeHTML(sb, out);
+			assertEquals(expected, out.toString());
+
+			// Read through a reader that gives out only a few characters at a time
+			Reader in = new UnescapeHTMLReader(new TrickleReader(s));
+			StringBuffer result = new StringBuffer();
+			char[] buffer = new char[1 + rand.nextInt(5)];
+			int read;
+			while ((read = in.read(buffer, 0, 1 + rand.nextInt(buffer.length))) != -1){
+				result.append(buffer, 0, read);
+			}
+			in.close();
+			assertEquals(s, expected, result.toString());
+		}
+	}
+
 	public void testContainsAny1(){
 		assertTrue(
 			StringHelper.containsAny(
@@ -269,6 +312,21 @@ public class StringHelperTest extends TestCase {
 		);
 	}
 
+	public void testContainsAnyNull(){
+		try {
+			StringHelper.containsAny(null, new String[]{"", "one"});
+			fail("Expected NullPointerException");
+		} catch (NullPointerException x){
+			// expected
+		}
+		try {
+			StringHelper.containsAnyIgnoreCase(null, new String[]{"", "One"});
+			fail("Expected NullPointerException");
+		} catch (NullPointerException x){
+			// expected
+		}
+	}
+
 	public void testEqualsAny1(){
 		assertTrue(
 			StringHelper.equalsAny(
@@ -768,4 +826,316 @@ public class StringHelperTest extends TestCase {
 		assertEquals(false, StringHelper.parseBoolean(null, false));
 		assertEquals(false, StringHelper.parseBoolean("", false));
 	}
+
+	public void testMultiStringMatcher(){
+		MultiStringMatcher matcher = new MultiStringMatcher(new String[]{"he", "she", "his", "hers"});
+		List<MultiStringMatcher.Match> matches = matcher.findAll("ushers");
+		assertEquals(3, matches.size());
+		assertEquals("she", matches.get(0).getTerm());
+		assertEquals(1, matches.get(0).getStart());
+		assertEquals("he", matches.get(1).getTerm());
+		assertEquals(2, matches.get(1).getStart());
+		assertEquals("hers", matches.get(2).getTerm());
+		assertEquals(3, matches.get(2).getTermIndex());
+		assertEquals(6, matches.get(2).getEnd());
+		MultiStringMatcher.Match match = matcher.find("ushers", 2);
+		assertEquals("he", match.getTerm());
+		assertEquals(2, match.getStart());
+		assertNull(matcher.find("ushers", 3));
+		assertTrue(new MultiStringMatcher(new String[]{"\u00C9t\u00C9"}, true).equalsAny("\u00E9T\u00E9"));
+		try {
+			new MultiStringMatcher(new String[0]);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+
+		// Compare with the regular expressions for random terms and strings
+		Random rand = new Random(16180339);
+		String alphabet = "abAB";
+		for (int i=0; i<300; i++){
+			String[] terms = new String[1 + rand.nextInt(6)];
+			for (int j=0; j<terms.length; j++){
+				terms[j] = randomString(rand, alphabet, rand.nextInt(4) + (i<290?1:0));
+			}
+			String s = randomString(rand, alphabet, rand.nextInt(12));
+			for (int j=0; j<2; j++){
+				boolean ignoreCase = j==1;
+				String message = Arrays.asList(terms) + " " + s + " " + ignoreCase;
+				matcher = new MultiStringMatcher(terms, ignoreCase);
+				assertEquals(message, (ignoreCase?StringHelper.getContainsAnyIgnoreCasePattern(terms):StringHelper.getContainsAnyPattern(terms)).matcher(s).matches(), matcher.containsAny(s));
+				assertEquals(message, (ignoreCase?StringHelper.getStartsWithAnyIgnoreCasePattern(terms):StringHelper.getStartsWithAnyPattern(terms)).matcher(s).matches(), matcher.startsWithAny(s));
+				assertEquals(message, (ignoreCase?StringHelper.getEqualsAnyIgnoreCasePattern(terms):StringHelper.getEqualsAnyPattern(terms)).matcher(s).matches(), matcher.equalsAny(s));
+				assertEquals(message, (ignoreCase?StringHelper.getEndsWithAnyIgnoreCasePattern(terms):StringHelper.getEndsWithAnyPattern(terms)).matcher(s).matches(), matcher.endsWithAny(s));
+				assertEquals(message, matcher.containsAny(s), ignoreCase?StringHelper.containsAnyIgnoreCase(s, terms):StringHelper.containsAny(s, terms));
+				int count = 0;
+				for (int k=0; k<=s.length(); k++){
+					for (int l=0; l<terms.length; l++){
+						if (s.regionMatches(ignoreCase, k, terms[l], 0, terms[l].length()) && firstIndex(terms, terms[l], ignoreCase) == l){
+							count++;
+						}
+					}
+				}
+				assertEquals(message, count, matcher.findAll(s).size());
+			}
+		}
+	}
+
+	public void testEscapeAppendable() throws IOException {
+		assertEquals("&lt;b&gt;Joe&#39;s &amp; &quot;Al&quot;&lt;/b&gt;", StringHelper.escapeHTML("<b>Joe's & \"Al\"</b>\u0001"));
+		String plain = "no escapes";
+		assertSame(plain, StringHelper.escapeHTML(plain));
+		Random rand = new Random(31415926);
+		String alphabet = "ab<>&\"'\\\0\n\r\t\f\u0001.\u00E9\u4E2D";
+		for (int i=0; i<200; i++){
+			String s = randomString(rand, alphabet, rand.nextInt(20));
+			char[] chars = ("xx" + s + "yy").toCharArray();
+			for (EscapingWriter.Format format: EscapingWriter.Format.values()){
+				String expected;
+				StringBuilder fromSequence = new StringBuilder();
+				StringWriter fromArray = new StringWriter();
+				switch (format){
+					case HTML: {
+						expected = StringHelper.escapeHTML(s);
+						StringHelper.escapeHTML(new StringBuffer(s), fromSequence);
+						StringHelper.escapeHTML(chars, 2, s.length(), fromArray);
+					} break;
+					case SQL: {
+						expected = StringHelper.escapeSQL(s);
+						StringHelper.escapeSQL(new StringBuffer(s), fromSequence);
+						StringHelper.escapeSQL(chars, 2, s.length(), fromArray);
+					} break;
+					case JAVA_LITERAL: {
+						expected = StringHelper.escapeJavaLiteral(s);
+						StringHelper.escapeJavaLiteral(new StringBuffer(s), fromSequence);
+						StringHelper.escapeJavaLiteral(chars, 2, s.length(), fromArray);
+					} break;
+					default: {
+						expected = StringHelper.escapeRegularExpressionLiteral(s);
+						assertTrue(Pattern.compile(expected).matcher(s).matches());
+						StringHelper.escapeRegularExpressionLiteral(new StringBuffer(s), fromSequence);
+						StringHelper.escapeRegularExpressionLiteral(chars, 2, s.length(), fromArray);
+					}
+				}
+				assertEquals(expected, fromSequence.toString());
+				assertEquals(expected, fromArray.toString());
+				StringWriter out = new StringWriter();
+				Writer writer = new EscapingWriter(out, format);
+				int split = rand.nextInt(s.length() + 1);
+				writer.write(s.substring(0, split));
+				if (split < s.length()) writer.write(s.charAt(split));
+				if (split + 1 < s.length()) writer.append(new StringBuffer(s), split + 1, s.length());
+				writer.close();
+				assertEquals(expected, out.toString());
+			}
+		}
+	}
+
+	public void testReplacer() throws IOException {
+		Map<String,String> pairs = new HashMap<String,String>();
+		pairs.put("he", "1");
+		pairs.put("hers", "2");
+		pairs.put("she", "3");
+		pairs.put("", "never");
+		pairs.put("s", null);
+		Replacer replacer = new Replacer(pairs);
+		assertEquals("u3r 2 1ll", replacer.replace("ushers hers hells"));
+		String plain = "nothing";
+		assertSame(plain, replacer.replace(plain));
+
+		Random rand = new Random(57721566);
+		for (int i=0; i<300; i++){
+			pairs.clear();
+			int count = 1 + rand.nextInt(5);
+			for (int j=0; j<count; j++){
+				pairs.put(randomString(rand, "abc", 1 + rand.nextInt(4)), randomString(rand, "xyz", rand.nextInt(3)));
+			}
+			replacer = new Replacer(pairs);
+			String s = randomString(rand, "abc", rand.nextInt(i < 290 ? 30 : 30000));
+			String expected = replaceLeftmostLongest(s, pairs);
+			assertEquals(pairs + " " + s, expected, replacer.replace(s));
+			if (count == 1){
+				Map.Entry<String,String> pair = pairs.entrySet().iterator().next();
+				assertEquals(StringHelper.replace(s, pair.getKey(), pair.getValue()), expected);
+			}
+			StringWriter out = new StringWriter();
+			replacer.replace(new TrickleReader(s), out);
+			assertEquals(pairs + " " + s, expected, out.toString());
+		}
+
+		// A string to find that is longer than the stream buffer
+		String longFind = randomString(rand, "ab", 20000);
+		pairs.clear();
+		pairs.put(longFind, "long");
+		pairs.put("a", "A");
+		replacer = new Replacer(pairs);
+		StringWriter out = new StringWriter();
+		replacer.replace(new TrickleReader("a" + longFind + "a" + longFind.substring(1)), out);
+		assertEquals("Along" + "A" + longFind.substring(1).replace("a", "A"), out.toString());
+	}
+
+	/**
+	 * Replace by trying every string to find at every position.
+	 */
+	private static String replaceLeftmostLongest(String s, Map<String,String> pairs){
+		StringBuffer sb = new StringBuffer();
+		int i = 0;
+		while (i < s.length()){
+			String best = null;
+			for (String find: pairs.keySet()){
+				if (s.startsWith(find, i) && (best == null || find.length() > best.length())) best = find;
+			}
+			if (best == null){
+				sb.append(s.charAt(i));
+				i++;
+			} else {
+				sb.append(pairs.get(best));
+				i += best.length();
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A reader that gives out only a few characters at a time.
+	 */
+	private static class TrickleReader extends Reader {
+		private Reader in;
+		TrickleReader(String s){
+			in = new StringReader(s);
+		}
+		@Override public int read(char[] cbuf, int off, int len) throws IOException {
+			return in.read(cbuf, off, Math.min(len, 3));
+		}
+		@Override public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	public void testSplitter(){
+		Random rand = new Random(12345);
+		for (int i=0; i<300; i++){
+			String s = randomString(rand, "ab-", rand.nextInt(15));
+			String delimiter = randomString(rand, "-a", 1 + rand.nextInt(2));
+			Splitter splitter = Splitter.on(delimiter);
+			String[] expected = StringHelper.split(s, delimiter);
+			assertTrue(Arrays.equals(expected, splitter.split(s)));
+			assertTrue(Arrays.equals(expected, splitter.split(new StringBuffer(s))));
+			String[] fields = new String[3];
+			int count = splitter.split(s, fields);
+			assertEquals(expected.length, count);
+			for (int j=0; j<Math.min(count, fields.length); j++){
+				assertEquals(expected[j], fields[j]);
+			}
+			ArrayList<String> iterated = new ArrayList<String>();
+			for (CharSequence field: splitter.iterate(s)){
+				iterated.add(field.toString());
+			}
+			assertEquals(Arrays.asList(expected), iterated);
+		}
+
+		Splitter splitter = Splitter.onAnyOf(",;").trimResults().omitEmptyStrings();
+		assertTrue(Arrays.equals(new String[]{"a", "b c", "d"}, splitter.split(" a ,, b c ;d;  ")));
+		assertTrue(Arrays.equals(new String[]{"a", "b c ;d;"}, splitter.limit(2).split(" a ,, b c ;d;  ")));
+		assertTrue(Arrays.equals(new String[]{"a", "", "b,c"}, Splitter.on(',').limit(3).split("a,,b,c")));
+		assertTrue(Arrays.equals(new String[]{"a", "b", "c,,,d"}, Splitter.on(',').limit(3).omitEmptyStrings().split("a,,,b,,,c,,,d")));
+		assertEquals(0, Splitter.on(',').omitEmptyStrings().split(",,").length);
+		final StringBuffer handled = new StringBuffer();
+		assertEquals(3, Splitter.on("::").split("x::yy::", new Splitter.FieldHandler(){
+			public void field(CharSequence field, int index){
+				handled.append(index).append('=').append(field).append(';');
+			}
+		}));
+		assertEquals("0=x;1=yy;2=;", handled.toString());
+		CharSequence view = Splitter.on('|').iterate("ab|cde").iterator().next();
+		assertEquals(2, view.length());
+		assertEquals('b', view.charAt(1));
+		assertEquals("b", view.subSequence(1, 2).toString());
+		try {
+			Splitter.on("");
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+	}
+
+	public void testJoiner() throws IOException {
+		String[] parts = {"a", null, "", "b"};
+		assertEquals(StringHelper.join(parts, ", "), Joiner.on(", ").join(parts));
+		assertEquals("a, , b", Joiner.on(", ").skipNulls().join(parts));
+		assertEquals("a, null, , b", Joiner.on(", ").useForNull("null").join(parts));
+		assertEquals("", Joiner.on(", ").join());
+		assertEquals("x-y", Joiner.on("-").join(Arrays.asList("x", "y")));
+		StringWriter out = new StringWriter();
+		Joiner.on("|").appendTo(out, Splitter.on(',').iterate("1,2,3"));
+		assertEquals("1|2|3", out.toString());
+	}
+
+	public void testParseSlices() throws IOException {
+		assertEquals(-2147483648, StringHelper.parseInt("[-2147483648]", 1, 12, 7));
+		assertEquals(7, StringHelper.parseInt("[2147483648]", 1, 11, 7));
+		assertEquals(255, StringHelper.parseInt(" 0xff ".getBytes("ASCII"), 0, 6, 7));
+		assertEquals(7, StringHelper.parseInt("-", 0, 1, 7));
+		assertEquals(7, StringHelper.parseInt("", 0, 0, 7));
+		assertEquals(Long.MIN_VALUE, StringHelper.parseLong("x-9223372036854775808", 1, 21, 7));
+		assertEquals(7, StringHelper.parseLong("9223372036854775808", 0, 19, 7));
+		assertEquals(12L, StringHelper.parseLong("+12".getBytes("ASCII"), 0, 3, 7));
+		assertEquals(1.5, StringHelper.parseDouble("a1.5b", 1, 4, 7), 0);
+		assertEquals(0.1, StringHelper.parseDouble(" .1 ".getBytes("ASCII"), 0, 4, 7), 0);
+		assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(StringHelper.parseDouble("-0", 0, 2, 7)));
+		assertTrue(Double.isNaN(StringHelper.parseDouble("NaN", 0, 3, 7)));
+		assertEquals(7.0, StringHelper.parseDouble("1e", 0, 2, 7), 0);
+		assertEquals(7.0, StringHelper.parseDouble(".", 0, 1, 7), 0);
+		Random rand = new Random(14142135);
+		for (int i=0; i<20000; i++){
+			String number = randomString(rand, " +-0123456789xXcCbB", rand.nextInt(12));
+			String padded = "9" + number + "9";
+			int end = padded.length() - 1;
+			Integer expected = StringHelper.parseInteger(number);
+			int expectedInt = expected == null ? -7 : expected.intValue();
+			assertEquals(number, expectedInt, StringHelper.parseInt(padded, 1, end, -7));
+			assertEquals(number, expectedInt, StringHelper.parseInt(padded.getBytes("ASCII"), 1, end, -7));
+			number = randomString(rand, "-0123456789", rand.nextInt(21));
+			padded = "9" + number + "9";
+			end = padded.length() - 1;
+			long expectedLong;
+			try {
+				expectedLong = Long.parseLong(number);
+			} catch (NumberFormatException nfx){
+				expectedLong = -7;
+			}
+			assertEquals(number, expectedLong, StringHelper.parseLong(padded, 1, end, -7));
+			assertEquals(number, expectedLong, StringHelper.parseLong(padded.getBytes("ASCII"), 1, end, -7));
+			switch (rand.nextInt(3)){
+				case 0: number = randomString(rand, " +-0123456789.eE", rand.nextInt(12)); break;
+				case 1: number = Double.toString(rand.nextDouble() * Math.pow(10, rand.nextInt(60) - 30)); break;
+				default: number = Long.toString(rand.nextLong() >> rand.nextInt(64)) + "." + rand.nextInt(1000000) + "e" + (rand.nextInt(50) - 25); break;
+			}
+			padded = "9" + number + "9";
+			end = padded.length() - 1;
+			double expectedDouble;
+			try {
+				expectedDouble = Double.parseDouble(number);
+			} catch (NumberFormatException nfx){
+				expectedDouble = -7;
+			}
+			assertEquals(number, Double.doubleToLongBits(expectedDouble), Double.doubleToLongBits(StringHelper.parseDouble(padded, 1, end, -7)));
+			assertEquals(number, Double.doubleToLongBits(expectedDouble), Double.doubleToLongBits(StringHelper.parseDouble(padded.getBytes("ASCII"), 1, end, -7)));
+		}
+	}
+
+	private static int firstIndex(String[] terms, String term, boolean ignoreCase){
+		for (int i=0; i<terms.length; i++){
+			if (ignoreCase ? terms[i].equalsIgnoreCase(term) : terms[i].equals(term)) return i;
+		}
+		return -1;
+	}
+
+	private static String randomString(Random rand, String alphabet, int length){
+		StringBuffer sb = new StringBuffer();
+		for (int i=0; i<length; i++){
+			sb.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
 }